@@ -0,0 +1,114 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.protege.owl.diff.align.AlignmentAggressiveness;
+import org.protege.owl.diff.align.AlignmentAlgorithm;
+import org.protege.owl.diff.align.util.PrioritizedComparator;
+import org.protege.owl.diff.present.PresentationAlgorithm;
+import org.protege.owl.diff.present.util.PresentationAlgorithmComparator;
+import org.protege.owl.diff.util.Util;
+
+/**
+ * Finds the algorithms declared by the engine.  A benchmarked algorithm is run on the state left by the
+ * declared algorithms that the engine would have run before it.
+ */
+public class Algorithms {
+    public static final String ALIGNMENT_PACKAGE = "org.protege.owl.diff.align.algorithms.";
+    public static final String PRESENTATION_PACKAGE = "org.protege.owl.diff.present.algorithms.";
+
+    private Algorithms() {
+    }
+
+    public static List<AlignmentAlgorithm> getDefaultAlignmentAlgorithms() throws IOException, InstantiationException, IllegalAccessException {
+        List<AlignmentAlgorithm> algorithms = new ArrayList<AlignmentAlgorithm>();
+        for (Class<? extends AlignmentAlgorithm> algorithmClass : Util.createDeclaredAlignmentAlgorithms(Algorithms.class.getClassLoader())) {
+            AlignmentAlgorithm algorithm = algorithmClass.newInstance();
+            if (!algorithm.isCustom() && algorithm.getAggressiveness().compareTo(AlignmentAggressiveness.MODERATE) <= 0) {
+                algorithms.add(algorithm);
+            }
+        }
+        Collections.sort(algorithms, new PrioritizedComparator());
+        return algorithms;
+    }
+
+    public static List<PresentationAlgorithm> getDefaultPresentationAlgorithms() throws IOException, InstantiationException, IllegalAccessException {
+        List<PresentationAlgorithm> algorithms = new ArrayList<PresentationAlgorithm>();
+        for (Class<? extends PresentationAlgorithm> algorithmClass : Util.createDeclaredPresentationAlgorithms(Algorithms.class.getClassLoader())) {
+            algorithms.add(algorithmClass.newInstance());
+        }
+        Collections.sort(algorithms, new PresentationAlgorithmComparator());
+        return algorithms;
+    }
+
+    /**
+     * The names of every declared alignment algorithm, including the custom and aggressive ones that the
+     * default configuration leaves out.
+     */
+    public static String[] getDeclaredAlignmentAlgorithmNames() throws IOException {
+        List<String> names = new ArrayList<String>();
+        for (Class<? extends AlignmentAlgorithm> algorithmClass : Util.createDeclaredAlignmentAlgorithms(Algorithms.class.getClassLoader())) {
+            names.add(getName(algorithmClass, ALIGNMENT_PACKAGE));
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    public static String[] getDeclaredPresentationAlgorithmNames() throws IOException {
+        List<String> names = new ArrayList<String>();
+        for (Class<? extends PresentationAlgorithm> algorithmClass : Util.createDeclaredPresentationAlgorithms(Algorithms.class.getClassLoader())) {
+            names.add(getName(algorithmClass, PRESENTATION_PACKAGE));
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    /*
+     * The algorithms of the engine go by their simple names and any others by their full names.
+     */
+    private static String getName(Class<?> algorithmClass, String algorithmPackage) {
+        String name = algorithmClass.getName();
+        return name.startsWith(algorithmPackage) ? name.substring(algorithmPackage.length()) : name;
+    }
+
+    private static String getClassName(String name, String algorithmPackage) {
+        return name.contains(".") ? name : algorithmPackage + name;
+    }
+
+    public static AlignmentAlgorithm createAlignmentAlgorithm(String name) throws ReflectiveOperationException {
+        return (AlignmentAlgorithm) Class.forName(getClassName(name, ALIGNMENT_PACKAGE)).newInstance();
+    }
+
+    public static PresentationAlgorithm createPresentationAlgorithm(String name) throws ReflectiveOperationException {
+        return (PresentationAlgorithm) Class.forName(getClassName(name, PRESENTATION_PACKAGE)).newInstance();
+    }
+
+    /**
+     * The default alignment algorithms that the engine runs before the given algorithm.
+     */
+    public static AlignmentAlgorithm[] getPredecessors(AlignmentAlgorithm algorithm) throws IOException, InstantiationException, IllegalAccessException {
+        List<AlignmentAlgorithm> predecessors = new ArrayList<AlignmentAlgorithm>();
+        PrioritizedComparator comparator = new PrioritizedComparator();
+        for (AlignmentAlgorithm other : getDefaultAlignmentAlgorithms()) {
+            if (other.getClass() != algorithm.getClass() && comparator.compare(other, algorithm) < 0) {
+                predecessors.add(other);
+            }
+        }
+        return predecessors.toArray(new AlignmentAlgorithm[predecessors.size()]);
+    }
+
+    /**
+     * The default presentation algorithms that the engine applies before the given algorithm.
+     */
+    public static PresentationAlgorithm[] getPredecessors(PresentationAlgorithm algorithm) throws IOException, InstantiationException, IllegalAccessException {
+        List<PresentationAlgorithm> predecessors = new ArrayList<PresentationAlgorithm>();
+        PresentationAlgorithmComparator comparator = new PresentationAlgorithmComparator();
+        for (PresentationAlgorithm other : getDefaultPresentationAlgorithms()) {
+            if (other.getClass() != algorithm.getClass() && comparator.compare(other, algorithm) < 0) {
+                predecessors.add(other);
+            }
+        }
+        return predecessors.toArray(new PresentationAlgorithm[predecessors.size()]);
+    }
+}
@@ -0,0 +1,56 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.align.AlignmentAlgorithm;
+
+/**
+ * A single run of one alignment algorithm.  Before each run the algorithms that the default configuration
+ * would run ahead of it are applied to a fresh diff map so that the algorithm sees a realistic state.
+ * <p>
+ * BenchmarkMain runs every declared alignment algorithm unless the alignmentAlgorithm parameter is given on
+ * the command line.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AlignmentAlgorithmBenchmark {
+
+    @State(Scope.Thread)
+    public static class AlgorithmState {
+
+        @Param
+        public String alignmentAlgorithm;
+
+        AlignmentAlgorithm instance;
+
+        @Setup(Level.Invocation)
+        public void prepare(OntologyPairState ontologies) throws Exception {
+            instance = Algorithms.createAlignmentAlgorithm(alignmentAlgorithm);
+            Engine e = ontologies.createEngine();
+            e.setAlignmentAlgorithms(Algorithms.getPredecessors(instance));
+            e.phase1();
+            instance.initialise(e);
+        }
+
+        @TearDown(Level.Invocation)
+        public void reset() {
+            instance.reset();
+        }
+    }
+
+    @Benchmark
+    public void run(AlgorithmState state) {
+        state.instance.run();
+    }
+}
@@ -0,0 +1,46 @@
+package org.protege.owl.diff.benchmarks;
+
+/**
+ * The accuracy of a class alignment against the generated ground truth.
+ */
+public class AlignmentScore {
+    private int correct;
+    private int wrong;
+    private int missed;
+
+    public AlignmentScore(int correct, int wrong, int missed) {
+        this.correct = correct;
+        this.wrong = wrong;
+        this.missed = missed;
+    }
+
+    public int getCorrect() {
+        return correct;
+    }
+
+    /**
+     * The matches that disagree with the expected alignment, including matches of classes that should
+     * have stayed unmatched.
+     */
+    public int getWrong() {
+        return wrong;
+    }
+
+    public int getMissed() {
+        return missed;
+    }
+
+    public double getPrecision() {
+        return correct + wrong == 0 ? 1.0 : (double) correct / (correct + wrong);
+    }
+
+    public double getRecall() {
+        return correct + missed == 0 ? 1.0 : (double) correct / (correct + missed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d correct, %d wrong, %d missed (precision %.4f, recall %.4f)",
+                             correct, wrong, missed, getPrecision(), getRecall());
+    }
+}
@@ -0,0 +1,39 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected on the command line (all of them by default) with the gc profiler so that
+ * allocation rates are reported next to the timings.  The usual JMH options are accepted, for example
+ * <pre>
+ *   java -jar target/benchmarks.jar AlignmentAlgorithmBenchmark -p classCount=10000
+ * </pre>
+ * The algorithm benchmarks run every algorithm declared by the engine unless the alignmentAlgorithm or
+ * presentationAlgorithm parameter is given.
+ */
+public class BenchmarkMain {
+    public static final String ALIGNMENT_ALGORITHM_PARAMETER    = "alignmentAlgorithm";
+    public static final String PRESENTATION_ALGORITHM_PARAMETER = "presentationAlgorithm";
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class);
+        if (!commandLine.getParameter(ALIGNMENT_ALGORITHM_PARAMETER).hasValue()) {
+            options.param(ALIGNMENT_ALGORITHM_PARAMETER, Algorithms.getDeclaredAlignmentAlgorithmNames());
+        }
+        if (!commandLine.getParameter(PRESENTATION_ALGORITHM_PARAMETER).hasValue()) {
+            options.param(PRESENTATION_ALGORITHM_PARAMETER, Algorithms.getDeclaredPresentationAlgorithmNames());
+        }
+        new Runner(options.build()).run();
+    }
+}
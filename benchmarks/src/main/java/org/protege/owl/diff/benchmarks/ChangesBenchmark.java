@@ -0,0 +1,37 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.present.Changes;
+
+/**
+ * Building the entity based diffs from the result of the default alignment.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChangesBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class AlignedState {
+        Engine engine;
+
+        @Setup(Level.Trial)
+        public void align(OntologyPairState ontologies) throws Exception {
+            engine = ontologies.createAlignedEngine();
+        }
+    }
+
+    @Benchmark
+    public Changes createChanges(AlignedState state) {
+        return new Changes(state.engine.getOwlDiffMap());
+    }
+}
@@ -0,0 +1,81 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.protege.owl.diff.align.util.CompareNames;
+import org.protege.owl.diff.align.util.CompareNames.NormalizedName;
+
+/**
+ * Comparisons of the labels of the synthetic source ontology with slightly altered copies, about a
+ * third of which are close enough to match.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CompareNamesBenchmark {
+    public static final int PAIRS = 1024;
+
+    @State(Scope.Benchmark)
+    public static class LabelPairs {
+        String[] left  = new String[PAIRS];
+        String[] right = new String[PAIRS];
+        NormalizedName[] normalizedLeft  = new NormalizedName[PAIRS];
+        NormalizedName[] normalizedRight = new NormalizedName[PAIRS];
+
+        @Setup(Level.Trial)
+        public void createPairs(OntologyPairState ontologies) {
+            String[] labels = ontologies.ontologies.getSourceLabels();
+            Random random = new Random(ontologies.seed);
+            for (int i = 0; i < PAIRS; i++) {
+                left[i] = labels[random.nextInt(labels.length)];
+                switch (i % 3) {
+                case 0:
+                    right[i] = left[i].toUpperCase().replace(' ', '_');
+                    break;
+                case 1:
+                    right[i] = left[i].substring(0, left[i].length() - 1) + "x";
+                    break;
+                default:
+                    right[i] = labels[random.nextInt(labels.length)];
+                    break;
+                }
+                normalizedLeft[i] = CompareNames.normalize(left[i]);
+                normalizedRight[i] = CompareNames.normalize(right[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void closeEnough(LabelPairs pairs, Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(CompareNames.closeEnough(pairs.left[i], pairs.right[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void closeEnoughNormalized(LabelPairs pairs, Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(CompareNames.closeEnough(pairs.normalizedLeft[i], pairs.normalizedRight[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void normalize(LabelPairs pairs, Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(CompareNames.normalize(pairs.left[i]));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.protege.owl.diff.align.OwlDiffMap;
+import org.protege.owl.diff.align.impl.OwlDiffMapImpl;
+
+/**
+ * Construction of the diff map, which indexes both ontologies and sets aside the common axioms.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DiffMapBenchmark {
+
+    @Benchmark
+    public OwlDiffMap createDiffMap(OntologyPairState state) {
+        OwlDiffMapImpl diffMap = new OwlDiffMapImpl(state.getTargetOntology().getOWLOntologyManager().getOWLDataFactory(),
+                                                    state.getSourceOntology(),
+                                                    state.getTargetOntology());
+        return diffMap;
+    }
+}
@@ -0,0 +1,67 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.align.AlignmentAlgorithm;
+import org.protege.owl.diff.align.algorithms.MatchByCode;
+import org.protege.owl.diff.present.PresentationAlgorithm;
+import org.protege.owl.diff.present.algorithms.IdentifyMergedConcepts;
+import org.protege.owl.diff.present.algorithms.IdentifyRetiredConcepts;
+import org.protege.owl.diff.present.algorithms.IdentifySplitConcepts;
+
+/**
+ * A complete diff with the default algorithms plus the NCI style code, retirement, merge and split
+ * algorithms.  The accuracy of the last alignment of each iteration against the generated ground truth is
+ * printed so that a faster configuration can be checked for lost matches.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EngineBenchmark {
+
+    @State(Scope.Thread)
+    public static class EngineState {
+        Engine engine;
+
+        @Setup(Level.Invocation)
+        public void createEngine(OntologyPairState ontologies) throws Exception {
+            engine = ontologies.createEngine();
+            AlignmentAlgorithm[] defaults = Algorithms.getDefaultAlignmentAlgorithms().toArray(new AlignmentAlgorithm[0]);
+            AlignmentAlgorithm[] alignment = new AlignmentAlgorithm[defaults.length + 1];
+            System.arraycopy(defaults, 0, alignment, 0, defaults.length);
+            alignment[defaults.length] = new MatchByCode();
+            engine.setAlignmentAlgorithms(alignment);
+
+            PresentationAlgorithm[] presentationDefaults = Algorithms.getDefaultPresentationAlgorithms().toArray(new PresentationAlgorithm[0]);
+            PresentationAlgorithm[] presentation = new PresentationAlgorithm[presentationDefaults.length + 3];
+            System.arraycopy(presentationDefaults, 0, presentation, 0, presentationDefaults.length);
+            presentation[presentationDefaults.length] = new IdentifyRetiredConcepts();
+            presentation[presentationDefaults.length + 1] = new IdentifyMergedConcepts();
+            presentation[presentationDefaults.length + 2] = new IdentifySplitConcepts();
+            engine.setPresentationAlgorithms(presentation);
+        }
+
+        @TearDown(Level.Iteration)
+        public void reportAccuracy(OntologyPairState ontologies) {
+            if (engine != null && engine.getOwlDiffMap() != null) {
+                System.out.println("Alignment accuracy: " + ontologies.getOntologies().score(engine.getOwlDiffMap()));
+            }
+        }
+    }
+
+    @Benchmark
+    public Engine diff(EngineState state) {
+        state.engine.phase1();
+        state.engine.phase2();
+        return state.engine;
+    }
+}
@@ -0,0 +1,89 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import org.protege.owl.diff.benchmarks.SyntheticOntologyGenerator.ChangeType;
+import org.semanticweb.owlapi.formats.RDFXMLDocumentFormat;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyStorageException;
+
+/**
+ * Writes a generated ontology pair to a directory so that it can be used outside of the benchmarks:
+ * <pre>
+ *   java -cp target/benchmarks.jar org.protege.owl.diff.benchmarks.GenerateOntologies dir classCount [seed] [CHANGE=rate ...]
+ * </pre>
+ * The directory receives Synthetic-Left.owl, Synthetic-Right.owl, the expected alignment in alignment.tsv
+ * (source IRI, tab, target IRI) with the new target classes listed in new-targets.txt, and the engine
+ * parameters in parameters.properties.
+ */
+public class GenerateOntologies {
+
+    public static void main(String[] args) throws IOException, OWLOntologyCreationException, OWLOntologyStorageException {
+        if (args.length < 2) {
+            System.err.println("Usage: GenerateOntologies dir classCount [seed] [CHANGE=rate ...]");
+            System.exit(1);
+        }
+        File dir = new File(args[0]);
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator();
+        generator.setClassCount(Integer.parseInt(args[1]));
+        int next = 2;
+        if (args.length > 2 && !args[2].contains("=")) {
+            generator.setSeed(Long.parseLong(args[2]));
+            next = 3;
+        }
+        for (int i = next; i < args.length; i++) {
+            String[] rate = args[i].split("=");
+            generator.setRate(ChangeType.valueOf(rate[0]), Double.parseDouble(rate[1]));
+        }
+        SyntheticOntologies ontologies = generator.generate();
+
+        dir.mkdirs();
+        save(ontologies.getSourceOntology(), new File(dir, "Synthetic-Left.owl"));
+        save(ontologies.getTargetOntology(), new File(dir, "Synthetic-Right.owl"));
+        PrintWriter alignment = new PrintWriter(new File(dir, "alignment.tsv"), "UTF-8");
+        try {
+            for (Entry<IRI, IRI> entry : ontologies.getExpectedAlignment().entrySet()) {
+                alignment.println(entry.getKey() + "\t" + entry.getValue());
+            }
+        }
+        finally {
+            alignment.close();
+        }
+        PrintWriter newTargets = new PrintWriter(new File(dir, "new-targets.txt"), "UTF-8");
+        try {
+            for (IRI iri : ontologies.getExpectedNewTargets()) {
+                newTargets.println(iri);
+            }
+        }
+        finally {
+            newTargets.close();
+        }
+        Properties parameters = new Properties();
+        parameters.putAll(ontologies.getParameters());
+        OutputStream out = new FileOutputStream(new File(dir, "parameters.properties"));
+        try {
+            parameters.store(out, "Engine parameters for the synthetic ontologies");
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private static void save(OWLOntology ontology, File file) throws IOException, OWLOntologyStorageException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            ontology.getOWLOntologyManager().saveOntology(ontology, new RDFXMLDocumentFormat(), out);
+        }
+        finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.align.AlignmentAlgorithm;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+/**
+ * The pair of synthetic ontologies shared by the benchmarks.  The size can be changed from the command line
+ * with <code>-p classCount=...</code>, up to a million classes given enough heap.
+ */
+@State(Scope.Benchmark)
+public class OntologyPairState {
+
+    @Param({ "1000", "10000", "100000" })
+    public int classCount;
+
+    @Param({ "42" })
+    public long seed;
+
+    protected SyntheticOntologies ontologies;
+
+    @Setup(Level.Trial)
+    public void createOntologies() throws OWLOntologyCreationException {
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator();
+        generator.setClassCount(classCount);
+        generator.setSeed(seed);
+        ontologies = generator.generate();
+    }
+
+    public SyntheticOntologies getOntologies() {
+        return ontologies;
+    }
+
+    public OWLOntology getSourceOntology() {
+        return ontologies.getSourceOntology();
+    }
+
+    public OWLOntology getTargetOntology() {
+        return ontologies.getTargetOntology();
+    }
+
+    public Engine createEngine() {
+        Engine e = new Engine(getSourceOntology(), getTargetOntology());
+        e.setParameters(new HashMap<String, String>(ontologies.getParameters()));
+        return e;
+    }
+
+    /**
+     * An engine that has completed the alignment with the default alignment algorithms.
+     */
+    public Engine createAlignedEngine() throws IOException, InstantiationException, IllegalAccessException {
+        Engine e = createEngine();
+        List<AlignmentAlgorithm> algorithms = Algorithms.getDefaultAlignmentAlgorithms();
+        e.setAlignmentAlgorithms(algorithms.toArray(new AlignmentAlgorithm[algorithms.size()]));
+        e.phase1();
+        return e;
+    }
+}
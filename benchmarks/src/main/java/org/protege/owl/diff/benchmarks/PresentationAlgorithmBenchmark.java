@@ -0,0 +1,67 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.present.EntityBasedPresentationAlgorithm;
+import org.protege.owl.diff.present.PresentationAlgorithm;
+import org.protege.owl.diff.present.util.EntityBasedDiffRunner;
+
+/**
+ * A single application of one presentation algorithm.  The alignment is done once per trial.  Before each
+ * application the presentation algorithms that the default configuration applies ahead of the benchmarked
+ * one are applied to fresh changes.
+ * <p>
+ * BenchmarkMain runs every declared presentation algorithm unless the presentationAlgorithm parameter is
+ * given on the command line.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PresentationAlgorithmBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class AlignedState {
+        Engine engine;
+
+        @Setup(Level.Trial)
+        public void align(OntologyPairState ontologies) throws Exception {
+            engine = ontologies.createAlignedEngine();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AlgorithmState {
+
+        @Param
+        public String presentationAlgorithm;
+
+        PresentationAlgorithm instance;
+
+        @Setup(Level.Invocation)
+        public void prepare(AlignedState aligned) throws Exception {
+            instance = Algorithms.createPresentationAlgorithm(presentationAlgorithm);
+            aligned.engine.setPresentationAlgorithms(Algorithms.getPredecessors(instance));
+            aligned.engine.phase2();
+            instance.initialise(aligned.engine);
+        }
+    }
+
+    @Benchmark
+    public void apply(AlignedState aligned, AlgorithmState state) {
+        if (state.instance instanceof EntityBasedPresentationAlgorithm) {
+            new EntityBasedDiffRunner(aligned.engine.getChanges(), (EntityBasedPresentationAlgorithm) state.instance).run();
+        }
+        else {
+            state.instance.apply();
+        }
+    }
+}
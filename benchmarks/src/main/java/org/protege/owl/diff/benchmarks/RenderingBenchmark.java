@@ -0,0 +1,77 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.service.RenderingService;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+/**
+ * Rendering of entities and axioms of both ontologies through the rendering service of an aligned engine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RenderingBenchmark {
+    public static final int SAMPLE_SIZE = 1024;
+
+    @State(Scope.Benchmark)
+    public static class RenderingState {
+        RenderingService renderer;
+        OWLEntity[] sourceEntities;
+        OWLAxiom[]  sourceAxioms;
+        OWLAxiom[]  targetAxioms;
+
+        @Setup(Level.Trial)
+        public void prepare(OntologyPairState ontologies) throws Exception {
+            Engine e = ontologies.createAlignedEngine();
+            renderer = RenderingService.get(e);
+            sourceEntities = sample(new ArrayList<OWLEntity>(ontologies.getSourceOntology().getSignature()), new OWLEntity[SAMPLE_SIZE]);
+            sourceAxioms = sample(new ArrayList<OWLAxiom>(ontologies.getSourceOntology().getAxioms()), new OWLAxiom[SAMPLE_SIZE]);
+            targetAxioms = sample(new ArrayList<OWLAxiom>(ontologies.getTargetOntology().getAxioms()), new OWLAxiom[SAMPLE_SIZE]);
+        }
+
+        private static <X> X[] sample(List<X> all, X[] sample) {
+            for (int i = 0; i < sample.length; i++) {
+                sample[i] = all.get((int) ((long) i * all.size() / sample.length));
+            }
+            return sample;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_SIZE)
+    public void renderSourceEntities(RenderingState state, Blackhole blackhole) {
+        for (OWLEntity entity : state.sourceEntities) {
+            blackhole.consume(state.renderer.renderSourceObject(entity));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_SIZE)
+    public void renderSourceAxioms(RenderingState state, Blackhole blackhole) {
+        for (OWLAxiom axiom : state.sourceAxioms) {
+            blackhole.consume(state.renderer.renderSourceObject(axiom));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_SIZE)
+    public void renderTargetAxioms(RenderingState state, Blackhole blackhole) {
+        for (OWLAxiom axiom : state.targetAxioms) {
+            blackhole.consume(state.renderer.renderTargetObject(axiom));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.protege.owl.diff.align.OwlDiffMap;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+/**
+ * A generated ontology pair along with the alignment that a perfect diff would find.
+ */
+public class SyntheticOntologies {
+    private OWLOntology         source;
+    private OWLOntology         target;
+    private String[]            sourceLabels;
+    private Map<IRI, IRI>       expectedAlignment;
+    private Set<IRI>            expectedNewTargets;
+    private Map<String, String> parameters;
+
+    public SyntheticOntologies(OWLOntology source, OWLOntology target, String[] sourceLabels,
+                               Map<IRI, IRI> expectedAlignment, Set<IRI> expectedNewTargets,
+                               Map<String, String> parameters) {
+        this.source = source;
+        this.target = target;
+        this.sourceLabels = sourceLabels;
+        this.expectedAlignment = expectedAlignment;
+        this.expectedNewTargets = expectedNewTargets;
+        this.parameters = parameters;
+    }
+
+    public OWLOntology getSourceOntology() {
+        return source;
+    }
+
+    public OWLOntology getTargetOntology() {
+        return target;
+    }
+
+    public String[] getSourceLabels() {
+        return sourceLabels;
+    }
+
+    /**
+     * The IRI of each generated source class mapped to the IRI of the corresponding target class.
+     */
+    public Map<IRI, IRI> getExpectedAlignment() {
+        return Collections.unmodifiableMap(expectedAlignment);
+    }
+
+    /**
+     * The IRIs of the target classes that have no counterpart in the source.
+     */
+    public Set<IRI> getExpectedNewTargets() {
+        return Collections.unmodifiableSet(expectedNewTargets);
+    }
+
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Compares the class alignment found by a diff with the expected alignment.
+     */
+    public AlignmentScore score(OwlDiffMap diffMap) {
+        int correct = 0;
+        int wrong = 0;
+        int missed = 0;
+        Map<OWLEntity, OWLEntity> entityMap = diffMap.getEntityMap();
+        for (Entry<IRI, IRI> entry : expectedAlignment.entrySet()) {
+            OWLEntity found = entityMap.get(diffMap.getOWLDataFactory().getOWLClass(entry.getKey()));
+            if (found == null) {
+                missed++;
+            }
+            else if (found.getIRI().equals(entry.getValue())) {
+                correct++;
+            }
+            else {
+                wrong++;
+            }
+        }
+        int spurious = 0;
+        for (OWLEntity target : entityMap.values()) {
+            if (target instanceof OWLClass && expectedNewTargets.contains(target.getIRI())) {
+                spurious++;
+            }
+        }
+        return new AlignmentScore(correct, wrong + spurious, missed);
+    }
+}
@@ -0,0 +1,295 @@
+package org.protege.owl.diff.benchmarks;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.protege.owl.diff.present.algorithms.IdentifyMergedConcepts;
+import org.protege.owl.diff.present.algorithms.IdentifySplitConcepts;
+import org.protege.owl.diff.service.CodeToEntityMapper;
+import org.protege.owl.diff.service.RetirementClassService;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.vocab.XSDVocabulary;
+
+/**
+ * Generates a source and target ontology pair in memory along with the alignment that a perfect diff
+ * would find.  The source ontology is a class tree in the style of the NCI Thesaurus: every class has a
+ * code, a label and a definition and some classes have an existential restriction.  The target ontology
+ * is the source with a chosen fraction of the classes changed in one of the following ways:
+ * <ul>
+ * <li> RENAME - the label of the class changes.
+ * <li> IRI_CHANGE - the class gets a new IRI but keeps its code.
+ * <li> RETIRE - the class is moved under the retired concept class with the status, deprecation and old
+ *      parent annotations understood by the RetirementClassService.
+ * <li> MERGE - the class is retired and merged into its parent as understood by IdentifyMergedConcepts.
+ * <li> SPLIT - a new class is split from the class as understood by IdentifySplitConcepts.
+ * <li> DEPRECATE - the class is marked as deprecated.
+ * <li> ANNOTATION_EDIT - the definition of the class changes.
+ * </ul>
+ * The children of retired and merged classes are moved to the nearest remaining ancestor.  The same
+ * settings always generate the same pair.
+ */
+public class SyntheticOntologyGenerator {
+    public static final String NS = "http://protege.stanford.edu/owl-diff/synthetic#";
+    public static final int    BRANCHING = 8;
+
+    public static final String CODE                 = NS + "code";
+    public static final String DEFINITION           = NS + "DEFINITION";
+    public static final String CONCEPT_STATUS       = NS + "Concept_Status";
+    public static final String RETIRED_STATUS       = "Retired_Concept";
+    public static final String RETIRED_CONCEPT      = NS + "Retired_Concept";
+    public static final String OLD_PARENT           = NS + "OLD_PARENT";
+    public static final String MERGE_INTO           = NS + "Merge_Into";
+    public static final String SPLIT_FROM           = NS + "Split_From";
+
+    public enum ChangeType {
+        NONE, RENAME, IRI_CHANGE, RETIRE, MERGE, SPLIT, DEPRECATE, ANNOTATION_EDIT
+    }
+
+    private static final String[] WORDS = {
+        "Cell", "Tissue", "Organ", "Protein", "Gene", "Receptor", "Enzyme", "Membrane",
+        "Neoplasm", "Carcinoma", "Lymphocyte", "Kinase", "Antigen", "Nucleus", "Vessel", "Marker"
+    };
+
+    private int  classCount = 1000;
+    private long seed = 42;
+    private Map<ChangeType, Double> rates = new EnumMap<ChangeType, Double>(ChangeType.class);
+
+    /* generation state */
+    private OWLDataFactory        factory;
+    private OWLAnnotationProperty codeProperty;
+    private OWLAnnotationProperty definitionProperty;
+    private OWLObjectProperty     partOf;
+    private ChangeType[]          changes;
+    private String[]              labels;
+
+    public SyntheticOntologyGenerator() {
+        rates.put(ChangeType.RENAME, 0.02);
+        rates.put(ChangeType.IRI_CHANGE, 0.02);
+        rates.put(ChangeType.RETIRE, 0.01);
+        rates.put(ChangeType.MERGE, 0.005);
+        rates.put(ChangeType.SPLIT, 0.005);
+        rates.put(ChangeType.DEPRECATE, 0.01);
+        rates.put(ChangeType.ANNOTATION_EDIT, 0.03);
+    }
+
+    public void setClassCount(int classCount) {
+        this.classCount = classCount;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param rate the fraction of the classes that receive this change.  The rates of all the changes
+     *             should add up to at most one.
+     */
+    public void setRate(ChangeType type, double rate) {
+        if (type == ChangeType.NONE) {
+            throw new IllegalArgumentException("The rate of unchanged classes is what is left over");
+        }
+        rates.put(type, rate);
+    }
+
+    /**
+     * The engine parameters that tell the services about the conventions used by the generated ontologies.
+     */
+    public static Map<String, String> getParameters() {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(CodeToEntityMapper.CODE_ANNOTATION_PROPERTY, CODE);
+        parameters.put(RetirementClassService.RETIREMENT_CLASS_PROPERTY, RETIRED_CONCEPT);
+        parameters.put(RetirementClassService.RETIREMENT_STATUS_PROPERTY, CONCEPT_STATUS);
+        parameters.put(RetirementClassService.RETIREMENT_STATUS_STRING, RETIRED_STATUS);
+        parameters.put(RetirementClassService.RETIREMENT_META_PROPERTIES + 0, OLD_PARENT);
+        parameters.put(IdentifyMergedConcepts.MERGED_INTO_ANNOTATION_PROPERTY, MERGE_INTO);
+        parameters.put(IdentifySplitConcepts.SPLIT_FROM_ANNOTATION_PROPERTY, SPLIT_FROM);
+        return parameters;
+    }
+
+    public SyntheticOntologies generate() throws OWLOntologyCreationException {
+        Random random = new Random(seed);
+        chooseLabels(random);
+        chooseChanges(random);
+
+        OWLOntologyManager sourceManager = OWLManager.createOWLOntologyManager();
+        OWLOntologyManager targetManager = OWLManager.createOWLOntologyManager();
+        factory = targetManager.getOWLDataFactory();
+        codeProperty = factory.getOWLAnnotationProperty(IRI.create(CODE));
+        definitionProperty = factory.getOWLAnnotationProperty(IRI.create(DEFINITION));
+        partOf = factory.getOWLObjectProperty(IRI.create(NS + "partOf"));
+
+        OWLOntology source = sourceManager.createOntology(IRI.create("http://protege.stanford.edu/owl-diff/synthetic/source.owl"));
+        OWLOntology target = targetManager.createOntology(IRI.create("http://protege.stanford.edu/owl-diff/synthetic/target.owl"));
+        Map<IRI, IRI> expectedAlignment = new HashMap<IRI, IRI>();
+        Set<IRI> expectedNewTargets = new HashSet<IRI>();
+
+        sourceManager.addAxioms(source, generateSource(random.nextLong()));
+        targetManager.addAxioms(target, generateTarget(random.nextLong(), expectedAlignment, expectedNewTargets));
+        return new SyntheticOntologies(source, target, labels.clone(), expectedAlignment, expectedNewTargets, getParameters());
+    }
+
+    private void chooseLabels(Random random) {
+        labels = new String[classCount];
+        for (int i = 0; i < classCount; i++) {
+            labels[i] = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+        }
+    }
+
+    /*
+     * The root is never changed.  A merge goes into the parent so the parent must survive.
+     */
+    private void chooseChanges(Random random) {
+        changes = new ChangeType[classCount];
+        changes[0] = ChangeType.NONE;
+        for (int i = 1; i < classCount; i++) {
+            double draw = random.nextDouble();
+            changes[i] = ChangeType.NONE;
+            for (Map.Entry<ChangeType, Double> entry : rates.entrySet()) {
+                draw -= entry.getValue();
+                if (draw < 0) {
+                    changes[i] = entry.getKey();
+                    break;
+                }
+            }
+            if (changes[i] == ChangeType.MERGE && isRemoved(parent(i))) {
+                changes[i] = ChangeType.NONE;
+            }
+        }
+    }
+
+    private Set<OWLAxiom> generateSource(long restrictionSeed) {
+        Random restrictions = new Random(restrictionSeed);
+        Set<OWLAxiom> axioms = new HashSet<OWLAxiom>();
+        addVocabulary(axioms);
+        for (int i = 0; i < classCount; i++) {
+            OWLClass cls = sourceClass(i);
+            addDescription(axioms, cls, code(i), labels[i], definition(i));
+            if (i > 0) {
+                axioms.add(factory.getOWLSubClassOfAxiom(cls, sourceClass(parent(i))));
+            }
+            addRestriction(axioms, restrictions, i, false);
+        }
+        return axioms;
+    }
+
+    private Set<OWLAxiom> generateTarget(long restrictionSeed, Map<IRI, IRI> expectedAlignment, Set<IRI> expectedNewTargets) {
+        Random restrictions = new Random(restrictionSeed);
+        Set<OWLAxiom> axioms = new HashSet<OWLAxiom>();
+        addVocabulary(axioms);
+        OWLClass retiredConcept = factory.getOWLClass(IRI.create(RETIRED_CONCEPT));
+        for (int i = 0; i < classCount; i++) {
+            OWLClass cls = targetClass(i);
+            expectedAlignment.put(sourceClass(i).getIRI(), cls.getIRI());
+            String label = changes[i] == ChangeType.RENAME ? labels[i] + " NOS" : labels[i];
+            String definition = changes[i] == ChangeType.ANNOTATION_EDIT ? definition(i) + " (revised)" : definition(i);
+            addDescription(axioms, cls, code(i), label, definition);
+            if (isRemoved(i)) {
+                axioms.add(factory.getOWLSubClassOfAxiom(cls, retiredConcept));
+                axioms.add(annotation(CONCEPT_STATUS, cls.getIRI(), RETIRED_STATUS));
+                axioms.add(factory.getOWLAnnotationAssertionAxiom(cls.getIRI(), factory.getOWLAnnotation(factory.getOWLDeprecated(), factory.getOWLLiteral(true))));
+                axioms.add(annotation(OLD_PARENT, cls.getIRI(), code(parent(i))));
+                if (changes[i] == ChangeType.MERGE) {
+                    axioms.add(annotation(MERGE_INTO, cls.getIRI(), code(parent(i))));
+                }
+            }
+            else {
+                if (i > 0) {
+                    axioms.add(factory.getOWLSubClassOfAxiom(cls, targetClass(remainingAncestor(i))));
+                }
+                if (changes[i] == ChangeType.DEPRECATE) {
+                    axioms.add(factory.getOWLAnnotationAssertionAxiom(cls.getIRI(), factory.getOWLAnnotation(factory.getOWLDeprecated(), factory.getOWLLiteral(true))));
+                }
+                else if (changes[i] == ChangeType.SPLIT) {
+                    OWLClass split = factory.getOWLClass(IRI.create(NS + "S" + i));
+                    expectedNewTargets.add(split.getIRI());
+                    addDescription(axioms, split, "S" + i, labels[i] + " Variant", definition(i));
+                    axioms.add(factory.getOWLSubClassOfAxiom(split, targetClass(remainingAncestor(i))));
+                    axioms.add(factory.getOWLAnnotationAssertionAxiom(factory.getOWLAnnotationProperty(IRI.create(SPLIT_FROM)),
+                                                                      split.getIRI(),
+                                                                      factory.getOWLLiteral(code(i), factory.getOWLDatatype(XSDVocabulary.STRING.getIRI()))));
+                }
+            }
+            addRestriction(axioms, restrictions, i, true);
+        }
+        return axioms;
+    }
+
+    private void addVocabulary(Set<OWLAxiom> axioms) {
+        axioms.add(factory.getOWLDeclarationAxiom(codeProperty));
+        axioms.add(factory.getOWLDeclarationAxiom(definitionProperty));
+        axioms.add(factory.getOWLDeclarationAxiom(partOf));
+        for (String property : new String[] { CONCEPT_STATUS, OLD_PARENT, MERGE_INTO, SPLIT_FROM }) {
+            axioms.add(factory.getOWLDeclarationAxiom(factory.getOWLAnnotationProperty(IRI.create(property))));
+        }
+        axioms.add(factory.getOWLDeclarationAxiom(factory.getOWLClass(IRI.create(RETIRED_CONCEPT))));
+    }
+
+    private void addDescription(Set<OWLAxiom> axioms, OWLClass cls, String code, String label, String definition) {
+        axioms.add(factory.getOWLDeclarationAxiom(cls));
+        axioms.add(factory.getOWLAnnotationAssertionAxiom(codeProperty, cls.getIRI(), factory.getOWLLiteral(code)));
+        axioms.add(factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), cls.getIRI(), factory.getOWLLiteral(label)));
+        axioms.add(factory.getOWLAnnotationAssertionAxiom(definitionProperty, cls.getIRI(), factory.getOWLLiteral(definition)));
+    }
+
+    /*
+     * Every tenth class is part of some other class.  The random draw is made for every class so that the
+     * source and target draw the same partners.
+     */
+    private void addRestriction(Set<OWLAxiom> axioms, Random restrictions, int i, boolean isTarget) {
+        int partner = restrictions.nextInt(classCount);
+        if (i % 10 == 0 && !(isTarget && isRemoved(i))) {
+            OWLClass cls = isTarget ? targetClass(i) : sourceClass(i);
+            OWLClass partnerClass = isTarget ? targetClass(partner) : sourceClass(partner);
+            axioms.add(factory.getOWLSubClassOfAxiom(cls, factory.getOWLObjectSomeValuesFrom(partOf, partnerClass)));
+        }
+    }
+
+    private OWLAxiom annotation(String property, IRI subject, String value) {
+        return factory.getOWLAnnotationAssertionAxiom(factory.getOWLAnnotationProperty(IRI.create(property)), subject, factory.getOWLLiteral(value));
+    }
+
+    private boolean isRemoved(int i) {
+        return changes[i] == ChangeType.RETIRE || changes[i] == ChangeType.MERGE;
+    }
+
+    private int remainingAncestor(int i) {
+        do {
+            i = parent(i);
+        }
+        while (i > 0 && isRemoved(i));
+        return i;
+    }
+
+    private OWLClass sourceClass(int i) {
+        return factory.getOWLClass(IRI.create(NS + code(i)));
+    }
+
+    private OWLClass targetClass(int i) {
+        return changes[i] == ChangeType.IRI_CHANGE ? factory.getOWLClass(IRI.create(NS + "X" + i)) : sourceClass(i);
+    }
+
+    private static int parent(int i) {
+        return (i - 1) / BRANCHING;
+    }
+
+    private static String code(int i) {
+        return "C" + i;
+    }
+
+    private String definition(int i) {
+        return "A " + labels[i].toLowerCase() + " that is part of " + labels[parent(i)].toLowerCase() + ".";
+    }
+}
@@ -0,0 +1,101 @@
+package org.protege.owl.diff.align.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+import org.protege.owl.diff.align.UnmatchedSourceAxiom;
+import org.protege.owl.diff.benchmarks.SyntheticOntologies;
+import org.protege.owl.diff.benchmarks.SyntheticOntologyGenerator;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+/*
+ * The test lives next to the synthetic generator because the engine module cannot depend on the
+ * benchmarks.
+ */
+public class DiffMapIndexBuilderTest extends TestCase {
+
+    /*
+     * The partitioned build must give the index of a single threaded walk over the same axioms, in the
+     * same order, whatever pool it runs on.
+     */
+    public void testPartitionedBuildMatchesSequentialWalk() throws OWLOntologyCreationException {
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator();
+        generator.setClassCount(3000);
+        SyntheticOntologies ontologies = generator.generate();
+        OWLOntology source = ontologies.getSourceOntology();
+        OWLOntology target = ontologies.getTargetOntology();
+        assertTrue(source.getAxiomCount() > 2 * DiffMapIndexBuilder.PARTITION_SIZE);
+
+        DiffMapIndexBuilder.SourceIndex expected = new DiffMapIndexBuilder.SourceIndex();
+        for (OWLAxiom axiom : OverlaySet.axiomsOf(source)) {
+            expected.add(axiom, target.containsAxiom(axiom));
+        }
+        assertTrue(expected.identicalAxiomCount > 0);
+        assertTrue(expected.unmatchedAxiomCount > 0);
+        Set<OWLAxiom> expectedTargetAxioms = new HashSet<OWLAxiom>();
+        for (OWLAxiom axiom : target.getAxioms()) {
+            if (!DiffMapIndexBuilder.isIdenticalAxiom(axiom, source)) {
+                expectedTargetAxioms.add(axiom);
+            }
+        }
+
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        ForkJoinPool fourThreads = new ForkJoinPool(4);
+        try {
+            for (ForkJoinPool pool : new ForkJoinPool[] { singleThread, fourThreads, ForkJoinPool.commonPool() }) {
+                DiffMapIndexBuilder builder = new DiffMapIndexBuilder(source, target, pool);
+                builder.build();
+                assertSameIndex(expected, builder.getSourceIndex());
+                assertEquals(expectedTargetAxioms, new HashSet<OWLAxiom>(builder.getTargetAxioms()));
+                assertEquals(expectedTargetAxioms.size(), builder.getTargetAxioms().size());
+                assertEquals(target.getSignature(), builder.getTargetEntities());
+            }
+        }
+        finally {
+            singleThread.shutdown();
+            fourThreads.shutdown();
+        }
+    }
+
+    private static void assertSameIndex(DiffMapIndexBuilder.SourceIndex expected, DiffMapIndexBuilder.SourceIndex found) {
+        assertEquals(expected.unmatchedAxiomCount, found.unmatchedAxiomCount);
+        assertEquals(expected.identicalAxiomCount, found.identicalAxiomCount);
+        assertEquals(axioms(expected.potentialMatchingAxioms), axioms(found.potentialMatchingAxioms));
+        assertEquals(new ArrayList<Object>(expected.entities), new ArrayList<Object>(found.entities));
+        assertEquals(new ArrayList<Object>(expected.anonIndividuals), new ArrayList<Object>(found.anonIndividuals));
+        assertEquals(new ArrayList<Object>(expected.axiomsByEntity.keySet()), new ArrayList<Object>(found.axiomsByEntity.keySet()));
+        assertEquals(new ArrayList<Object>(expected.axiomsByAnonIndividual.keySet()), new ArrayList<Object>(found.axiomsByAnonIndividual.keySet()));
+        assertEquals(axiomsByKey(expected.axiomsByEntity), axiomsByKey(found.axiomsByEntity));
+        assertEquals(axiomsByKey(expected.axiomsByAnonIndividual), axiomsByKey(found.axiomsByAnonIndividual));
+    }
+
+    private static List<OWLAxiom> axioms(List<UnmatchedSourceAxiom> unmatched) {
+        List<OWLAxiom> axioms = new ArrayList<OWLAxiom>();
+        for (UnmatchedSourceAxiom axiom : unmatched) {
+            axioms.add(axiom.getAxiom());
+        }
+        return axioms;
+    }
+
+    private static Map<Object, Set<OWLAxiom>> axiomsByKey(Map<?, Set<UnmatchedSourceAxiomImpl>> index) {
+        Map<Object, Set<OWLAxiom>> axiomsByKey = new LinkedHashMap<Object, Set<OWLAxiom>>();
+        for (Map.Entry<?, Set<UnmatchedSourceAxiomImpl>> entry : index.entrySet()) {
+            Set<OWLAxiom> axioms = new HashSet<OWLAxiom>();
+            for (UnmatchedSourceAxiomImpl axiom : entry.getValue()) {
+                axioms.add(axiom.getAxiom());
+            }
+            assertEquals(entry.getValue().size(), axioms.size());
+            axiomsByKey.put(entry.getKey(), axioms);
+        }
+        return axiomsByKey;
+    }
+}
@@ -8,13 +8,18 @@ import java.util.List;
 import java.util.Map;
 
 import org.protege.owl.diff.align.AlignmentAlgorithm;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
 import org.protege.owl.diff.align.OwlDiffMap;
+import org.protege.owl.diff.align.impl.AlignmentCache;
+import org.protege.owl.diff.align.impl.AlignmentScheduler;
 import org.protege.owl.diff.align.impl.OwlDiffMapImpl;
 import org.protege.owl.diff.align.util.PrioritizedComparator;
 import org.protege.owl.diff.present.Changes;
 import org.protege.owl.diff.present.EntityBasedDiff;
 import org.protege.owl.diff.present.EntityBasedDiff.DiffType;
+import org.protege.owl.diff.present.EntityBasedPresentationAlgorithm;
 import org.protege.owl.diff.present.PresentationAlgorithm;
+import org.protege.owl.diff.present.util.EntityBasedDiffRunner;
 import org.protege.owl.diff.present.util.PresentationAlgorithmComparator;
 import org.semanticweb.owlapi.model.OWLDataFactory;
 import org.semanticweb.owlapi.model.OWLOntology;
@@ -30,6 +35,7 @@ public class Engine {
     private Map<String, String> parameters;
     
     private OwlDiffMap diffMap;
+    private boolean alignmentRestored;
     private List<AlignmentAlgorithm> diffAlgorithms = new ArrayList<AlignmentAlgorithm>();
 
     private Changes changes;
@@ -54,6 +60,14 @@ public class Engine {
 	    return diffMap;
 	}
 
+	/**
+	 * @return true if the last phase 1 took the alignment from the alignment cache instead of running the
+	 *         alignment algorithms.
+	 */
+	public boolean isAlignmentRestored() {
+		return alignmentRestored;
+	}
+
 	public Changes getChanges() {
 		return changes;
 	}
@@ -113,43 +127,59 @@ public class Engine {
 	}
 
 	public void phase1() {
+		AlignmentCache cache = AlignmentCache.create(ontology1, ontology2, diffAlgorithms, parameters);
+		alignmentRestored = cache != null && phase1Restore(cache);
+		if (alignmentRestored) {
+			return;
+		}
     	phase1Init();
     	phase1Run();
         phase1Cleanup();
+        if (cache != null) {
+        	cache.save(diffMap);
+        }
+    }
+    
+    /*
+     * The alignment algorithms are not initialised when the alignment comes from the cache.
+     */
+    private boolean phase1Restore(AlignmentCache cache) {
+    	services.clear();
+    	OwlDiffMapImpl diffMapImpl = new OwlDiffMapImpl(factory, ontology1, ontology2);
+    	diffMapImpl.setLazyAxiomReconciliation(true);
+    	diffMap = diffMapImpl;
+    	return cache.restore(diffMap);
     }
     
     private void phase1Init() {
     	services.clear();
-		diffMap = new OwlDiffMapImpl(factory, ontology1, ontology2);
+    	OwlDiffMapImpl diffMapImpl = new OwlDiffMapImpl(factory, ontology1, ontology2);
+    	diffMapImpl.setLazyAxiomReconciliation(canReconcileAxiomsLazily());
+		diffMap = diffMapImpl;
 		for (AlignmentAlgorithm algorithm : diffAlgorithms) {
 			algorithm.initialise(this);
 		}
 	}
     
+    /*
+     * The axioms can be left until the end when none of the algorithms looks at them.  With no algorithms
+     * the caller is probably going to drive the diff map itself so the axioms are kept up to date.
+     */
+    private boolean canReconcileAxiomsLazily() {
+    	if (diffAlgorithms.isEmpty()) {
+    		return false;
+    	}
+    	for (AlignmentAlgorithm algorithm : diffAlgorithms) {
+    		if (!(algorithm instanceof AxiomEventAwareAlignmentAlgorithm) 
+    				|| ((AxiomEventAwareAlignmentAlgorithm) algorithm).needsAxiomEvents()) {
+    			return false;
+    		}
+    	}
+    	return true;
+    }
+    
     private void phase1Run() {
-        boolean progress;
-        boolean finished = false;
-        do {
-            progress  = false;
-            for (AlignmentAlgorithm da : diffAlgorithms) {
-                int entitiesCount = diffMap.getUnmatchedSourceEntities().size();
-                int individualsCount = diffMap.getUnmatchedSourceAnonymousIndividuals().size();
-                if (entitiesCount == 0 && individualsCount == 0) {
-                    finished = true;
-                    break;
-                }
-                try {
-                    da.run();
-                 }
-                catch (Error | Exception e) {
-                    logger.warn("Diff Algorithm " + da.getAlgorithmName() + "failed (" + e + ").  Continuing...");
-                }
-				progress = progress ||
-                              (entitiesCount > diffMap.getUnmatchedSourceEntities().size()) ||
-                              (individualsCount > diffMap.getUnmatchedSourceAnonymousIndividuals().size());
-            }
-        }
-        while (progress && !finished);
+        new AlignmentScheduler(diffMap, diffAlgorithms).run();
         diffMap.finish();
     }
 
@@ -178,7 +208,12 @@ public class Engine {
     
     private void phase2Run() {
     	for (PresentationAlgorithm algorithm : changeAlgorithms) {
-    		algorithm.apply();
+    		if (algorithm instanceof EntityBasedPresentationAlgorithm) {
+    			new EntityBasedDiffRunner(changes, (EntityBasedPresentationAlgorithm) algorithm).run();
+    		}
+    		else {
+    			algorithm.apply();
+    		}
     	}
     }
 }
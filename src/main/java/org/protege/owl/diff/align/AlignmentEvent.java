@@ -0,0 +1,89 @@
+package org.protege.owl.diff.align;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+/**
+ * Everything that changed in the diff map as the result of one call that added matches (or of the final
+ * reconciliation in finish()).  The moved axioms are the unmatched source axioms that had one of the newly
+ * matched entities or individuals in their signature.  Each of them that became fully mapped either matched 
+ * a target axiom, which is listed with the matched axioms, or could not be matched, in which case its 
+ * translation is listed with the unmatcheable axioms.
+ * <p>
+ * Axioms common to both ontologies are set aside as matched when the diff map is built and are only part
+ * of an event once they are put back (see AlignmentListener).
+ */
+public class AlignmentEvent {
+
+    public enum Cause {
+        /** a call to addMatchingEntities */
+        MATCHING_ENTITIES,
+        /** a call to addMatchingAnonymousIndividuals */
+        MATCHING_ANONYMOUS_INDIVIDUALS,
+        /** a call to addMatch for a single entity or individual */
+        MATCH,
+        /** the reconciliation of the axioms in finish() */
+        FINISH
+    }
+
+    private Cause                                               cause;
+    private Map<OWLEntity, OWLEntity>                           entityMatches;
+    private Map<OWLAnonymousIndividual, OWLAnonymousIndividual> anonymousIndividualMatches;
+    private List<UnmatchedSourceAxiom>                          movedAxioms;
+    private List<OWLAxiom>                                      matchedAxioms;
+    private List<OWLAxiom>                                      unmatcheableAxioms;
+
+    public AlignmentEvent(Cause cause,
+                          Map<OWLEntity, OWLEntity> entityMatches,
+                          Map<OWLAnonymousIndividual, OWLAnonymousIndividual> anonymousIndividualMatches,
+                          List<UnmatchedSourceAxiom> movedAxioms,
+                          List<OWLAxiom> matchedAxioms,
+                          List<OWLAxiom> unmatcheableAxioms) {
+        this.cause = cause;
+        this.entityMatches = entityMatches;
+        this.anonymousIndividualMatches = anonymousIndividualMatches;
+        this.movedAxioms = movedAxioms;
+        this.matchedAxioms = matchedAxioms;
+        this.unmatcheableAxioms = unmatcheableAxioms;
+    }
+
+    public Cause getCause() {
+        return cause;
+    }
+
+    public Map<OWLEntity, OWLEntity> getEntityMatches() {
+        return Collections.unmodifiableMap(entityMatches);
+    }
+
+    public Map<OWLAnonymousIndividual, OWLAnonymousIndividual> getAnonymousIndividualMatches() {
+        return Collections.unmodifiableMap(anonymousIndividualMatches);
+    }
+
+    public List<UnmatchedSourceAxiom> getMovedAxioms() {
+        return Collections.unmodifiableList(movedAxioms);
+    }
+
+    /**
+     * The target axioms that were matched.
+     */
+    public List<OWLAxiom> getMatchedAxioms() {
+        return Collections.unmodifiableList(matchedAxioms);
+    }
+
+    /**
+     * The translations of the fully mapped source axioms that did not match any target axiom.  Axioms that
+     * were ruled out without being translated are translated as the list is read.
+     */
+    public List<OWLAxiom> getUnmatcheableAxioms() {
+        return Collections.unmodifiableList(unmatcheableAxioms);
+    }
+
+    public boolean isEmpty() {
+        return entityMatches.isEmpty() && anonymousIndividualMatches.isEmpty() && movedAxioms.isEmpty();
+    }
+}
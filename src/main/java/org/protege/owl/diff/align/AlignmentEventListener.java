@@ -0,0 +1,11 @@
+package org.protege.owl.diff.align;
+
+/**
+ * Receives one event for each call that adds matches to the diff map.  This is cheaper than an
+ * AlignmentListener, which is called once for each moved, matched and unmatcheable axiom.
+ */
+public interface AlignmentEventListener {
+
+    void alignmentChanged(AlignmentEvent event);
+
+}
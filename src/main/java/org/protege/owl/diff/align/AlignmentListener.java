@@ -6,6 +6,15 @@ import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
 import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLEntity;
 
+/**
+ * Hears about each match made in the diff map and each source axiom that the matches move.
+ * <p>
+ * Axioms that occur verbatim in both ontologies are set aside when the diff map is built and are never
+ * reported on their own.  They are taken to match themselves and only show up in unmatchedAxiomMoved and
+ * addMatchedAxiom or addUnmatcheableAxiom once they are put back.  That happens when one of their entities
+ * is matched to an entity other than itself, or in finish() when one of their entities is still
+ * unmatched.  An axiom that is never put back produces no callback at all.
+ */
 public interface AlignmentListener {
 
     void addMatchingEntities(Map<OWLEntity, OWLEntity> newMatches);
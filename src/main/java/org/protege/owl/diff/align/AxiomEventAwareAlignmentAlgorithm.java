@@ -0,0 +1,13 @@
+package org.protege.owl.diff.align;
+
+/**
+ * An alignment algorithm that says whether it looks at the unmatched axioms or at the axiom part of the 
+ * alignment events while the alignment is running.  If none of the algorithms do then the engine lets the
+ * diff map put off all the axiom work until the alignment is finished.  Algorithms that do not implement
+ * this interface are assumed to need the axioms.
+ */
+public interface AxiomEventAwareAlignmentAlgorithm extends AlignmentAlgorithm {
+
+    boolean needsAxiomEvents();
+
+}
@@ -0,0 +1,16 @@
+package org.protege.owl.diff.align;
+
+import java.util.Set;
+
+/**
+ * An alignment algorithm that tells the engine which kinds of new matches can give it more to do.  After
+ * its first run the engine only runs the algorithm again when a match of one of these kinds has been made
+ * since its last run started.  An algorithm that does all of its work in its first run, or that follows
+ * the later matches with its own listener, returns an empty set.  Algorithms that do not implement this
+ * interface are run again after any new match.
+ */
+public interface IncrementalAlignmentAlgorithm extends AlignmentAlgorithm {
+
+    Set<MatchKind> getRerunTriggers();
+
+}
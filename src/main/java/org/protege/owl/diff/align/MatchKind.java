@@ -0,0 +1,9 @@
+package org.protege.owl.diff.align;
+
+/**
+ * The kinds of matches that the alignment algorithms add to the diff map.
+ */
+public enum MatchKind {
+    ENTITY,
+    ANONYMOUS_INDIVIDUAL
+}
@@ -22,11 +22,19 @@ public interface OwlDiffMap {
 
     Set<OWLEntity>              getUnmatchedSourceEntities();
     Set<OWLAnonymousIndividual> getUnmatchedSourceAnonymousIndividuals();
+    /**
+     * @return the source axioms that are not yet matched.  The axioms that occur verbatim in both ontologies
+     *         are left out from the start and are only added when they are put back (see AlignmentListener).
+     */
     Set<OWLAxiom>               getUnmatchedSourceAxioms();
     Set<UnmatchedSourceAxiom>   getPotentialMatchingSourceAxioms();
 
     Set<OWLEntity>              getUnmatchedTargetEntities();
     Set<OWLAnonymousIndividual> getUnmatchedTargetAnonymousIndividuals();
+    /**
+     * @return the target axioms that are not yet matched, leaving out the axioms that occur verbatim in both
+     *         ontologies in the same way as getUnmatchedSourceAxioms().
+     */
     Set<OWLAxiom>               getUnmatchedTargetAxioms();
 
     void addMatchingEntities(Map<OWLEntity, OWLEntity> newMatches, AlignmentExplanation explanation);
@@ -36,11 +44,27 @@ public interface OwlDiffMap {
     
     void setMatchBlocked(OWLEntity source, OWLEntity target, boolean blocked);
     
+    /**
+     * Reconciles the axioms that are still pending.  The axioms common to both ontologies that mention an
+     * unmatched entity are put back here, so a listener only hears about them from this call.
+     */
     void finish();
 
+    /**
+     * The listener is not told about the axioms common to both ontologies until they are put back, which may
+     * not be until finish() or may be never (see AlignmentListener).
+     */
     void addDiffListener(AlignmentListener listener);
     void removeDiffListener(AlignmentListener listener);
     
+    void addAlignmentEventListener(AlignmentEventListener listener);
+    /**
+     * @param deferred if true the events are queued and delivered once the outermost change to the diff map
+     *                 has been reported to the other listeners.
+     */
+    void addAlignmentEventListener(AlignmentEventListener listener, boolean deferred);
+    void removeAlignmentEventListener(AlignmentEventListener listener);
+    
     void announce(AlignmentAlgorithm da);
     void summarize();
 
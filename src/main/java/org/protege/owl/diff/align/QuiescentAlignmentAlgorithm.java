@@ -0,0 +1,12 @@
+package org.protege.owl.diff.align;
+
+/**
+ * An alignment algorithm that should only run once the other algorithms have stopped finding matches.
+ * The engine runs such an algorithm when nothing else has work left and the algorithm reports that it
+ * has pending work.
+ */
+public interface QuiescentAlignmentAlgorithm extends AlignmentAlgorithm {
+
+    boolean hasPendingWork();
+
+}
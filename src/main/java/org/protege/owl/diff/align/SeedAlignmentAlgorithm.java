@@ -0,0 +1,10 @@
+package org.protege.owl.diff.align;
+
+/**
+ * An alignment algorithm that imports an alignment that was found earlier, such as the alignment saved
+ * from the diff of the previous release.  Seed algorithms are run before all the other algorithms 
+ * whatever their priorities.
+ */
+public interface SeedAlignmentAlgorithm extends AlignmentAlgorithm {
+
+}
@@ -1,5 +1,10 @@
 package org.protege.owl.diff.align.algorithms;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -7,10 +12,17 @@ import java.util.TreeMap;
 import org.protege.owl.diff.DifferencePosition;
 import org.protege.owl.diff.align.AlignmentExplanation;
 import org.protege.owl.diff.align.util.CompareNames;
+import org.protege.owl.diff.align.util.CompareNames.NormalizedName;
+import org.protege.owl.diff.align.util.NameCandidateIndex;
 import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLEntity;
 
 public abstract class AbstractApproximateSiblingMatch extends AbstractSiblingMatch {
+	public static final int INDEX_THRESHOLD = 16;
+
+	private Map<OWLClass, NormalizedName> sourceNames;
+	private Map<OWLClass, NormalizedName> targetNames;
+	private Map<OWLClass, NameCandidateIndex<OWLClass>> targetIndexes = new HashMap<OWLClass, NameCandidateIndex<OWLClass>>();
 
 	
 	public abstract String getAlgorithmName();
@@ -18,22 +30,97 @@ public abstract class AbstractApproximateSiblingMatch extends AbstractSiblingMat
 	protected abstract AlignmentExplanation getExplanation();
 
 	
+	/**
+	 * The candidate index only offers the pairs that CompareNames.closeEnough can accept, so it may only be
+	 * used when checkMatch accepts no other pairs.  Subclasses that keep the accept rule of checkMatch, 
+	 * perhaps adding to what is done on a match, can return true here.
+	 * 
+	 * @return true if large sets of target siblings should be indexed.  The default is false, in which case
+	 *         checkMatch sees every pair.
+	 */
+	protected boolean useCandidateIndex() {
+		return false;
+	}
+	
+	/*
+	 * Each browser text is normalized once, up front.  If the subclass allows it, large sets of target
+	 * siblings are indexed so that a source sibling is only compared with the candidates the index offers.
+	 * The candidates are tried in the order of the target siblings, so the last match found for a source
+	 * sibling is the same as when every pair is compared.
+	 */
 	protected void checkSiblings(OWLClass sourceParent, Set<OWLClass> unmatchedSourceSiblings,
 								 OWLClass targetParent, Set<OWLClass> unmatchedTargetSiblings) {
 		Map<OWLEntity, OWLEntity> newMatches = new TreeMap<OWLEntity, OWLEntity>();
-		for (OWLClass unmatchedSourceSibling : unmatchedSourceSiblings) {
-			for (OWLClass unmatchedTargetSibling : unmatchedTargetSiblings) {
-				checkMatch(newMatches, sourceParent, unmatchedSourceSibling, targetParent, unmatchedTargetSibling);
+		sourceNames = normalize(unmatchedSourceSiblings, DifferencePosition.SOURCE);
+		try {
+			if (!useCandidateIndex() || unmatchedTargetSiblings.size() < INDEX_THRESHOLD) {
+				targetNames = normalize(unmatchedTargetSiblings, DifferencePosition.TARGET);
+				for (OWLClass unmatchedSourceSibling : unmatchedSourceSiblings) {
+					for (OWLClass unmatchedTargetSibling : unmatchedTargetSiblings) {
+						checkMatch(newMatches, sourceParent, unmatchedSourceSibling, targetParent, unmatchedTargetSibling);
+					}
+				}
+			}
+			else {
+				NameCandidateIndex<OWLClass> index = getTargetIndex(targetParent, unmatchedTargetSiblings);
+				targetNames = index.getNames();
+				final Map<OWLClass, Integer> positions = new HashMap<OWLClass, Integer>();
+				for (OWLClass unmatchedTargetSibling : unmatchedTargetSiblings) {
+					positions.put(unmatchedTargetSibling, positions.size());
+				}
+				Comparator<OWLClass> byPosition = new Comparator<OWLClass>() {
+					public int compare(OWLClass c1, OWLClass c2) {
+						return positions.get(c1).compareTo(positions.get(c2));
+					}
+				};
+				for (OWLClass unmatchedSourceSibling : unmatchedSourceSiblings) {
+					List<OWLClass> candidates = new ArrayList<OWLClass>();
+					for (OWLClass candidate : index.getCandidates(sourceNames.get(unmatchedSourceSibling))) {
+						if (positions.containsKey(candidate)) {
+							candidates.add(candidate);
+						}
+					}
+					Collections.sort(candidates, byPosition);
+					for (OWLClass unmatchedTargetSibling : candidates) {
+						checkMatch(newMatches, sourceParent, unmatchedSourceSibling, targetParent, unmatchedTargetSibling);
+					}
+				}
 			}
 		}
+		finally {
+			sourceNames = null;
+			targetNames = null;
+		}
 		getOwlDiffMap().addMatchingEntities(newMatches, getExplanation());
 	}
+
+	/*
+	 * The index of a target parent is kept for the later callbacks.  The unmatched siblings only shrink
+	 * between callbacks but any sibling that is missing is added.
+	 */
+	private NameCandidateIndex<OWLClass> getTargetIndex(OWLClass targetParent, Set<OWLClass> unmatchedTargetSiblings) {
+		NameCandidateIndex<OWLClass> index = targetIndexes.get(targetParent);
+		if (index == null) {
+			index = new NameCandidateIndex<OWLClass>();
+			targetIndexes.put(targetParent, index);
+		}
+		for (OWLClass unmatchedTargetSibling : unmatchedTargetSiblings) {
+			if (!index.contains(unmatchedTargetSibling)) {
+				index.add(unmatchedTargetSibling, CompareNames.normalize(getBrowserText(unmatchedTargetSibling, DifferencePosition.TARGET)));
+			}
+		}
+		return index;
+	}
 	
+	/**
+	 * Called for every pair of unmatched siblings unless useCandidateIndex() returns true.  In that case it 
+	 * is only called for the pairs that the candidate index offers for large sets of target siblings.
+	 */
 	protected boolean checkMatch(Map<OWLEntity, OWLEntity> newMatches, 
 			                  OWLClass sourceParent, OWLClass unmatchedSourceSibling, 
 			                  OWLClass targetParent, OWLClass unmatchedTargetSibling) {
-		String sourceName = getBrowserText(unmatchedSourceSibling, DifferencePosition.SOURCE);
-		String targetName = getBrowserText(unmatchedTargetSibling, DifferencePosition.TARGET);
+		NormalizedName sourceName = getNormalizedName(unmatchedSourceSibling, DifferencePosition.SOURCE);
+		NormalizedName targetName = getNormalizedName(unmatchedTargetSibling, DifferencePosition.TARGET);
 		if (CompareNames.closeEnough(sourceName, targetName)) {
 			newMatches.put(unmatchedSourceSibling, unmatchedTargetSibling);
 			return true;
@@ -41,4 +128,24 @@ public abstract class AbstractApproximateSiblingMatch extends AbstractSiblingMat
 		return false;
 	}
 
+	@Override
+	public void reset() {
+		super.reset();
+		targetIndexes.clear();
+	}
+
+	private Map<OWLClass, NormalizedName> normalize(Set<OWLClass> classes, DifferencePosition position) {
+		Map<OWLClass, NormalizedName> names = new HashMap<OWLClass, NormalizedName>();
+		for (OWLClass cls : classes) {
+			names.put(cls, CompareNames.normalize(getBrowserText(cls, position)));
+		}
+		return names;
+	}
+
+	private NormalizedName getNormalizedName(OWLClass cls, DifferencePosition position) {
+		Map<OWLClass, NormalizedName> names = position == DifferencePosition.SOURCE ? sourceNames : targetNames;
+		NormalizedName name = names == null ? null : names.get(cls);
+		return name != null ? name : CompareNames.normalize(getBrowserText(cls, position));
+	}
+
 }
@@ -1,70 +1,52 @@
 package org.protege.owl.diff.align.algorithms;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.protege.owl.diff.DifferencePosition;
 import org.protege.owl.diff.Engine;
-import org.protege.owl.diff.align.AlignmentAlgorithm;
-import org.protege.owl.diff.align.AlignmentListener;
+import org.protege.owl.diff.align.AlignmentEvent;
+import org.protege.owl.diff.align.AlignmentEventListener;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
 import org.protege.owl.diff.align.OwlDiffMap;
-import org.protege.owl.diff.align.UnmatchedSourceAxiom;
 import org.protege.owl.diff.align.util.PrioritizedComparator;
 import org.protege.owl.diff.service.SiblingService;
-import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
-import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLEntity;
 
-public abstract class AbstractSiblingMatch implements AlignmentAlgorithm {
+public abstract class AbstractSiblingMatch implements AxiomEventAwareAlignmentAlgorithm, IncrementalAlignmentAlgorithm {
 	private boolean alreadyRun = false;
 	private Engine e;
 	private OwlDiffMap diffs;
 	private SiblingService siblingService;
 	private Set<OWLClass> examinedSourceParents = new HashSet<OWLClass>();
 	
-	private AlignmentListener listener = new AlignmentListener() {
-		
-		public void unmatchedAxiomMoved(UnmatchedSourceAxiom unmatched) {
-		}
-		
-		public void addUnmatcheableAxiom(OWLAxiom axiom) {
-		}
+	/*
+	 * The checks made here can add more matches.  The listener is deferred so that the events for those 
+	 * matches are delivered after this one is done rather than from inside it.
+	 */
+	private AlignmentEventListener listener = new AlignmentEventListener() {
 		
-		public void addMatchingEntities(Map<OWLEntity, OWLEntity> newMatches) {
+		public void alignmentChanged(AlignmentEvent event) {
+			if (event.getEntityMatches().isEmpty()) {
+				return;
+			}
 			startSearch();
-			for (Entry<OWLEntity, OWLEntity> entry : newMatches.entrySet()) {
+			for (Entry<OWLEntity, OWLEntity> entry : event.getEntityMatches().entrySet()) {
 				OWLEntity source = entry.getKey();
 				OWLEntity target = entry.getValue();
-				addMatchInternal(source, target);
+				if (source instanceof OWLClass && target instanceof OWLClass) {
+					checkChildren((OWLClass) source, (OWLClass) target);
+					checkSiblings((OWLClass) source);
+				}
 			}
 		}
-		
-		public void addMatchingAnonymousIndividuals(Map<OWLAnonymousIndividual, OWLAnonymousIndividual> newMatches) {
-
-		}
-		
-		public void addMatchedAxiom(OWLAxiom axiom) {
-		}
-		
-		public void addMatch(OWLAnonymousIndividual source, OWLAnonymousIndividual target) {
-		}
-		
-		public void addMatch(OWLEntity source, OWLEntity target) {
-			startSearch();
-			addMatchInternal(source, target);
-		}
-		
-		private void addMatchInternal(OWLEntity source, OWLEntity target) {
-			if (source instanceof OWLClass && target instanceof OWLClass) {
-				checkChildren((OWLClass) source, (OWLClass) target);
-				checkSiblings((OWLClass) source);
-			}			
-		}
 	};
 	
 	public abstract String getAlgorithmName();
@@ -89,7 +71,7 @@ public abstract class AbstractSiblingMatch implements AlignmentAlgorithm {
 					checkSiblings((OWLClass) unmatchedSource);
 				}
 			}
-			diffs.addDiffListener(listener);
+			diffs.addAlignmentEventListener(listener, true);
 		} finally {
 			diffs.summarize();
 			alreadyRun = true;
@@ -149,14 +131,25 @@ public abstract class AbstractSiblingMatch implements AlignmentAlgorithm {
 	public void reset() {
 		alreadyRun = false;
 		examinedSourceParents.clear();
-		diffs.removeDiffListener(listener);
+		diffs.removeAlignmentEventListener(listener);
 	}
 
 	@Override
 	public boolean isCustom() {
 		return false;
 	}
+
+	public boolean needsAxiomEvents() {
+		return false;
+	}
 	
+	/*
+	 * The matches made after the first run are followed by the listener.
+	 */
+	public Set<MatchKind> getRerunTriggers() {
+		return EnumSet.noneOf(MatchKind.class);
+	}
+
 	/*
 	 * This is not reliable and it is also slow.
 	 */
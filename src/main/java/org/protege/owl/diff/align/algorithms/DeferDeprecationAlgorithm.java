@@ -1,67 +1,23 @@
 package org.protege.owl.diff.align.algorithms;
 
-import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.protege.owl.diff.Engine;
 import org.protege.owl.diff.align.AlignmentAggressiveness;
-import org.protege.owl.diff.align.AlignmentAlgorithm;
-import org.protege.owl.diff.align.AlignmentListener;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
 import org.protege.owl.diff.align.OwlDiffMap;
-import org.protege.owl.diff.align.UnmatchedSourceAxiom;
+import org.protege.owl.diff.align.QuiescentAlignmentAlgorithm;
 import org.protege.owl.diff.align.util.PrioritizedComparator;
 import org.protege.owl.diff.service.DeprecationDeferralService;
-import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
-import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLEntity;
 
-public class DeferDeprecationAlgorithm implements AlignmentAlgorithm {
+public class DeferDeprecationAlgorithm implements QuiescentAlignmentAlgorithm, AxiomEventAwareAlignmentAlgorithm {
 	public final static Logger LOGGER = LoggerFactory.getLogger(DeferDeprecationAlgorithm.class.getName());
 	
 	private OwlDiffMap diffMap;
 	private DeprecationDeferralService dds;
-	private boolean progress;
-	private AlignmentListener listener = new AlignmentListener() {
-		
-		public void unmatchedAxiomMoved(UnmatchedSourceAxiom unmatched) {
-			;
-		}
-		
-		
-		public void addUnmatcheableAxiom(OWLAxiom axiom) {
-			;
-		}
-		
-		
-		public void addMatchingEntities(Map<OWLEntity, OWLEntity> newMatches) {
-			if (!newMatches.isEmpty()) {
-				progress = true;
-			}
-		}
-		
-		
-		public void addMatchingAnonymousIndividuals(Map<OWLAnonymousIndividual, OWLAnonymousIndividual> newMatches) {
-			if (!newMatches.isEmpty()) {
-				progress = true;
-			}
-		}
-		
-		
-		public void addMatchedAxiom(OWLAxiom axiom) {
-		}
-		
-		
-		public void addMatch(OWLAnonymousIndividual source, OWLAnonymousIndividual target) {
-			progress = true;
-		}
-		
-		
-		public void addMatch(OWLEntity source, OWLEntity target) {
-			progress = true;
-		}
-	};
-	
+
 	public int getPriority() {
 		return PrioritizedComparator.MIN_PRIORITY;
 	}
@@ -70,21 +26,23 @@ public class DeferDeprecationAlgorithm implements AlignmentAlgorithm {
 	public void initialise(Engine e) {
 		dds = DeprecationDeferralService.get(e);
 		diffMap = e.getOwlDiffMap();
-		progress = false;
-		diffMap.addDiffListener(listener);
+	}
+	
+	/*
+	 * Deferred matches whose entities have found other matches in the meantime would only be logged.
+	 */
+	public boolean hasPendingWork() {
+		return dds != null && dds.hasApplicableDeferredMatches();
 	}
 
 	
 	public void run() {
-		if (!progress) {
-			diffMap.announce(this);
-			try {
-				matchEntities();
-			} finally {
-				diffMap.summarize();
-			}
+		diffMap.announce(this);
+		try {
+			matchEntities();
+		} finally {
+			diffMap.summarize();
 		}
-		progress = false;
 	}
 	
 	private void matchEntities() {
@@ -106,7 +64,6 @@ public class DeferDeprecationAlgorithm implements AlignmentAlgorithm {
 	
 	public void reset() {
 		dds = null;
-		diffMap.removeDiffListener(listener);
 	}
 	
 	@Override
@@ -114,6 +71,10 @@ public class DeferDeprecationAlgorithm implements AlignmentAlgorithm {
 		return true;
 	}
 
+	public boolean needsAxiomEvents() {
+		return false;
+	}
+
 	
 	public AlignmentAggressiveness getAggressiveness() {
 		return AlignmentAggressiveness.AGGRESSIVE_SEARCH;
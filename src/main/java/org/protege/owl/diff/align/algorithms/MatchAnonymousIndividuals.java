@@ -0,0 +1,359 @@
+package org.protege.owl.diff.align.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.align.AlignmentAggressiveness;
+import org.protege.owl.diff.align.AlignmentExplanation;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
+import org.protege.owl.diff.align.OwlDiffMap;
+import org.protege.owl.diff.align.impl.SimpleAlignmentExplanation;
+import org.protege.owl.diff.align.util.PrioritizedComparator;
+import org.protege.owl.diff.util.DiffDuplicator;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Matches unmatched anonymous individuals by the structure of the axioms that mention them, in the
+ * manner of RDF graph canonicalisation.  Each axiom is put in the terms of the target ontology, with the
+ * individual itself, an unmatched neighbour and the other unmatched anonymous individuals replaced by
+ * fixed placeholders.  Matched entities and anonymous individuals stand for their targets and unmatched
+ * source entities are replaced by a placeholder, so an axiom that mentions one is never the same as a
+ * target axiom.
+ * <p>
+ * The hash of an individual starts out as the hash of its axioms and is then refined, round after round,
+ * with the hashes of its unmatched neighbours until the rounds stop telling individuals apart.  A source
+ * and target individual are matched when they are the only ones on their sides with their hash and their
+ * axioms really are the same.  Matches give the neighbours a mapped neighbour so the search is repeated
+ * until nothing new is found, and the search is run again after the other algorithms make new matches.
+ * Individuals with indistinguishable structure, such as two copies of the same reified axiom, are left
+ * alone.
+ */
+public class MatchAnonymousIndividuals implements AxiomEventAwareAlignmentAlgorithm, IncrementalAlignmentAlgorithm {
+    public static final int MAX_ROUNDS = 16;
+
+    public static final IRI UNMATCHED_ENTITY = IRI.create("urn:protege:owl-diff:unmatched-entity");
+
+    public static final AlignmentExplanation EXPLANATION = new SimpleAlignmentExplanation("Aligned source and target anonymous individuals because the axioms that mention them have the same structure.");
+
+    private Logger logger = LoggerFactory.getLogger(MatchAnonymousIndividuals.class.getName());
+
+    private OwlDiffMap diffs;
+
+    public String getAlgorithmName() {
+        return "Match Anonymous Individuals";
+    }
+
+    @Override
+    public boolean isCustom() {
+        return false;
+    }
+
+    public boolean needsAxiomEvents() {
+        return false;
+    }
+
+    /*
+     * New entity matches change the canonical axioms and new anonymous individual matches from other
+     * algorithms give the unmatched individuals mapped neighbours.
+     */
+    public Set<MatchKind> getRerunTriggers() {
+        return EnumSet.of(MatchKind.ENTITY, MatchKind.ANONYMOUS_INDIVIDUAL);
+    }
+
+    public int getPriority() {
+        return PrioritizedComparator.MIN_PRIORITY;
+    }
+
+    public AlignmentAggressiveness getAggressiveness() {
+        return AlignmentAggressiveness.CONSERVATIVE;
+    }
+
+    public void initialise(Engine e) {
+        diffs = e.getOwlDiffMap();
+    }
+
+    public void run() {
+        diffs.announce(this);
+        try {
+            int total = 0;
+            Map<OWLAnonymousIndividual, OWLAnonymousIndividual> matches;
+            do {
+                matches = searchForMatches();
+                if (!matches.isEmpty()) {
+                    diffs.addMatchingAnonymousIndividuals(matches, EXPLANATION);
+                }
+                total += matches.size();
+            } while (!matches.isEmpty());
+            if (logger.isInfoEnabled()) {
+                logger.info("Found " + total + " anonymous individuals with matching structure.");
+            }
+        }
+        finally {
+            diffs.summarize();
+        }
+    }
+
+    public void reset() {
+    }
+
+    private Map<OWLAnonymousIndividual, OWLAnonymousIndividual> searchForMatches() {
+        Map<OWLAnonymousIndividual, OWLAnonymousIndividual> matches = new HashMap<OWLAnonymousIndividual, OWLAnonymousIndividual>();
+        if (diffs.getUnmatchedSourceAnonymousIndividuals().isEmpty() || diffs.getUnmatchedTargetAnonymousIndividuals().isEmpty()) {
+            return matches;
+        }
+        Side source = new Side(diffs.getSourceOntology(), diffs.getUnmatchedSourceAnonymousIndividuals(), true);
+        Side target = new Side(diffs.getTargetOntology(), diffs.getUnmatchedTargetAnonymousIndividuals(), false);
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean sourceRefined = source.refine();
+            boolean targetRefined = target.refine();
+            if (!sourceRefined && !targetRefined) {
+                break;
+            }
+        }
+        Map<Integer, Integer> sourceByHash = source.getUniqueHashes();
+        Map<Integer, Integer> targetByHash = target.getUniqueHashes();
+        for (Map.Entry<Integer, Integer> entry : sourceByHash.entrySet()) {
+            Integer t = targetByHash.get(entry.getKey());
+            if (t == null) {
+                continue;
+            }
+            int s = entry.getValue();
+            if (source.getCanonicalAxioms(s).equals(target.getCanonicalAxioms(t))) {
+                matches.put(source.individuals.get(s), target.individuals.get(t));
+            }
+        }
+        return matches;
+    }
+
+    private static int combine(int seed, int[] hashes, int length) {
+        Arrays.sort(hashes, 0, length);
+        int h = seed;
+        for (int i = 0; i < length; i++) {
+            h = mix(31 * h + hashes[i]);
+        }
+        return mix(31 * h + length);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /*
+     * The unmatched anonymous individuals of one side are numbered.  Each one has the hash of its own
+     * axioms and an edge for each time an axiom mentions it together with an unmatched neighbour.  The
+     * label of the edge is the hash of the axiom as seen from the individual towards that neighbour.
+     */
+    private class Side {
+        private OWLOntology ontology;
+        private boolean isSource;
+        private Set<OWLAnonymousIndividual> unmatched;
+        private List<OWLAnonymousIndividual> individuals = new ArrayList<OWLAnonymousIndividual>();
+        private int[] base;
+        private boolean[] mentioned;
+        private int[][] neighbours;
+        private int[][] labels;
+        private int[] hashes;
+        private int distinct;
+
+        public Side(OWLOntology ontology, Set<OWLAnonymousIndividual> unmatched, boolean isSource) {
+            this.ontology = ontology;
+            this.isSource = isSource;
+            this.unmatched = unmatched;
+            Map<OWLAnonymousIndividual, Integer> ids = new HashMap<OWLAnonymousIndividual, Integer>();
+            for (OWLAnonymousIndividual individual : unmatched) {
+                ids.put(individual, individuals.size());
+                individuals.add(individual);
+            }
+            base = new int[individuals.size()];
+            mentioned = new boolean[individuals.size()];
+            neighbours = new int[individuals.size()][];
+            labels = new int[individuals.size()][];
+            CanonicalDuplicator duplicator = new CanonicalDuplicator(isSource, unmatched);
+            for (int i = 0; i < individuals.size(); i++) {
+                OWLAnonymousIndividual individual = individuals.get(i);
+                Set<OWLAxiom> axioms = getAxioms(individual);
+                int[] axiomHashes = new int[axioms.size()];
+                int count = 0;
+                List<Integer> edgeNeighbours = new ArrayList<Integer>();
+                List<Integer> edgeLabels = new ArrayList<Integer>();
+                for (OWLAxiom axiom : axioms) {
+                    axiomHashes[count++] = duplicator.canonicalize(axiom, individual, null).hashCode();
+                    for (OWLAnonymousIndividual neighbour : axiom.getAnonymousIndividuals()) {
+                        Integer id = ids.get(neighbour);
+                        if (id != null && id != i) {
+                            edgeNeighbours.add(id);
+                            edgeLabels.add(duplicator.canonicalize(axiom, individual, neighbour).hashCode());
+                        }
+                    }
+                }
+                base[i] = combine(0, axiomHashes, count);
+                mentioned[i] = count > 0;
+                neighbours[i] = new int[edgeNeighbours.size()];
+                labels[i] = new int[edgeLabels.size()];
+                for (int edge = 0; edge < edgeNeighbours.size(); edge++) {
+                    neighbours[i][edge] = edgeNeighbours.get(edge);
+                    labels[i][edge] = edgeLabels.get(edge);
+                }
+            }
+            hashes = Arrays.copyOf(base, base.length);
+            distinct = countDistinct(hashes);
+        }
+
+        /*
+         * The unmatched anonymous individuals of the target are not translated, so the axioms of both
+         * sides are the axioms of the ontology that mention the individual.
+         */
+        public Set<OWLAxiom> getAxioms(OWLAnonymousIndividual individual) {
+            Set<OWLAxiom> axioms = new HashSet<OWLAxiom>(ontology.getReferencingAxioms(individual));
+            axioms.addAll(ontology.getAnnotationAssertionAxioms(individual));
+            return axioms;
+        }
+
+        /**
+         * @return true if the round told apart individuals that had the same hash before it.
+         */
+        public boolean refine() {
+            int[] refined = new int[hashes.length];
+            for (int i = 0; i < hashes.length; i++) {
+                int[] edgeHashes = new int[neighbours[i].length];
+                for (int edge = 0; edge < edgeHashes.length; edge++) {
+                    edgeHashes[edge] = mix(31 * labels[i][edge] + hashes[neighbours[i][edge]]);
+                }
+                refined[i] = combine(base[i], edgeHashes, edgeHashes.length);
+            }
+            hashes = refined;
+            int refinedDistinct = countDistinct(hashes);
+            boolean changed = refinedDistinct > distinct;
+            distinct = refinedDistinct;
+            return changed;
+        }
+
+        /**
+         * @return the individuals that are alone with their hash, by hash.  Individuals that no axiom
+         *         mentions are left out.
+         */
+        public Map<Integer, Integer> getUniqueHashes() {
+            Map<Integer, Integer> byHash = new HashMap<Integer, Integer>();
+            Set<Integer> duplicates = new HashSet<Integer>();
+            for (int i = 0; i < hashes.length; i++) {
+                if (!mentioned[i] || duplicates.contains(hashes[i])) {
+                    continue;
+                }
+                if (byHash.put(hashes[i], i) != null) {
+                    byHash.remove(hashes[i]);
+                    duplicates.add(hashes[i]);
+                }
+            }
+            return byHash;
+        }
+
+        public Set<OWLAxiom> getCanonicalAxioms(int i) {
+            CanonicalDuplicator duplicator = new CanonicalDuplicator(isSource, unmatched);
+            Set<OWLAxiom> canonicalAxioms = new HashSet<OWLAxiom>();
+            for (OWLAxiom axiom : getAxioms(individuals.get(i))) {
+                canonicalAxioms.add(duplicator.canonicalize(axiom, individuals.get(i), null));
+            }
+            return canonicalAxioms;
+        }
+
+        private int countDistinct(int[] values) {
+            Set<Integer> seen = new HashSet<Integer>();
+            for (int value : values) {
+                seen.add(value);
+            }
+            return seen.size();
+        }
+    }
+
+    /*
+     * A DiffDuplicator except that unmapped source entities are replaced by a placeholder of the same
+     * type, that the target side is not translated and that the anonymous individuals are replaced by
+     * placeholders or, when matched, by their targets.
+     */
+    private class CanonicalDuplicator extends DiffDuplicator {
+        private boolean isSource;
+        private Set<OWLAnonymousIndividual> unmatched;
+        private OWLAnonymousIndividual self;
+        private OWLAnonymousIndividual neighbour;
+        private OWLAnonymousIndividual selfPlaceholder;
+        private OWLAnonymousIndividual neighbourPlaceholder;
+        private OWLAnonymousIndividual otherPlaceholder;
+
+        public CanonicalDuplicator(boolean isSource, Set<OWLAnonymousIndividual> unmatched) {
+            super(diffs);
+            this.isSource = isSource;
+            this.unmatched = unmatched;
+            OWLDataFactory factory = diffs.getOWLDataFactory();
+            selfPlaceholder = factory.getOWLAnonymousIndividual("canonical-self");
+            neighbourPlaceholder = factory.getOWLAnonymousIndividual("canonical-neighbour");
+            otherPlaceholder = factory.getOWLAnonymousIndividual("canonical-other");
+        }
+
+        public OWLAxiom canonicalize(OWLAxiom axiom, OWLAnonymousIndividual self, OWLAnonymousIndividual neighbour) {
+            this.self = self;
+            this.neighbour = neighbour;
+            return duplicateObject(axiom);
+        }
+
+        @Override
+        public void visit(OWLAnonymousIndividual individual) {
+            if (individual.equals(self)) {
+                setLastObject(selfPlaceholder);
+            }
+            else if (individual.equals(neighbour)) {
+                setLastObject(neighbourPlaceholder);
+            }
+            else if (unmatched.contains(individual)) {
+                setLastObject(otherPlaceholder);
+            }
+            else if (isSource) {
+                OWLAnonymousIndividual target = diffs.getAnonymousIndividualMap().get(individual);
+                setLastObject(target != null ? target : otherPlaceholder);
+            }
+            else {
+                setLastObject(individual);
+            }
+        }
+
+        @Override
+        public void visit(IRI iri) {
+            if (isSource) {
+                super.visit(iri);
+            }
+            else {
+                setLastObject(iri);
+            }
+        }
+
+        @Override
+        protected void handleEntity(OWLEntity entity) {
+            if (!isSource) {
+                setLastObject(entity);
+                return;
+            }
+            OWLEntity target = diffs.getEntityMap().get(entity);
+            setLastObject(target != null ? target : diffs.getOWLDataFactory().getOWLEntity(entity.getEntityType(), UNMATCHED_ENTITY));
+        }
+    }
+}
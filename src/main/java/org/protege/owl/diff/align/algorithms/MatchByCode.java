@@ -1,15 +1,19 @@
 package org.protege.owl.diff.align.algorithms;
 
-import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.protege.owl.diff.DifferencePosition;
 import org.protege.owl.diff.Engine;
 import org.protege.owl.diff.align.AlignmentAggressiveness;
-import org.protege.owl.diff.align.AlignmentAlgorithm;
 import org.protege.owl.diff.align.AlignmentExplanation;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
 import org.protege.owl.diff.align.OwlDiffMap;
 import org.protege.owl.diff.align.impl.SimpleAlignmentExplanation;
 import org.protege.owl.diff.align.util.PrioritizedComparator;
@@ -24,7 +28,7 @@ import org.semanticweb.owlapi.model.OWLNamedIndividual;
 import org.semanticweb.owlapi.model.OWLObjectProperty;
 import org.semanticweb.owlapi.model.OWLOntology;
 
-public class MatchByCode implements AlignmentAlgorithm {
+public class MatchByCode implements AxiomEventAwareAlignmentAlgorithm, IncrementalAlignmentAlgorithm {
 	public static final AlignmentExplanation EXPLANATION = new SimpleAlignmentExplanation("Enties with a common code value are matched.");
     private Logger logger = LoggerFactory.getLogger(MatchByCode.class.getName());
     
@@ -32,6 +36,10 @@ public class MatchByCode implements AlignmentAlgorithm {
     private OwlDiffMap diffMap;
     private CodeToEntityMapper codeMapper;
 
+    public Set<MatchKind> getRerunTriggers() {
+        return EnumSet.noneOf(MatchKind.class);
+    }
+
     public int getPriority() {
         return PrioritizedComparator.MAX_PRIORITY - 1;
     }
@@ -68,29 +76,47 @@ public class MatchByCode implements AlignmentAlgorithm {
         disabled=false;
     }
     
+    /*
+     * Only the source entities with codes are examined and the code keys are tried in priority order
+     * until one of them finds a target entity.  A code can lead to several target entities of which the
+     * last of the right type is taken.  When an entity has several codes for a key they must all lead to
+     * the same target entity, otherwise the entity is left for the other algorithms.
+     */
     private boolean matchEntities() {
         Map<OWLEntity, OWLEntity> matchMap = new HashMap<OWLEntity, OWLEntity>();
         OWLOntology sourceOntology = diffMap.getSourceOntology();
-        for (OWLEntity sourceEntity : sourceOntology.getSignature()) {
-            String code = codeMapper.getCode(sourceOntology, sourceEntity);
-            if (code == null) {
-                continue;
-            }
-            Collection<OWLEntity> targetEntities = codeMapper.getTargetEntities(code);
-            if (targetEntities == null) {
-                continue;
-            }
+        int conflicts = 0;
+        for (OWLEntity sourceEntity : codeMapper.getCodedEntities(DifferencePosition.SOURCE)) {
             OWLEntity matchedTargetEntity = null;
-            for (OWLEntity potentialTargetEntity : targetEntities) {
-                if (isMatch(sourceEntity, potentialTargetEntity)) {
-                    matchedTargetEntity = potentialTargetEntity;
-                    continue;
+            boolean conflict = false;
+            for (int key = 0; key < codeMapper.getKeyCount() && matchedTargetEntity == null && !conflict; key++) {
+                for (String code : codeMapper.getCodes(key, sourceOntology, sourceEntity)) {
+                    OWLEntity codeTargetEntity = null;
+                    for (OWLEntity potentialTargetEntity : codeMapper.getTargetEntities(key, code)) {
+                        if (isMatch(sourceEntity, potentialTargetEntity)) {
+                            codeTargetEntity = potentialTargetEntity;
+                        }
+                    }
+                    if (codeTargetEntity == null) {
+                        continue;
+                    }
+                    else if (matchedTargetEntity != null && !matchedTargetEntity.equals(codeTargetEntity)) {
+                        conflict = true;
+                        break;
+                    }
+                    matchedTargetEntity = codeTargetEntity;
                 }
             }
-            if (matchedTargetEntity != null) {
+            if (conflict) {
+                conflicts++;
+            }
+            else if (matchedTargetEntity != null) {
                 matchMap.put(sourceEntity, matchedTargetEntity);
             }  
         }
+        if (conflicts > 0 && logger.isInfoEnabled()) {
+            logger.info(conflicts + " source entities have codes that lead to different target entities.");
+        }
         if (matchMap.isEmpty()) {
             return false;
         }
@@ -136,6 +162,10 @@ public class MatchByCode implements AlignmentAlgorithm {
 		return true;
 	}
 
+	public boolean needsAxiomEvents() {
+		return false;
+	}
+
     
     public String getAlgorithmName() {
         return "Match By Code";
@@ -0,0 +1,221 @@
+package org.protege.owl.diff.align.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.protege.owl.diff.DifferencePosition;
+import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.align.AlignmentAggressiveness;
+import org.protege.owl.diff.align.AlignmentExplanation;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
+import org.protege.owl.diff.align.OwlDiffMap;
+import org.protege.owl.diff.align.impl.SimpleAlignmentExplanation;
+import org.protege.owl.diff.align.util.PrioritizedComparator;
+import org.protege.owl.diff.service.OntologyIndex;
+import org.protege.owl.diff.service.OntologyIndexService;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Matches unmatched entities that share the values of cross reference annotations such as database
+ * cross references, exact matches and exact synonyms.  The properties are given as a comma separated list
+ * in the CROSS_REFERENCE_PROPERTIES parameter and default to DEFAULT_CROSS_REFERENCE_PROPERTIES.  Values
+ * are only compared with values of the same property.
+ * <p>
+ * Each side keeps one posting per distinct value: the entity that has it, or a marker once a second
+ * entity has it too.  The postings cover every entity with a value, matched or not, so a value that an
+ * unmatched entity shares with a matched one is ambiguous.  Such ambiguous values are ignored.  An
+ * unmatched source and target entity are matched when every unambiguous value they share with the other
+ * side leads them to each other.
+ */
+public class MatchByCrossReference implements AxiomEventAwareAlignmentAlgorithm, IncrementalAlignmentAlgorithm {
+    public static final String CROSS_REFERENCE_PROPERTIES = "cross.reference.properties";
+    public static final String DEFAULT_CROSS_REFERENCE_PROPERTIES
+            = "http://www.geneontology.org/formats/oboInOwl#hasDbXref, "
+            + "http://www.w3.org/2004/02/skos/core#exactMatch, "
+            + "http://www.geneontology.org/formats/oboInOwl#hasExactSynonym";
+
+    public static final AlignmentExplanation EXPLANATION = new SimpleAlignmentExplanation("Aligned source and target entities because they share cross references that no other entity has.");
+
+    /*
+     * AMBIGUOUS marks a posting, NONE and CONFLICT mark the votes of an entity.
+     */
+    private static final int NONE      = -1;
+    private static final int CONFLICT  = -2;
+    private static final int AMBIGUOUS = -3;
+
+    private Logger logger = LoggerFactory.getLogger(MatchByCrossReference.class.getName());
+
+    private boolean alreadyRun = false;
+    private Engine engine;
+    private OwlDiffMap diffs;
+    private List<OWLAnnotationProperty> properties = new ArrayList<OWLAnnotationProperty>();
+
+    public String getAlgorithmName() {
+        return "Match By Cross Reference";
+    }
+
+    @Override
+    public boolean isCustom() {
+        return false;
+    }
+
+    public boolean needsAxiomEvents() {
+        return false;
+    }
+
+    public Set<MatchKind> getRerunTriggers() {
+        return EnumSet.noneOf(MatchKind.class);
+    }
+
+    public int getPriority() {
+        return PrioritizedComparator.DEFAULT_PRIORITY;
+    }
+
+    public AlignmentAggressiveness getAggressiveness() {
+        return AlignmentAggressiveness.MODERATE;
+    }
+
+    public void initialise(Engine e) {
+        engine = e;
+        diffs = e.getOwlDiffMap();
+        String propertyNames = e.getParameters().get(CROSS_REFERENCE_PROPERTIES);
+        if (propertyNames == null) {
+            propertyNames = DEFAULT_CROSS_REFERENCE_PROPERTIES;
+        }
+        properties.clear();
+        for (String propertyName : propertyNames.split(",")) {
+            if (!propertyName.trim().isEmpty()) {
+                properties.add(diffs.getOWLDataFactory().getOWLAnnotationProperty(IRI.create(propertyName.trim())));
+            }
+        }
+    }
+
+    public void run() {
+        if (alreadyRun) {
+            return;
+        }
+        diffs.announce(this);
+        try {
+            OntologyIndexService indexes = OntologyIndexService.get(engine);
+            Postings source = new Postings(diffs.getSourceOntology(), indexes.getIndex(DifferencePosition.SOURCE));
+            Postings target = new Postings(diffs.getTargetOntology(), indexes.getIndex(DifferencePosition.TARGET));
+            Map<OWLEntity, OWLEntity> matches = searchForMatches(source, target);
+            if (logger.isInfoEnabled()) {
+                logger.info("Found " + matches.size() + " entities with unique shared cross references.");
+            }
+            if (!matches.isEmpty()) {
+                diffs.addMatchingEntities(matches, EXPLANATION);
+            }
+        }
+        finally {
+            diffs.summarize();
+            alreadyRun = true;
+        }
+    }
+
+    public void reset() {
+        alreadyRun = false;
+    }
+
+    private Map<OWLEntity, OWLEntity> searchForMatches(Postings source, Postings target) {
+        Set<OWLEntity> unmatchedSources = diffs.getUnmatchedSourceEntities();
+        Set<OWLEntity> unmatchedTargets = diffs.getUnmatchedTargetEntities();
+        int[] targetFor = new int[source.entities.size()];
+        int[] sourceFor = new int[target.entities.size()];
+        Arrays.fill(targetFor, NONE);
+        Arrays.fill(sourceFor, NONE);
+        for (int p = 0; p < properties.size(); p++) {
+            Map<String, Integer> targetPostings = target.postings.get(p);
+            for (Map.Entry<String, Integer> entry : source.postings.get(p).entrySet()) {
+                int s = entry.getValue();
+                Integer t = targetPostings.get(entry.getKey());
+                if (s == AMBIGUOUS || t == null || t == AMBIGUOUS) {
+                    continue;
+                }
+                OWLEntity sourceEntity = source.entities.get(s);
+                OWLEntity targetEntity = target.entities.get(t);
+                if (!unmatchedSources.contains(sourceEntity) || !unmatchedTargets.contains(targetEntity)
+                        || sourceEntity.getEntityType() != targetEntity.getEntityType()) {
+                    continue;
+                }
+                targetFor[s] = vote(targetFor[s], t);
+                sourceFor[t] = vote(sourceFor[t], s);
+            }
+        }
+        Map<OWLEntity, OWLEntity> matches = new HashMap<OWLEntity, OWLEntity>();
+        for (int s = 0; s < targetFor.length; s++) {
+            int t = targetFor[s];
+            if (t >= 0 && sourceFor[t] == s) {
+                matches.put(source.entities.get(s), target.entities.get(t));
+            }
+        }
+        return matches;
+    }
+
+    private static int vote(int current, int candidate) {
+        return current == NONE || current == candidate ? candidate : CONFLICT;
+    }
+
+    private static String getValue(OWLAnnotationValue value) {
+        if (value instanceof OWLLiteral) {
+            return ((OWLLiteral) value).getLiteral().trim();
+        }
+        else if (value instanceof IRI) {
+            return value.toString();
+        }
+        return null;
+    }
+
+    /*
+     * The values of the entities of one side, one map for each property.
+     */
+    private class Postings {
+        private List<OWLEntity> entities = new ArrayList<OWLEntity>();
+        private List<Map<String, Integer>> postings = new ArrayList<Map<String, Integer>>();
+
+        public Postings(OWLOntology ontology, OntologyIndex index) {
+            Map<OWLEntity, Integer> ids = new HashMap<OWLEntity, Integer>();
+            for (OWLAnnotationProperty property : properties) {
+                Map<String, Integer> propertyPostings = new HashMap<String, Integer>();
+                postings.add(propertyPostings);
+                for (IRI subject : index.getAnnotatedSubjects(property)) {
+                    for (OWLEntity entity : ontology.getEntitiesInSignature(subject)) {
+                        Integer id = ids.get(entity);
+                        if (id == null) {
+                            id = entities.size();
+                            ids.put(entity, id);
+                            entities.add(entity);
+                        }
+                        for (OWLAnnotationValue annotationValue : index.getAnnotationValues(subject, property)) {
+                            String value = getValue(annotationValue);
+                            if (value == null || value.isEmpty()) {
+                                continue;
+                            }
+                            Integer existing = propertyPostings.get(value);
+                            if (existing == null) {
+                                propertyPostings.put(value, id);
+                            }
+                            else if (!existing.equals(id)) {
+                                propertyPostings.put(value, AMBIGUOUS);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package org.protege.owl.diff.align.algorithms;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.protege.owl.diff.Engine;
 import org.protege.owl.diff.align.AlignmentAggressiveness;
-import org.protege.owl.diff.align.AlignmentAlgorithm;
 import org.protege.owl.diff.align.AlignmentExplanation;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
 import org.protege.owl.diff.align.OwlDiffMap;
 import org.protege.owl.diff.align.impl.SimpleAlignmentExplanation;
 import org.protege.owl.diff.align.util.PrioritizedComparator;
@@ -14,7 +18,7 @@ import org.protege.owl.diff.service.DeprecationDeferralService;
 import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLOntology;
 
-public class MatchById implements AlignmentAlgorithm {
+public class MatchById implements AxiomEventAwareAlignmentAlgorithm, IncrementalAlignmentAlgorithm {
 	public static final AlignmentExplanation EXPLANATION 
 	                = new SimpleAlignmentExplanation("Source and targe entities aligned because they have the same IRI.");
     private boolean disabled = false;
@@ -30,6 +34,14 @@ public class MatchById implements AlignmentAlgorithm {
 		return false;
 	}
 
+	public boolean needsAxiomEvents() {
+		return false;
+	}
+
+    public Set<MatchKind> getRerunTriggers() {
+        return EnumSet.noneOf(MatchKind.class);
+    }
+
     public int getPriority() {
         return PrioritizedComparator.MAX_PRIORITY;
     }
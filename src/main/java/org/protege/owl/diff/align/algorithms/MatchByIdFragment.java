@@ -2,13 +2,17 @@ package org.protege.owl.diff.align.algorithms;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.protege.owl.diff.Engine;
 import org.protege.owl.diff.align.AlignmentAggressiveness;
-import org.protege.owl.diff.align.AlignmentAlgorithm;
 import org.protege.owl.diff.align.AlignmentExplanation;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
 import org.protege.owl.diff.align.OwlDiffMap;
 import org.protege.owl.diff.align.impl.SimpleAlignmentExplanation;
 import org.protege.owl.diff.align.util.PrioritizedComparator;
@@ -17,7 +21,7 @@ import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.util.ShortFormProvider;
 import org.semanticweb.owlapi.util.SimpleShortFormProvider;
 
-public class MatchByIdFragment implements AlignmentAlgorithm {
+public class MatchByIdFragment implements AxiomEventAwareAlignmentAlgorithm, IncrementalAlignmentAlgorithm {
 	public static final AlignmentExplanation EXPLANATION = new SimpleAlignmentExplanation("Aligned source and target entities because they have a common IRI fragment.");
 	
 	private ShortFormProvider shortFormProvider;
@@ -100,6 +104,14 @@ public class MatchByIdFragment implements AlignmentAlgorithm {
 		return false;
 	}
 
+	public boolean needsAxiomEvents() {
+		return false;
+	}
+
+	public Set<MatchKind> getRerunTriggers() {
+		return EnumSet.noneOf(MatchKind.class);
+	}
+
 	/*
 	 * I don't entirely trust this guy to get the right answer and he is slow.
 	 */
@@ -0,0 +1,99 @@
+package org.protege.owl.diff.align.algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.align.AlignmentAggressiveness;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
+import org.protege.owl.diff.align.OwlDiffMap;
+import org.protege.owl.diff.align.SeedAlignmentAlgorithm;
+import org.protege.owl.diff.align.impl.SimpleAlignmentExplanation;
+import org.protege.owl.diff.align.util.MappingFileLoader;
+import org.protege.owl.diff.align.util.PrioritizedComparator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Seeds the alignment with the matches listed in a mapping file, such as the alignment saved from the
+ * diff of the previous release.  As a seed algorithm it runs before every other algorithm so that the
+ * remaining algorithms only work on the entities that the file does not cover.  Nothing is done unless
+ * the MAPPING_FILE_PROPERTY parameter names the file.
+ */
+public class MatchByMappingFile implements AxiomEventAwareAlignmentAlgorithm, SeedAlignmentAlgorithm, IncrementalAlignmentAlgorithm {
+    public static final String MAPPING_FILE_PROPERTY = "diff.mapping.file";
+
+    private Logger logger = LoggerFactory.getLogger(MatchByMappingFile.class.getName());
+
+    private boolean disabled = false;
+    private OwlDiffMap diffMap;
+    private File mappingFile;
+
+    public String getAlgorithmName() {
+        return "Match By Mapping File";
+    }
+
+    @Override
+    public boolean isCustom() {
+        return false;
+    }
+
+    public boolean needsAxiomEvents() {
+        return false;
+    }
+
+    public Set<MatchKind> getRerunTriggers() {
+        return EnumSet.noneOf(MatchKind.class);
+    }
+
+    public int getPriority() {
+        return PrioritizedComparator.MAX_PRIORITY;
+    }
+
+    public AlignmentAggressiveness getAggressiveness() {
+        return AlignmentAggressiveness.IGNORE_REFACTOR;
+    }
+
+    public void initialise(Engine e) {
+        diffMap = e.getOwlDiffMap();
+        String fileName = e.getParameters().get(MAPPING_FILE_PROPERTY);
+        if (fileName == null) {
+            disabled = true;
+        }
+        else {
+            mappingFile = new File(fileName);
+        }
+    }
+
+    public void run() {
+        if (!disabled) {
+            diffMap.announce(this);
+            try {
+                MappingFileLoader loader = new MappingFileLoader(diffMap,
+                        new SimpleAlignmentExplanation("Aligned by the mapping file " + mappingFile.getName() + "."));
+                loader.load(mappingFile);
+                if (logger.isInfoEnabled()) {
+                    logger.info("Read " + loader.getRows() + " rows from " + mappingFile + ": "
+                                    + loader.getMatches() + " matches, " + loader.getRejectedMatches() + " rejected, "
+                                    + loader.getMalformedRows() + " malformed.");
+                }
+            }
+            catch (IOException ioe) {
+                logger.warn("Could not read the mapping file " + mappingFile + " (" + ioe + ")");
+            }
+            finally {
+                diffMap.summarize();
+            }
+        }
+        disabled = true;
+    }
+
+    public void reset() {
+        disabled = false;
+    }
+
+}
@@ -1,21 +1,26 @@
 package org.protege.owl.diff.align.algorithms;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.protege.owl.diff.DifferencePosition;
 import org.protege.owl.diff.Engine;
 import org.protege.owl.diff.align.AlignmentAggressiveness;
-import org.protege.owl.diff.align.AlignmentAlgorithm;
 import org.protege.owl.diff.align.AlignmentExplanation;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
 import org.protege.owl.diff.align.OwlDiffMap;
 import org.protege.owl.diff.align.impl.SimpleAlignmentExplanation;
 import org.protege.owl.diff.align.util.PrioritizedComparator;
 import org.protege.owl.diff.service.RenderingService;
 import org.semanticweb.owlapi.model.OWLEntity;
 
-public class MatchByRendering implements AlignmentAlgorithm {
+public class MatchByRendering implements AxiomEventAwareAlignmentAlgorithm, IncrementalAlignmentAlgorithm {
 	public static final AlignmentExplanation EXPLANATION = new SimpleAlignmentExplanation("Enties with a common rendering are matched.");
     private Logger logger = LoggerFactory.getLogger(MatchByRendering.class.getName());
     
@@ -27,7 +32,15 @@ public class MatchByRendering implements AlignmentAlgorithm {
 	public boolean isCustom() {
 		return false;
 	}
+
+	public boolean needsAxiomEvents() {
+		return false;
+	}
 	
+    public Set<MatchKind> getRerunTriggers() {
+        return EnumSet.noneOf(MatchKind.class);
+    }
+
     public int getPriority() {
         return PrioritizedComparator.MAX_PRIORITY - 1;
     }
@@ -63,8 +76,10 @@ public class MatchByRendering implements AlignmentAlgorithm {
     
     private boolean matchEntities() {
         Map<OWLEntity, OWLEntity> matchMap = new HashMap<OWLEntity, OWLEntity>();
-        for (OWLEntity sourceEntity : diffMap.getUnmatchedSourceEntities()) {
-            String rendering = renderer.renderSourceObject(sourceEntity);
+        Map<OWLEntity, String> renderings = renderer.renderEntities(diffMap.getUnmatchedSourceEntities(), DifferencePosition.SOURCE);
+        for (Map.Entry<OWLEntity, String> entry : renderings.entrySet()) {
+            OWLEntity sourceEntity = entry.getKey();
+            String rendering = entry.getValue();
             if (rendering == null) {
                 continue;
             }
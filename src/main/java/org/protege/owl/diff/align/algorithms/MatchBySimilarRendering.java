@@ -0,0 +1,303 @@
+package org.protege.owl.diff.align.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.protege.owl.diff.DifferencePosition;
+import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.align.AlignmentAggressiveness;
+import org.protege.owl.diff.align.AlignmentExplanation;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
+import org.protege.owl.diff.align.OwlDiffMap;
+import org.protege.owl.diff.align.impl.SimpleAlignmentExplanation;
+import org.protege.owl.diff.align.util.PrioritizedComparator;
+import org.protege.owl.diff.service.RenderingService;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Matches unmatched entities anywhere in the ontologies whose renderings are similar, which catches
+ * entities that were both renamed and moved.  Each rendering is broken into word and character trigram
+ * shingles and the similarity of two renderings is the Jaccard similarity of their shingles.
+ * <p>
+ * Comparing every unmatched source entity with every unmatched target entity is out of the question, so
+ * the shingles are summarized by MinHash signatures and the signatures are cut into bands.  Only a
+ * source and target entity that agree on a whole band are compared.  Bands shared by more than
+ * MAX_BUCKET_SIZE target entities are skipped since they come from very common shingles.  A pair is
+ * matched when its similarity reaches the threshold and each is the other's unique best candidate.
+ * <p>
+ * The unmatched entities of each side are rendered together by RenderingService.renderEntities.  That is
+ * only done in parallel when the default labels are used and not with a short form provider set by the
+ * caller.
+ */
+public class MatchBySimilarRendering implements AxiomEventAwareAlignmentAlgorithm, IncrementalAlignmentAlgorithm {
+    public static final String SIMILARITY_THRESHOLD_PROPERTY = "similar.rendering.threshold";
+    public static final double DEFAULT_SIMILARITY_THRESHOLD = 0.8;
+
+    public static final int BANDS           = 16;
+    public static final int ROWS            = 4;
+    public static final int MAX_BUCKET_SIZE = 64;
+
+    public static final AlignmentExplanation EXPLANATION = new SimpleAlignmentExplanation("Aligned source and target entities because they have very similar renderings.");
+
+    private static final int[] SEEDS = new int[BANDS * ROWS];
+    static {
+        for (int i = 0; i < SEEDS.length; i++) {
+            SEEDS[i] = mix(0x9E3779B9 * (i + 1));
+        }
+    }
+
+    private Logger logger = LoggerFactory.getLogger(MatchBySimilarRendering.class.getName());
+
+    private boolean alreadyRun = false;
+    private OwlDiffMap diffs;
+    private RenderingService renderer;
+    private double threshold;
+
+    public String getAlgorithmName() {
+        return "Match By Similar Rendering";
+    }
+
+    @Override
+    public boolean isCustom() {
+        return false;
+    }
+
+    public boolean needsAxiomEvents() {
+        return false;
+    }
+
+    public Set<MatchKind> getRerunTriggers() {
+        return EnumSet.noneOf(MatchKind.class);
+    }
+
+    public int getPriority() {
+        return PrioritizedComparator.MIN_PRIORITY;
+    }
+
+    public AlignmentAggressiveness getAggressiveness() {
+        return AlignmentAggressiveness.AGGRESSIVE_SEARCH;
+    }
+
+    public void initialise(Engine e) {
+        diffs = e.getOwlDiffMap();
+        renderer = RenderingService.get(e);
+        String thresholdName = e.getParameters().get(SIMILARITY_THRESHOLD_PROPERTY);
+        threshold = thresholdName == null ? DEFAULT_SIMILARITY_THRESHOLD : Double.parseDouble(thresholdName);
+    }
+
+    public void run() {
+        if (alreadyRun) {
+            return;
+        }
+        diffs.announce(this);
+        try {
+            Map<OWLEntity, OWLEntity> matches = searchForMatches();
+            if (logger.isInfoEnabled()) {
+                logger.info("Found " + matches.size() + " entities with similar renderings.");
+            }
+            if (!matches.isEmpty()) {
+                diffs.addMatchingEntities(matches, EXPLANATION);
+            }
+        }
+        finally {
+            diffs.summarize();
+            alreadyRun = true;
+        }
+    }
+
+    public void reset() {
+        alreadyRun = false;
+    }
+
+    private Map<OWLEntity, OWLEntity> searchForMatches() {
+        List<OWLEntity> sources = new ArrayList<OWLEntity>();
+        List<int[]> sourceShingles = new ArrayList<int[]>();
+        shingle(renderer.renderEntities(diffs.getUnmatchedSourceEntities(), DifferencePosition.SOURCE), sources, sourceShingles);
+        List<OWLEntity> targets = new ArrayList<OWLEntity>();
+        List<int[]> targetShingles = new ArrayList<int[]>();
+        shingle(renderer.renderEntities(diffs.getUnmatchedTargetEntities(), DifferencePosition.TARGET), targets, targetShingles);
+
+        Map<Long, List<Integer>> buckets = new HashMap<Long, List<Integer>>();
+        for (int t = 0; t < targets.size(); t++) {
+            int[] signature = signature(targetShingles.get(t));
+            for (int band = 0; band < BANDS; band++) {
+                Long key = bandKey(signature, band);
+                List<Integer> bucket = buckets.get(key);
+                if (bucket == null) {
+                    bucket = new ArrayList<Integer>(2);
+                    buckets.put(key, bucket);
+                }
+                bucket.add(t);
+            }
+        }
+
+        int[] bestTarget = new int[sources.size()];
+        double[] bestTargetScore = new double[sources.size()];
+        int[] bestSource = new int[targets.size()];
+        double[] bestSourceScore = new double[targets.size()];
+        Arrays.fill(bestTarget, -1);
+        Arrays.fill(bestSource, -1);
+        int[] lastSeen = new int[targets.size()];
+        Arrays.fill(lastSeen, -1);
+        for (int s = 0; s < sources.size(); s++) {
+            int[] signature = signature(sourceShingles.get(s));
+            for (int band = 0; band < BANDS; band++) {
+                List<Integer> bucket = buckets.get(bandKey(signature, band));
+                if (bucket == null || bucket.size() > MAX_BUCKET_SIZE) {
+                    continue;
+                }
+                for (int t : bucket) {
+                    if (lastSeen[t] == s || sources.get(s).getEntityType() != targets.get(t).getEntityType()) {
+                        continue;
+                    }
+                    lastSeen[t] = s;
+                    double score = jaccard(sourceShingles.get(s), targetShingles.get(t));
+                    if (score < threshold) {
+                        continue;
+                    }
+                    bestTarget[s] = better(bestTarget[s], bestTargetScore[s], t, score);
+                    bestTargetScore[s] = Math.max(bestTargetScore[s], score);
+                    bestSource[t] = better(bestSource[t], bestSourceScore[t], s, score);
+                    bestSourceScore[t] = Math.max(bestSourceScore[t], score);
+                }
+            }
+        }
+
+        Map<OWLEntity, OWLEntity> matches = new HashMap<OWLEntity, OWLEntity>();
+        for (int s = 0; s < sources.size(); s++) {
+            int t = bestTarget[s];
+            if (t >= 0 && bestSource[t] == s) {
+                matches.put(sources.get(s), targets.get(t));
+            }
+        }
+        return matches;
+    }
+
+    /*
+     * -2 marks a tie for the best candidate, which rules the entity out.
+     */
+    private static int better(int best, double bestScore, int candidate, double score) {
+        if (best == -1 || score > bestScore) {
+            return candidate;
+        }
+        else if (score == bestScore) {
+            return -2;
+        }
+        return best;
+    }
+
+    private static void shingle(Map<OWLEntity, String> renderings, List<OWLEntity> entities, List<int[]> shingles) {
+        for (Map.Entry<OWLEntity, String> entry : renderings.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            int[] entityShingles = shingles(entry.getValue());
+            if (entityShingles.length > 0) {
+                entities.add(entry.getKey());
+                shingles.add(entityShingles);
+            }
+        }
+    }
+
+    /*
+     * The words are the runs of letters and digits in the lower-cased rendering.  The trigrams are taken
+     * over the words separated by single spaces, so that punctuation and separators do not matter.  The
+     * trigram hashes are complemented to keep them apart from the hashes of short words.
+     */
+    static int[] shingles(String rendering) {
+        String lower = rendering.toLowerCase();
+        char[] text = new char[lower.length() + 2];
+        int length = 0;
+        text[length++] = ' ';
+        int[] shingles = new int[2 * lower.length() + 2];
+        int count = 0;
+        int wordHash = 0;
+        for (int i = 0; i <= lower.length(); i++) {
+            char c = i < lower.length() ? lower.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                text[length++] = c;
+                wordHash = 31 * wordHash + c;
+            }
+            else if (text[length - 1] != ' ') {
+                text[length++] = ' ';
+                shingles[count++] = mix(wordHash);
+                wordHash = 0;
+            }
+        }
+        for (int i = 0; i + 3 <= length; i++) {
+            shingles[count++] = mix(~((text[i] * 31 + text[i + 1]) * 31 + text[i + 2]));
+        }
+        if (length <= 1) {
+            return new int[0];
+        }
+        int[] sorted = Arrays.copyOf(shingles, count);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    private static int[] signature(int[] shingles) {
+        int[] signature = new int[SEEDS.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int shingle : shingles) {
+            for (int i = 0; i < SEEDS.length; i++) {
+                int h = mix(shingle ^ SEEDS[i]);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = key * 0x100000001B3L + signature[row];
+        }
+        return key;
+    }
+
+    static double jaccard(int[] shingles1, int[] shingles2) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < shingles1.length && j < shingles2.length) {
+            if (shingles1[i] < shingles2[j]) {
+                i++;
+            }
+            else if (shingles1[i] > shingles2[j]) {
+                j++;
+            }
+            else {
+                common++;
+                i++;
+                j++;
+            }
+        }
+        return ((double) common) / (shingles1.length + shingles2.length - common);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -48,6 +48,14 @@ public class MatchSiblingsWithSimilarBrowserText extends AbstractApproximateSibl
 		return explanation;
 	}
 	
+	/*
+	 * checkMatch below only records the explanation for the matches the superclass accepts.
+	 */
+	@Override
+	protected boolean useCandidateIndex() {
+		return true;
+	}
+	
     public AlignmentAggressiveness getAggressiveness() {
     	return AlignmentAggressiveness.MODERATE;
     }
@@ -1,5 +1,6 @@
 package org.protege.owl.diff.align.algorithms;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -7,8 +8,10 @@ import java.util.Set;
 
 import org.protege.owl.diff.Engine;
 import org.protege.owl.diff.align.AlignmentAggressiveness;
-import org.protege.owl.diff.align.AlignmentAlgorithm;
 import org.protege.owl.diff.align.AlignmentExplanation;
+import org.protege.owl.diff.align.AxiomEventAwareAlignmentAlgorithm;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
 import org.protege.owl.diff.align.OwlDiffMap;
 import org.protege.owl.diff.align.impl.SimpleAlignmentExplanation;
 import org.protege.owl.diff.align.util.PrioritizedComparator;
@@ -17,7 +20,7 @@ import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.vocab.OWL2Datatype;
 import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
 
-public class MatchStandardVocabulary implements AlignmentAlgorithm {
+public class MatchStandardVocabulary implements AxiomEventAwareAlignmentAlgorithm, IncrementalAlignmentAlgorithm {
 	public static final AlignmentExplanation EXPLANATION = new SimpleAlignmentExplanation("Aligned common standard vocabulary elements.");
     private static final Set<IRI> STANDARD_OWL_IRIS;
     static {
@@ -42,6 +45,14 @@ public class MatchStandardVocabulary implements AlignmentAlgorithm {
 		return false;
 	}
 
+	public boolean needsAxiomEvents() {
+		return false;
+	}
+
+    public Set<MatchKind> getRerunTriggers() {
+        return EnumSet.noneOf(MatchKind.class);
+    }
+
     public int getPriority() {
         return PrioritizedComparator.MAX_PRIORITY;
     }
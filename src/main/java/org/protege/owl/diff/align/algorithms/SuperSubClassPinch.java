@@ -1,6 +1,6 @@
 package org.protege.owl.diff.align.algorithms;
 
-import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -8,29 +8,31 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.protege.owl.diff.DifferencePosition;
 import org.protege.owl.diff.Engine;
 import org.protege.owl.diff.align.AlignmentAggressiveness;
-import org.protege.owl.diff.align.AlignmentAlgorithm;
-import org.protege.owl.diff.align.AlignmentListener;
+import org.protege.owl.diff.align.AlignmentEvent;
+import org.protege.owl.diff.align.AlignmentEventListener;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
 import org.protege.owl.diff.align.OwlDiffMap;
 import org.protege.owl.diff.align.UnmatchedSourceAxiom;
 import org.protege.owl.diff.align.impl.SimpleAlignmentExplanation;
-import org.protege.owl.diff.align.util.AlignmentListenerAdapter;
 import org.protege.owl.diff.align.util.PrioritizedComparator;
+import org.protege.owl.diff.service.HierarchyService;
 import org.protege.owl.diff.service.RenderingService;
 import org.semanticweb.owlapi.model.OWLClass;
-import org.semanticweb.owlapi.model.OWLClassExpression;
 import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLObject;
 import org.semanticweb.owlapi.model.OWLSubClassOfAxiom;
-import org.semanticweb.owlapi.search.EntitySearcher;
 
-public class SuperSubClassPinch implements AlignmentAlgorithm {
+public class SuperSubClassPinch implements IncrementalAlignmentAlgorithm {
     public static final String REQUIRED_SUBCLASSES_PROPERTY="diff.pinch.required.subclasses";
     private static Logger log = LoggerFactory.getLogger(SuperSubClassPinch.class.getName());
     
     private OwlDiffMap diffMap;
     private RenderingService renderer;
+    private HierarchyService hierarchy;
     
     private boolean disabled = false;
     private boolean firstPass = true;
@@ -40,24 +42,17 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
     private Map<OWLClass, Set<OWLClass>> subClassOf   = new HashMap<OWLClass, Set<OWLClass>>();
     private Map<OWLEntity, OWLEntity> newMatches      = new  HashMap<OWLEntity, OWLEntity>();
     
-    private AlignmentListener listener = new AlignmentListenerAdapter() {
+    private AlignmentEventListener listener = new AlignmentEventListener() {
     	
-    	@Override
-    	public void unmatchedAxiomMoved(UnmatchedSourceAxiom unmatched) {
-    		addCandidateUnmatchedAxiom(unmatched);
+    	public void alignmentChanged(AlignmentEvent event) {
+    		for (UnmatchedSourceAxiom unmatched : event.getMovedAxioms()) {
+    			addCandidateUnmatchedAxiom(unmatched);
+    		}
+    		for (OWLEntity source : event.getEntityMatches().keySet()) {
+    			superClassOf.remove(source);
+    			subClassOf.remove(source);
+    		}
     	}
-    	
-		public void addMatch(OWLEntity source, OWLEntity target) {
-			superClassOf.remove(source);
-			subClassOf.remove(source);
-		}
-		
-		public void addMatchingEntities(java.util.Map<OWLEntity,OWLEntity> newMatches) {
-			for (OWLEntity source : newMatches.keySet()) {
-				superClassOf.remove(source);
-				subClassOf.remove(source);
-			}
-		}
 	};
    
     public String getAlgorithmName() {
@@ -69,6 +64,10 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
 		return false;
 	}
 
+    public Set<MatchKind> getRerunTriggers() {
+        return EnumSet.of(MatchKind.ENTITY);
+    }
+
     /*
      * Reliable but it is a bit slow.
      */
@@ -83,6 +82,7 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
     public void initialise(Engine e) {
         this.diffMap = e.getOwlDiffMap();
         this.renderer = RenderingService.get(e);
+        this.hierarchy = HierarchyService.get(e);
         requiredSubclasses = 1;
         if (e.getParameters().get(REQUIRED_SUBCLASSES_PROPERTY) != null) {
             try {
@@ -98,9 +98,10 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
     public void reset() {
         superClassOf.clear();
         subClassOf.clear();
-        diffMap.removeDiffListener(listener);
+        diffMap.removeAlignmentEventListener(listener);
         diffMap = null;
         renderer = null;
+        hierarchy = null;
     }
 
     public void run() {
@@ -111,12 +112,12 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
         try {
             newMatches.clear();
             if (firstPass) {
-                diffMap.addDiffListener(listener);
+                diffMap.addAlignmentEventListener(listener);
             	firstPass = false;
             	findCandidateUnmatchedAxioms();
             }
             searchForMatches();
-            diffMap.addMatchingEntities(newMatches, new Explanation(diffMap, renderer));
+            diffMap.addMatchingEntities(newMatches, new Explanation(diffMap, renderer, hierarchy));
         }
         finally {
             diffMap.summarize();
@@ -136,12 +137,12 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
 	}
 
 	private void addCandidateUnmatchedAxiom(UnmatchedSourceAxiom unmatched) {
-	    if (log.isInfoEnabled()) {
-	        log.info("Examining  axiom " + unmatched);
+	    if (log.isDebugEnabled()) {
+	        log.debug("Examining  axiom " + unmatched);
 	    }
 	    if (!isCandidiateUnmatchedAxiom(unmatched)) {
-	    	if (log.isInfoEnabled()) {
-	    		log.info("no good");
+	    	if (log.isDebugEnabled()) {
+	    		log.debug("no good");
 	    	}
 	        return;
 	    }
@@ -149,14 +150,14 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
 	    OWLClass subClass = subClassOfAxiom.getSubClass().asOWLClass();
 	    OWLClass superClass = subClassOfAxiom.getSuperClass().asOWLClass();
 	    if (diffMap.getUnmatchedSourceEntities().contains(subClass)) {
-	        if (log.isInfoEnabled()) {
-	            log.info("found super class of " + subClass);
+	        if (log.isDebugEnabled()) {
+	            log.debug("found super class of " + subClass);
 	        }
 	        addToMap(superClassOf, subClass, superClass);
 	    }
 	    if (diffMap.getUnmatchedSourceEntities().contains(superClass)) {
-	        if (log.isInfoEnabled()) {
-	            log.info("found sub class of " + superClass);
+	        if (log.isDebugEnabled()) {
+	            log.debug("found sub class of " + superClass);
 	        }
 	        addToMap(subClassOf, superClass, subClass);
 	    }
@@ -166,7 +167,6 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
 	    if (unmatched.getAxiom() instanceof OWLSubClassOfAxiom &&
 	            !((OWLSubClassOfAxiom) unmatched.getAxiom()).getSubClass().isAnonymous() &&
 	            !((OWLSubClassOfAxiom) unmatched.getAxiom()).getSuperClass().isAnonymous()) {
-	    	unmatched.trim(diffMap);
 	        return unmatched.getReferencedUnmatchedEntities().size() == 1;
 	    }
 	    return false;
@@ -202,19 +202,16 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
 				}
 			}
 		}
-		if (log.isInfoEnabled()) {
-			log.info("" + sourceClass + " subclasses map to "  + mappedTargetClasses);
+		if (log.isDebugEnabled()) {
+			log.debug("" + sourceClass + " subclasses map to "  + mappedTargetClasses);
 		}
 		return mappedTargetClasses;
 	}
 
 	private void searchForMatches(OWLClass sourceClass, Set<OWLClass> possibleTargetSuperclasses, Set<OWLClass> possibleTargetSubclasses) {
     	for (OWLClass possibleTargetSuperClass : possibleTargetSuperclasses) {
-            for (OWLClassExpression possibleTargetClass : EntitySearcher
-                    .getSubClasses(possibleTargetSuperClass,
-                            diffMap.getTargetOntology())) {
-    			if (!possibleTargetClass.isAnonymous() 
-    					&& searchForMatches(sourceClass, possibleTargetClass.asOWLClass(), possibleTargetSubclasses)){
+            for (OWLClass possibleTargetClass : hierarchy.getSubClasses(possibleTargetSuperClass, DifferencePosition.TARGET)) {
+    			if (searchForMatches(sourceClass, possibleTargetClass, possibleTargetSubclasses)){
     				return;
     			}
     		}
@@ -226,26 +223,25 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
     		                         OWLClass potentialMatchingClass, 
     		                         Set<OWLClass> desiredTargetSubClasses) {
         int count = 0;
-        for (OWLClassExpression targetSubclass : EntitySearcher.getSubClasses(
-                potentialMatchingClass, diffMap.getTargetOntology())) {
-            if (log.isInfoEnabled()) {
-                log.info("\t" + targetSubclass);
+        for (OWLClass targetSubclass : hierarchy.getSubClasses(potentialMatchingClass, DifferencePosition.TARGET)) {
+            if (log.isDebugEnabled()) {
+                log.debug("\t" + targetSubclass);
             }
             if (desiredTargetSubClasses.contains(targetSubclass)) {
-            	if (log.isInfoEnabled()) {
-            		log.info("\tgood subclass");
+            	if (log.isDebugEnabled()) {
+            		log.debug("\tgood subclass");
             	}
                 if (++count >= requiredSubclasses) {
-                	if (log.isInfoEnabled()) {
-                		log.info("match added");
+                	if (log.isDebugEnabled()) {
+                		log.debug("match added");
                 	}
                     newMatches.put(sourceClass, potentialMatchingClass);
                     return true;
                 }
             }
             else {
-            	if (log.isInfoEnabled()) {
-            		log.info("\tbad subclass");
+            	if (log.isDebugEnabled()) {
+            		log.debug("\tbad subclass");
             	}
             }
         }
@@ -255,11 +251,13 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
     private static class Explanation extends SimpleAlignmentExplanation {
     	private OwlDiffMap diffs;
     	private RenderingService renderer;
+    	private HierarchyService hierarchy;
     	
-    	public Explanation(OwlDiffMap diffs, RenderingService renderer) {
+    	public Explanation(OwlDiffMap diffs, RenderingService renderer, HierarchyService hierarchy) {
     		super("Aligned source and target entities that have a matching parent and child.");
     		this.diffs = diffs;
     		this.renderer = renderer;
+    		this.hierarchy = hierarchy;
     	}
     	
     	@Override
@@ -284,10 +282,8 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
     	}
     	
     	private void addMatchingParents(OWLClass source, OWLClass target, StringBuffer sb) {
-            Collection<OWLClassExpression> targetParents = EntitySearcher
-                    .getSuperClasses(target, diffs.getTargetOntology());
-            for (OWLClassExpression sourceParent : EntitySearcher
-                    .getSuperClasses(source, diffs.getSourceOntology())) {
+            Set<OWLClass> targetParents = hierarchy.getSuperClasses(target, DifferencePosition.TARGET);
+            for (OWLClass sourceParent : hierarchy.getSuperClasses(source, DifferencePosition.SOURCE)) {
     			OWLClass targetParent = (OWLClass) diffs.getEntityMap().get(sourceParent);
     			if (targetParent != null && targetParents.contains(targetParent)) {
     				sb.append("Source entity has parent\n\t");
@@ -300,10 +296,8 @@ public class SuperSubClassPinch implements AlignmentAlgorithm {
     	}
     	
     	private void addMatchingChildren(OWLClass source, OWLClass target, StringBuffer sb) {
-            Collection<OWLClassExpression> targetChildren = EntitySearcher
-                    .getSubClasses(target, diffs.getTargetOntology());
-            for (OWLClassExpression sourceChild : EntitySearcher.getSubClasses(
-                    source, diffs.getSourceOntology())) {
+            Set<OWLClass> targetChildren = hierarchy.getSubClasses(target, DifferencePosition.TARGET);
+            for (OWLClass sourceChild : hierarchy.getSubClasses(source, DifferencePosition.SOURCE)) {
     			OWLClass targetChild = (OWLClass) diffs.getEntityMap().get(sourceChild);
     			if (targetChild != null && targetChildren.contains(targetChild)) {
     				sb.append("Source entity has child\n\t");
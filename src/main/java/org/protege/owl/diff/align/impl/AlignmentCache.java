@@ -0,0 +1,485 @@
+package org.protege.owl.diff.align.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.protege.owl.diff.align.AlignmentAlgorithm;
+import org.protege.owl.diff.align.AlignmentExplanation;
+import org.protege.owl.diff.align.OwlDiffMap;
+import org.protege.owl.diff.align.algorithms.MatchByMappingFile;
+import org.semanticweb.owlapi.model.EntityType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLObject;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the results of phase 1 on disk so that diffing the same pair of ontologies with the same
+ * configuration again does not have to rerun the alignment algorithms.
+ * <p>
+ * The cache is enabled by setting the ALIGNMENT_CACHE_DIRECTORY parameter.  Each entry is a gzipped
+ * file named after a fingerprint of the two ontologies, the alignment algorithms and the parameters,
+ * including the contents of the mapping file if there is one.  The ontology fingerprints cover the
+ * imports closure and do not depend on the order of the axioms.  An entry holds the entity matches
+ * together with their explanations.  Matches that shared an explanation share the restored explanation.
+ * The restored explanations keep the text and the detailed explanations but are no longer instances of the
+ * algorithm specific classes.
+ * <p>
+ * Ontologies with anonymous individuals are not cached.  The ids of anonymous individuals change each
+ * time an ontology is loaded, so neither the fingerprints nor the anonymous individual matches would
+ * carry over to the next load.
+ */
+public class AlignmentCache {
+    public static final Logger LOGGER = LoggerFactory.getLogger(AlignmentCache.class.getName());
+
+    public static final String ALIGNMENT_CACHE_DIRECTORY = "alignment.cache.directory";
+
+    private static final int    MAGIC = 0x4f444143;
+    private static final int    FORMAT_VERSION = 2;
+    private static final String FILE_SUFFIX = ".alignment.gz";
+
+    private static final EntityType<?>[] ENTITY_TYPES = {
+        EntityType.CLASS, EntityType.OBJECT_PROPERTY, EntityType.DATA_PROPERTY,
+        EntityType.ANNOTATION_PROPERTY, EntityType.NAMED_INDIVIDUAL, EntityType.DATATYPE
+    };
+
+    private File   file;
+    private String fingerprint;
+
+    /**
+     * @return the cache for the engine's ontologies and configuration or null if the cache is not enabled
+     *         or the ontologies cannot be cached.
+     */
+    public static AlignmentCache create(OWLOntology sourceOntology, OWLOntology targetOntology,
+                                        Collection<AlignmentAlgorithm> algorithms, Map<String, String> parameters) {
+        String directory = parameters.get(ALIGNMENT_CACHE_DIRECTORY);
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+        if (hasAnonymousIndividuals(sourceOntology) || hasAnonymousIndividuals(targetOntology)) {
+            LOGGER.info("Not caching the alignment because the ontologies have anonymous individuals");
+            return null;
+        }
+        return new AlignmentCache(new File(directory), fingerprint(sourceOntology, targetOntology, algorithms, parameters));
+    }
+
+    private AlignmentCache(File directory, String fingerprint) {
+        this.fingerprint = fingerprint;
+        this.file = new File(directory, fingerprint + FILE_SUFFIX);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private static boolean hasAnonymousIndividuals(OWLOntology ontology) {
+        if (!ontology.getReferencedAnonymousIndividuals(Imports.INCLUDED).isEmpty()) {
+            return true;
+        }
+        for (OWLOntology o : ontology.getImportsClosure()) {
+            for (OWLAnnotation annotation : o.getAnnotations()) {
+                if (!annotation.getAnonymousIndividuals().isEmpty()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Fingerprints
+     */
+
+    private static String fingerprint(OWLOntology sourceOntology, OWLOntology targetOntology,
+                                      Collection<AlignmentAlgorithm> algorithms, Map<String, String> parameters) {
+        MessageDigest digest = newDigest();
+        update(digest, "format " + FORMAT_VERSION);
+        digest.update(fingerprint(sourceOntology));
+        digest.update(fingerprint(targetOntology));
+        for (AlignmentAlgorithm algorithm : algorithms) {
+            update(digest, algorithm.getClass().getName());
+        }
+        for (Entry<String, String> entry : new TreeMap<String, String>(parameters).entrySet()) {
+            if (!entry.getKey().equals(ALIGNMENT_CACHE_DIRECTORY)) {
+                update(digest, entry.getKey());
+                update(digest, entry.getValue());
+            }
+            if (entry.getKey().equals(MatchByMappingFile.MAPPING_FILE_PROPERTY)) {
+                update(digest, fingerprintFile(new File(entry.getValue())));
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /*
+     * A mapping file is usually edited in place between releases, so its contents go into the fingerprint
+     * and not just its name.
+     */
+    private static String fingerprintFile(File f) {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        try {
+            InputStream in = new FileInputStream(f);
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException ioe) {
+            return "unreadable";
+        }
+        return toHex(digest.digest());
+    }
+
+    /*
+     * The services read annotations from the imports closure, so the imported ontologies are part of the
+     * fingerprint.  They are digested in the order of their fingerprints.
+     */
+    static byte[] fingerprint(OWLOntology ontology) {
+        MessageDigest digest = newDigest();
+        digest.update(fingerprintAxioms(ontology));
+        Set<String> imported = new TreeSet<String>();
+        for (OWLOntology o : ontology.getImportsClosure()) {
+            if (o != ontology) {
+                imported.add(toHex(fingerprintAxioms(o)));
+            }
+        }
+        for (String importedFingerprint : imported) {
+            update(digest, importedFingerprint);
+        }
+        return digest.digest();
+    }
+
+    /*
+     * Each axiom is digested separately and the digests are added together, so the fingerprint
+     * does not depend on the order in which the ontology returns its axioms.
+     */
+    private static byte[] fingerprintAxioms(OWLOntology ontology) {
+        MessageDigest digest = newDigest();
+        long[] sum = new long[4];
+        int count = 0;
+        for (OWLAxiom axiom : ontology.getAxioms()) {
+            update(digest, axiom.toString());
+            add(sum, digest.digest());
+            count++;
+        }
+        for (OWLAnnotation annotation : ontology.getAnnotations()) {
+            update(digest, annotation.toString());
+            add(sum, digest.digest());
+            count++;
+        }
+        update(digest, ontology.getOntologyID().toString());
+        update(digest, Integer.toString(count));
+        for (long l : sum) {
+            update(digest, Long.toHexString(l));
+        }
+        return digest.digest();
+    }
+
+    private static void add(long[] sum, byte[] bytes) {
+        for (int i = 0; i < sum.length; i++) {
+            long l = 0;
+            for (int j = 0; j < 8; j++) {
+                l = (l << 8) | (bytes[8 * i + j] & 0xff);
+            }
+            sum[i] += l;
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("SHA-256 should always be available", nsae);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /*
+     * Saving
+     */
+
+    /**
+     * Writes the alignment of a finished diff map.  Failures are logged and otherwise ignored.
+     */
+    public void save(OwlDiffMap diffMap) {
+        File directory = file.getParentFile();
+        File tmp = null;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+            tmp = File.createTempFile(fingerprint, ".tmp", directory);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+            try {
+                write(out, diffMap);
+            }
+            finally {
+                out.close();
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOGGER.info("Saved the alignment to " + file);
+        }
+        catch (IOException ioe) {
+            LOGGER.warn("Could not save the alignment to " + file + " (" + ioe + ")");
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    private void write(DataOutputStream out, OwlDiffMap diffMap) throws IOException {
+        Map<AlignmentExplanation, Integer> explanationIds = new IdentityHashMap<AlignmentExplanation, Integer>();
+        List<AlignmentExplanation> explanations = new ArrayList<AlignmentExplanation>();
+        Map<OWLEntity, OWLEntity> entityMap = diffMap.getEntityMap();
+        for (OWLEntity source : entityMap.keySet()) {
+            addExplanation(diffMap.getExplanation(source), explanationIds, explanations);
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(fingerprint);
+        out.writeInt(explanations.size());
+        for (AlignmentExplanation explanation : explanations) {
+            out.writeBoolean(explanation != null);
+            writeString(out, explanation == null ? null : explanation.getExplanation());
+        }
+        out.writeInt(entityMap.size());
+        for (Entry<OWLEntity, OWLEntity> entry : entityMap.entrySet()) {
+            OWLEntity source = entry.getKey();
+            AlignmentExplanation explanation = diffMap.getExplanation(source);
+            writeEntity(out, source);
+            writeEntity(out, entry.getValue());
+            out.writeInt(explanationIds.get(explanation));
+            writeDetail(out, explanation, source);
+        }
+    }
+
+    private static void addExplanation(AlignmentExplanation explanation,
+                                       Map<AlignmentExplanation, Integer> explanationIds,
+                                       List<AlignmentExplanation> explanations) {
+        if (!explanationIds.containsKey(explanation)) {
+            explanationIds.put(explanation, explanations.size());
+            explanations.add(explanation);
+        }
+    }
+
+    private static void writeEntity(DataOutputStream out, OWLEntity entity) throws IOException {
+        int type = 0;
+        while (ENTITY_TYPES[type] != entity.getEntityType()) {
+            type++;
+        }
+        out.writeByte(type);
+        writeString(out, entity.getIRI().toString());
+    }
+
+    private static void writeDetail(DataOutputStream out, AlignmentExplanation explanation, OWLObject source) throws IOException {
+        boolean detailed = explanation != null && explanation.hasDetailedExplanation(source);
+        writeString(out, detailed ? explanation.getDetailedExplanation(source) : null);
+    }
+
+    /*
+     * writeUTF is limited to 64K which is not enough for some IRIs and explanations.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        }
+        else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /*
+     * Restoring
+     */
+
+    /**
+     * Restores a saved alignment into a freshly created diff map and finishes the diff map.
+     *
+     * @return false if there is no usable entry, in which case the diff map should be discarded.
+     */
+    public boolean restore(OwlDiffMap diffMap) {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+        }
+        catch (FileNotFoundException fnfe) {
+            return false;
+        }
+        catch (IOException ioe) {
+            LOGGER.warn("Could not open the cached alignment " + file + " (" + ioe + ")");
+            return false;
+        }
+        try {
+            if (read(in, diffMap)) {
+                LOGGER.info("Restored the alignment from " + file);
+                return true;
+            }
+            LOGGER.warn("The cached alignment " + file + " does not fit the ontologies - ignoring it");
+            return false;
+        }
+        catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not read the cached alignment " + file + " (" + e + ")");
+            return false;
+        }
+        finally {
+            try {
+                in.close();
+            }
+            catch (IOException ioe) {
+                LOGGER.warn("Could not close " + file + " (" + ioe + ")");
+            }
+        }
+    }
+
+    /*
+     * Everything is checked before the diff map is touched.
+     */
+    private boolean read(DataInputStream in, OwlDiffMap diffMap) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !fingerprint.equals(in.readUTF())) {
+            return false;
+        }
+        OWLDataFactory factory = diffMap.getOWLDataFactory();
+        int explanationCount = in.readInt();
+        List<CachedAlignmentExplanation> explanations = new ArrayList<CachedAlignmentExplanation>(explanationCount);
+        List<Boolean> nullExplanations = new ArrayList<Boolean>(explanationCount);
+        List<Map<OWLEntity, OWLEntity>> entityMatches = new ArrayList<Map<OWLEntity, OWLEntity>>(explanationCount);
+        for (int i = 0; i < explanationCount; i++) {
+            nullExplanations.add(!in.readBoolean());
+            explanations.add(new CachedAlignmentExplanation(readString(in)));
+            entityMatches.add(new LinkedHashMap<OWLEntity, OWLEntity>());
+        }
+
+        int entityCount = in.readInt();
+        for (int i = 0; i < entityCount; i++) {
+            OWLEntity source = readEntity(in, factory);
+            OWLEntity target = readEntity(in, factory);
+            int explanation = in.readInt();
+            explanations.get(explanation).addDetail(source, readString(in));
+            if (!diffMap.getUnmatchedSourceEntities().contains(source)
+                    || !diffMap.getUnmatchedTargetEntities().contains(target)) {
+                return false;
+            }
+            entityMatches.get(explanation).put(source, target);
+        }
+
+        for (int i = 0; i < explanationCount; i++) {
+            AlignmentExplanation explanation = nullExplanations.get(i) ? null : explanations.get(i);
+            if (!entityMatches.get(i).isEmpty()) {
+                diffMap.addMatchingEntities(entityMatches.get(i), explanation);
+            }
+        }
+        diffMap.finish();
+        return true;
+    }
+
+    private static OWLEntity readEntity(DataInputStream in, OWLDataFactory factory) throws IOException {
+        EntityType<?> type = ENTITY_TYPES[in.readByte()];
+        return factory.getOWLEntity(type, IRI.create(readString(in)));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class CachedAlignmentExplanation implements AlignmentExplanation {
+        private String explanation;
+        private Map<OWLObject, String> details = new HashMap<OWLObject, String>();
+
+        public CachedAlignmentExplanation(String explanation) {
+            this.explanation = explanation;
+        }
+
+        public void addDetail(OWLObject sourceObject, String detail) {
+            if (detail != null) {
+                details.put(sourceObject, detail);
+            }
+        }
+
+        @Override
+        public String getExplanation() {
+            return explanation;
+        }
+
+        @Override
+        public boolean hasDetailedExplanation(OWLObject sourceObject) {
+            return details.containsKey(sourceObject);
+        }
+
+        @Override
+        public String getDetailedExplanation(OWLObject sourceObject) {
+            return details.get(sourceObject);
+        }
+
+        @Override
+        public String toString() {
+            return "<Why? " + explanation + ">";
+        }
+    }
+}
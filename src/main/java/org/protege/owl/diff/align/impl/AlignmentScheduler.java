@@ -0,0 +1,222 @@
+package org.protege.owl.diff.align.impl;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.protege.owl.diff.align.AlignmentAlgorithm;
+import org.protege.owl.diff.align.AlignmentEvent;
+import org.protege.owl.diff.align.AlignmentEventListener;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
+import org.protege.owl.diff.align.OwlDiffMap;
+import org.protege.owl.diff.align.QuiescentAlignmentAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the alignment algorithms until none of them can make further progress.
+ * <p>
+ * The algorithms are swept in priority order.  Each kind of match has its own epoch that is bumped when a
+ * match of that kind is made.  An algorithm is skipped when none of the kinds of matches that it depends on
+ * has been made since its last run started.  Incremental algorithms say which kinds they depend on and the
+ * other algorithms depend on all of them.  Quiescent algorithms are run when a sweep finds nothing to do and
+ * they have pending work.  The scheduler stops when neither kind of algorithm has anything left to do or
+ * when every source entity and anonymous individual is matched.
+ * <p>
+ * The unscheduled loop ran every algorithm in every pass until a pass found no new match.  The scheduler
+ * counts the passes in which it found a match to estimate what that loop would have cost.
+ */
+public class AlignmentScheduler {
+    public static final Logger LOGGER = LoggerFactory.getLogger(AlignmentScheduler.class.getName());
+
+    private static final MatchKind[] MATCH_KINDS = MatchKind.values();
+
+    private OwlDiffMap diffMap;
+    private List<AlignmentAlgorithm> algorithms;
+
+    private long[]   epochs = new long[MATCH_KINDS.length];
+    private long[][] lastRunEpochs;
+    private boolean[][] triggers;
+
+    private int passes = 0;
+    private int passesWithMatches = 0;
+    private int invocations = 0;
+    private int skippedInvocations = 0;
+    private int unscheduledPasses = 0;
+
+    private AlignmentEventListener listener = new AlignmentEventListener() {
+
+        public void alignmentChanged(AlignmentEvent event) {
+            if (!event.getEntityMatches().isEmpty()) {
+                epochs[MatchKind.ENTITY.ordinal()]++;
+            }
+            if (!event.getAnonymousIndividualMatches().isEmpty()) {
+                epochs[MatchKind.ANONYMOUS_INDIVIDUAL.ordinal()]++;
+            }
+        }
+    };
+
+    /**
+     * @param algorithms the algorithms in priority order.
+     */
+    public AlignmentScheduler(OwlDiffMap diffMap, List<AlignmentAlgorithm> algorithms) {
+        this.diffMap = diffMap;
+        this.algorithms = algorithms;
+        lastRunEpochs = new long[algorithms.size()][];
+        triggers = new boolean[algorithms.size()][MATCH_KINDS.length];
+        for (int i = 0; i < algorithms.size(); i++) {
+            AlignmentAlgorithm algorithm = algorithms.get(i);
+            Set<MatchKind> kinds = algorithm instanceof IncrementalAlignmentAlgorithm
+                                        ? ((IncrementalAlignmentAlgorithm) algorithm).getRerunTriggers()
+                                        : EnumSet.allOf(MatchKind.class);
+            for (MatchKind kind : kinds) {
+                triggers[i][kind.ordinal()] = true;
+            }
+        }
+    }
+
+    public void run() {
+        for (int i = 0; i < lastRunEpochs.length; i++) {
+            lastRunEpochs[i] = null;
+        }
+        diffMap.addAlignmentEventListener(listener);
+        try {
+            boolean ranSomething;
+            do {
+                long matches = totalEpoch();
+                int runs = invocations;
+                ranSomething = sweep();
+                if (!ranSomething && !finished()) {
+                    ranSomething = runQuiescentAlgorithms();
+                }
+                if (invocations != runs) {
+                    passes++;
+                }
+                if (totalEpoch() != matches) {
+                    passesWithMatches++;
+                }
+            }
+            while (ranSomething && !finished());
+        }
+        finally {
+            diffMap.removeAlignmentEventListener(listener);
+        }
+        unscheduledPasses = passesWithMatches + (finished() ? 0 : 1);
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Alignment took " + passes + " passes and " + invocations + " algorithm runs, saving about "
+                            + getSavedPasses() + " passes and " + getSavedInvocations() + " runs over running every algorithm until a pass finds nothing.");
+            LOGGER.info(skippedInvocations + " runs were skipped because no match they depend on had been made.");
+        }
+    }
+
+    private boolean sweep() {
+        boolean ranSomething = false;
+        for (int i = 0; i < algorithms.size(); i++) {
+            AlignmentAlgorithm algorithm = algorithms.get(i);
+            if (finished()) {
+                break;
+            }
+            else if (algorithm instanceof QuiescentAlignmentAlgorithm) {
+                continue;
+            }
+            else if (!isDirty(i)) {
+                skippedInvocations++;
+                continue;
+            }
+            runAlgorithm(i);
+            ranSomething = true;
+        }
+        return ranSomething;
+    }
+
+    private boolean runQuiescentAlgorithms() {
+        long startEpoch = totalEpoch();
+        for (int i = 0; i < algorithms.size() && totalEpoch() == startEpoch && !finished(); i++) {
+            AlignmentAlgorithm algorithm = algorithms.get(i);
+            if (algorithm instanceof QuiescentAlignmentAlgorithm
+                    && ((QuiescentAlignmentAlgorithm) algorithm).hasPendingWork()) {
+                runAlgorithm(i);
+            }
+        }
+        return totalEpoch() != startEpoch;
+    }
+
+    /*
+     * An algorithm that has never run is always dirty.
+     */
+    private boolean isDirty(int i) {
+        if (lastRunEpochs[i] == null) {
+            return true;
+        }
+        for (int kind = 0; kind < MATCH_KINDS.length; kind++) {
+            if (triggers[i][kind] && lastRunEpochs[i][kind] != epochs[kind]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long totalEpoch() {
+        long total = 0;
+        for (long epoch : epochs) {
+            total += epoch;
+        }
+        return total;
+    }
+
+    private void runAlgorithm(int i) {
+        AlignmentAlgorithm algorithm = algorithms.get(i);
+        lastRunEpochs[i] = epochs.clone();
+        invocations++;
+        try {
+            algorithm.run();
+        }
+        catch (Error | Exception e) {
+            LOGGER.warn("Diff Algorithm " + algorithm.getAlgorithmName() + " failed (" + e + ").  Continuing...");
+        }
+    }
+
+    private boolean finished() {
+        return diffMap.getUnmatchedSourceEntities().isEmpty()
+                    && diffMap.getUnmatchedSourceAnonymousIndividuals().isEmpty();
+    }
+
+    /**
+     * @return the number of passes that ran at least one algorithm.
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    public int getInvocations() {
+        return invocations;
+    }
+
+    public int getSkippedInvocations() {
+        return skippedInvocations;
+    }
+
+    /**
+     * @return an estimate of the number of passes the unscheduled loop would have taken: one for each pass
+     *         that found a match and a last one to see that nothing more is found.
+     */
+    public int getUnscheduledPasses() {
+        return unscheduledPasses;
+    }
+
+    /**
+     * @return an estimate of the number of algorithm runs the unscheduled loop would have made.
+     */
+    public int getUnscheduledInvocations() {
+        return unscheduledPasses * algorithms.size();
+    }
+
+    public int getSavedPasses() {
+        return Math.max(0, unscheduledPasses - passes);
+    }
+
+    public int getSavedInvocations() {
+        return Math.max(0, getUnscheduledInvocations() - invocations);
+    }
+}
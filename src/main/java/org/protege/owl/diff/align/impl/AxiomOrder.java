@@ -0,0 +1,32 @@
+package org.protege.owl.diff.align.impl;
+
+import java.util.Arrays;
+
+/**
+ * The order in which the matched, unmatcheable and moved axioms of an alignment event came about.  The
+ * event keeps each kind of axiom in its own list, so this is what lets the AlignmentListeners be called
+ * in the order the axioms were processed.
+ */
+class AxiomOrder {
+    static final byte MATCHED      = 0;
+    static final byte UNMATCHEABLE = 1;
+    static final byte MOVED        = 2;
+
+    private byte[] kinds = new byte[16];
+    private int    size  = 0;
+
+    void add(byte kind) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, 2 * size);
+        }
+        kinds[size++] = kind;
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte get(int index) {
+        return kinds[index];
+    }
+}
@@ -0,0 +1,127 @@
+package org.protege.owl.diff.align.impl;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDatatype;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLLiteral;
+
+/**
+ * Counts the unmatched target axioms by shape.  The shape of an axiom is a hash of its axiom type, the
+ * entities in its signature and, for annotation assertions, the literal value.  The shape of a source axiom
+ * is computed on the images of its entities under the entity map, so a source axiom whose shape is not
+ * in the index cannot translate to an unmatched target axiom and there is no need to translate it.
+ * <p>
+ * The entities are folded into a 64 bit mask so that an entity appearing twice in the translation (two
+ * source entities mapped to the same target) does not change the shape.
+ */
+class AxiomShapeIndex {
+    private long[]    keys;
+    private int[]     counts;
+    private boolean[] used;
+    private int       mask;
+    private int       usedSlots = 0;
+
+    AxiomShapeIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    static AxiomShapeIndex of(Collection<OWLAxiom> axioms) {
+        AxiomShapeIndex index = new AxiomShapeIndex(axioms.size());
+        for (OWLAxiom axiom : axioms) {
+            index.add(shapeOf(axiom, null));
+        }
+        return index;
+    }
+
+    /**
+     * @param entityMap the map applied to the entities of the axiom or null for a target axiom.
+     */
+    static long shapeOf(OWLAxiom axiom, Map<OWLEntity, OWLEntity> entityMap) {
+        long entityBits = 0;
+        for (OWLEntity entity : axiom.getSignature()) {
+            OWLEntity image = entity;
+            if (entityMap != null && !(entity instanceof OWLDatatype)) {
+                OWLEntity mapped = entityMap.get(entity);
+                if (mapped != null) {
+                    image = mapped;
+                }
+            }
+            int h = mix(image.hashCode());
+            entityBits |= (1L << (h & 63)) | (1L << ((h >>> 6) & 63));
+        }
+        long shape = entityBits * 0x9E3779B97F4A7C15L + axiom.getAxiomType().getIndex();
+        if (axiom instanceof OWLAnnotationAssertionAxiom) {
+            OWLAnnotationValue value = ((OWLAnnotationAssertionAxiom) axiom).getValue();
+            if (value instanceof OWLLiteral) {
+                shape = shape * 31 + value.hashCode();
+            }
+        }
+        return shape;
+    }
+
+    boolean contains(long shape) {
+        int slot = findSlot(shape);
+        return used[slot] && counts[slot] > 0;
+    }
+
+    void add(long shape) {
+        int slot = findSlot(shape);
+        if (!used[slot]) {
+            used[slot] = true;
+            keys[slot] = shape;
+            if (++usedSlots * 2 > keys.length) {
+                rehash();
+            }
+            slot = findSlot(shape);
+        }
+        counts[slot]++;
+    }
+
+    void remove(long shape) {
+        int slot = findSlot(shape);
+        if (used[slot] && counts[slot] > 0) {
+            counts[slot]--;
+        }
+    }
+
+    private int findSlot(long shape) {
+        int slot = mix((int) (shape ^ (shape >>> 32))) & mask;
+        while (used[slot] && keys[slot] != shape) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private void rehash() {
+        long[]    oldKeys = keys;
+        int[]     oldCounts = counts;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = findSlot(oldKeys[i]);
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
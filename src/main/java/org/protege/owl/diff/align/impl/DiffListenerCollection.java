@@ -1,66 +1,153 @@
 package org.protege.owl.diff.align.impl;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Map.Entry;
 
+import org.protege.owl.diff.align.AlignmentEvent;
+import org.protege.owl.diff.align.AlignmentEventListener;
 import org.protege.owl.diff.align.AlignmentListener;
 import org.protege.owl.diff.align.UnmatchedSourceAxiom;
 import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
 import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLEntity;
 
+/**
+ * Delivers the alignment events of the diff map.
+ * <p>
+ * Event listeners get one event per change.  Listeners that asked for deferred delivery get their events
+ * from a queue that is drained by the outermost change.  A change made by a deferred listener is therefore
+ * delivered after the listener returns instead of from inside it, which keeps the recursion shallow when
+ * matches lead to more matches.  The queue is drained on the thread that made the change and not on a
+ * thread of its own: the diff map is not thread safe and deferred listeners, such as the sibling
+ * matchers, read it and add matches to it.
+ * <p>
+ * The older AlignmentListeners are called synchronously with one call per axiom, in the order in which 
+ * the axioms were processed, followed by the calls for the matches themselves.
+ */
 public class DiffListenerCollection {
-    private List<AlignmentListener> listeners = new ArrayList<AlignmentListener>();
-    
+    private List<AlignmentListener>      listeners = new ArrayList<AlignmentListener>();
+    private List<AlignmentEventListener> eventListeners = new ArrayList<AlignmentEventListener>();
+    private List<AlignmentEventListener> deferredEventListeners = new ArrayList<AlignmentEventListener>();
+    private Deque<AlignmentEvent>        deferredEvents = new ArrayDeque<AlignmentEvent>();
+    private boolean                      delivering = false;
+
     public void addDiffListener(AlignmentListener listener) {
         listeners.add(listener);
     }
-    
+
     public void removeDiffListener(AlignmentListener listener) {
         listeners.remove(listener);
     }
 
+    public void addAlignmentEventListener(AlignmentEventListener listener) {
+        addAlignmentEventListener(listener, false);
+    }
 
-    protected void fireAddMatchingEntities(Map<OWLEntity, OWLEntity> newMatches) {
-        for (AlignmentListener listener : listeners) {
-            listener.addMatchingEntities(newMatches);
+    public void addAlignmentEventListener(AlignmentEventListener listener, boolean deferred) {
+        if (deferred) {
+            deferredEventListeners.add(listener);
+        }
+        else {
+            eventListeners.add(listener);
         }
     }
 
-    protected void fireAddMatchingAnonymousIndividuals(Map<OWLAnonymousIndividual, OWLAnonymousIndividual> newMatches){
-        for (AlignmentListener listener : listeners) {
-            listener.addMatchingAnonymousIndividuals(newMatches);
-        }
+    public void removeAlignmentEventListener(AlignmentEventListener listener) {
+        eventListeners.remove(listener);
+        deferredEventListeners.remove(listener);
     }
-    protected void fireAddMatch(OWLEntity source, OWLEntity target){
-        for (AlignmentListener listener : listeners) {
-            listener.addMatch(source, target);
-        }
+
+    protected void fireAlignmentEvent(AlignmentEvent event) {
+        fireAlignmentEvent(event, null);
     }
-    protected void fireAddMatch(OWLAnonymousIndividual source, OWLAnonymousIndividual target){
-        for (AlignmentListener listener : listeners) {
-            listener.addMatch(source, target);
+
+    /**
+     * @param order the order of the axioms of the event or null if the matched axioms are to be replayed
+     *              first, then the unmatcheable axioms and then the moved ones.
+     */
+    void fireAlignmentEvent(AlignmentEvent event, AxiomOrder order) {
+        for (AlignmentEventListener listener : eventListeners) {
+            listener.alignmentChanged(event);
         }
-    }
-    
-    protected void fireUnmatchedAxiomMoved(UnmatchedSourceAxiom unmatched) {
         for (AlignmentListener listener : listeners) {
-            listener.unmatchedAxiomMoved(unmatched);
+            replay(listener, event, order);
         }
-    }
-    
-    protected void fireAddUnmatcheableAxiom(OWLAxiom axiom) {
-        for (AlignmentListener listener : listeners) {
-            listener.addUnmatcheableAxiom(axiom);
+        if (!deferredEventListeners.isEmpty()) {
+            deferredEvents.add(event);
+            deliverDeferredEvents();
         }
     }
 
-    protected void fireAddMatchedAxiom(OWLAxiom axiom) {
-        for (AlignmentListener listener : listeners) {
-            listener.addMatchedAxiom(axiom);
+    private void deliverDeferredEvents() {
+        if (delivering) {
+            return;
+        }
+        delivering = true;
+        try {
+            AlignmentEvent event;
+            while ((event = deferredEvents.poll()) != null) {
+                for (AlignmentEventListener listener : new ArrayList<AlignmentEventListener>(deferredEventListeners)) {
+                    listener.alignmentChanged(event);
+                }
+            }
+        }
+        finally {
+            delivering = false;
         }
     }
 
+    private static void replay(AlignmentListener listener, AlignmentEvent event, AxiomOrder order) {
+        if (order == null) {
+            for (OWLAxiom axiom : event.getMatchedAxioms()) {
+                listener.addMatchedAxiom(axiom);
+            }
+            for (OWLAxiom axiom : event.getUnmatcheableAxioms()) {
+                listener.addUnmatcheableAxiom(axiom);
+            }
+            for (UnmatchedSourceAxiom unmatched : event.getMovedAxioms()) {
+                listener.unmatchedAxiomMoved(unmatched);
+            }
+        }
+        else {
+            Iterator<OWLAxiom> matched = event.getMatchedAxioms().iterator();
+            Iterator<OWLAxiom> unmatcheable = event.getUnmatcheableAxioms().iterator();
+            Iterator<UnmatchedSourceAxiom> moved = event.getMovedAxioms().iterator();
+            for (int i = 0; i < order.size(); i++) {
+                switch (order.get(i)) {
+                case AxiomOrder.MATCHED:
+                    listener.addMatchedAxiom(matched.next());
+                    break;
+                case AxiomOrder.UNMATCHEABLE:
+                    listener.addUnmatcheableAxiom(unmatcheable.next());
+                    break;
+                default:
+                    listener.unmatchedAxiomMoved(moved.next());
+                    break;
+                }
+            }
+        }
+        switch (event.getCause()) {
+        case MATCHING_ENTITIES:
+            listener.addMatchingEntities(event.getEntityMatches());
+            break;
+        case MATCHING_ANONYMOUS_INDIVIDUALS:
+            listener.addMatchingAnonymousIndividuals(event.getAnonymousIndividualMatches());
+            break;
+        case MATCH:
+            for (Entry<OWLEntity, OWLEntity> entry : event.getEntityMatches().entrySet()) {
+                listener.addMatch(entry.getKey(), entry.getValue());
+            }
+            for (Entry<OWLAnonymousIndividual, OWLAnonymousIndividual> entry : event.getAnonymousIndividualMatches().entrySet()) {
+                listener.addMatch(entry.getKey(), entry.getValue());
+            }
+            break;
+        default:
+            break;
+        }
+    }
 
 }
@@ -0,0 +1,291 @@
+package org.protege.owl.diff.align.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.protege.owl.diff.align.UnmatchedSourceAxiom;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLAnnotationPropertyDomainAxiom;
+import org.semanticweb.owlapi.model.OWLAnnotationPropertyRangeAxiom;
+import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLObject;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+/**
+ * Builds the initial indexes of the OwlDiffMapCore.  The source axioms are split into partitions that are
+ * indexed in parallel and the partial indexes are merged in partition order, so the result is the same
+ * as that of a single threaded walk over the axioms.  The target shapes are computed while the source side
+ * is being indexed.  The unmatched axiom sets are views of the ontologies that only store their changes.
+ * <p>
+ * The two ontologies are never read by more than one thread at a time.
+ */
+class DiffMapIndexBuilder {
+    public static final int PARTITION_SIZE = 4096;
+
+    private OWLOntology sourceOntology;
+    private OWLOntology targetOntology;
+    private ForkJoinPool pool;
+
+    private Set<OWLAxiom>               targetAxioms;
+    private Set<OWLEntity>              targetEntities;
+    private Set<OWLAnonymousIndividual> targetAnonIndividuals;
+    private AxiomShapeIndex             targetShapes;
+    private AxiomShapeIndex             identicalTargetShapes;
+    private SourceIndex                 sourceIndex;
+
+    DiffMapIndexBuilder(OWLOntology sourceOntology, OWLOntology targetOntology) {
+        this(sourceOntology, targetOntology, ForkJoinPool.commonPool());
+    }
+
+    DiffMapIndexBuilder(OWLOntology sourceOntology, OWLOntology targetOntology, ForkJoinPool pool) {
+        this.sourceOntology = sourceOntology;
+        this.targetOntology = targetOntology;
+        this.pool = pool;
+    }
+
+    void build() {
+        List<OWLAxiom> sourceAxioms = new ArrayList<OWLAxiom>(sourceOntology.getAxiomCount());
+        BitSet inTarget = new BitSet();
+        for (OWLAxiom axiom : OverlaySet.axiomsOf(sourceOntology)) {
+            if (targetOntology.containsAxiom(axiom)) {
+                inTarget.set(sourceAxioms.size());
+            }
+            sourceAxioms.add(axiom);
+        }
+
+        ForkJoinTask<?> targetTask = pool.submit(new Runnable() {
+            public void run() {
+                targetEntities = targetOntology.getSignature();
+                targetAnonIndividuals = OverlaySet.of(targetOntology.getReferencedAnonymousIndividuals(Imports.EXCLUDED));
+                targetShapes = new AxiomShapeIndex(targetOntology.getAxiomCount());
+                identicalTargetShapes = new AxiomShapeIndex(0);
+                for (OWLAxiom axiom : OverlaySet.axiomsOf(targetOntology)) {
+                    if (!isIdenticalAxiom(axiom, sourceOntology)) {
+                        targetShapes.add(AxiomShapeIndex.shapeOf(axiom, null));
+                    }
+                    else {
+                        identicalTargetShapes.add(AxiomShapeIndex.shapeOf(axiom, null));
+                    }
+                }
+            }
+        });
+        sourceIndex = pool.invoke(new SourceIndexTask(sourceAxioms, inTarget, 0, sourceAxioms.size()));
+        targetTask.join();
+        targetAxioms = unmatchedAxioms(targetOntology, sourceOntology, 
+                                       targetOntology.getAxiomCount() - sourceIndex.identicalAxiomCount);
+    }
+
+    /**
+     * @return the axioms of the ontology that are not identical axioms of the other ontology.  The set only
+     *         stores the changes made to it.
+     */
+    static Set<OWLAxiom> unmatchedAxioms(final OWLOntology ontology, final OWLOntology other, int size) {
+        return new OverlaySet<OWLAxiom>(size) {
+            @Override
+            protected Iterable<? extends OWLAxiom> base() {
+                return OverlaySet.axiomsOf(ontology);
+            }
+
+            @Override
+            protected boolean baseContains(Object o) {
+                return o instanceof OWLAxiom && ontology.containsAxiom((OWLAxiom) o);
+            }
+
+            @Override
+            protected boolean isExcluded(OWLAxiom axiom) {
+                return isIdenticalAxiom(axiom, other);
+            }
+        };
+    }
+
+    SourceIndex getSourceIndex() {
+        return sourceIndex;
+    }
+
+    /**
+     * @return the target axioms minus the axioms that are common to both ontologies.  The set is a view of
+     *         the target ontology.
+     */
+    Set<OWLAxiom> getTargetAxioms() {
+        return targetAxioms;
+    }
+
+    /**
+     * @return the shapes of the target axioms returned by getTargetAxioms().
+     */
+    AxiomShapeIndex getTargetShapes() {
+        return targetShapes;
+    }
+
+    /**
+     * @return the shapes of the target axioms that are common to both ontologies and so left out of
+     *         getTargetAxioms().
+     */
+    AxiomShapeIndex getIdenticalTargetShapes() {
+        return identicalTargetShapes;
+    }
+
+    Set<OWLEntity> getTargetEntities() {
+        return targetEntities;
+    }
+
+    Set<OWLAnonymousIndividual> getTargetAnonymousIndividuals() {
+        return targetAnonIndividuals;
+    }
+
+    /*
+     * An axiom found in both ontologies is only assumed to match itself if nothing in it can be
+     * translated by the DiffDuplicator except through the entity map.  Anonymous individuals and
+     * IRI valued annotations are left to the usual processing.
+     */
+    static boolean isIdenticalAxiom(OWLAxiom axiom, OWLOntology other) {
+        return other.containsAxiom(axiom) && isIdenticalAxiomCandidate(axiom);
+    }
+
+    static boolean isIdenticalAxiomCandidate(OWLAxiom axiom) {
+        if (axiom instanceof OWLAnnotationPropertyDomainAxiom || axiom instanceof OWLAnnotationPropertyRangeAxiom) {
+            return false;
+        }
+        if (axiom instanceof OWLAnnotationAssertionAxiom) {
+            OWLAnnotationAssertionAxiom assertion = (OWLAnnotationAssertionAxiom) axiom;
+            if (assertion.getSubject() instanceof OWLAnonymousIndividual || !isIdenticalAnnotationValueCandidate(assertion.getAnnotation())) {
+                return false;
+            }
+        }
+        for (OWLAnnotation annotation : axiom.getAnnotations()) {
+            if (!isIdenticalAnnotationValueCandidate(annotation)) {
+                return false;
+            }
+        }
+        return axiom.getAnonymousIndividuals().isEmpty();
+    }
+
+    private static boolean isIdenticalAnnotationValueCandidate(OWLAnnotation annotation) {
+        if (annotation.getValue() instanceof IRI || annotation.getValue() instanceof OWLAnonymousIndividual) {
+            return false;
+        }
+        for (OWLAnnotation nested : annotation.getAnnotations()) {
+            if (!isIdenticalAnnotationValueCandidate(nested)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The index of one partition of the source axioms.  Merging the index of a later partition into
+     * the index of an earlier one gives the index of the two partitions together.  The entities, the
+     * anonymous individuals and the keys of the maps keep the order in which the axioms first mention
+     * them, so the merged index iterates in the same order as the index of a single partition.  The
+     * entity ids of the diff map are handed out in this order.
+     */
+    static class SourceIndex {
+        final List<UnmatchedSourceAxiom>             potentialMatchingAxioms = new ArrayList<UnmatchedSourceAxiom>();
+        final Map<OWLEntity, Set<UnmatchedSourceAxiomImpl>> axiomsByEntity       = new LinkedHashMap<OWLEntity, Set<UnmatchedSourceAxiomImpl>>();
+        final Map<OWLAnonymousIndividual, Set<UnmatchedSourceAxiomImpl>> axiomsByAnonIndividual
+                                                                             = new LinkedHashMap<OWLAnonymousIndividual, Set<UnmatchedSourceAxiomImpl>>();
+        final Set<OWLEntity>                         entities                = new LinkedHashSet<OWLEntity>();
+        final Set<OWLAnonymousIndividual>            anonIndividuals         = new LinkedHashSet<OWLAnonymousIndividual>();
+        int                                          unmatchedAxiomCount     = 0;
+        int                                          identicalAxiomCount     = 0;
+
+        void add(OWLAxiom axiom, boolean inTarget) {
+            if (inTarget && isIdenticalAxiomCandidate(axiom)) {
+                identicalAxiomCount++;
+                entities.addAll(axiom.getSignature());
+                return;
+            }
+            unmatchedAxiomCount++;
+            UnmatchedSourceAxiomImpl unmatched = new UnmatchedSourceAxiomImpl(axiom);
+            potentialMatchingAxioms.add(unmatched);
+            for (OWLEntity entity : unmatched.getReferencedUnmatchedEntities()) {
+                addReference(axiomsByEntity, entity, unmatched);
+            }
+            for (OWLAnonymousIndividual anonymous : unmatched.getReferencedUnmatchedAnonymousIndividuals()) {
+                addReference(axiomsByAnonIndividual, anonymous, unmatched);
+            }
+            entities.addAll(unmatched.getReferencedUnmatchedEntities());
+            anonIndividuals.addAll(unmatched.getReferencedUnmatchedAnonymousIndividuals());
+        }
+
+        void merge(SourceIndex later) {
+            unmatchedAxiomCount += later.unmatchedAxiomCount;
+            potentialMatchingAxioms.addAll(later.potentialMatchingAxioms);
+            mergeReferences(axiomsByEntity, later.axiomsByEntity);
+            mergeReferences(axiomsByAnonIndividual, later.axiomsByAnonIndividual);
+            entities.addAll(later.entities);
+            anonIndividuals.addAll(later.anonIndividuals);
+            identicalAxiomCount += later.identicalAxiomCount;
+        }
+
+        private static <X extends OWLObject> void mergeReferences(Map<X, Set<UnmatchedSourceAxiomImpl>> map, Map<X, Set<UnmatchedSourceAxiomImpl>> later) {
+            for (Map.Entry<X, Set<UnmatchedSourceAxiomImpl>> entry : later.entrySet()) {
+                Set<UnmatchedSourceAxiomImpl> unmatchedSet = map.get(entry.getKey());
+                if (unmatchedSet == null) {
+                    map.put(entry.getKey(), entry.getValue());
+                }
+                else {
+                    unmatchedSet.addAll(entry.getValue());
+                }
+            }
+        }
+
+        private static <X extends OWLObject> void addReference(Map<X, Set<UnmatchedSourceAxiomImpl>> map, X o, UnmatchedSourceAxiomImpl unmatched) {
+            Set<UnmatchedSourceAxiomImpl> unmatchedSet = map.get(o);
+            if (unmatchedSet == null) {
+                unmatchedSet = new HashSet<UnmatchedSourceAxiomImpl>();
+                map.put(o, unmatchedSet);
+            }
+            unmatchedSet.add(unmatched);
+        }
+    }
+
+    private static class SourceIndexTask extends RecursiveTask<SourceIndex> {
+        private static final long serialVersionUID = 4719253478312470934L;
+
+        private List<OWLAxiom> sourceAxioms;
+        private BitSet         inTarget;
+        private int start;
+        private int end;
+
+        public SourceIndexTask(List<OWLAxiom> sourceAxioms, BitSet inTarget, int start, int end) {
+            this.sourceAxioms = sourceAxioms;
+            this.inTarget = inTarget;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected SourceIndex compute() {
+            if (end - start <= PARTITION_SIZE) {
+                SourceIndex index = new SourceIndex();
+                for (int i = start; i < end; i++) {
+                    index.add(sourceAxioms.get(i), inTarget.get(i));
+                }
+                return index;
+            }
+            int middle = (start + end) >>> 1;
+            SourceIndexTask earlier = new SourceIndexTask(sourceAxioms, inTarget, start, middle);
+            SourceIndexTask later   = new SourceIndexTask(sourceAxioms, inTarget, middle, end);
+            later.fork();
+            SourceIndex index = earlier.compute();
+            index.merge(later.join());
+            return index;
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.protege.owl.diff.align.impl;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.OWLEntity;
+
+/**
+ * The source to target entity map kept as an int array indexed by the id of the source entity.
+ * Seen from outside of this package it is an unmodifiable map.
+ */
+class EntityIdMap extends AbstractMap<OWLEntity, OWLEntity> {
+    private EntityInterner interner;
+    private int[]          targets;
+    private BitSet         sources;
+    private int            count = 0;
+
+    EntityIdMap(EntityInterner interner) {
+        this.interner = interner;
+        targets = new int[interner.size()];
+        Arrays.fill(targets, EntityInterner.NO_ID);
+        sources = new BitSet(interner.size());
+    }
+
+    void putId(int sourceId, int targetId) {
+        if (targets[sourceId] == EntityInterner.NO_ID) {
+            count++;
+            sources.set(sourceId);
+        }
+        targets[sourceId] = targetId;
+    }
+
+    int getTargetId(int sourceId) {
+        return sourceId == EntityInterner.NO_ID ? EntityInterner.NO_ID : targets[sourceId];
+    }
+
+    @Override
+    public OWLEntity get(Object key) {
+        int targetId = getTargetId(interner.getId(key));
+        return targetId == EntityInterner.NO_ID ? null : interner.getEntity(targetId);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getTargetId(interner.getId(key)) != EntityInterner.NO_ID;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<OWLEntity, OWLEntity>> entrySet() {
+        return new AbstractSet<Map.Entry<OWLEntity, OWLEntity>>() {
+
+            @Override
+            public int size() {
+                return count;
+            }
+
+            @Override
+            public Iterator<Map.Entry<OWLEntity, OWLEntity>> iterator() {
+                return new Iterator<Map.Entry<OWLEntity, OWLEntity>>() {
+                    private int next = sources.nextSetBit(0);
+
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    public Map.Entry<OWLEntity, OWLEntity> next() {
+                        if (next < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<OWLEntity, OWLEntity> entry
+                            = new AbstractMap.SimpleImmutableEntry<OWLEntity, OWLEntity>(interner.getEntity(next),
+                                                                                         interner.getEntity(targets[next]));
+                        next = sources.nextSetBit(next + 1);
+                        return entry;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package org.protege.owl.diff.align.impl;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.semanticweb.owlapi.model.OWLEntity;
+
+/**
+ * A set of interned entities backed by a bit set.  Seen from outside of this package it is an
+ * unmodifiable set of entities whose size is known without a scan.
+ */
+class EntityIdSet extends AbstractSet<OWLEntity> {
+    private EntityInterner interner;
+    private BitSet         ids;
+    private int            count = 0;
+
+    EntityIdSet(EntityInterner interner) {
+        this.interner = interner;
+        this.ids = new BitSet(interner.size());
+    }
+
+    boolean addId(int id) {
+        if (ids.get(id)) {
+            return false;
+        }
+        ids.set(id);
+        count++;
+        return true;
+    }
+
+    boolean removeId(int id) {
+        if (id == EntityInterner.NO_ID || !ids.get(id)) {
+            return false;
+        }
+        ids.clear(id);
+        count--;
+        return true;
+    }
+
+    boolean containsId(int id) {
+        return id != EntityInterner.NO_ID && ids.get(id);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return containsId(interner.getId(o));
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public Iterator<OWLEntity> iterator() {
+        return new Iterator<OWLEntity>() {
+            private int next = ids.nextSetBit(0);
+
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            public OWLEntity next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                OWLEntity entity = interner.getEntity(next);
+                next = ids.nextSetBit(next + 1);
+                return entity;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package org.protege.owl.diff.align.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.semanticweb.owlapi.model.OWLEntity;
+
+/**
+ * Gives each entity in the signatures of the two ontologies a dense integer id so that the
+ * OwlDiffMapCore can keep its bookkeeping in arrays and bit sets.  Ids are handed out in the order
+ * that entities are interned.  The table uses open addressing with linear probing so that a lookup
+ * does not allocate.
+ * <p>
+ * Interning is not thread safe but lookups on an interner that is no longer being modified are.
+ */
+class EntityInterner {
+    public static final int NO_ID = -1;
+
+    private OWLEntity[] entities;
+    private int[]       table;   // id + 1 or 0 for an empty slot
+    private int         mask;
+    private int         size = 0;
+
+    EntityInterner(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        table = new int[capacity];
+        mask = capacity - 1;
+        entities = new OWLEntity[Math.max(expectedSize, 8)];
+    }
+
+    public int intern(OWLEntity entity) {
+        int slot = findSlot(entity);
+        if (table[slot] != 0) {
+            return table[slot] - 1;
+        }
+        if (size == entities.length) {
+            entities = Arrays.copyOf(entities, size * 2);
+        }
+        int id = size++;
+        entities[id] = entity;
+        table[slot] = id + 1;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    public void internAll(Collection<? extends OWLEntity> newEntities) {
+        for (OWLEntity entity : newEntities) {
+            intern(entity);
+        }
+    }
+
+    /**
+     * @return the id of the object or NO_ID if the object is not an interned entity.
+     */
+    public int getId(Object o) {
+        if (!(o instanceof OWLEntity)) {
+            return NO_ID;
+        }
+        return table[findSlot(o)] - 1;
+    }
+
+    public OWLEntity getEntity(int id) {
+        return entities[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int findSlot(Object o) {
+        int slot = mix(o.hashCode()) & mask;
+        while (table[slot] != 0 && !entities[table[slot] - 1].equals(o)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(entities[id].hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,172 @@
+package org.protege.owl.diff.align.impl;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+/**
+ * A set that is described as the contents of a base collection minus the removed elements plus the added
+ * elements.  Only the removals and additions are stored, so the unmatched sets of the diff map do not
+ * hold copies of the axioms and individuals of the ontologies.  Elements can also be left out of the base
+ * permanently by overriding isExcluded.
+ * <p>
+ * The base must not change while the set is in use.  The iterator does not support removal, so neither
+ * do retainAll and clear.
+ */
+abstract class OverlaySet<X> extends AbstractSet<X> {
+    private Set<X> removed = new HashSet<X>();
+    private Set<X> added = new HashSet<X>();
+    private int    baseSize;
+
+    /**
+     * @param baseSize the number of elements in the base that are not excluded.
+     */
+    protected OverlaySet(int baseSize) {
+        this.baseSize = baseSize;
+    }
+
+    /**
+     * @return the set of all the elements of base.
+     */
+    static <X> OverlaySet<X> of(final Set<X> base) {
+        return new OverlaySet<X>(base.size()) {
+            @Override
+            protected Iterable<? extends X> base() {
+                return base;
+            }
+
+            @Override
+            protected boolean baseContains(Object o) {
+                return base.contains(o);
+            }
+        };
+    }
+
+    /**
+     * Iterates over the axioms of an ontology one axiom type at a time, which does not copy the axioms
+     * as getAxioms() can.
+     */
+    static Iterable<OWLAxiom> axiomsOf(final OWLOntology ontology) {
+        return new Iterable<OWLAxiom>() {
+            public Iterator<OWLAxiom> iterator() {
+                final Iterator<AxiomType<?>> types = AxiomType.AXIOM_TYPES.iterator();
+                return new Iterator<OWLAxiom>() {
+                    private Iterator<? extends OWLAxiom> axioms = Collections.<OWLAxiom>emptySet().iterator();
+
+                    public boolean hasNext() {
+                        while (!axioms.hasNext() && types.hasNext()) {
+                            axioms = ontology.getAxioms(types.next()).iterator();
+                        }
+                        return axioms.hasNext();
+                    }
+
+                    public OWLAxiom next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return axioms.next();
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    protected abstract Iterable<? extends X> base();
+
+    protected abstract boolean baseContains(Object o);
+
+    protected boolean isExcluded(X x) {
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean inBase(Object o) {
+        return baseContains(o) && !isExcluded((X) o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return added.contains(o) || (!removed.contains(o) && inBase(o));
+    }
+
+    @Override
+    public int size() {
+        return baseSize - removed.size() + added.size();
+    }
+
+    @Override
+    public boolean add(X x) {
+        if (removed.remove(x)) {
+            return true;
+        }
+        return !inBase(x) && added.add(x);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean remove(Object o) {
+        if (added.remove(o)) {
+            return true;
+        }
+        return inBase(o) && removed.add((X) o);
+    }
+
+    /*
+     * AbstractSet.removeAll removes through the iterator when the argument is at least as large as the set.
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o : c) {
+            changed = remove(o) || changed;
+        }
+        return changed;
+    }
+
+    @Override
+    public Iterator<X> iterator() {
+        final Iterator<? extends X> baseIterator = base().iterator();
+        final Iterator<X> addedIterator = added.iterator();
+        return new Iterator<X>() {
+            private X next;
+
+            public boolean hasNext() {
+                while (next == null && baseIterator.hasNext()) {
+                    X x = baseIterator.next();
+                    if (!removed.contains(x) && !isExcluded(x)) {
+                        next = x;
+                    }
+                }
+                return next != null || addedIterator.hasNext();
+            }
+
+            public X next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (next == null) {
+                    return addedIterator.next();
+                }
+                X x = next;
+                next = null;
+                return x;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -1,37 +1,50 @@
 package org.protege.owl.diff.align.impl;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.protege.owl.diff.align.AlignmentEvent;
 import org.protege.owl.diff.align.AlignmentExplanation;
 import org.protege.owl.diff.align.OwlDiffMap;
 import org.protege.owl.diff.align.UnmatchedSourceAxiom;
-import org.protege.owl.diff.util.DiffDuplicator;
+import org.protege.owl.diff.util.DiffTranslator;
 import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
 import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
 import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLDataFactory;
 import org.semanticweb.owlapi.model.OWLEntity;
-import org.semanticweb.owlapi.model.OWLObject;
 import org.semanticweb.owlapi.model.OWLOntology;
-import org.semanticweb.owlapi.model.parameters.Imports;
 
 public abstract class OwlDiffMapCore extends DiffListenerCollection implements OwlDiffMap {
 	public static final Logger LOGGER = LoggerFactory.getLogger(OwlDiffMapCore.class.getName());
 	
+	private static final Map<OWLEntity, OWLEntity>                           NO_ENTITY_MATCHES     = Collections.emptyMap();
+	private static final Map<OWLAnonymousIndividual, OWLAnonymousIndividual> NO_INDIVIDUAL_MATCHES = Collections.emptyMap();
+	
     /*
-     * Entities
+     * Entities.  Every entity in the signature of either ontology is given a dense integer id by the 
+     * interner and the entity bookkeeping is done on those ids.
      */
-    private Map<OWLEntity, OWLEntity>        entityMap                  = new HashMap<OWLEntity, OWLEntity>();
-    private Set<OWLEntity>                   unmatchedSourceEntities    = new HashSet<OWLEntity>(); 
-    private Set<OWLEntity>                   unmatchedTargetEntities;
-    private Map<OWLEntity, Set<OWLEntity>>   blockedEntityMatches       = new HashMap<OWLEntity, Set<OWLEntity>>();
+    private EntityInterner                   interner;
+    private EntityIdMap                      entityMap;
+    private EntityIdSet                      unmatchedSourceEntities;
+    private EntityIdSet                      unmatchedTargetEntities;
+    private Set<Long>                        blockedEntityMatches       = new HashSet<Long>();
+    private AlignmentExplanation[]           entityExplanations;
     
     /*
      * Anonymous Individuals
@@ -42,59 +55,87 @@ public abstract class OwlDiffMapCore extends DiffListenerCollection implements O
     private Set<OWLAnonymousIndividual>                         unmatchedTargetAnonIndividuals;
     
     
-    private Map<OWLObject, AlignmentExplanation>  explanationMap = new HashMap<OWLObject, AlignmentExplanation>();
+    private Map<OWLAnonymousIndividual, AlignmentExplanation>   anonExplanationMap = new HashMap<OWLAnonymousIndividual, AlignmentExplanation>();
 
     
     /*
-     * Axioms
+     * Axioms.  The unmatched source and target axiom sets are views of the ontologies that only record
+     * the axioms that have been matched (see OverlaySet).
      */
-    private Map<OWLObject, Set<UnmatchedSourceAxiom>>     unmatchedSourceAxiomMap        = new HashMap<OWLObject, Set<UnmatchedSourceAxiom>>();
+    private Set<UnmatchedSourceAxiomImpl>[]               unmatchedAxiomsByEntity;
+    private int                                           entitiesWithUnmatchedAxioms    = 0;
+    private Map<OWLAnonymousIndividual, Set<UnmatchedSourceAxiomImpl>> unmatchedAxiomsByAnonIndividual;
     private Set<UnmatchedSourceAxiom>                     potentialMatchingSourceAxioms  = new HashSet<UnmatchedSourceAxiom>();
     private Set<OWLAxiom>                                 unmatchedSourceAxioms;
     private Set<OWLAxiom>                                 unmatchedTargetAxioms;
+    private AxiomShapeIndex                               unmatchedTargetShapes;
+    
+    private Set<UnmatchedSourceAxiomImpl>                 completedAnnnotationAssertionAxioms = new HashSet<UnmatchedSourceAxiomImpl>();
+    private DiffTranslator                                translator = new DiffTranslator(this);
+    
+    /*
+     * Axioms that occur verbatim in both ontologies are taken to be matched from the start and are set
+     * aside from the unmatched axiom structures above.  An identical axiom is put back as soon as one of 
+     * its entities is mapped to something other than itself and finish() puts back the ones that still 
+     * reference unmatched entities.  A source axiom whose translation is a set aside axiom waits for that 
+     * axiom to be put back rather than being reported as unmatcheable.
+     */
+    private int                                           identicalAxiomCount = 0;
+    private boolean                                       identicalAxiomsVerified = false;
+    private AxiomShapeIndex                               identicalTargetShapes;
+    private Set<OWLAxiom>                                 restoredIdenticalAxioms = new HashSet<OWLAxiom>();
+    private Map<OWLAxiom, List<UnmatchedSourceAxiomImpl>> collidedSourceAxioms = new HashMap<OWLAxiom, List<UnmatchedSourceAxiomImpl>>();
     
-    private Set<UnmatchedSourceAxiom>                     completedAnnnotationAssertionAxioms = new HashSet<UnmatchedSourceAxiom>();
+    /*
+     * Lazy axiom reconciliation.  The matches whose axioms have not been looked at yet.
+     */
+    private boolean                                       lazyAxiomReconciliation = false;
+    private BitSet                                        pendingSourceIds = new BitSet();
+    private Set<OWLAnonymousIndividual>                   pendingIndividuals = new LinkedHashSet<OWLAnonymousIndividual>();
     
     protected OwlDiffMapCore(OWLDataFactory factory,
                              OWLOntology sourceOntology, 
                              OWLOntology targetOntology) {
     	long startTime = System.currentTimeMillis();
     	
-        unmatchedSourceAxioms = new HashSet<OWLAxiom>(sourceOntology.getAxioms());
-        unmatchedTargetAxioms = new HashSet<OWLAxiom>(targetOntology.getAxioms());
+        DiffMapIndexBuilder builder = new DiffMapIndexBuilder(sourceOntology, targetOntology);
+        builder.build();
+        DiffMapIndexBuilder.SourceIndex sourceIndex = builder.getSourceIndex();
 
-        for (OWLAxiom axiom : unmatchedSourceAxioms) {
-            UnmatchedSourceAxiomImpl unmatched = new UnmatchedSourceAxiomImpl(axiom);
-            
-            potentialMatchingSourceAxioms.add(unmatched);
-        	for (OWLEntity entity : unmatched.getReferencedUnmatchedEntities()) {
-        		Set<UnmatchedSourceAxiom> unmatchedSet = unmatchedSourceAxiomMap.get(entity);
-        		if (unmatchedSet == null) {
-        			unmatchedSet = new HashSet<UnmatchedSourceAxiom>();
-        			unmatchedSourceAxiomMap.put(entity, unmatchedSet);
-        		}
-        		unmatchedSet.add(unmatched);
-        	}
-        	for (OWLAnonymousIndividual anonymous : unmatched.getReferencedUnmatchedAnonymousIndividuals()) {
-        		Set<UnmatchedSourceAxiom> unmatchedSet = unmatchedSourceAxiomMap.get(anonymous);
-        		if (unmatchedSet == null) {
-        			unmatchedSet = new HashSet<UnmatchedSourceAxiom>();
-        			unmatchedSourceAxiomMap.put(anonymous, unmatchedSet);
-        		}
-        		unmatchedSet.add(unmatched);
-        	} 
+        interner = new EntityInterner(builder.getTargetEntities().size() + sourceIndex.entities.size());
+        interner.internAll(builder.getTargetEntities());
+        interner.internAll(sourceIndex.entities);
+        entityMap = new EntityIdMap(interner);
+        entityExplanations = new AlignmentExplanation[interner.size()];
+        unmatchedSourceEntities = new EntityIdSet(interner);
+        for (OWLEntity entity : sourceIndex.entities) {
+            unmatchedSourceEntities.addId(interner.getId(entity));
+        }
+        unmatchedTargetEntities = new EntityIdSet(interner);
+        for (OWLEntity entity : builder.getTargetEntities()) {
+            unmatchedTargetEntities.addId(interner.getId(entity));
+        }
 
-            unmatchedSourceEntities.addAll(unmatched.getReferencedUnmatchedEntities());
-            unmatchedSourceAnonIndividuals.addAll(unmatched.getReferencedUnmatchedAnonymousIndividuals());
+        unmatchedSourceAxioms = DiffMapIndexBuilder.unmatchedAxioms(sourceOntology, targetOntology, sourceIndex.unmatchedAxiomCount);
+        unmatchedAxiomsByEntity = newUnmatchedAxiomArray(interner.size());
+        for (Map.Entry<OWLEntity, Set<UnmatchedSourceAxiomImpl>> entry : sourceIndex.axiomsByEntity.entrySet()) {
+            unmatchedAxiomsByEntity[interner.getId(entry.getKey())] = entry.getValue();
+            entitiesWithUnmatchedAxioms++;
         }
-        
-        unmatchedTargetEntities = new HashSet<OWLEntity>(targetOntology.getSignature());
-        unmatchedTargetAnonIndividuals = new HashSet<OWLAnonymousIndividual>(
-                targetOntology
-                        .getReferencedAnonymousIndividuals(Imports.EXCLUDED));
+        unmatchedAxiomsByAnonIndividual = sourceIndex.axiomsByAnonIndividual;
+        potentialMatchingSourceAxioms.addAll(sourceIndex.potentialMatchingAxioms);
+        unmatchedSourceAnonIndividuals.addAll(sourceIndex.anonIndividuals);
+        identicalAxiomCount = sourceIndex.identicalAxiomCount;
+
+        unmatchedTargetAxioms = builder.getTargetAxioms();
+        unmatchedTargetShapes = builder.getTargetShapes();
+        identicalTargetShapes = builder.getIdenticalTargetShapes();
+        unmatchedTargetAnonIndividuals = builder.getTargetAnonymousIndividuals();
     
         if (LOGGER.isInfoEnabled()) {
         	LOGGER.info("Initialization of core diff map structures took " + (System.currentTimeMillis() - startTime) + "ms.");
+        	LOGGER.info("" + identicalAxiomCount + " axioms are common to both ontologies, " 
+        	                + unmatchedSourceAxioms.size() + " source axioms remain to be matched.");
         }
     }
     
@@ -103,11 +144,12 @@ public abstract class OwlDiffMapCore extends DiffListenerCollection implements O
      */
 
     public Map<OWLEntity, OWLEntity> getEntityMap() {
-        return Collections.unmodifiableMap(entityMap);
+        return entityMap;
     }
     
     public AlignmentExplanation getExplanation(OWLEntity sourceEntity) {
-    	return explanationMap.get(sourceEntity);
+    	int sourceId = interner.getId(sourceEntity);
+    	return sourceId == EntityInterner.NO_ID ? null : entityExplanations[sourceId];
     }
     
     public Map<OWLAnonymousIndividual, OWLAnonymousIndividual> getAnonymousIndividualMap() {
@@ -115,15 +157,15 @@ public abstract class OwlDiffMapCore extends DiffListenerCollection implements O
     }
     
     public AlignmentExplanation getExplanation(OWLAnonymousIndividual sourceIndividual) {
-    	return explanationMap.get(sourceIndividual);
+    	return anonExplanationMap.get(sourceIndividual);
     }
 
     public Set<OWLEntity> getUnmatchedSourceEntities() {
-        return Collections.unmodifiableSet(unmatchedSourceEntities);
+        return unmatchedSourceEntities;
     }
     
     public Set<OWLEntity> getUnmatchedTargetEntities() {
-        return Collections.unmodifiableSet(unmatchedTargetEntities);
+        return unmatchedTargetEntities;
     }
 
     public Set<OWLAnonymousIndividual> getUnmatchedSourceAnonymousIndividuals() {
@@ -151,45 +193,72 @@ public abstract class OwlDiffMapCore extends DiffListenerCollection implements O
      */
     public void addMatchingEntities(Map<OWLEntity, OWLEntity> newMatches, AlignmentExplanation explanation) {
     	clearBadMatches(newMatches);
-        unmatchedSourceEntities.removeAll(newMatches.keySet());
-        unmatchedTargetEntities.removeAll(newMatches.values());
-        entityMap.putAll(newMatches);
+    	int[] sourceIds = new int[newMatches.size()];
+    	int i = 0;
+        for (Map.Entry<OWLEntity, OWLEntity> entry : newMatches.entrySet()) {
+            int sourceId = interner.getId(entry.getKey());
+            int targetId = interner.getId(entry.getValue());
+            unmatchedSourceEntities.removeId(sourceId);
+            unmatchedTargetEntities.removeId(targetId);
+            entityMap.putId(sourceId, targetId);
+            entityExplanations[sourceId] = explanation;
+            sourceIds[i++] = sourceId;
+        }
         
-        Set<UnmatchedSourceAxiom> movingSourceAxioms = new HashSet<UnmatchedSourceAxiom>();
-        for (OWLEntity newEntity : newMatches.keySet()) {
-        	Set<UnmatchedSourceAxiom> removedUnmatchedSourceAxioms = unmatchedSourceAxiomMap.remove(newEntity);
-        	if (removedUnmatchedSourceAxioms != null) {
-        		movingSourceAxioms.addAll(removedUnmatchedSourceAxioms);
-        	}
-            explanationMap.put(newEntity, explanation);
+        AxiomChanges axiomChanges = new AxiomChanges();
+        if (lazyAxiomReconciliation) {
+            for (int sourceId : sourceIds) {
+                pendingSourceIds.set(sourceId);
+            }
+        }
+        else {
+            Set<UnmatchedSourceAxiomImpl> movingSourceAxioms = new HashSet<UnmatchedSourceAxiomImpl>();
+            for (int sourceId : sourceIds) {
+                Set<UnmatchedSourceAxiomImpl> removedUnmatchedSourceAxioms = removeUnmatchedEntityAxioms(sourceId);
+                if (removedUnmatchedSourceAxioms != null) {
+                    movingSourceAxioms.addAll(removedUnmatchedSourceAxioms);
+                }
+            }
+            updateAxiomMatches(movingSourceAxioms, axiomChanges);
+            for (int sourceId : sourceIds) {
+                restoreRemappedIdenticalAxioms(sourceId, axiomChanges);
+            }
         }
-        updateAxiomMatches(movingSourceAxioms);
-        fireAddMatchingEntities(newMatches);
+        axiomChanges.fire(AlignmentEvent.Cause.MATCHING_ENTITIES, newMatches, NO_INDIVIDUAL_MATCHES);
     }
     
     public void addMatch(OWLEntity source, OWLEntity target, AlignmentExplanation explanation) {
     	if (!goodMatch(source, target)) {
     		return;
     	}
-        unmatchedSourceEntities.remove(source);
-        unmatchedTargetEntities.remove(target);
-        entityMap.put(source, target);
-        explanationMap.put(source, explanation);
-        updateAxiomMatches(unmatchedSourceAxiomMap.remove(source));
-        fireAddMatch(source, target);
+    	int sourceId = interner.getId(source);
+    	int targetId = interner.getId(target);
+        unmatchedSourceEntities.removeId(sourceId);
+        unmatchedTargetEntities.removeId(targetId);
+        entityMap.putId(sourceId, targetId);
+        entityExplanations[sourceId] = explanation;
+        AxiomChanges axiomChanges = new AxiomChanges();
+        if (lazyAxiomReconciliation) {
+            pendingSourceIds.set(sourceId);
+        }
+        else {
+            updateAxiomMatches(removeUnmatchedEntityAxioms(sourceId), axiomChanges);
+            restoreRemappedIdenticalAxioms(sourceId, axiomChanges);
+        }
+        axiomChanges.fire(AlignmentEvent.Cause.MATCH, Collections.singletonMap(source, target), NO_INDIVIDUAL_MATCHES);
     }
     
     public void setMatchBlocked(OWLEntity source, OWLEntity target, boolean block) {
-    	Set<OWLEntity> blockedTargets = blockedEntityMatches.get(source);
+    	int sourceId = interner.getId(source);
+    	int targetId = interner.getId(target);
+    	if (sourceId == EntityInterner.NO_ID || targetId == EntityInterner.NO_ID) {
+    		return; // entities outside of the two signatures are never matched anyway
+    	}
     	if (block) {
-    		if (blockedTargets == null) {
-    			blockedTargets = new TreeSet<OWLEntity>();
-    			blockedEntityMatches.put(source, blockedTargets);
-    		}
-    		blockedTargets.add(target);
+    		blockedEntityMatches.add(blockedMatchKey(sourceId, targetId));
     	}
-    	else if (blockedTargets != null) {
-    		blockedTargets.remove(target);
+    	else {
+    		blockedEntityMatches.remove(blockedMatchKey(sourceId, targetId));
     	}
     }
     
@@ -199,16 +268,22 @@ public abstract class OwlDiffMapCore extends DiffListenerCollection implements O
         unmatchedTargetAnonIndividuals.removeAll(newMatches.values());
         anonymousIndividualMap.putAll(newMatches);
         
-        Set<UnmatchedSourceAxiom> movingSourceAxioms = new HashSet<UnmatchedSourceAxiom>();
+        Set<UnmatchedSourceAxiomImpl> movingSourceAxioms = new HashSet<UnmatchedSourceAxiomImpl>();
         for (OWLAnonymousIndividual newMatchingIndividual : newMatches.keySet()) {
-        	Set<UnmatchedSourceAxiom> removedUnmatchedSourceAxioms = unmatchedSourceAxiomMap.remove(newMatchingIndividual);
-        	if (removedUnmatchedSourceAxioms != null) {
-        		movingSourceAxioms.addAll(removedUnmatchedSourceAxioms);
-        	}
-            explanationMap.put(newMatchingIndividual, explanation);
+            if (lazyAxiomReconciliation) {
+                pendingIndividuals.add(newMatchingIndividual);
+            }
+            else {
+                Set<UnmatchedSourceAxiomImpl> removedUnmatchedSourceAxioms = removeUnmatchedIndividualAxioms(newMatchingIndividual);
+                if (removedUnmatchedSourceAxioms != null) {
+                    movingSourceAxioms.addAll(removedUnmatchedSourceAxioms);
+                }
+            }
+            anonExplanationMap.put(newMatchingIndividual, explanation);
         }
-        updateAxiomMatches(movingSourceAxioms);
-        fireAddMatchingAnonymousIndividuals(newMatches);
+        AxiomChanges axiomChanges = new AxiomChanges();
+        updateAxiomMatches(movingSourceAxioms, axiomChanges);
+        axiomChanges.fire(AlignmentEvent.Cause.MATCHING_ANONYMOUS_INDIVIDUALS, NO_ENTITY_MATCHES, newMatches);
     }
     
     public void addMatch(OWLAnonymousIndividual source, OWLAnonymousIndividual target, AlignmentExplanation explanation) {
@@ -218,20 +293,142 @@ public abstract class OwlDiffMapCore extends DiffListenerCollection implements O
         unmatchedSourceAnonIndividuals.remove(source);
         unmatchedTargetAnonIndividuals.remove(target);
         anonymousIndividualMap.put(source, target);
-        explanationMap.put(source, explanation);
-        updateAxiomMatches(unmatchedSourceAxiomMap.remove(source));
-        fireAddMatch(source, target);
+        anonExplanationMap.put(source, explanation);
+        AxiomChanges axiomChanges = new AxiomChanges();
+        if (lazyAxiomReconciliation) {
+            pendingIndividuals.add(source);
+        }
+        else {
+            updateAxiomMatches(removeUnmatchedIndividualAxioms(source), axiomChanges);
+        }
+        axiomChanges.fire(AlignmentEvent.Cause.MATCH, NO_ENTITY_MATCHES, Collections.singletonMap(source, target));
+    }
+    
+    /**
+     * In the lazy axiom reconciliation mode the entity and individual matches are only recorded when they are 
+     * made.  The unmatched axioms are brought up to date in one pass when finish() is called, so until then
+     * the axiom getters and the axiom part of the alignment events are out of date.  Only algorithms that look 
+     * at nothing but the entity and individual matches should be run in this mode.
+     * <p>
+     * Turning the mode off brings the axioms up to date.  finish() also turns the mode off so that any later 
+     * matches are reconciled as they are made.
+     */
+    public void setLazyAxiomReconciliation(boolean lazy) {
+        if (lazyAxiomReconciliation && !lazy) {
+            AxiomChanges axiomChanges = new AxiomChanges();
+            reconcilePendingMatches(false, axiomChanges);
+            if (!axiomChanges.moved.isEmpty()) {
+                axiomChanges.fire(AlignmentEvent.Cause.FINISH, NO_ENTITY_MATCHES, NO_INDIVIDUAL_MATCHES);
+            }
+        }
+        lazyAxiomReconciliation = lazy;
+    }
+    
+    public boolean isLazyAxiomReconciliation() {
+        return lazyAxiomReconciliation;
     }
     
     public void finish() {
-    	for (UnmatchedSourceAxiom unmatched : completedAnnnotationAssertionAxioms) {
-    		updateAxiomMatches(unmatched, true);
+    	AxiomChanges axiomChanges = new AxiomChanges();
+    	reconcilePendingMatches(true, axiomChanges);
+    	lazyAxiomReconciliation = false;
+    	verifyIdenticalAxioms(axiomChanges);
+    	for (UnmatchedSourceAxiomImpl unmatched : completedAnnnotationAssertionAxioms) {
+    		updateAxiomMatches(unmatched, true, axiomChanges);
     	}
+    	for (List<UnmatchedSourceAxiomImpl> collided : collidedSourceAxioms.values()) {
+    		for (UnmatchedSourceAxiomImpl unmatched : collided) {
+    			axiomChanges.addUnmatcheableSourceAxiom(unmatched.getAxiom());
+    		}
+    	}
+    	collidedSourceAxioms.clear();
     	// leave them in the set in case we try finish again...
+    	if (!axiomChanges.moved.isEmpty()) {
+    		axiomChanges.fire(AlignmentEvent.Cause.FINISH, NO_ENTITY_MATCHES, NO_INDIVIDUAL_MATCHES);
+    	}
     }
     
     public boolean processingDone() {
-        return unmatchedSourceAxiomMap.isEmpty();
+        return entitiesWithUnmatchedAxioms == 0 && unmatchedAxiomsByAnonIndividual.isEmpty();
+    }
+    
+    /*
+     * The single pass of the lazy mode.  When it is done by finish() every entity is matched so there is no
+     * point in putting annotation assertions aside.  When the mode is turned off early the annotation 
+     * assertions are put aside as usual because their subjects may still be matched.  The translations do 
+     * not change the diff map and are done in parallel.
+     */
+    private void reconcilePendingMatches(boolean cleanup, AxiomChanges axiomChanges) {
+        if (pendingSourceIds.isEmpty() && pendingIndividuals.isEmpty()) {
+            return;
+        }
+        BitSet reconciledSourceIds = (BitSet) pendingSourceIds.clone();
+        Set<UnmatchedSourceAxiomImpl> movingSourceAxioms = new LinkedHashSet<UnmatchedSourceAxiomImpl>();
+        for (int sourceId = pendingSourceIds.nextSetBit(0); sourceId >= 0; sourceId = pendingSourceIds.nextSetBit(sourceId + 1)) {
+            Set<UnmatchedSourceAxiomImpl> removedUnmatchedSourceAxioms = removeUnmatchedEntityAxioms(sourceId);
+            if (removedUnmatchedSourceAxioms != null) {
+                movingSourceAxioms.addAll(removedUnmatchedSourceAxioms);
+            }
+        }
+        for (OWLAnonymousIndividual individual : pendingIndividuals) {
+            Set<UnmatchedSourceAxiomImpl> removedUnmatchedSourceAxioms = removeUnmatchedIndividualAxioms(individual);
+            if (removedUnmatchedSourceAxioms != null) {
+                movingSourceAxioms.addAll(removedUnmatchedSourceAxioms);
+            }
+        }
+        pendingSourceIds.clear();
+        pendingIndividuals.clear();
+        
+        final List<UnmatchedSourceAxiomImpl> moving = new ArrayList<UnmatchedSourceAxiomImpl>(movingSourceAxioms);
+        final long[]     shapes = new long[moving.size()];
+        final OWLAxiom[] translations = new OWLAxiom[moving.size()];
+        ForkJoinPool.commonPool().invoke(new TranslateTask(moving, shapes, translations, 0, moving.size()));
+        for (int i = 0; i < moving.size(); i++) {
+            UnmatchedSourceAxiomImpl unmatched = moving.get(i);
+            if (unmatched.isFullyMapped()) {
+                reconcile(unmatched, shapes[i], translations[i], cleanup, axiomChanges);
+            }
+            axiomChanges.addMoved(unmatched);
+        }
+        for (int sourceId = reconciledSourceIds.nextSetBit(0); sourceId >= 0; sourceId = reconciledSourceIds.nextSetBit(sourceId + 1)) {
+            restoreRemappedIdenticalAxioms(sourceId, axiomChanges);
+        }
+    }
+    
+    private class TranslateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private List<UnmatchedSourceAxiomImpl> moving;
+        private long[]     shapes;
+        private OWLAxiom[] translations;
+        private int        start;
+        private int        end;
+        
+        TranslateTask(List<UnmatchedSourceAxiomImpl> moving, long[] shapes, OWLAxiom[] translations, int start, int end) {
+            this.moving = moving;
+            this.shapes = shapes;
+            this.translations = translations;
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        protected void compute() {
+            if (end - start <= DiffMapIndexBuilder.PARTITION_SIZE) {
+                for (int i = start; i < end; i++) {
+                    UnmatchedSourceAxiomImpl unmatched = moving.get(i);
+                    if (unmatched.isFullyMapped()) {
+                        shapes[i] = AxiomShapeIndex.shapeOf(unmatched.getAxiom(), entityMap);
+                        translations[i] = translator.translate(unmatched.getAxiom());
+                    }
+                }
+            }
+            else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new TranslateTask(moving, shapes, translations, start, middle),
+                          new TranslateTask(moving, shapes, translations, middle, end));
+            }
+        }
     }
     
     /*
@@ -253,10 +450,14 @@ public abstract class OwlDiffMapCore extends DiffListenerCollection implements O
     }
     
     private boolean goodMatch(OWLEntity source, OWLEntity target) {
-    	Set<OWLEntity> blockedTargets = blockedEntityMatches.get(source);
-    	boolean notBlocked = (blockedTargets == null || !blockedTargets.contains(target));
-    	boolean notMatched = unmatchedSourceEntities.contains(source) && unmatchedTargetEntities.contains(target);
-    	return notBlocked && notMatched;
+    	int sourceId = interner.getId(source);
+    	int targetId = interner.getId(target);
+    	boolean notMatched = unmatchedSourceEntities.containsId(sourceId) && unmatchedTargetEntities.containsId(targetId);
+    	return notMatched && !blockedEntityMatches.contains(blockedMatchKey(sourceId, targetId));
+    }
+    
+    private static long blockedMatchKey(int sourceId, int targetId) {
+    	return ((long) sourceId << 32) | (targetId & 0xffffffffL);
     }
     
     private void clearBadMatchesForAnonIndividuals(Map<OWLAnonymousIndividual, OWLAnonymousIndividual> newMatches) {
@@ -277,37 +478,244 @@ public abstract class OwlDiffMapCore extends DiffListenerCollection implements O
     	return unmatchedSourceAnonIndividuals.contains(source) && unmatchedTargetAnonIndividuals.contains(target);
     }
     
+    /*
+     * Identical axiom utilities
+     */
+    
+    /*
+     * An identical axiom really matches itself only if every entity in it was aligned with itself.  The 
+     * axioms of entities mapped to something else are put back as the matches are made, so what is left 
+     * to check here are the axioms of the entities that were never matched.
+     */
+    private void verifyIdenticalAxioms(AxiomChanges axiomChanges) {
+        if (identicalAxiomsVerified || identicalAxiomCount == 0) {
+            identicalAxiomsVerified = true;
+            return;
+        }
+        identicalAxiomsVerified = true;
+        for (OWLEntity unmatched : unmatchedSourceEntities) {
+            restoreIdenticalAxioms(unmatched, true, axiomChanges);
+        }
+        if (LOGGER.isInfoEnabled() && !restoredIdenticalAxioms.isEmpty()) {
+            LOGGER.info("" + restoredIdenticalAxioms.size() + " axioms common to both ontologies did not match themselves after alignment.");
+        }
+    }
+    
+    private void restoreRemappedIdenticalAxioms(int sourceId, AxiomChanges axiomChanges) {
+        if (identicalAxiomCount > 0 && entityMap.getTargetId(sourceId) != sourceId) {
+            restoreIdenticalAxioms(interner.getEntity(sourceId), false, axiomChanges);
+        }
+    }
+    
+    private void restoreIdenticalAxioms(OWLEntity source, boolean cleanup, AxiomChanges axiomChanges) {
+        OWLOntology sourceOntology = getSourceOntology();
+        Set<OWLAxiom> axioms = new HashSet<OWLAxiom>(sourceOntology.getReferencingAxioms(source));
+        axioms.addAll(sourceOntology.getAnnotationAssertionAxioms(source.getIRI()));
+        for (OWLAxiom axiom : axioms) {
+            if (!restoredIdenticalAxioms.contains(axiom) && DiffMapIndexBuilder.isIdenticalAxiom(axiom, getTargetOntology())) {
+                restoreIdenticalAxiom(axiom, cleanup, axiomChanges);
+            }
+        }
+    }
+    
+    /*
+     * The target copy is put back first so that the source axioms that were waiting for it get the first 
+     * chance to match it, as they would have if it had never been set aside.
+     */
+    private void restoreIdenticalAxiom(OWLAxiom axiom, boolean cleanup, AxiomChanges axiomChanges) {
+        restoredIdenticalAxioms.add(axiom);
+        long targetShape = AxiomShapeIndex.shapeOf(axiom, null);
+        unmatchedTargetAxioms.add(axiom);
+        identicalTargetShapes.remove(targetShape);
+        unmatchedTargetShapes.add(targetShape);
+        List<UnmatchedSourceAxiomImpl> collided = collidedSourceAxioms.remove(axiom);
+        if (collided != null) {
+            for (UnmatchedSourceAxiomImpl unmatched : collided) {
+                reconcile(unmatched, targetShape, axiom, cleanup, axiomChanges);
+            }
+        }
+        
+        unmatchedSourceAxioms.add(axiom);
+        UnmatchedSourceAxiomImpl unmatched = new UnmatchedSourceAxiomImpl(axiom);
+        unmatched.trim(this);
+        for (OWLEntity entity : unmatched.getReferencedUnmatchedEntities()) {
+            int sourceId = interner.getId(entity);
+            if (unmatchedAxiomsByEntity[sourceId] == null) {
+                unmatchedAxiomsByEntity[sourceId] = new HashSet<UnmatchedSourceAxiomImpl>();
+                entitiesWithUnmatchedAxioms++;
+            }
+            unmatchedAxiomsByEntity[sourceId].add(unmatched);
+        }
+        potentialMatchingSourceAxioms.add(unmatched);
+        updateAxiomMatches(unmatched, cleanup, axiomChanges);
+    }
+    
+    /*
+     * True if the axiom is a target axiom that is common to both ontologies and has not been put back.
+     */
+    private boolean isSetAsideIdenticalAxiom(OWLAxiom axiom) {
+        return identicalAxiomCount > 0
+                && !restoredIdenticalAxioms.contains(axiom)
+                && DiffMapIndexBuilder.isIdenticalAxiom(axiom, getSourceOntology())
+                && getTargetOntology().containsAxiom(axiom);
+    }
+    
     /*
      * Axiom Matching Utilitiies
      */
-
-    private void updateAxiomMatches(Set<UnmatchedSourceAxiom> unmatchedAxioms) {
+    
+    @SuppressWarnings("unchecked")
+    private static Set<UnmatchedSourceAxiomImpl>[] newUnmatchedAxiomArray(int size) {
+        return new Set[size];
+    }
+    
+    /*
+     * Removes the axioms referencing a newly matched entity from the index and lets each axiom know 
+     * that one more of its entities is matched.
+     */
+    private Set<UnmatchedSourceAxiomImpl> removeUnmatchedEntityAxioms(int sourceId) {
+        Set<UnmatchedSourceAxiomImpl> unmatchedAxioms = unmatchedAxiomsByEntity[sourceId];
+        if (unmatchedAxioms != null) {
+            unmatchedAxiomsByEntity[sourceId] = null;
+            entitiesWithUnmatchedAxioms--;
+            OWLEntity source = interner.getEntity(sourceId);
+            for (UnmatchedSourceAxiomImpl unmatched : unmatchedAxioms) {
+                unmatched.entityMatched(source);
+            }
+        }
+        return unmatchedAxioms;
+    }
+    
+    private Set<UnmatchedSourceAxiomImpl> removeUnmatchedIndividualAxioms(OWLAnonymousIndividual source) {
+        Set<UnmatchedSourceAxiomImpl> unmatchedAxioms = unmatchedAxiomsByAnonIndividual.remove(source);
         if (unmatchedAxioms != null) {
-            for (UnmatchedSourceAxiom unmatched : unmatchedAxioms) {
-                updateAxiomMatches(unmatched, false);
+            for (UnmatchedSourceAxiomImpl unmatched : unmatchedAxioms) {
+                unmatched.anonymousIndividualMatched(source);
             }
         }
+        return unmatchedAxioms;
     }
 
-    private void updateAxiomMatches(UnmatchedSourceAxiom unmatched, boolean cleanup) {
-    	unmatched.trim(this);
-        if (unmatched.getReferencedUnmatchedEntities().isEmpty() &&
-                unmatched.getReferencedUnmatchedAnonymousIndividuals().isEmpty()) {
-        	potentialMatchingSourceAxioms.remove(unmatched);
-            DiffDuplicator duplicator = new DiffDuplicator(this);
-            OWLAxiom potentialTargetAxiom = duplicator.duplicateObject(unmatched.getAxiom());
-            if (unmatchedTargetAxioms.contains(potentialTargetAxiom)) {
-                unmatchedSourceAxioms.remove(unmatched.getAxiom());
-                unmatchedTargetAxioms.remove(potentialTargetAxiom);
-                fireAddMatchedAxiom(potentialTargetAxiom);
+    private void updateAxiomMatches(Set<UnmatchedSourceAxiomImpl> unmatchedAxioms, AxiomChanges axiomChanges) {
+        if (unmatchedAxioms != null) {
+            for (UnmatchedSourceAxiomImpl unmatched : unmatchedAxioms) {
+                updateAxiomMatches(unmatched, false, axiomChanges);
             }
-            else if (!cleanup && unmatched.getAxiom() instanceof OWLAnnotationAssertionAxiom) {
-            	completedAnnnotationAssertionAxioms.add(unmatched);
+        }
+    }
+
+    private void updateAxiomMatches(UnmatchedSourceAxiomImpl unmatched, boolean cleanup, AxiomChanges axiomChanges) {
+        if (unmatched.isFullyMapped()) {
+        	long shape = AxiomShapeIndex.shapeOf(unmatched.getAxiom(), entityMap);
+        	OWLAxiom potentialTargetAxiom = null;
+        	if (unmatchedTargetShapes.contains(shape) || identicalTargetShapes.contains(shape)) {  // otherwise no need to translate
+        		potentialTargetAxiom = translator.translate(unmatched.getAxiom());
+        	}
+        	reconcile(unmatched, shape, potentialTargetAxiom, cleanup, axiomChanges);
+        }
+        axiomChanges.addMoved(unmatched);
+    }
+    
+    /*
+     * The potential target axiom is the translation of a fully mapped source axiom or null if it is known 
+     * not to match.
+     */
+    private void reconcile(UnmatchedSourceAxiomImpl unmatched, long shape, OWLAxiom potentialTargetAxiom, 
+                           boolean cleanup, AxiomChanges axiomChanges) {
+        potentialMatchingSourceAxioms.remove(unmatched);
+        OWLAxiom sourceAxiom = unmatched.getAxiom();
+        if (potentialTargetAxiom != null && unmatchedTargetAxioms.contains(potentialTargetAxiom)) {
+            unmatchedSourceAxioms.remove(sourceAxiom);
+            unmatchedTargetAxioms.remove(potentialTargetAxiom);
+            unmatchedTargetShapes.remove(shape);
+            axiomChanges.addMatched(potentialTargetAxiom);
+        }
+        else if (potentialTargetAxiom != null && isSetAsideIdenticalAxiom(potentialTargetAxiom)) {
+            List<UnmatchedSourceAxiomImpl> collided = collidedSourceAxioms.get(potentialTargetAxiom);
+            if (collided == null) {
+                collided = new ArrayList<UnmatchedSourceAxiomImpl>(1);
+                collidedSourceAxioms.put(potentialTargetAxiom, collided);
             }
-            else {
-                fireAddUnmatcheableAxiom(potentialTargetAxiom);
+            collided.add(unmatched);
+        }
+        else if (!cleanup && sourceAxiom instanceof OWLAnnotationAssertionAxiom) {
+            completedAnnnotationAssertionAxioms.add(unmatched);
+        }
+        else if (potentialTargetAxiom != null) {
+            axiomChanges.addUnmatcheableTranslation(potentialTargetAxiom);
+        }
+        else {
+            axiomChanges.addUnmatcheableSourceAxiom(sourceAxiom);
+        }
+    }
+    
+    /*
+     * Collects the axiom changes caused by one call so that they are reported in a single event.  The order
+     * in which the changes were made is kept for the AlignmentListeners.
+     */
+    private class AxiomChanges {
+        List<UnmatchedSourceAxiom> moved       = new ArrayList<UnmatchedSourceAxiom>();
+        List<OWLAxiom>             matched     = new ArrayList<OWLAxiom>();
+        UnmatcheableAxioms         unmatcheable = new UnmatcheableAxioms();
+        AxiomOrder                 order       = new AxiomOrder();
+        
+        void addMoved(UnmatchedSourceAxiom unmatched) {
+            moved.add(unmatched);
+            order.add(AxiomOrder.MOVED);
+        }
+        
+        void addMatched(OWLAxiom targetAxiom) {
+            matched.add(targetAxiom);
+            order.add(AxiomOrder.MATCHED);
+        }
+        
+        void addUnmatcheableTranslation(OWLAxiom translation) {
+            unmatcheable.addTranslation(translation);
+            order.add(AxiomOrder.UNMATCHEABLE);
+        }
+        
+        void addUnmatcheableSourceAxiom(OWLAxiom sourceAxiom) {
+            unmatcheable.addSourceAxiom(sourceAxiom);
+            order.add(AxiomOrder.UNMATCHEABLE);
+        }
+        
+        void fire(AlignmentEvent.Cause cause,
+                  Map<OWLEntity, OWLEntity> entityMatches,
+                  Map<OWLAnonymousIndividual, OWLAnonymousIndividual> individualMatches) {
+            fireAlignmentEvent(new AlignmentEvent(cause, entityMatches, individualMatches, moved, matched, unmatcheable), order);
+        }
+    }
+    
+    /*
+     * The unmatcheable axioms of an event.  Most of them were ruled out by their shape without being 
+     * translated, so they are kept as source axioms until a listener asks for them.  Entities and 
+     * individuals are never re-mapped so a late translation is the same as an early one.
+     */
+    private class UnmatcheableAxioms extends AbstractList<OWLAxiom> {
+        private List<OWLAxiom> axioms       = new ArrayList<OWLAxiom>();
+        private BitSet         untranslated = new BitSet();
+        
+        void addTranslation(OWLAxiom translation) {
+            axioms.add(translation);
+        }
+        
+        void addSourceAxiom(OWLAxiom sourceAxiom) {
+            untranslated.set(axioms.size());
+            axioms.add(sourceAxiom);
+        }
+        
+        @Override
+        public synchronized OWLAxiom get(int index) {
+            if (untranslated.get(index)) {
+                axioms.set(index, translator.translate(axioms.get(index)));
+                untranslated.clear(index);
             }
+            return axioms.get(index);
+        }
+        
+        @Override
+        public int size() {
+            return axioms.size();
         }
-        fireUnmatchedAxiomMoved(unmatched);
     }
 }
@@ -1,14 +1,11 @@
 package org.protege.owl.diff.align.impl;
 
-import java.util.Map;
 import java.util.logging.Logger;
 
 import org.protege.owl.diff.align.AlignmentAlgorithm;
-import org.protege.owl.diff.align.AlignmentListener;
-import org.protege.owl.diff.align.util.AlignmentListenerAdapter;
-import org.semanticweb.owlapi.model.OWLAxiom;
+import org.protege.owl.diff.align.AlignmentEvent;
+import org.protege.owl.diff.align.AlignmentEventListener;
 import org.semanticweb.owlapi.model.OWLDataFactory;
-import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLOntology;
 
 public class OwlDiffMapImpl extends OwlDiffMapCore {
@@ -28,18 +25,11 @@ public class OwlDiffMapImpl extends OwlDiffMapCore {
     
     
     
-    private AlignmentListener trackingListener = new AlignmentListenerAdapter() {
+    private AlignmentEventListener trackingListener = new AlignmentEventListener() {
 
-        public void addMatch(OWLEntity source, OWLEntity target) {
-            matchedEntitiesSinceAnnounce++;
-        }
-
-        public void addMatchingEntities(Map<OWLEntity, OWLEntity> newMatches) {
-            matchedEntitiesSinceAnnounce += newMatches.size();
-        }
-
-        public void addMatchedAxiom(OWLAxiom axiom) {
-            matchedAxiomsSinceAnnounce++;
+        public void alignmentChanged(AlignmentEvent event) {
+            matchedEntitiesSinceAnnounce += event.getEntityMatches().size();
+            matchedAxiomsSinceAnnounce += event.getMatchedAxioms().size();
         }
         
     };
@@ -51,7 +41,7 @@ public class OwlDiffMapImpl extends OwlDiffMapCore {
         this.factory = factory;
         this.sourceOntology = sourceOntology;
         this.targetOntology = targetOntology;
-        addDiffListener(trackingListener);
+        addAlignmentEventListener(trackingListener);
     }
     
     /*
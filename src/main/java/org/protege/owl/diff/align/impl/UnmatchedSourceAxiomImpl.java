@@ -1,9 +1,9 @@
 package org.protege.owl.diff.align.impl;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 
 import org.protege.owl.diff.align.OwlDiffMap;
@@ -13,52 +13,93 @@ import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.util.DeprecatedOWLEntityCollector;
 
+/**
+ * The entities and anonymous individuals referenced by the axiom are kept in small arrays.  The ones
+ * that are still unmatched sit at the front of each array followed by the ones that have been matched.
+ * The OwlDiffMapCore tells the axiom when one of its entities is matched so the axiom knows that it is
+ * fully mapped without looking at the diff map.
+ */
 public class UnmatchedSourceAxiomImpl implements UnmatchedSourceAxiom {
-    private Set<OWLEntity> referencedUnmatchedEntities;
-    private Collection<OWLAnonymousIndividual> referencedUnmatchedAnonymousIndividuals;
+    private static final OWLEntity[]              NO_ENTITIES = new OWLEntity[0];
+    private static final OWLAnonymousIndividual[] NO_INDIVIDUALS = new OWLAnonymousIndividual[0];
+
+    private OWLEntity[] referencedEntities;
+    private int         unmatchedEntityCount;
+    private OWLAnonymousIndividual[] referencedAnonymousIndividuals;
+    private int         unmatchedAnonymousIndividualCount;
     private OWLAxiom axiom;
-    
+
     public UnmatchedSourceAxiomImpl(OWLAxiom axiom) {
         this.axiom = axiom;
-        referencedUnmatchedEntities = new HashSet<OWLEntity>();
-        referencedUnmatchedAnonymousIndividuals = new HashSet<OWLAnonymousIndividual>();
-        DeprecatedOWLEntityCollector collector = new DeprecatedOWLEntityCollector(
-                referencedUnmatchedEntities,
-                referencedUnmatchedAnonymousIndividuals);
+        Set<OWLEntity> entities = new HashSet<OWLEntity>();
+        Set<OWLAnonymousIndividual> anonymousIndividuals = new HashSet<OWLAnonymousIndividual>();
+        DeprecatedOWLEntityCollector collector = new DeprecatedOWLEntityCollector(entities, anonymousIndividuals);
         axiom.accept(collector);
+        referencedEntities = entities.isEmpty() ? NO_ENTITIES : entities.toArray(new OWLEntity[entities.size()]);
+        unmatchedEntityCount = referencedEntities.length;
+        referencedAnonymousIndividuals = anonymousIndividuals.isEmpty() ? NO_INDIVIDUALS
+                : anonymousIndividuals.toArray(new OWLAnonymousIndividual[anonymousIndividuals.size()]);
+        unmatchedAnonymousIndividualCount = referencedAnonymousIndividuals.length;
     }
 
     public Collection<OWLEntity> getReferencedUnmatchedEntities() {
-        return Collections.unmodifiableCollection(referencedUnmatchedEntities);
+        return Collections.unmodifiableList(Arrays.asList(referencedEntities).subList(0, unmatchedEntityCount));
     }
 
     public Collection<OWLAnonymousIndividual> getReferencedUnmatchedAnonymousIndividuals() {
-        return Collections.unmodifiableCollection(referencedUnmatchedAnonymousIndividuals);
+        return Collections.unmodifiableList(Arrays.asList(referencedAnonymousIndividuals).subList(0, unmatchedAnonymousIndividualCount));
     }
-    
+
     public OWLAxiom getAxiom() {
         return axiom;
     }
-    
+
+    public boolean isFullyMapped() {
+        return unmatchedEntityCount == 0 && unmatchedAnonymousIndividualCount == 0;
+    }
+
+    /*
+     * Called by the diff map when a referenced entity or individual is matched.
+     */
+
+    void entityMatched(OWLEntity entity) {
+        unmatchedEntityCount = moveToMatched(referencedEntities, unmatchedEntityCount, entity);
+    }
+
+    void anonymousIndividualMatched(OWLAnonymousIndividual individual) {
+        unmatchedAnonymousIndividualCount = moveToMatched(referencedAnonymousIndividuals, unmatchedAnonymousIndividualCount, individual);
+    }
+
+    private static <X> int moveToMatched(X[] referenced, int unmatchedCount, X matched) {
+        for (int i = 0; i < unmatchedCount; i++) {
+            if (referenced[i].equals(matched)) {
+                referenced[i] = referenced[unmatchedCount - 1];
+                referenced[unmatchedCount - 1] = matched;
+                return unmatchedCount - 1;
+            }
+        }
+        return unmatchedCount;
+    }
+
+    /**
+     * Brings the axiom up to date with the diff map.  The diff map keeps the axioms that it
+     * knows about up to date itself so this is only needed for axioms created elsewhere.
+     */
     public void trim(OwlDiffMap diffMap) {
-        Iterator<OWLEntity> referencedIt = referencedUnmatchedEntities.iterator();
-        while (referencedIt.hasNext()) {
-            OWLEntity referencedEntity = referencedIt.next();
-            if (!diffMap.getUnmatchedSourceEntities().contains(referencedEntity)) {
-                referencedIt.remove();
+        for (int i = unmatchedEntityCount - 1; i >= 0; i--) {
+            if (!diffMap.getUnmatchedSourceEntities().contains(referencedEntities[i])) {
+                entityMatched(referencedEntities[i]);
             }
         }
-        Iterator<OWLAnonymousIndividual> referencedIndIt = referencedUnmatchedAnonymousIndividuals.iterator();
-        while (referencedIndIt.hasNext()) {
-            OWLAnonymousIndividual referencedIndividual = referencedIndIt.next();
-            if (!diffMap.getUnmatchedSourceAnonymousIndividuals().contains(referencedIndividual)) {
-                referencedIndIt.remove();
+        for (int i = unmatchedAnonymousIndividualCount - 1; i >= 0; i--) {
+            if (!diffMap.getUnmatchedSourceAnonymousIndividuals().contains(referencedAnonymousIndividuals[i])) {
+                anonymousIndividualMatched(referencedAnonymousIndividuals[i]);
             }
         }
     }
-    
+
     public String toString() {
-        return "{unref = " + referencedUnmatchedEntities.size() + " - " + axiom + "}";
+        return "{unref = " + unmatchedEntityCount + " - " + axiom + "}";
     }
-    
+
 }
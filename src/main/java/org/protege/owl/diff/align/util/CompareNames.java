@@ -1,5 +1,7 @@
 package org.protege.owl.diff.align.util;
 
+import java.util.Arrays;
+
 /*
  * Stolen shamelessly from Protege 3 Prompt.  I have no idea what it is doing but it seems to work.
  */
@@ -17,74 +19,107 @@ public class CompareNames {
 		//completely random threshold to see if two strings are similar
 		if (str1.equals(str2))
 			return true;
-	
-		String s1 = convertString(str1);
-		String s2 = convertString(str2);
-	
+		return closeEnough(normalize(str1), normalize(str2));
+	}
+
+	/**
+	 * Gives the same answer as closeEnough on the original strings.  Names that are compared many times
+	 * should be normalized once and compared with this method, which does not allocate.
+	 */
+	public static boolean closeEnough(NormalizedName name1, NormalizedName name2) {
+		if (name1.original.equals(name2.original))
+			return true;
+
 		boolean result;
-	
-		result = compare(s1, s2);
-	
+
+		result = compare(name1.chars, name2.chars);
+
 		if (!result)
-			result = compare(s2, s1);
+			result = compare(name2.chars, name1.chars);
 		return result;
 	}
 
-	static private String convertString(String str) {
-		String result = str.toLowerCase();
-		for (int i = 0; i < DELIMITERS.length; i++)
-			result = removeCharacter(result, DELIMITERS[i]);
-		return result;
+	/**
+	 * Lower-cases the name and drops the delimiters.
+	 */
+	public static NormalizedName normalize(String str) {
+		String lower = str.toLowerCase();
+		char[] chars = new char[lower.length()];
+		int length = 0;
+		for (int i = 0; i < lower.length(); i++) {
+			char c = lower.charAt(i);
+			if (!isDelimiter(c))
+				chars[length++] = c;
+		}
+		return new NormalizedName(str, length == chars.length ? chars : Arrays.copyOf(chars, length));
 	}
 
-	private static String removeCharacter(String s, char c) {
-		String result = new String();
-		int currentIndex = 0;
-		int searchIndex;
-
-		do {
-			searchIndex = s.indexOf(c, currentIndex);
-			if (searchIndex != -1) {
-				result = result.concat(s.substring(currentIndex, searchIndex));
-				currentIndex = searchIndex + 1;
-			} else
-				result = result.concat(s.substring(currentIndex));
-		} while (searchIndex != -1);
-
-		return result;
+	private static boolean isDelimiter(char c) {
+		for (int i = 0; i < DELIMITERS.length; i++)
+			if (DELIMITERS[i] == c)
+				return true;
+		return false;
 	}
 
-	private static boolean compare(String s1, String s2) {
-		int endIndex = (int) Math.round(s1.length() * THRESHOLD);
+	/*
+	 * The part of s1 checked against s2 is the prefix of s1 of the threshold length.
+	 */
+	private static boolean compare(char[] s1, char[] s2) {
+		int endIndex = (int) Math.round(s1.length * THRESHOLD);
 
-		if(endIndex < 0 && endIndex < s1.length()) {
-			return false;
-		}
-		
-		String part1 = s1.substring(0, endIndex);
-		if (part1.length() <= TOO_SMALL)
+		if (endIndex <= TOO_SMALL)
 			return false;
-		else if ((s2.indexOf(part1) != -1 && ((float) s1.length()) / ((float) s2.length()) > THRESHOLD))
+		else if (contains(s2, s1, endIndex) && ((float) s1.length) / ((float) s2.length) > THRESHOLD)
 			return true;
-		else if (Math.abs(s1.length() - s2.length()) > TOO_SMALL)
+		else if (Math.abs(s1.length - s2.length) > TOO_SMALL)
 			return false;
 		else {
 			int f;
-			for (f = 0; f < s1.length() && f < s2.length(); f++) {
-				if (s1.charAt(f) != s2.charAt(f))
+			for (f = 0; f < s1.length && f < s2.length; f++) {
+				if (s1[f] != s2[f])
 					break;
 			}
-			if (f == s1.length() || f == s2.length())
+			if (f == s1.length || f == s2.length)
 				return false; // **should never get here actually;
 			int b;
-			for (b = 1; b < s1.length() && b < s2.length(); b++) {
-				if (s1.charAt(s1.length() - b) != s2.charAt(s2.length() - b))
+			for (b = 1; b < s1.length && b < s2.length; b++) {
+				if (s1[s1.length - b] != s2[s2.length - b])
 					break;
 			}
-			if (Math.abs((s1.length() - b) - f) < TYPO_LENGTH)
+			if (Math.abs((s1.length - b) - f) < TYPO_LENGTH)
 				return true;
 		}
 		return false;
 	}
-}
 
+	/*
+	 * Whether the first length characters of part occur in s.
+	 */
+	private static boolean contains(char[] s, char[] part, int length) {
+		for (int start = 0; start + length <= s.length; start++) {
+			int i = 0;
+			while (i < length && s[start + i] == part[i])
+				i++;
+			if (i == length)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * A name in the form that is compared: lower case with the delimiters removed.
+	 */
+	public static final class NormalizedName {
+		final String original;
+		final char[] chars;
+
+		private NormalizedName(String original, char[] chars) {
+			this.original = original;
+			this.chars = chars;
+		}
+
+		public String getOriginal() {
+			return original;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package org.protege.owl.diff.align.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.protege.owl.diff.align.AlignmentExplanation;
+import org.protege.owl.diff.align.OwlDiffMap;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+/**
+ * Imports the entity matches listed in a mapping file into a diff map.
+ * <p>
+ * Each line of the file holds a source IRI and a target IRI.  Commas are legal in IRIs, so when a
+ * line contains a tab the columns are separated by tabs only; otherwise they are separated by commas
+ * or spaces.  An IRI written in angle brackets ends at the closing bracket whatever the separator.
+ * Empty lines and lines starting with '#' are ignored and lines that do not start with two absolute
+ * IRIs, such as column headers, are counted as malformed.
+ * <p>
+ * The file is read line by line and the matches are handed to the diff map in batches, so only one
+ * batch is held in memory.  A row matches every entity with the source IRI to the target entity of the
+ * same type, as long as both entities are still unmatched.  The diff map rejects blocked matches.
+ */
+public class MappingFileLoader {
+    public static final int BATCH_SIZE = 10000;
+
+    private OwlDiffMap           diffMap;
+    private AlignmentExplanation explanation;
+
+    private Map<OWLEntity, OWLEntity> batch = new LinkedHashMap<OWLEntity, OWLEntity>();
+    private Set<OWLEntity>            batchTargets = new HashSet<OWLEntity>();
+
+    private int rows = 0;
+    private int malformedRows = 0;
+    private int matches = 0;
+    private int rejectedMatches = 0;
+
+    public MappingFileLoader(OwlDiffMap diffMap, AlignmentExplanation explanation) {
+        this.diffMap = diffMap;
+        this.explanation = explanation;
+    }
+
+    public void load(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+        try {
+            load(reader);
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    public void load(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            rows++;
+            List<String> columns = splitColumns(line);
+            IRI sourceIri = columns.size() >= 2 ? parseIRI(columns.get(0)) : null;
+            IRI targetIri = columns.size() >= 2 ? parseIRI(columns.get(1)) : null;
+            if (sourceIri == null || targetIri == null) {
+                malformedRows++;
+                continue;
+            }
+            addRow(sourceIri, targetIri);
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+        flush();
+    }
+
+    /*
+     * Only the first two columns are needed.
+     */
+    private static List<String> splitColumns(String line) {
+        String separators = line.indexOf('\t') >= 0 ? "\t" : "\t, ";
+        List<String> columns = new ArrayList<String>();
+        int start = 0;
+        while (start < line.length() && columns.size() < 2) {
+            if (separators.indexOf(line.charAt(start)) >= 0) {
+                start++;
+                continue;
+            }
+            int end = start;
+            if (line.charAt(start) == '<' && line.indexOf('>', start) >= 0) {
+                end = line.indexOf('>', start) + 1;
+            }
+            else {
+                while (end < line.length() && separators.indexOf(line.charAt(end)) < 0) {
+                    end++;
+                }
+            }
+            columns.add(line.substring(start, end).trim());
+            start = end;
+        }
+        return columns;
+    }
+
+    private static IRI parseIRI(String column) {
+        if (column.startsWith("<") && column.endsWith(">")) {
+            column = column.substring(1, column.length() - 1);
+        }
+        IRI iri = IRI.create(column);
+        return iri.isAbsolute() ? iri : null;
+    }
+
+    private void addRow(IRI sourceIri, IRI targetIri) {
+        OWLOntology sourceOntology = diffMap.getSourceOntology();
+        Set<OWLEntity> unmatchedSourceEntities = diffMap.getUnmatchedSourceEntities();
+        Set<OWLEntity> unmatchedTargetEntities = diffMap.getUnmatchedTargetEntities();
+        boolean found = false;
+        for (OWLEntity source : sourceOntology.getEntitiesInSignature(sourceIri)) {
+            OWLEntity target = diffMap.getOWLDataFactory().getOWLEntity(source.getEntityType(), targetIri);
+            if (unmatchedSourceEntities.contains(source) && !batch.containsKey(source)
+                    && unmatchedTargetEntities.contains(target) && !batchTargets.contains(target)) {
+                batch.put(source, target);
+                batchTargets.add(target);
+                found = true;
+            }
+        }
+        if (!found) {
+            rejectedMatches++;
+        }
+    }
+
+    /*
+     * The diff map drops the bad matches from the batch and keeps the batch in its alignment event,
+     * so each flush starts a new batch.
+     */
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int batchSize = batch.size();
+        diffMap.addMatchingEntities(batch, explanation);
+        matches += batch.size();
+        rejectedMatches += batchSize - batch.size();
+        batch = new LinkedHashMap<OWLEntity, OWLEntity>();
+        batchTargets.clear();
+    }
+
+    /**
+     * @return the number of rows read, not counting empty lines and comments.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    public int getMalformedRows() {
+        return malformedRows;
+    }
+
+    public int getMatches() {
+        return matches;
+    }
+
+    /**
+     * @return the number of rows and entity pairs that could not be matched because the entities are
+     *         missing, have different types, are already matched or the match is blocked.
+     */
+    public int getRejectedMatches() {
+        return rejectedMatches;
+    }
+}
@@ -0,0 +1,122 @@
+package org.protege.owl.diff.align.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.protege.owl.diff.align.util.CompareNames.NormalizedName;
+
+/**
+ * Finds the indexed elements whose names could be close enough to a given name, so that only those
+ * need the full CompareNames test.  Every element that CompareNames.closeEnough would accept is among
+ * the candidates; the candidates can include elements that it rejects.
+ * <p>
+ * The comparison accepts a pair of names in one of three ways.  The names can be equal.  One name can
+ * contain a prefix of the other that is at least four characters long, so the names share the first
+ * four characters of one of them.  Otherwise the names must share a common prefix and suffix that
+ * cover all but two characters of a name of at least four characters.  Then they share their first two
+ * characters, their last two characters, or their first and last characters.  Each of these is a key
+ * into the index.
+ */
+public class NameCandidateIndex<X> {
+	public static final int GRAM_LENGTH = 4;
+
+	private static final long PREFIX_PAIR = 1L << 32;
+	private static final long SUFFIX_PAIR = 2L << 32;
+	private static final long END_PAIR    = 3L << 32;
+
+	private Map<X, NormalizedName>  names        = new HashMap<X, NormalizedName>();
+	private Map<String, List<X>>    originals    = new HashMap<String, List<X>>();
+	private Map<Long, List<X>>      grams        = new HashMap<Long, List<X>>();
+	private Map<Long, List<X>>      prefixGrams  = new HashMap<Long, List<X>>();
+	private Map<Long, List<X>>      pairs        = new HashMap<Long, List<X>>();
+
+	public void add(X x, NormalizedName name) {
+		if (names.containsKey(x)) {
+			return;
+		}
+		names.put(x, name);
+		addPosting(originals, name.original, x);
+		char[] chars = name.chars;
+		if (chars.length >= GRAM_LENGTH) {
+			addPosting(prefixGrams, gram(chars, 0), x);
+			Set<Long> seen = new HashSet<Long>();
+			for (int i = 0; i + GRAM_LENGTH <= chars.length; i++) {
+				Long gram = gram(chars, i);
+				if (seen.add(gram)) {
+					addPosting(grams, gram, x);
+				}
+			}
+		}
+		if (chars.length >= 2) {
+			addPosting(pairs, PREFIX_PAIR | pair(chars[0], chars[1]), x);
+			addPosting(pairs, SUFFIX_PAIR | pair(chars[chars.length - 2], chars[chars.length - 1]), x);
+			addPosting(pairs, END_PAIR | pair(chars[0], chars[chars.length - 1]), x);
+		}
+	}
+
+	public boolean contains(X x) {
+		return names.containsKey(x);
+	}
+
+	public NormalizedName getName(X x) {
+		return names.get(x);
+	}
+
+	public Map<X, NormalizedName> getNames() {
+		return Collections.unmodifiableMap(names);
+	}
+
+	/**
+	 * @return the indexed elements that might be close enough to the name, in no particular order.
+	 */
+	public Set<X> getCandidates(NormalizedName name) {
+		Set<X> candidates = new HashSet<X>();
+		addAll(candidates, originals.get(name.original));
+		char[] chars = name.chars;
+		if (chars.length >= GRAM_LENGTH) {
+			addAll(candidates, grams.get(gram(chars, 0)));
+			for (int i = 0; i + GRAM_LENGTH <= chars.length; i++) {
+				addAll(candidates, prefixGrams.get(gram(chars, i)));
+			}
+		}
+		if (chars.length >= 2) {
+			addAll(candidates, pairs.get(PREFIX_PAIR | pair(chars[0], chars[1])));
+			addAll(candidates, pairs.get(SUFFIX_PAIR | pair(chars[chars.length - 2], chars[chars.length - 1])));
+			addAll(candidates, pairs.get(END_PAIR | pair(chars[0], chars[chars.length - 1])));
+		}
+		return candidates;
+	}
+
+	private static long gram(char[] chars, int start) {
+		long gram = 0;
+		for (int i = start; i < start + GRAM_LENGTH; i++) {
+			gram = (gram << 16) | chars[i];
+		}
+		return gram;
+	}
+
+	private static long pair(char c1, char c2) {
+		return ((long) c1 << 16) | c2;
+	}
+
+	private static <K, X> void addPosting(Map<K, List<X>> postings, K key, X x) {
+		List<X> posting = postings.get(key);
+		if (posting == null) {
+			posting = new ArrayList<X>(2);
+			postings.put(key, posting);
+		}
+		posting.add(x);
+	}
+
+	private static <X> void addAll(Set<X> candidates, Collection<X> posting) {
+		if (posting != null) {
+			candidates.addAll(posting);
+		}
+	}
+}
@@ -3,6 +3,7 @@ package org.protege.owl.diff.align.util;
 import java.util.Comparator;
 
 import org.protege.owl.diff.align.Prioritized;
+import org.protege.owl.diff.align.SeedAlignmentAlgorithm;
 
 
 public class PrioritizedComparator implements Comparator<Prioritized> {
@@ -11,9 +12,15 @@ public class PrioritizedComparator implements Comparator<Prioritized> {
     public static final int DEFAULT_PRIORITY = 5;
 
     /*
-     * ordering is the inverse of the obvious so that high priority algorithms come first.
+     * ordering is the inverse of the obvious so that high priority algorithms come first.  Seed 
+     * algorithms come before everything else.
      */
     public int compare(Prioritized da1, Prioritized da2) {
+        boolean seed1 = da1 instanceof SeedAlignmentAlgorithm;
+        boolean seed2 = da2 instanceof SeedAlignmentAlgorithm;
+        if (seed1 != seed2) {
+            return seed1 ? -1 : 1;
+        }
         int priority1 = getPriority(da1);
         int priority2 = getPriority(da2);
         if (priority1 > priority2) {
@@ -0,0 +1,12 @@
+package org.protege.owl.diff.present;
+
+/**
+ * Something that accepts the changes that a presentation algorithm makes to the axiom matches.
+ */
+public interface ChangeRecorder {
+
+    void addMatch(MatchedAxiom match);
+
+    void removeMatch(MatchedAxiom match);
+
+}
@@ -1,5 +1,6 @@
 package org.protege.owl.diff.present;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -13,7 +14,7 @@ import org.protege.owl.diff.util.GetAxiomSourceVisitor;
 import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLEntity;
 
-public class Changes {
+public class Changes implements ChangeRecorder {
     private Collection<OWLAxiom> unmatchedSourceAxiomsWithNoSubject = new HashSet<OWLAxiom>();
     private Collection<OWLAxiom> unmatchedTargetAxiomsWithNoSubject = new HashSet<OWLAxiom>();
     private SortedSet<EntityBasedDiff> entityBasedDiffs  = new TreeSet<EntityBasedDiff>();
@@ -55,6 +56,30 @@ public class Changes {
         return unmatchedTargetAxiomsWithNoSubject;
     }
     
+    /**
+     * @return the entity based diffs that hold the match or that would hold it once it is added.
+     */
+    public Collection<EntityBasedDiff> getEntityBasedDiffs(MatchedAxiom match) {
+    	Collection<EntityBasedDiff> diffs = new ArrayList<EntityBasedDiff>();
+    	if (match.getSourceAxiom() != null) {
+    		for (OWLEntity e : sourceEntitiesDetector.getSources(match.getSourceAxiom())) {
+    			EntityBasedDiff diff = sourceDiffMap.get(e);
+    			if (diff != null) {
+    				diffs.add(diff);
+    			}
+    		}
+    	}
+    	if (match.getTargetAxiom() != null) {
+    		for (OWLEntity e : targetEntitiesDetector.getSources(match.getTargetAxiom())) {
+    			EntityBasedDiff diff = targetDiffMap.get(e);
+    			if (diff != null) {
+    				diffs.add(diff);
+    			}
+    		}
+    	}
+    	return diffs;
+    }
+    
     public boolean containsMatch(MatchedAxiom match) {
     	if (match.getSourceAxiom() != null) {
     		Collection<OWLEntity> subjects = sourceEntitiesDetector.getSources(match.getSourceAxiom());
@@ -0,0 +1,17 @@
+package org.protege.owl.diff.present;
+
+/**
+ * A presentation algorithm that looks at one entity based diff at a time.  The engine may examine
+ * different diffs in parallel so the algorithm should only read the diff it is given and state that
+ * does not change during phase 2, and it should only change the matches through the recorder.  It must
+ * not read the ontologies, since OWLAPI ontologies are not safe to read from several threads at once.
+ * <p>
+ * The recorded changes are applied in the order of the diffs.  If a diff was changed by the recorded
+ * changes of an earlier diff, it is examined again against the changes as they now stand, so the result
+ * is the same as that of a single threaded loop.
+ */
+public interface EntityBasedPresentationAlgorithm extends PresentationAlgorithm {
+
+    void apply(EntityBasedDiff diff, ChangeRecorder recorder);
+
+}
@@ -7,8 +7,10 @@ import java.util.Set;
 
 import org.protege.owl.diff.DifferencePosition;
 import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.present.ChangeRecorder;
 import org.protege.owl.diff.present.Changes;
 import org.protege.owl.diff.present.EntityBasedDiff;
+import org.protege.owl.diff.present.EntityBasedPresentationAlgorithm;
 import org.protege.owl.diff.present.MatchDescription;
 import org.protege.owl.diff.present.MatchedAxiom;
 import org.protege.owl.diff.present.util.PresentationAlgorithmComparator;
@@ -17,7 +19,7 @@ import org.semanticweb.owlapi.model.OWLAnnotationProperty;
 import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLEntity;
 
-public class IdentifyChangedAnnotation extends AbstractAnalyzerAlgorithm {
+public class IdentifyChangedAnnotation extends AbstractAnalyzerAlgorithm implements EntityBasedPresentationAlgorithm {
 	public static final int IDENTIFY_CHANGED_ANNOTATION_PRIORITY = 	PresentationAlgorithmComparator.DEFAULT_ALGORITHM_PRIORITY;
 	public static final MatchDescription CHANGED_ANNOTATION = new MatchDescription("Annotation Changed");
 	
@@ -33,15 +35,15 @@ public class IdentifyChangedAnnotation extends AbstractAnalyzerAlgorithm {
 
 	public void apply() {
 		for (EntityBasedDiff diff : changes.getEntityBasedDiffs()) {
-			match(diff);
+			apply(diff, changes);
 		}
 	}
 	
-	private void match(EntityBasedDiff diff) {
-		matchAnnotations(diff);
+	public void apply(EntityBasedDiff diff, ChangeRecorder recorder) {
+		matchAnnotations(diff, recorder);
 	}
 	
-	private void matchAnnotations(EntityBasedDiff diff) {
+	private void matchAnnotations(EntityBasedDiff diff, ChangeRecorder recorder) {
 		Map<OWLAnnotationProperty, Set<MatchedAxiom>> sourceAxioms = new HashMap<OWLAnnotationProperty, Set<MatchedAxiom>>();
 		Map<OWLAnnotationProperty, Set<MatchedAxiom>> targetAxioms = new HashMap<OWLAnnotationProperty, Set<MatchedAxiom>>();
 		
@@ -60,11 +62,11 @@ public class IdentifyChangedAnnotation extends AbstractAnalyzerAlgorithm {
 					&& targetMatches != null && targetMatches.size() == 1) {
 				MatchedAxiom deleted = sourceMatches.iterator().next();
 				MatchedAxiom added   = targetMatches.iterator().next();
-				changes.removeMatch(deleted);
-				changes.removeMatch(added);
+				recorder.removeMatch(deleted);
+				recorder.removeMatch(added);
 				
 				MatchedAxiom changed = new MatchedAxiom(deleted.getSourceAxiom(), added.getTargetAxiom(), CHANGED_ANNOTATION);
-				changes.addMatch(changed);
+				recorder.addMatch(changed);
 			}
 		}
 	}
@@ -1,13 +1,15 @@
 package org.protege.owl.diff.present.algorithms;
 
 import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.present.ChangeRecorder;
 import org.protege.owl.diff.present.Changes;
 import org.protege.owl.diff.present.EntityBasedDiff;
+import org.protege.owl.diff.present.EntityBasedPresentationAlgorithm;
 import org.protege.owl.diff.present.MatchDescription;
 import org.protege.owl.diff.present.MatchedAxiom;
 import org.semanticweb.owlapi.model.OWLEquivalentClassesAxiom;
 
-public class IdentifyChangedDefinition extends AbstractAnalyzerAlgorithm {
+public class IdentifyChangedDefinition extends AbstractAnalyzerAlgorithm implements EntityBasedPresentationAlgorithm {
 	public static final MatchDescription CHANGED_DEFINITION = new MatchDescription("Definition changed");
 	
 	private Changes changes;
@@ -18,15 +20,15 @@ public class IdentifyChangedDefinition extends AbstractAnalyzerAlgorithm {
 
 	public void apply() {
 		for (EntityBasedDiff diff : changes.getEntityBasedDiffs()) {
-			match(diff);
+			apply(diff, changes);
 		}
 	}
 	
-	private void match(EntityBasedDiff diff) {
-		matchAnonymousSuperClasses(diff);
+	public void apply(EntityBasedDiff diff, ChangeRecorder recorder) {
+		matchAnonymousSuperClasses(diff, recorder);
 	}
 	
-	private void matchAnonymousSuperClasses(EntityBasedDiff diff) {
+	private void matchAnonymousSuperClasses(EntityBasedDiff diff, ChangeRecorder recorder) {
 		MatchedAxiom sourceAxiom = null;
 		MatchedAxiom targetAxiom = null;
 		
@@ -48,9 +50,9 @@ public class IdentifyChangedDefinition extends AbstractAnalyzerAlgorithm {
 		}
 		if (sourceAxiom != null && targetAxiom != null) {
 			MatchedAxiom newMatch = new MatchedAxiom(sourceAxiom.getSourceAxiom(), targetAxiom.getTargetAxiom(), CHANGED_DEFINITION);
-			changes.addMatch(newMatch);
-			changes.removeMatch(sourceAxiom);
-			changes.removeMatch(targetAxiom);
+			recorder.addMatch(newMatch);
+			recorder.removeMatch(sourceAxiom);
+			recorder.removeMatch(targetAxiom);
 		}
 	}
 
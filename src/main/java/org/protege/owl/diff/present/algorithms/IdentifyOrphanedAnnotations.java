@@ -12,6 +12,10 @@ import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
 import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLOntology;
 
+/*
+ * Not an EntityBasedPresentationAlgorithm because it reads the ontologies, which may not be read from
+ * several threads at once.
+ */
 public class IdentifyOrphanedAnnotations extends AbstractAnalyzerAlgorithm {
 	public static final MatchDescription ORPHANED_ANNOTATION = new MatchDescription("Annotation is orphaned", MatchDescription.SECONDARY_MATCH_PRIORITY);
 	private Changes changes;
@@ -1,14 +1,16 @@
 package org.protege.owl.diff.present.algorithms;
 
 import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.present.ChangeRecorder;
 import org.protege.owl.diff.present.Changes;
 import org.protege.owl.diff.present.EntityBasedDiff;
+import org.protege.owl.diff.present.EntityBasedPresentationAlgorithm;
 import org.protege.owl.diff.present.MatchDescription;
 import org.protege.owl.diff.present.MatchedAxiom;
 import org.semanticweb.owlapi.model.OWLDataFactory;
 import org.semanticweb.owlapi.model.OWLEntity;
 
-public class IdentifyRenameOperation extends AbstractAnalyzerAlgorithm {
+public class IdentifyRenameOperation extends AbstractAnalyzerAlgorithm implements EntityBasedPresentationAlgorithm {
 	// put this just after the primary match descriptions but before any of the secondary ones.
 	public static final MatchDescription RENAMED_CHANGE_DESCRIPTION = new MatchDescription("Renamed", MatchDescription.PRIMARY_MATCH_PRIORITY + 1);
 	private Changes changes;
@@ -21,15 +23,15 @@ public class IdentifyRenameOperation extends AbstractAnalyzerAlgorithm {
 
 	public void apply() {
 		for (EntityBasedDiff diff : changes.getEntityBasedDiffs()) {
-			apply(diff);
+			apply(diff, changes);
 		}
 	}
 	
-	private void apply(EntityBasedDiff diff) {
+	public void apply(EntityBasedDiff diff, ChangeRecorder recorder) {
 		OWLEntity sourceEntity = diff.getSourceEntity();
 		OWLEntity targetEntity = diff.getTargetEntity();
 		if (sourceEntity != null && targetEntity != null && !sourceEntity.equals(targetEntity)) {
-			changes.addMatch(new MatchedAxiom(factory.getOWLDeclarationAxiom(sourceEntity), 
+			recorder.addMatch(new MatchedAxiom(factory.getOWLDeclarationAxiom(sourceEntity), 
 											  factory.getOWLDeclarationAxiom(targetEntity),
 											  RENAMED_CHANGE_DESCRIPTION));
 		}
@@ -0,0 +1,40 @@
+package org.protege.owl.diff.present.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.protege.owl.diff.present.ChangeRecorder;
+import org.protege.owl.diff.present.MatchedAxiom;
+
+/**
+ * Holds on to the changes recorded by a presentation algorithm so that they can be applied later.
+ */
+public class BufferedChangeRecorder implements ChangeRecorder {
+    private List<MatchedAxiom> matches = new ArrayList<MatchedAxiom>();
+    private List<Boolean>      additions = new ArrayList<Boolean>();
+
+    public void addMatch(MatchedAxiom match) {
+        matches.add(match);
+        additions.add(Boolean.TRUE);
+    }
+
+    public void removeMatch(MatchedAxiom match) {
+        matches.add(match);
+        additions.add(Boolean.FALSE);
+    }
+
+    public boolean isEmpty() {
+        return matches.isEmpty();
+    }
+
+    public void replay(ChangeRecorder recorder) {
+        for (int i = 0; i < matches.size(); i++) {
+            if (additions.get(i)) {
+                recorder.addMatch(matches.get(i));
+            }
+            else {
+                recorder.removeMatch(matches.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.protege.owl.diff.present.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.protege.owl.diff.present.ChangeRecorder;
+import org.protege.owl.diff.present.Changes;
+import org.protege.owl.diff.present.EntityBasedDiff;
+import org.protege.owl.diff.present.EntityBasedPresentationAlgorithm;
+import org.protege.owl.diff.present.MatchedAxiom;
+
+/**
+ * Applies an entity based presentation algorithm to all the entity based diffs.  The diffs are split into
+ * partitions that are examined in parallel, each diff recording its changes into its own buffer.  The
+ * buffers are then applied in the order of the diffs.  A diff whose matches were changed by the buffer of
+ * an earlier diff is examined again at that point.  Applying the buffers can create new diffs, so the
+ * runner repeats this with the new diffs until no more appear.
+ */
+public class EntityBasedDiffRunner {
+    public static final int PARTITION_SIZE = 256;
+
+    private Changes changes;
+    private EntityBasedPresentationAlgorithm algorithm;
+    private ForkJoinPool pool;
+
+    public EntityBasedDiffRunner(Changes changes, EntityBasedPresentationAlgorithm algorithm) {
+        this(changes, algorithm, ForkJoinPool.commonPool());
+    }
+
+    public EntityBasedDiffRunner(Changes changes, EntityBasedPresentationAlgorithm algorithm, ForkJoinPool pool) {
+        this.changes = changes;
+        this.algorithm = algorithm;
+        this.pool = pool;
+    }
+
+    public void run() {
+        Set<EntityBasedDiff> examined = Collections.newSetFromMap(new IdentityHashMap<EntityBasedDiff, Boolean>());
+        List<EntityBasedDiff> diffs = new ArrayList<EntityBasedDiff>(changes.getEntityBasedDiffs());
+        while (!diffs.isEmpty()) {
+            examined.addAll(diffs);
+            run(diffs);
+            diffs = new ArrayList<EntityBasedDiff>();
+            for (EntityBasedDiff diff : changes.getEntityBasedDiffs()) {
+                if (!examined.contains(diff)) {
+                    diffs.add(diff);
+                }
+            }
+        }
+    }
+
+    private void run(List<EntityBasedDiff> diffs) {
+        BufferedChangeRecorder[] recorded = new BufferedChangeRecorder[diffs.size()];
+        pool.invoke(new ExamineTask(diffs, recorded, 0, diffs.size()));
+
+        final Set<EntityBasedDiff> changedDiffs = Collections.newSetFromMap(new IdentityHashMap<EntityBasedDiff, Boolean>());
+        ChangeRecorder trackingRecorder = new ChangeRecorder() {
+
+            public void addMatch(MatchedAxiom match) {
+                changedDiffs.addAll(changes.getEntityBasedDiffs(match));
+                changes.addMatch(match);
+            }
+
+            public void removeMatch(MatchedAxiom match) {
+                changedDiffs.addAll(changes.getEntityBasedDiffs(match));
+                changes.removeMatch(match);
+            }
+        };
+        for (int i = 0; i < diffs.size(); i++) {
+            EntityBasedDiff diff = diffs.get(i);
+            if (changedDiffs.contains(diff)) {
+                algorithm.apply(diff, trackingRecorder);
+            }
+            else if (recorded[i] != null) {
+                recorded[i].replay(trackingRecorder);
+            }
+        }
+    }
+
+    private class ExamineTask extends RecursiveAction {
+        private static final long serialVersionUID = -2874395512704539027L;
+
+        private List<EntityBasedDiff> diffs;
+        private BufferedChangeRecorder[] recorded;
+        private int start;
+        private int end;
+
+        public ExamineTask(List<EntityBasedDiff> diffs, BufferedChangeRecorder[] recorded, int start, int end) {
+            this.diffs = diffs;
+            this.recorded = recorded;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARTITION_SIZE) {
+                for (int i = start; i < end; i++) {
+                    BufferedChangeRecorder recorder = new BufferedChangeRecorder();
+                    algorithm.apply(diffs.get(i), recorder);
+                    if (!recorder.isEmpty()) {
+                        recorded[i] = recorder;
+                    }
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new ExamineTask(diffs, recorded, start, middle),
+                      new ExamineTask(diffs, recorded, middle, end));
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package org.protege.owl.diff.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.protege.owl.diff.DifferencePosition;
 import org.protege.owl.diff.Engine;
 import org.protege.owl.diff.align.OwlDiffMap;
 import org.semanticweb.owlapi.model.IRI;
@@ -19,56 +25,123 @@ import org.semanticweb.owlapi.model.OWLLiteral;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.search.EntitySearcher;
 
+/**
+ * Maps the codes of the entities of the source and target ontologies to the entities.  The
+ * CODE_ANNOTATION_PROPERTY parameter is a comma separated list of code keys in priority order.  A key is
+ * either one annotation property IRI or several joined by '+', in which case the code is made up of a
+ * value of each of the properties.  So
+ * <pre>
+ *   http://ncicb.nci.nih.gov/xml/owl/EVS/Thesaurus.owl#code, http://www.w3.org/2004/02/skos/core#notation
+ * </pre>
+ * looks for an NCI code first and a SKOS notation second.  The codes of different keys are kept apart.
+ * The methods that do not take a key use the first one.
+ */
 public class CodeToEntityMapper {
 	public static final Logger logger = LoggerFactory.getLogger(CodeToEntityMapper.class.getName());
-	
+
 	public static final String CODE_ANNOTATION_PROPERTY = "code.annotation.property";
-	
+
+	public static final String KEY_SEPARATOR = ",";
+	public static final String COMPOSITE_SEPARATOR = "+";
+
+	private static final String COMPOSITE_VALUE_SEPARATOR = "\u001f";
+
 	private OwlDiffMap                         diffMap;
-	private OWLAnnotationProperty              codeProperty;
-	private Map<String, Collection<OWLEntity>> targetCodeToEntityMap;
-	
+	private OntologyIndexService               indexes;
+	private List<List<OWLAnnotationProperty>>  keys = new ArrayList<List<OWLAnnotationProperty>>();
+	private volatile CodeIndex                 sourceCodes;
+	private volatile CodeIndex                 targetCodes;
+
 	public static CodeToEntityMapper get(Engine e) {
 		CodeToEntityMapper mapper = e.getService(CodeToEntityMapper.class);
 		if (mapper == null) {
-			mapper = new CodeToEntityMapper(e.getOwlDiffMap(), e.getParameters());
+			mapper = new CodeToEntityMapper(e);
 			e.addService(mapper);
 		}
 		return mapper;
 	}
 
-	
-	private CodeToEntityMapper(OwlDiffMap diffMap, Map<String, String> parameters) {
-		this.diffMap = diffMap;
-		String codeName = parameters.get(CODE_ANNOTATION_PROPERTY);
+
+	private CodeToEntityMapper(Engine e) {
+		this.diffMap = e.getOwlDiffMap();
+		String codeName = e.getParameters().get(CODE_ANNOTATION_PROPERTY);
 		if (codeName == null) {
 			return;
 		}
-        IRI codeIri = IRI.create(codeName);
-        codeProperty = diffMap.getOWLDataFactory().getOWLAnnotationProperty(codeIri);
-        if (!diffMap.getSourceOntology().containsAnnotationPropertyInSignature(codeIri)) {
-        	logger.warn("Source ontology does not have selected code annotation " + codeName);
-        }
-        else if (!diffMap.getTargetOntology().containsAnnotationPropertyInSignature(codeIri)) {
-        	logger.warn("Target ontology does not have selected code annotation " + codeName);
-        }
-
+		indexes = OntologyIndexService.get(e);
+		for (String keyName : codeName.split(KEY_SEPARATOR)) {
+			List<OWLAnnotationProperty> key = new ArrayList<OWLAnnotationProperty>();
+			for (String propertyName : keyName.split("\\" + COMPOSITE_SEPARATOR)) {
+				if (propertyName.trim().isEmpty()) {
+					continue;
+				}
+		        IRI codeIri = IRI.create(propertyName.trim());
+		        key.add(diffMap.getOWLDataFactory().getOWLAnnotationProperty(codeIri));
+		        if (!diffMap.getSourceOntology().containsAnnotationPropertyInSignature(codeIri)) {
+		        	logger.warn("Source ontology does not have selected code annotation " + codeIri);
+		        }
+		        else if (!diffMap.getTargetOntology().containsAnnotationPropertyInSignature(codeIri)) {
+		        	logger.warn("Target ontology does not have selected code annotation " + codeIri);
+		        }
+			}
+			if (!key.isEmpty()) {
+				keys.add(Collections.unmodifiableList(key));
+			}
+		}
 	}
-	
+
+	/*
+	 * The codes are present if both ontologies have all the properties of at least one key.
+	 */
 	public boolean codeNotPresent() {
-		return codeProperty == null 
-		    || !diffMap.getSourceOntology().containsAnnotationPropertyInSignature(codeProperty.getIRI()) 
-			|| !diffMap.getTargetOntology().containsAnnotationPropertyInSignature(codeProperty.getIRI());
+		for (List<OWLAnnotationProperty> key : keys) {
+			boolean present = true;
+			for (OWLAnnotationProperty property : key) {
+				present = present
+						&& diffMap.getSourceOntology().containsAnnotationPropertyInSignature(property.getIRI())
+						&& diffMap.getTargetOntology().containsAnnotationPropertyInSignature(property.getIRI());
+			}
+			if (present) {
+				return false;
+			}
+		}
+		return true;
 	}
-	
+
+	/**
+	 * @return the first property of the first code key or null if there are no code keys.
+	 */
 	public OWLAnnotationProperty getCodeProperty() {
-		return codeProperty;
+		return keys.isEmpty() ? null : keys.get(0).get(0);
+	}
+
+	public int getKeyCount() {
+		return keys.size();
+	}
+
+	public List<OWLAnnotationProperty> getKeyProperties(int key) {
+		return keys.get(key);
 	}
-	
+
+    /*
+     * The source and target ontologies are looked up in the shared index, which covers their imports.
+     * An entity with several codes gives the first one found.
+     */
     public String getCode(OWLOntology ontology, OWLEntity entity) {
+        if (keys.isEmpty()) {
+            return null;
+        }
+        OntologyIndex index = indexes.getIndex(ontology);
+        if (index != null) {
+            List<String> codes = getCodes(index, entity.getIRI(), keys.get(0));
+            return codes.isEmpty() ? null : codes.get(0);
+        }
+        else if (keys.get(0).size() > 1) {
+            return null;
+        }
         for (OWLAnnotation annotation : EntitySearcher.getAnnotations(entity,
                 ontology)) {
-            if (!annotation.getProperty().equals(codeProperty)) {
+            if (!annotation.getProperty().equals(getCodeProperty())) {
                 continue;
             }
             OWLAnnotationValue value = annotation.getValue();
@@ -78,39 +151,187 @@ public class CodeToEntityMapper {
         }
         return null;
     }
-    
+
+    /**
+     * @return the distinct codes of the entity for the first key, in the order they were found.
+     */
+    public List<String> getCodes(OWLOntology ontology, OWLEntity entity) {
+        return getCodes(0, ontology, entity);
+    }
+
+    public List<String> getCodes(int key, OWLOntology ontology, OWLEntity entity) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        OntologyIndex index = indexes.getIndex(ontology);
+        if (index == null) {
+            String code = key == 0 ? getCode(ontology, entity) : null;
+            return code == null ? Collections.<String>emptyList() : Collections.singletonList(code);
+        }
+        return getCodes(index, entity.getIRI(), keys.get(key));
+    }
+
+    /**
+     * @return the entities of the source or target ontology that have a code for any key.
+     */
+    public List<OWLEntity> getCodedEntities(DifferencePosition position) {
+        return getCodeIndex(position).getEntities();
+    }
+
     public Collection<OWLEntity> getTargetEntities(String code) {
-    	Collection<OWLEntity> targetEntities = getTargetCodeToEntityMap().get(code);
-    	if (targetEntities == null) {
-    		return Collections.emptySet();
-    	}
-    	else {
-    		return Collections.unmodifiableCollection(targetEntities);
-    	}
+        return getTargetEntities(0, code);
     }
-    
-    private Map<String, Collection<OWLEntity>> getTargetCodeToEntityMap() {
-    	if (targetCodeToEntityMap == null) {
-    		targetCodeToEntityMap = generateCodeToEntityMap(diffMap.getTargetOntology());
-    	}
-    	return Collections.unmodifiableMap(targetCodeToEntityMap);
+
+    public Collection<OWLEntity> getTargetEntities(int key, String code) {
+        return getCodeIndex(DifferencePosition.TARGET).getEntities(key, code);
     }
 
+    /*
+     * A composite code is one value of each property of the key.  When the properties have several values
+     * every combination is a code.
+     */
+    private static List<String> getCodes(OntologyIndex index, IRI subject, List<OWLAnnotationProperty> key) {
+        List<String> codes = Collections.singletonList(null);
+        for (OWLAnnotationProperty property : key) {
+            List<String> values = new ArrayList<String>(1);
+            for (OWLAnnotationValue value : index.getAnnotationValues(subject, property)) {
+                if (value instanceof OWLLiteral && !values.contains(((OWLLiteral) value).getLiteral())) {
+                    values.add(((OWLLiteral) value).getLiteral());
+                }
+            }
+            List<String> combined = new ArrayList<String>(codes.size() * values.size());
+            for (String code : codes) {
+                for (String value : values) {
+                    combined.add(code == null ? value : code + COMPOSITE_VALUE_SEPARATOR + value);
+                }
+            }
+            codes = combined;
+        }
+        return codes;
+    }
+
+    private CodeIndex getCodeIndex(DifferencePosition position) {
+        CodeIndex codes = position == DifferencePosition.SOURCE ? sourceCodes : targetCodes;
+        if (codes == null) {
+            buildCodeIndexes();
+            codes = position == DifferencePosition.SOURCE ? sourceCodes : targetCodes;
+        }
+        return codes;
+    }
+
+    /*
+     * The two sides are built at the same time from the shared ontology indexes.  Each side only reads the
+     * signature of its own ontology, so no ontology is read by more than one thread.  When the source and
+     * target are the same ontology the sides are built one after the other.
+     */
+    private synchronized void buildCodeIndexes() {
+        if (sourceCodes != null) {
+            return;
+        }
+        if (keys.isEmpty()) {
+            targetCodes = new CodeIndex();
+            sourceCodes = new CodeIndex();
+            return;
+        }
+        if (diffMap.getSourceOntology() == diffMap.getTargetOntology()) {
+            targetCodes = new CodeIndex(diffMap.getTargetOntology(), indexes.getIndex(DifferencePosition.TARGET), keys);
+            sourceCodes = new CodeIndex(diffMap.getSourceOntology(), indexes.getIndex(DifferencePosition.SOURCE), keys);
+            return;
+        }
+        ForkJoinTask<CodeIndex> targetTask = ForkJoinPool.commonPool().submit(new Callable<CodeIndex>() {
+            public CodeIndex call() {
+                return new CodeIndex(diffMap.getTargetOntology(), indexes.getIndex(DifferencePosition.TARGET), keys);
+            }
+        });
+        CodeIndex codes = new CodeIndex(diffMap.getSourceOntology(), indexes.getIndex(DifferencePosition.SOURCE), keys);
+        targetCodes = targetTask.join();
+        sourceCodes = codes;
+    }
+
+    /*
+     * The coded entities of one ontology are numbered and, for each key, each code maps to the numbers of
+     * its entities.
+     */
+    private static class CodeIndex {
+        private static final int[] NO_IDS = new int[0];
+
+        private OWLEntity[] entities;
+        private List<Map<String, int[]>> codeToIds = new ArrayList<Map<String, int[]>>();
+
+        public CodeIndex() {
+            entities = new OWLEntity[0];
+        }
 
-    private Map<String, Collection<OWLEntity>> generateCodeToEntityMap(OWLOntology ontology) {
-    	Map<String, Collection<OWLEntity>> codeToEntityMap = new HashMap<String, Collection<OWLEntity>>();
-        for (OWLEntity entity : ontology.getSignature()) {
-            String code = getCode(ontology, entity);
-            if (code != null) {
-                Collection<OWLEntity> entities = codeToEntityMap.get(code);
-                if (entities == null) {
-                    entities = new ArrayList<OWLEntity>();
-                    codeToEntityMap.put(code, entities);
+        public CodeIndex(OWLOntology ontology, OntologyIndex index, List<List<OWLAnnotationProperty>> keys) {
+            Map<OWLEntity, Integer> ids = new HashMap<OWLEntity, Integer>();
+            List<OWLEntity> entityList = new ArrayList<OWLEntity>();
+            for (List<OWLAnnotationProperty> key : keys) {
+                Map<String, IdList> postings = new HashMap<String, IdList>();
+                for (IRI subject : index.getAnnotatedSubjects(key.get(0))) {
+                    List<String> codes = getCodes(index, subject, key);
+                    if (codes.isEmpty()) {
+                        continue;
+                    }
+                    for (OWLEntity entity : ontology.getEntitiesInSignature(subject)) {
+                        Integer id = ids.get(entity);
+                        if (id == null) {
+                            id = entityList.size();
+                            ids.put(entity, id);
+                            entityList.add(entity);
+                        }
+                        for (String code : codes) {
+                            IdList codeIds = postings.get(code);
+                            if (codeIds == null) {
+                                codeIds = new IdList();
+                                postings.put(code, codeIds);
+                            }
+                            codeIds.add(id);
+                        }
+                    }
+                }
+                Map<String, int[]> keyCodeToIds = new HashMap<String, int[]>(postings.size() * 4 / 3 + 1);
+                for (Map.Entry<String, IdList> entry : postings.entrySet()) {
+                    keyCodeToIds.put(entry.getKey(), entry.getValue().toArray());
                 }
-                entities.add(entity);
+                codeToIds.add(keyCodeToIds);
+            }
+            entities = entityList.toArray(new OWLEntity[entityList.size()]);
+        }
+
+        public List<OWLEntity> getEntities() {
+            return Collections.unmodifiableList(Arrays.asList(entities));
+        }
+
+        public Collection<OWLEntity> getEntities(int key, String code) {
+            int[] ids = key < codeToIds.size() ? codeToIds.get(key).get(code) : null;
+            if (ids == null) {
+                ids = NO_IDS;
+            }
+            List<OWLEntity> codeEntities = new ArrayList<OWLEntity>(ids.length);
+            for (int id : ids) {
+                codeEntities.add(entities[id]);
             }
+            return Collections.unmodifiableList(codeEntities);
         }
-        return Collections.unmodifiableMap(codeToEntityMap);
     }
-}
 
+    /*
+     * The entity numbers of one code while the index is built.  Most codes have a single entity but the
+     * values of fallback keys can be shared by many.
+     */
+    private static class IdList {
+        private int[] ids = new int[1];
+        private int   size = 0;
+
+        public void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, 2 * size);
+            }
+            ids[size++] = id;
+        }
+
+        public int[] toArray() {
+            return size == ids.length ? ids : Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -7,13 +7,9 @@ import org.protege.owl.diff.DifferencePosition;
 import org.protege.owl.diff.Engine;
 import org.protege.owl.diff.align.AlignmentAlgorithm;
 import org.protege.owl.diff.align.AlignmentExplanation;
+import org.protege.owl.diff.align.OwlDiffMap;
 import org.protege.owl.diff.align.algorithms.DeferDeprecationAlgorithm;
-import org.semanticweb.owlapi.model.OWLAnnotation;
-import org.semanticweb.owlapi.model.OWLAnnotationProperty;
 import org.semanticweb.owlapi.model.OWLEntity;
-import org.semanticweb.owlapi.model.OWLLiteral;
-import org.semanticweb.owlapi.model.OWLOntology;
-import org.semanticweb.owlapi.search.EntitySearcher;
 
 public class DeprecationDeferralService {
 	private boolean initialized = false;
@@ -56,23 +52,7 @@ public class DeprecationDeferralService {
 	}
 	
 	public boolean isDeprecated(OWLEntity e, DifferencePosition position) {
-		OWLOntology ontology = position.getOntology(engine.getOwlDiffMap());
-		OWLAnnotationProperty deprecated = engine.getOWLDataFactory().getOWLDeprecated();
-		for (OWLOntology ont : ontology.getImportsClosure()) {
-            for (OWLAnnotation annotation : EntitySearcher.getAnnotations(e, ont, deprecated)) {
-				if (!(annotation.getValue() instanceof OWLLiteral)) {
-					continue;
-				}
-				OWLLiteral value = (OWLLiteral) annotation.getValue();
-				if (!value.isBoolean()) {
-					continue;
-				}
-				if (value.parseBoolean()) {
-					return true;
-				}
-			}
-		}
-		return false;
+		return OntologyIndexService.get(engine).getIndex(position).isDeprecated(e.getIRI());
 	}
 
 	public void addMatch(OWLEntity sourceEntity, OWLEntity targetEntity, AlignmentExplanation explanation) {
@@ -80,6 +60,21 @@ public class DeprecationDeferralService {
 		engine.getOwlDiffMap().setMatchBlocked(sourceEntity, targetEntity, true);
 	}
 
+	/**
+	 * @return true if a deferred match can still be made because neither of its entities has been matched
+	 *         since it was deferred.
+	 */
+	public boolean hasApplicableDeferredMatches() {
+		OwlDiffMap diffMap = engine.getOwlDiffMap();
+		for (DeferredMatchBean bean : deferredMatches) {
+			if (diffMap.getUnmatchedSourceEntities().contains(bean.getSourceEntity())
+					&& diffMap.getUnmatchedTargetEntities().contains(bean.getTargetEntity())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public Set<DeferredMatchBean> getDeferredMatches() {
 		try {
 			return deferredMatches;
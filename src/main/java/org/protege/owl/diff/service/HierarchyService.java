@@ -0,0 +1,211 @@
+package org.protege.owl.diff.service;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.protege.owl.diff.DifferencePosition;
+import org.protege.owl.diff.Engine;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLSubClassOfAxiom;
+
+/**
+ * The told named class hierarchy of the source and target ontologies.  The hierarchy of an ontology is
+ * built the first time it is asked for from the subclass axioms between named classes collected by the
+ * {@link OntologyIndexService}.  The classes are given integer ids and the sub and super class edges are
+ * kept as sorted id arrays indexed by offset arrays so that a lookup does not go back to the ontology or
+ * allocate more than a small view.
+ * <p>
+ * The returned sets are unmodifiable views.  The service can be used from several threads at once.
+ */
+public class HierarchyService {
+	private Engine engine;
+	private volatile ClassHierarchy sourceHierarchy;
+	private volatile ClassHierarchy targetHierarchy;
+
+	public static HierarchyService get(Engine e) {
+		HierarchyService s = e.getService(HierarchyService.class);
+		if (s == null) {
+			s = new HierarchyService(e);
+			e.addService(s);
+		}
+		return s;
+	}
+
+	private HierarchyService(Engine e) {
+		engine = e;
+	}
+
+	public Set<OWLClass> getSuperClasses(OWLClass c, DifferencePosition position) {
+		return getHierarchy(position).getSuperClasses(c);
+	}
+
+	public Set<OWLClass> getSubClasses(OWLClass c, DifferencePosition position) {
+		return getHierarchy(position).getSubClasses(c);
+	}
+
+	private ClassHierarchy getHierarchy(DifferencePosition position) {
+		ClassHierarchy hierarchy = position == DifferencePosition.SOURCE ? sourceHierarchy : targetHierarchy;
+		if (hierarchy == null) {
+			hierarchy = buildHierarchy(position);
+		}
+		return hierarchy;
+	}
+
+	private synchronized ClassHierarchy buildHierarchy(DifferencePosition position) {
+		if (position == DifferencePosition.SOURCE) {
+			if (sourceHierarchy == null) {
+				sourceHierarchy = new ClassHierarchy(OntologyIndexService.get(engine).getIndex(position));
+			}
+			return sourceHierarchy;
+		}
+		else {
+			if (targetHierarchy == null) {
+				targetHierarchy = new ClassHierarchy(OntologyIndexService.get(engine).getIndex(position));
+			}
+			return targetHierarchy;
+		}
+	}
+
+	private static class ClassHierarchy {
+		private Map<OWLClass, Integer> ids = new HashMap<OWLClass, Integer>();
+		private OWLClass[] classes = new OWLClass[16];
+		private int[] superOffsets;
+		private int[] superClasses;
+		private int[] subOffsets;
+		private int[] subClasses;
+
+		public ClassHierarchy(OntologyIndex index) {
+			int[] edgeSubs = new int[16];
+			int[] edgeSupers = new int[16];
+			int edges = 0;
+			for (OWLSubClassOfAxiom axiom : index.getNamedSubClassAxioms()) {
+				if (edges == edgeSubs.length) {
+					edgeSubs = Arrays.copyOf(edgeSubs, edges * 2);
+					edgeSupers = Arrays.copyOf(edgeSupers, edges * 2);
+				}
+				edgeSubs[edges] = intern(axiom.getSubClass().asOWLClass());
+				edgeSupers[edges] = intern(axiom.getSuperClass().asOWLClass());
+				edges++;
+			}
+			classes = Arrays.copyOf(classes, ids.size());
+			superOffsets = new int[classes.length + 1];
+			superClasses = compress(edgeSubs, edgeSupers, edges, superOffsets);
+			subOffsets = new int[classes.length + 1];
+			subClasses = compress(edgeSupers, edgeSubs, edges, subOffsets);
+		}
+
+		private int intern(OWLClass c) {
+			Integer id = ids.get(c);
+			if (id == null) {
+				id = ids.size();
+				ids.put(c, id);
+				if (id == classes.length) {
+					classes = Arrays.copyOf(classes, id * 2);
+				}
+				classes[id] = c;
+			}
+			return id;
+		}
+
+		/*
+		 * Groups the edges by their from end with a counting sort, then sorts each group and drops the
+		 * duplicate edges that come from annotated copies of the same axiom.
+		 */
+		private int[] compress(int[] from, int[] to, int edges, int[] offsets) {
+			for (int i = 0; i < edges; i++) {
+				offsets[from[i] + 1]++;
+			}
+			for (int i = 0; i < classes.length; i++) {
+				offsets[i + 1] += offsets[i];
+			}
+			int[] targets = new int[edges];
+			int[] next = Arrays.copyOf(offsets, classes.length);
+			for (int i = 0; i < edges; i++) {
+				targets[next[from[i]]++] = to[i];
+			}
+			int write = 0;
+			for (int i = 0; i < classes.length; i++) {
+				int start = offsets[i];
+				int end = offsets[i + 1];
+				Arrays.sort(targets, start, end);
+				offsets[i] = write;
+				for (int j = start; j < end; j++) {
+					if (j == start || targets[j] != targets[j - 1]) {
+						targets[write++] = targets[j];
+					}
+				}
+			}
+			offsets[classes.length] = write;
+			return Arrays.copyOf(targets, write);
+		}
+
+		public Set<OWLClass> getSuperClasses(OWLClass c) {
+			return neighbours(c, superOffsets, superClasses);
+		}
+
+		public Set<OWLClass> getSubClasses(OWLClass c) {
+			return neighbours(c, subOffsets, subClasses);
+		}
+
+		private Set<OWLClass> neighbours(OWLClass c, int[] offsets, int[] targets) {
+			Integer id = ids.get(c);
+			if (id == null || offsets[id] == offsets[id + 1]) {
+				return Collections.emptySet();
+			}
+			return new ClassSet(this, targets, offsets[id], offsets[id + 1]);
+		}
+	}
+
+	private static class ClassSet extends AbstractSet<OWLClass> {
+		private ClassHierarchy hierarchy;
+		private int[] ids;
+		private int start;
+		private int end;
+
+		public ClassSet(ClassHierarchy hierarchy, int[] ids, int start, int end) {
+			this.hierarchy = hierarchy;
+			this.ids = ids;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			Integer id = hierarchy.ids.get(o);
+			return id != null && Arrays.binarySearch(ids, start, end, id) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return end - start;
+		}
+
+		@Override
+		public Iterator<OWLClass> iterator() {
+			return new Iterator<OWLClass>() {
+				private int i = start;
+
+				public boolean hasNext() {
+					return i < end;
+				}
+
+				public OWLClass next() {
+					if (i >= end) {
+						throw new NoSuchElementException();
+					}
+					return hierarchy.classes[ids[i++]];
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package org.protege.owl.diff.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLSubClassOfAxiom;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+/**
+ * The facts about one ontology that the diff services look up entity by entity, gathered in a single scan
+ * of its axioms.  The annotation assertions of the imports closure are indexed by property and IRI subject.
+ * The subclass axioms of the ontology itself between named classes are kept for the hierarchy, the
+ * subjects that are marked owl:deprecated are collected and the rdfs:label literals are indexed by subject
+ * and language.
+ * <p>
+ * The axioms are copied out of the ontology on the calling thread.  The copied annotation assertions are
+ * then indexed in parallel partitions that are merged in order, while the subclass axioms are collected by
+ * another task, so the ontology itself is only read by the calling thread.  The index does not change once
+ * it is built.
+ */
+public class OntologyIndex {
+	public static final int PARTITION_SIZE = 4096;
+
+	private static final IRI DEPRECATED = OWLRDFVocabulary.OWL_DEPRECATED.getIRI();
+	private static final IRI LABEL = OWLRDFVocabulary.RDFS_LABEL.getIRI();
+
+	private Map<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>> annotations;
+	private List<OWLSubClassOfAxiom> namedSubClassAxioms;
+	private Set<IRI> deprecated = new HashSet<IRI>();
+	private Map<IRI, Map<String, OWLLiteral>> labels = new HashMap<IRI, Map<String, OWLLiteral>>();
+
+	private OntologyIndex(Map<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>> annotations,
+			              List<OWLSubClassOfAxiom> namedSubClassAxioms) {
+		this.annotations = annotations;
+		this.namedSubClassAxioms = namedSubClassAxioms;
+		for (Map.Entry<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>> byProperty : annotations.entrySet()) {
+			if (byProperty.getKey().getIRI().equals(DEPRECATED)) {
+				for (Map.Entry<IRI, List<OWLAnnotationValue>> bySubject : byProperty.getValue().entrySet()) {
+					for (OWLAnnotationValue value : bySubject.getValue()) {
+						if (value instanceof OWLLiteral && ((OWLLiteral) value).isBoolean() && ((OWLLiteral) value).parseBoolean()) {
+							deprecated.add(bySubject.getKey());
+						}
+					}
+				}
+			}
+			else if (byProperty.getKey().getIRI().equals(LABEL)) {
+				for (Map.Entry<IRI, List<OWLAnnotationValue>> bySubject : byProperty.getValue().entrySet()) {
+					addLabels(bySubject.getKey(), bySubject.getValue());
+				}
+			}
+		}
+	}
+
+	/*
+	 * The first label in each language is kept.  Most subjects have a single label so the maps start out
+	 * as singletons.
+	 */
+	private void addLabels(IRI subject, List<OWLAnnotationValue> values) {
+		Map<String, OWLLiteral> byLanguage = null;
+		for (OWLAnnotationValue value : values) {
+			if (!(value instanceof OWLLiteral)) {
+				continue;
+			}
+			OWLLiteral label = (OWLLiteral) value;
+			if (byLanguage == null) {
+				byLanguage = Collections.singletonMap(label.getLang(), label);
+			}
+			else if (!byLanguage.containsKey(label.getLang())) {
+				if (!(byLanguage instanceof HashMap)) {
+					byLanguage = new HashMap<String, OWLLiteral>(byLanguage);
+				}
+				byLanguage.put(label.getLang(), label);
+			}
+		}
+		if (byLanguage != null) {
+			labels.put(subject, byLanguage);
+		}
+	}
+
+	public static OntologyIndex build(OWLOntology ontology, ForkJoinPool pool) {
+		return build(new Axioms(ontology), pool);
+	}
+
+	/*
+	 * The tasks only read the copied axioms.
+	 */
+	static OntologyIndex build(final Axioms axioms, ForkJoinPool pool) {
+		ForkJoinTask<List<OWLSubClassOfAxiom>> subClassTask = pool.submit(new Callable<List<OWLSubClassOfAxiom>>() {
+			public List<OWLSubClassOfAxiom> call() {
+				List<OWLSubClassOfAxiom> named = new ArrayList<OWLSubClassOfAxiom>();
+				for (OWLSubClassOfAxiom axiom : axioms.subClassAxioms) {
+					if (!axiom.getSubClass().isAnonymous() && !axiom.getSuperClass().isAnonymous()) {
+						named.add(axiom);
+					}
+				}
+				return named;
+			}
+		});
+		Map<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>> annotations
+		        = pool.invoke(new AnnotationTask(axioms.assertions, 0, axioms.assertions.size()));
+		return new OntologyIndex(annotations, subClassTask.join());
+	}
+
+	/**
+	 * @return the values of the annotations of the subject with the property in the order they were found.
+	 */
+	public List<OWLAnnotationValue> getAnnotationValues(IRI subject, OWLAnnotationProperty property) {
+		Map<IRI, List<OWLAnnotationValue>> bySubject = annotations.get(property);
+		List<OWLAnnotationValue> values = bySubject == null ? null : bySubject.get(subject);
+		return values == null ? Collections.<OWLAnnotationValue>emptyList() : Collections.unmodifiableList(values);
+	}
+
+	/**
+	 * @return the first literal value of an annotation of the subject with the property or null.
+	 */
+	public OWLLiteral getLiteral(IRI subject, OWLAnnotationProperty property) {
+		for (OWLAnnotationValue value : getAnnotationValues(subject, property)) {
+			if (value instanceof OWLLiteral) {
+				return (OWLLiteral) value;
+			}
+		}
+		return null;
+	}
+
+	public Set<IRI> getAnnotatedSubjects(OWLAnnotationProperty property) {
+		Map<IRI, List<OWLAnnotationValue>> bySubject = annotations.get(property);
+		return bySubject == null ? Collections.<IRI>emptySet() : Collections.unmodifiableSet(bySubject.keySet());
+	}
+
+	/**
+	 * @return the first rdfs:label literal of the subject in each language, by language tag.  Labels
+	 *         without a language are under the empty tag.
+	 */
+	public Map<String, OWLLiteral> getLabels(IRI subject) {
+		Map<String, OWLLiteral> byLanguage = labels.get(subject);
+		return byLanguage == null ? Collections.<String, OWLLiteral>emptyMap() : Collections.unmodifiableMap(byLanguage);
+	}
+
+	public boolean isDeprecated(IRI subject) {
+		return deprecated.contains(subject);
+	}
+
+	public List<OWLSubClassOfAxiom> getNamedSubClassAxioms() {
+		return Collections.unmodifiableList(namedSubClassAxioms);
+	}
+
+	/*
+	 * The axioms that the index is built from, copied out of the ontology on the thread that creates them.
+	 */
+	static class Axioms {
+		private List<OWLAnnotationAssertionAxiom> assertions = new ArrayList<OWLAnnotationAssertionAxiom>();
+		private List<OWLSubClassOfAxiom> subClassAxioms;
+
+		public Axioms(OWLOntology ontology) {
+			for (OWLOntology o : ontology.getImportsClosure()) {
+				assertions.addAll(o.getAxioms(AxiomType.ANNOTATION_ASSERTION));
+			}
+			subClassAxioms = new ArrayList<OWLSubClassOfAxiom>(ontology.getAxioms(AxiomType.SUBCLASS_OF));
+		}
+	}
+
+	private static class AnnotationTask extends RecursiveTask<Map<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>>> {
+		private static final long serialVersionUID = -2613318932751364562L;
+
+		private List<OWLAnnotationAssertionAxiom> assertions;
+		private int start;
+		private int end;
+
+		public AnnotationTask(List<OWLAnnotationAssertionAxiom> assertions, int start, int end) {
+			this.assertions = assertions;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected Map<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>> compute() {
+			if (end - start <= PARTITION_SIZE) {
+				Map<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>> index
+				        = new HashMap<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>>();
+				for (int i = start; i < end; i++) {
+					OWLAnnotationAssertionAxiom assertion = assertions.get(i);
+					if (assertion.getSubject() instanceof IRI) {
+						add(index, assertion.getProperty(), (IRI) assertion.getSubject(),
+						    Collections.singletonList(assertion.getValue()));
+					}
+				}
+				return index;
+			}
+			int middle = (start + end) >>> 1;
+			AnnotationTask earlier = new AnnotationTask(assertions, start, middle);
+			AnnotationTask later = new AnnotationTask(assertions, middle, end);
+			later.fork();
+			Map<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>> index = earlier.compute();
+			for (Map.Entry<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>> byProperty : later.join().entrySet()) {
+				for (Map.Entry<IRI, List<OWLAnnotationValue>> bySubject : byProperty.getValue().entrySet()) {
+					add(index, byProperty.getKey(), bySubject.getKey(), bySubject.getValue());
+				}
+			}
+			return index;
+		}
+
+		/*
+		 * Most subjects have a single value for a property so the lists start out as singletons.
+		 */
+		private static void add(Map<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>> index,
+				                OWLAnnotationProperty property, IRI subject, List<OWLAnnotationValue> values) {
+			Map<IRI, List<OWLAnnotationValue>> bySubject = index.get(property);
+			if (bySubject == null) {
+				bySubject = new HashMap<IRI, List<OWLAnnotationValue>>();
+				index.put(property, bySubject);
+			}
+			List<OWLAnnotationValue> existing = bySubject.get(subject);
+			if (existing == null) {
+				bySubject.put(subject, values);
+			}
+			else {
+				if (!(existing instanceof ArrayList)) {
+					existing = new ArrayList<OWLAnnotationValue>(existing);
+					bySubject.put(subject, existing);
+				}
+				existing.addAll(values);
+			}
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package org.protege.owl.diff.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.protege.owl.diff.DifferencePosition;
+import org.protege.owl.diff.Engine;
+import org.protege.owl.diff.align.OwlDiffMap;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scans the source and target ontologies once and shares the resulting indexes between the other services.
+ * The scan happens when the service is first asked for.  The axioms of both ontologies are copied out on the
+ * calling thread, because the two imports closures may share ontologies, and the two indexes are then built
+ * concurrently from the copies.
+ */
+public class OntologyIndexService {
+	public static final Logger LOGGER = LoggerFactory.getLogger(OntologyIndexService.class.getName());
+
+	private OWLOntology sourceOntology;
+	private OWLOntology targetOntology;
+	private OntologyIndex sourceIndex;
+	private OntologyIndex targetIndex;
+
+	/*
+	 * Other services ask for this one lazily and possibly from several threads.
+	 */
+	public static OntologyIndexService get(Engine e) {
+		synchronized (e) {
+			OntologyIndexService s = e.getService(OntologyIndexService.class);
+			if (s == null) {
+				s = new OntologyIndexService(e.getOwlDiffMap());
+				e.addService(s);
+			}
+			return s;
+		}
+	}
+
+	private OntologyIndexService(OwlDiffMap diffs) {
+		long startTime = System.currentTimeMillis();
+		final ForkJoinPool pool = ForkJoinPool.commonPool();
+		sourceOntology = diffs.getSourceOntology();
+		targetOntology = diffs.getTargetOntology();
+		OntologyIndex.Axioms sourceAxioms = new OntologyIndex.Axioms(sourceOntology);
+		final OntologyIndex.Axioms targetAxioms = new OntologyIndex.Axioms(targetOntology);
+		ForkJoinTask<OntologyIndex> targetTask = pool.submit(new Callable<OntologyIndex>() {
+			public OntologyIndex call() {
+				return OntologyIndex.build(targetAxioms, pool);
+			}
+		});
+		sourceIndex = OntologyIndex.build(sourceAxioms, pool);
+		targetIndex = targetTask.join();
+		if (LOGGER.isInfoEnabled()) {
+			LOGGER.info("Scanning the ontologies took " + (System.currentTimeMillis() - startTime) + "ms.");
+		}
+	}
+
+	public OntologyIndex getIndex(DifferencePosition position) {
+		return position == DifferencePosition.SOURCE ? sourceIndex : targetIndex;
+	}
+
+	/**
+	 * @return the index of the ontology if it is the source or target ontology and null otherwise.
+	 */
+	public OntologyIndex getIndex(OWLOntology ontology) {
+		if (ontology == sourceOntology) {
+			return sourceIndex;
+		}
+		else if (ontology == targetOntology) {
+			return targetIndex;
+		}
+		return null;
+	}
+}
@@ -1,16 +1,19 @@
 package org.protege.owl.diff.service;
 
-import java.io.IOException;
 import java.io.StringWriter;
-import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.protege.owl.diff.DifferencePosition;
 import org.protege.owl.diff.Engine;
@@ -18,8 +21,10 @@ import org.protege.owl.diff.present.EntityBasedDiff;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
 import org.semanticweb.owlapi.model.OWLDataFactory;
 import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLLiteral;
 import org.semanticweb.owlapi.model.OWLObject;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologySetProvider;
@@ -27,24 +32,39 @@ import org.semanticweb.owlapi.util.AnnotationValueShortFormProvider;
 import org.semanticweb.owlapi.util.IRIShortFormProvider;
 import org.semanticweb.owlapi.util.OWLOntologyImportsClosureSetProvider;
 import org.semanticweb.owlapi.util.ShortFormProvider;
+import org.semanticweb.owlapi.util.SimpleIRIShortFormProvider;
+import org.semanticweb.owlapi.util.SimpleShortFormProvider;
 
 import uk.ac.manchester.cs.owl.owlapi.mansyntaxrenderer.ManchesterOWLSyntaxObjectRenderer;
 
+/**
+ * Renders the objects of the source and target ontologies in Manchester syntax.  The short form of each
+ * entity is remembered for the life of the service and the renderings of other objects such as axioms
+ * and class expressions are kept in a cache of at most OBJECT_CACHE_SIZE entries that is emptied when it
+ * fills up.
+ * <p>
+ * The service can be used from several threads at once.  Each rendering uses its own writer and renderer.
+ * The default short form providers read the labels from the {@link OntologyIndex} that is built up front,
+ * so they never touch the ontologies and renderEntities renders large collections in parallel partitions.
+ * Short form providers set by the caller may read the ontologies and the two imports closures may share
+ * ontologies, so they are only called by one thread at a time, for both sides together, and the entities
+ * are then rendered on the calling thread.
+ */
 public class RenderingService {
     public static final String NO_LANGUAGE_SET = "";
+    public static final int    OBJECT_CACHE_SIZE = 16384;
+    public static final int    PARTITION_SIZE = 1024;
     
 	private OWLDataFactory factory;
 	
 	private Engine engine;
 	
+	private final Object shortFormLock = new Object();
 	
-	private WriterDelegate sourceWriter = new WriterDelegate();
-	private ManchesterOWLSyntaxObjectRenderer sourceRenderer;
+	private volatile SideRenderer sourceRenderer;
+	private volatile SideRenderer targetRenderer;
 	
-	private WriterDelegate targetWriter = new WriterDelegate();
-	private ManchesterOWLSyntaxObjectRenderer targetRenderer;
-	
-	private Map<String, OWLEntity> targetNameToEntityMap;
+	private volatile Map<String, OWLEntity> targetNameToEntityMap;
 	
 	public static RenderingService get(Engine e) {
 		RenderingService renderer = e.getService(RenderingService.class);
@@ -93,6 +113,14 @@ public class RenderingService {
 		return langs;
 	}
 
+	/*
+	 * The labels of the default short form provider, read from the shared ontology index.
+	 */
+	private ShortFormProvider getIndexedShortFormProvider(DifferencePosition position) {
+		OntologyIndex index = OntologyIndexService.get(engine).getIndex(position);
+		return new IndexedLabelShortFormProvider(index, factory.getRDFSLabel(), getDefaultLanguages());
+	}
+
 	private RenderingService(Engine e) {
 		engine = e;
 		this.factory = e.getOWLDataFactory();
@@ -102,16 +130,17 @@ public class RenderingService {
 		setSourceShortFormProvider(sourceShortFormProvider, getIRIShortFormProvider(sourceShortFormProvider));
 	}
 
-	public void setSourceShortFormProvider(ShortFormProvider sourceShortFormProvider, IRIShortFormProvider sourceIRIShortFormProvider) {
-		sourceRenderer = getRenderer(sourceWriter, sourceShortFormProvider, sourceIRIShortFormProvider);
+	public synchronized void setSourceShortFormProvider(ShortFormProvider sourceShortFormProvider, IRIShortFormProvider sourceIRIShortFormProvider) {
+		sourceRenderer = new SideRenderer(sourceShortFormProvider, sourceIRIShortFormProvider, shortFormLock);
 	}
 
 	public void setTargetShortFormProvider(ShortFormProvider targetShortFormProvider) {
 		setTargetShortFormProvider(targetShortFormProvider, getIRIShortFormProvider(targetShortFormProvider));
 	}
 	
-	public void setTargetShortFormProvider(ShortFormProvider targetShortFormProvider, IRIShortFormProvider targetIRIShortFormProvider) {
-		targetRenderer = getRenderer(targetWriter, targetShortFormProvider, targetIRIShortFormProvider);
+	public synchronized void setTargetShortFormProvider(ShortFormProvider targetShortFormProvider, IRIShortFormProvider targetIRIShortFormProvider) {
+		targetRenderer = new SideRenderer(targetShortFormProvider, targetIRIShortFormProvider, shortFormLock);
+		targetNameToEntityMap = null;
 	}
 	
 	public boolean isReady() {
@@ -123,20 +152,14 @@ public class RenderingService {
 		if (engine.getOwlDiffMap() == null) {
 			return "";
 		}
-		if (sourceRenderer == null) {
-			setSourceShortFormProvider(getDefaultShortFormProvider(engine.getOwlDiffMap().getSourceOntology()));
-		}
-		return render(o, DifferencePosition.SOURCE);
+		return getRenderer(DifferencePosition.SOURCE).render(o);
 	}
 	
 	public String renderTargetObject(OWLObject o) {
 		if (engine.getOwlDiffMap() == null) {
 			return "";
 		}
-		if (targetRenderer == null) {
-			setTargetShortFormProvider(getDefaultShortFormProvider(engine.getOwlDiffMap().getTargetOntology()));			
-		}
-		return render(o, DifferencePosition.TARGET);
+		return getRenderer(DifferencePosition.TARGET).render(o);
 	}
 	
 	public String renderDiff(EntityBasedDiff diff) {
@@ -161,23 +184,66 @@ public class RenderingService {
 		return diffDescription.toString();
 	}
 
-	private String render(OWLObject o, DifferencePosition position) {
-		WriterDelegate writer = (position == DifferencePosition.TARGET) ? targetWriter : sourceWriter;
-		writer.reset();
-		ManchesterOWLSyntaxObjectRenderer renderer = (position == DifferencePosition.TARGET) ? targetRenderer : sourceRenderer;
-		o.accept(renderer);
-		return writer.toString();
+	/**
+	 * Renders the entities.  The renderings are remembered so later calls to renderSourceObject and
+	 * renderTargetObject for these entities are lookups.
+	 */
+	public Map<OWLEntity, String> renderEntities(Collection<? extends OWLEntity> entities, DifferencePosition position) {
+		OWLEntity[] entityArray = entities.toArray(new OWLEntity[entities.size()]);
+		String[] renderings = renderEntities(entityArray, position);
+		Map<OWLEntity, String> renderingMap = new HashMap<OWLEntity, String>();
+		for (int i = 0; i < entityArray.length; i++) {
+			renderingMap.put(entityArray[i], renderings[i]);
+		}
+		return renderingMap;
 	}
 
-	private ManchesterOWLSyntaxObjectRenderer getRenderer(WriterDelegate writer, 
-													      final ShortFormProvider shortFormProvider, 
-													      final IRIShortFormProvider iriShortFormProvider) {
-		return new ManchesterOWLSyntaxObjectRenderer(writer, shortFormProvider) {
-			@Override
-			public void visit(IRI iri) {
-				write(iriShortFormProvider.getShortForm(iri));
+	private String[] renderEntities(OWLEntity[] entities, DifferencePosition position) {
+		String[] renderings = new String[entities.length];
+		if (engine.getOwlDiffMap() == null) {
+			Arrays.fill(renderings, "");
+		}
+		else {
+			SideRenderer renderer = getRenderer(position);
+			if (renderer.isThreadSafe() && entities.length > PARTITION_SIZE) {
+				ForkJoinPool.commonPool().invoke(new RenderTask(renderer, entities, renderings, 0, entities.length));
 			}
-		};
+			else {
+				for (int i = 0; i < entities.length; i++) {
+					renderings[i] = renderer.render(entities[i]);
+				}
+			}
+		}
+		return renderings;
+	}
+
+	private SideRenderer getRenderer(DifferencePosition position) {
+		SideRenderer renderer = position == DifferencePosition.TARGET ? targetRenderer : sourceRenderer;
+		if (renderer == null) {
+			renderer = createDefaultRenderer(position);
+		}
+		return renderer;
+	}
+
+	/*
+	 * The indexed providers only read the index so their renderers do without the lock.
+	 */
+	private synchronized SideRenderer createDefaultRenderer(DifferencePosition position) {
+		if (position == DifferencePosition.SOURCE) {
+			if (sourceRenderer == null) {
+				ShortFormProvider shortFormProvider = getIndexedShortFormProvider(DifferencePosition.SOURCE);
+				sourceRenderer = new SideRenderer(shortFormProvider, getIRIShortFormProvider(shortFormProvider), null);
+			}
+			return sourceRenderer;
+		}
+		else {
+			if (targetRenderer == null) {
+				ShortFormProvider shortFormProvider = getIndexedShortFormProvider(DifferencePosition.TARGET);
+				targetRenderer = new SideRenderer(shortFormProvider, getIRIShortFormProvider(shortFormProvider), null);
+				targetNameToEntityMap = null;
+			}
+			return targetRenderer;
+		}
 	}
 	
 	private IRIShortFormProvider getIRIShortFormProvider(final ShortFormProvider shortFormProvider) {
@@ -191,63 +257,182 @@ public class RenderingService {
 	}
 	
 	public OWLEntity getTargetEntityByRendering(String rendering) {
+		Map<String, OWLEntity> nameToEntityMap = targetNameToEntityMap;
+		if (nameToEntityMap == null) {
+			nameToEntityMap = buildTargetNameToEntityMap();
+		}
+		return nameToEntityMap.get(rendering);
+	}
+
+	private synchronized Map<String, OWLEntity> buildTargetNameToEntityMap() {
 		if (targetNameToEntityMap == null) {
-			targetNameToEntityMap = new HashMap<String, OWLEntity>();
-			Set<String> toRemove = new TreeSet<String>();
-			for (OWLEntity e : engine.getOwlDiffMap().getTargetOntology().getSignature()) {
-				String eRendering = renderTargetObject(e);
+			Set<OWLEntity> signature = engine.getOwlDiffMap().getTargetOntology().getSignature();
+			OWLEntity[] entities = signature.toArray(new OWLEntity[signature.size()]);
+			String[] renderings = renderEntities(entities, DifferencePosition.TARGET);
+			Map<String, OWLEntity> nameToEntityMap = new HashMap<String, OWLEntity>();
+			Set<String> toRemove = new HashSet<String>();
+			for (int i = 0; i < entities.length; i++) {
+				String eRendering = renderings[i];
 				if (eRendering == null) {
 					continue;
 				}
-				if (targetNameToEntityMap.get(eRendering) != null) {
+				if (nameToEntityMap.get(eRendering) != null) {
 					toRemove.add(eRendering);
 				}
 				else {
-					targetNameToEntityMap.put(eRendering, e);
+					nameToEntityMap.put(eRendering, entities[i]);
 				}
 			}
 			for (String ambiguousRendering : toRemove) {
-				targetNameToEntityMap.remove(ambiguousRendering);
+				nameToEntityMap.remove(ambiguousRendering);
 			}
+			targetNameToEntityMap = nameToEntityMap;
 		}
-		return targetNameToEntityMap.get(rendering);
+		return targetNameToEntityMap;
 	}
 	
-	private static class WriterDelegate extends Writer {
+	/*
+	 * Follows AnnotationValueShortFormProvider over the imports closure: the label in the most preferred
+	 * language, then a label that is an IRI and then the fragment of the entity IRI.  When an entity has
+	 * two labels in its best language, this takes the first one that the index found.
+	 */
+	private static class IndexedLabelShortFormProvider implements ShortFormProvider {
+		private OntologyIndex index;
+		private OWLAnnotationProperty labelProperty;
+		private List<String> langs;
+		private ShortFormProvider alternateShortFormProvider = new SimpleShortFormProvider();
+		private IRIShortFormProvider alternateIRIShortFormProvider = new SimpleIRIShortFormProvider();
 
-        private StringWriter delegate;
+		public IndexedLabelShortFormProvider(OntologyIndex index, OWLAnnotationProperty labelProperty, List<String> langs) {
+			this.index = index;
+			this.labelProperty = labelProperty;
+			this.langs = langs;
+		}
 
-        public WriterDelegate() {
+		@Override
+		public String getShortForm(OWLEntity entity) {
+			Map<String, OWLLiteral> labels = index.getLabels(entity.getIRI());
+			for (String lang : langs) {
+				OWLLiteral label = labels.get(lang);
+				if (label != null) {
+					return label.getLiteral();
+				}
+			}
+			for (OWLAnnotationValue value : index.getAnnotationValues(entity.getIRI(), labelProperty)) {
+				if (value instanceof IRI) {
+					return alternateIRIShortFormProvider.getShortForm((IRI) value);
+				}
+			}
+			return alternateShortFormProvider.getShortForm(entity);
 		}
 
+		@Override
+		public void dispose() {
+		}
+	}
 
-		private void reset() {
-            delegate = new StringWriter();
-        }
+	/*
+	 * The renderings of one side.  An entity is rendered as its short form so the short forms double as
+	 * the entity renderings.  The delegate short form provider is called with the lock held unless there
+	 * is no lock, in which case the delegate must be thread-safe.
+	 */
+	private static class SideRenderer {
+		private ShortFormProvider shortFormProvider;
+		private IRIShortFormProvider iriShortFormProvider;
+		private boolean threadSafe;
+		private Map<OWLEntity, String> shortForms = new ConcurrentHashMap<OWLEntity, String>();
+		private Map<OWLObject, String> renderings = new ConcurrentHashMap<OWLObject, String>();
 
+		public SideRenderer(final ShortFormProvider delegate, IRIShortFormProvider iriShortFormProvider, final Object lock) {
+			this.iriShortFormProvider = iriShortFormProvider;
+			threadSafe = lock == null;
+			shortFormProvider = new ShortFormProvider() {
+				@Override
+				public String getShortForm(OWLEntity entity) {
+					String shortForm = shortForms.get(entity);
+					if (shortForm == null) {
+						if (lock == null) {
+							shortForm = delegate.getShortForm(entity);
+						}
+						else {
+							synchronized (lock) {
+								shortForm = delegate.getShortForm(entity);
+							}
+						}
+						if (shortForm != null) {
+							shortForms.put(entity, shortForm);
+						}
+					}
+					return shortForm;
+				}
 
-        @Override
-		public String toString() {
-            return delegate.getBuffer().toString();
-        }
+				@Override
+				public void dispose() {
+					delegate.dispose();
+				}
+			};
+		}
 
+		public boolean isThreadSafe() {
+			return threadSafe;
+		}
 
-        @Override
-		public void close() throws IOException {
-            delegate.close();
-        }
+		public String render(OWLObject o) {
+			if (o instanceof OWLEntity) {
+				return shortFormProvider.getShortForm((OWLEntity) o);
+			}
+			String rendering = renderings.get(o);
+			if (rendering == null) {
+				StringWriter writer = new StringWriter();
+				o.accept(new ManchesterOWLSyntaxObjectRenderer(writer, shortFormProvider) {
+					@Override
+					public void visit(IRI iri) {
+						write(iriShortFormProvider.getShortForm(iri));
+					}
+				});
+				rendering = writer.toString();
+				if (renderings.size() >= OBJECT_CACHE_SIZE) {
+					renderings.clear();
+				}
+				renderings.put(o, rendering);
+			}
+			return rendering;
+		}
+	}
 
+	/*
+	 * Each task writes its own slots of the renderings array.
+	 */
+	private static class RenderTask extends RecursiveAction {
+		private static final long serialVersionUID = 6512395407626735215L;
 
-        @Override
-		public void flush() throws IOException {
-            delegate.flush();
-        }
+		private SideRenderer renderer;
+		private OWLEntity[] entities;
+		private String[] renderings;
+		private int start;
+		private int end;
 
+		public RenderTask(SideRenderer renderer, OWLEntity[] entities, String[] renderings, int start, int end) {
+			this.renderer = renderer;
+			this.entities = entities;
+			this.renderings = renderings;
+			this.start = start;
+			this.end = end;
+		}
 
-        @Override
-		public void write(char cbuf[], int off, int len) throws IOException {
-            delegate.write(cbuf, off, len);
-        }
-    }
+		@Override
+		protected void compute() {
+			if (end - start <= PARTITION_SIZE) {
+				for (int i = start; i < end; i++) {
+					renderings[i] = renderer.render(entities[i]);
+				}
+			}
+			else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new RenderTask(renderer, entities, renderings, start, middle),
+						  new RenderTask(renderer, entities, renderings, middle, end));
+			}
+		}
+	}
 
 }
@@ -1,17 +1,13 @@
 package org.protege.owl.diff.service;
 
-import java.util.HashSet;
 import java.util.Set;
 
 import org.protege.owl.diff.DifferencePosition;
 import org.protege.owl.diff.Engine;
-import org.protege.owl.diff.align.OwlDiffMap;
 import org.semanticweb.owlapi.model.OWLClass;
-import org.semanticweb.owlapi.model.OWLClassExpression;
-import org.semanticweb.owlapi.search.EntitySearcher;
 
 /**
- * This class provides a trivial service - it gets subclasses and superclasses.  It is here as a marker
+ * This class provides a trivial service - it gets subclasses and superclasses from the HierarchyService.  It is here as a marker
  * for the time when we might add some inference to this class.  In particular, one might expect to see the 
  * CheeseyPizza inference and an inference that classes without a parent are subclasses of OWL thing.  Adding
  * these capabilities will make this services more expensive so getting this service needs to be deferred until
@@ -19,7 +15,7 @@ import org.semanticweb.owlapi.search.EntitySearcher;
  */
 
 public class SiblingService {
-	private OwlDiffMap diffs;
+	private HierarchyService hierarchy;
 	
 	
 	public static SiblingService get(Engine e) {
@@ -32,31 +28,17 @@ public class SiblingService {
 	}
 	
 	private SiblingService(Engine e) {
-		diffs = e.getOwlDiffMap();
+		hierarchy = HierarchyService.get(e);
 	}
 	
 	
 	public Set<OWLClass> getSourceSuperClasses(OWLClass c) {
-		Set<OWLClass> superClasses = new HashSet<OWLClass>();
-        for (OWLClassExpression ce : EntitySearcher.getSuperClasses(c,
-                diffs.getSourceOntology())) {
-			if (!ce.isAnonymous()) {
-				superClasses.add(ce.asOWLClass());
-			}
-		}
-		return superClasses;
+		return hierarchy.getSuperClasses(c, DifferencePosition.SOURCE);
 	}
 	
 	
 	public Set<OWLClass> getSubClasses(OWLClass c, DifferencePosition position) {
-		Set<OWLClass> subClasses = new HashSet<OWLClass>();
-        for (OWLClassExpression ce : EntitySearcher.getSubClasses(c,
-                position.getOntology(diffs))) {
-			if (!ce.isAnonymous()) {
-				subClasses.add(ce.asOWLClass());
-			}
-		}
-		return subClasses;
+		return hierarchy.getSubClasses(c, position);
 	}
 	
 }
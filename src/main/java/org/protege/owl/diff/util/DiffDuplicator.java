@@ -89,7 +89,7 @@ public class DiffDuplicator extends OWLObjectDuplicator {
         setLastObject(iri);
     }
 
-    private void handleEntity(OWLEntity entity) {
+    protected void handleEntity(OWLEntity entity) {
         Map<OWLEntity, OWLEntity> entityMap = diffs.getEntityMap();
         if (!entityMap.containsKey(entity)) {
             throw new UnmappedEntityException("Entity map should contain all referenced entities");
@@ -0,0 +1,281 @@
+package org.protege.owl.diff.util;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.protege.owl.diff.align.OwlDiffMap;
+import org.protege.owl.diff.align.util.UnmappedEntityException;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLAnnotationPropertyDomainAxiom;
+import org.semanticweb.owlapi.model.OWLAnnotationPropertyRangeAxiom;
+import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLDataAllValuesFrom;
+import org.semanticweb.owlapi.model.OWLDataExactCardinality;
+import org.semanticweb.owlapi.model.OWLDataHasValue;
+import org.semanticweb.owlapi.model.OWLDataMaxCardinality;
+import org.semanticweb.owlapi.model.OWLDataMinCardinality;
+import org.semanticweb.owlapi.model.OWLDataSomeValuesFrom;
+import org.semanticweb.owlapi.model.OWLDatatype;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLObjectAllValuesFrom;
+import org.semanticweb.owlapi.model.OWLObjectComplementOf;
+import org.semanticweb.owlapi.model.OWLObjectExactCardinality;
+import org.semanticweb.owlapi.model.OWLObjectHasSelf;
+import org.semanticweb.owlapi.model.OWLObjectHasValue;
+import org.semanticweb.owlapi.model.OWLObjectIntersectionOf;
+import org.semanticweb.owlapi.model.OWLObjectMaxCardinality;
+import org.semanticweb.owlapi.model.OWLObjectMinCardinality;
+import org.semanticweb.owlapi.model.OWLObjectOneOf;
+import org.semanticweb.owlapi.model.OWLObjectSomeValuesFrom;
+import org.semanticweb.owlapi.model.OWLObjectUnionOf;
+
+/**
+ * Translates source axioms into the terms of the target ontology using the current state of a diff map.
+ * <p>
+ * The translator is meant to live as long as the diff map.  Each thread gets its own DiffDuplicator and
+ * the translations of class expressions are shared between the threads.  A class expression can only be
+ * translated once all of its entities are mapped and entities are never re-mapped, so a remembered
+ * translation stays good for the life of the diff map.  Expressions and axioms whose entities all map to
+ * themselves are returned as is.
+ * <p>
+ * Translations may run in parallel with each other but not with changes to the diff map.
+ */
+public class DiffTranslator {
+    private OwlDiffMap diffs;
+    private Map<OWLClassExpression, OWLClassExpression> translatedClassExpressions = new ConcurrentHashMap<OWLClassExpression, OWLClassExpression>();
+    private ThreadLocal<MemoizingDuplicator> duplicators = new ThreadLocal<MemoizingDuplicator>() {
+        @Override
+        protected MemoizingDuplicator initialValue() {
+            return new MemoizingDuplicator();
+        }
+    };
+
+    public DiffTranslator(OwlDiffMap diffs) {
+        this.diffs = diffs;
+    }
+
+    /**
+     * @throws UnmappedEntityException if the axiom references an entity or anonymous individual that is not mapped.
+     */
+    public OWLAxiom translate(OWLAxiom axiom) {
+        if (!hasTranslatableIRIs(axiom) && mapsToItself(axiom.getSignature(), axiom.getAnonymousIndividuals())) {
+            return axiom;
+        }
+        return duplicators.get().duplicateObject(axiom);
+    }
+
+    /**
+     * Forgets the remembered class expression translations.
+     */
+    public void clear() {
+        translatedClassExpressions.clear();
+    }
+
+    /*
+     * Annotation subjects and values may be IRI's which the DiffDuplicator translates when they name
+     * a mapped entity.  These do not show up in the signature of the axiom.
+     */
+    private static boolean hasTranslatableIRIs(OWLAxiom axiom) {
+        if (axiom instanceof OWLAnnotationAssertionAxiom
+                || axiom instanceof OWLAnnotationPropertyDomainAxiom
+                || axiom instanceof OWLAnnotationPropertyRangeAxiom) {
+            return true;
+        }
+        for (OWLAnnotation annotation : axiom.getAnnotations()) {
+            if (hasTranslatableIRIs(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasTranslatableIRIs(OWLAnnotation annotation) {
+        if (annotation.getValue() instanceof IRI) {
+            return true;
+        }
+        for (OWLAnnotation nested : annotation.getAnnotations()) {
+            if (hasTranslatableIRIs(nested)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean mapsToItself(Set<OWLEntity> signature, Set<OWLAnonymousIndividual> anonymousIndividuals) {
+        if (!anonymousIndividuals.isEmpty()) {
+            return false;
+        }
+        Map<OWLEntity, OWLEntity> entityMap = diffs.getEntityMap();
+        for (OWLEntity entity : signature) {
+            if (!(entity instanceof OWLDatatype) && !entity.equals(entityMap.get(entity))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private class MemoizingDuplicator extends DiffDuplicator {
+
+        public MemoizingDuplicator() {
+            super(diffs);
+        }
+
+        private boolean reuse(OWLClassExpression ce) {
+            OWLClassExpression translated = translatedClassExpressions.get(ce);
+            if (translated == null && mapsToItself(ce.getSignature(), ce.getAnonymousIndividuals())) {
+                translated = ce;
+                translatedClassExpressions.put(ce, ce);
+            }
+            if (translated != null) {
+                setLastObject(translated);
+                return true;
+            }
+            return false;
+        }
+
+        private void remember(OWLClassExpression ce) {
+            translatedClassExpressions.put(ce, (OWLClassExpression) getLastObject());
+        }
+
+        @Override
+        public void visit(OWLObjectIntersectionOf ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLObjectUnionOf ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLObjectComplementOf ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLObjectSomeValuesFrom ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLObjectAllValuesFrom ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLObjectHasValue ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLObjectMinCardinality ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLObjectExactCardinality ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLObjectMaxCardinality ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLObjectHasSelf ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLObjectOneOf ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLDataSomeValuesFrom ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLDataAllValuesFrom ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLDataHasValue ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLDataMinCardinality ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLDataExactCardinality ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+
+        @Override
+        public void visit(OWLDataMaxCardinality ce) {
+            if (!reuse(ce)) {
+                super.visit(ce);
+                remember(ce);
+            }
+        }
+    }
+}
@@ -1,36 +1,97 @@
 package org.protege.owl.diff;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import junit.framework.TestCase;
 
+import org.protege.owl.diff.align.AlignmentAggressiveness;
 import org.protege.owl.diff.align.AlignmentAlgorithm;
+import org.protege.owl.diff.align.AlignmentEvent;
+import org.protege.owl.diff.align.AlignmentEventListener;
+import org.protege.owl.diff.align.AlignmentListener;
+import org.protege.owl.diff.align.IncrementalAlignmentAlgorithm;
+import org.protege.owl.diff.align.MatchKind;
 import org.protege.owl.diff.align.OwlDiffMap;
+import org.protege.owl.diff.align.UnmatchedSourceAxiom;
+import org.protege.owl.diff.align.algorithms.MatchAnonymousIndividuals;
 import org.protege.owl.diff.align.algorithms.MatchByCode;
+import org.protege.owl.diff.align.algorithms.MatchByCrossReference;
 import org.protege.owl.diff.align.algorithms.MatchById;
 import org.protege.owl.diff.align.algorithms.MatchByIdFragment;
+import org.protege.owl.diff.align.algorithms.MatchByMappingFile;
+import org.protege.owl.diff.align.algorithms.MatchBySimilarRendering;
 import org.protege.owl.diff.align.algorithms.MatchLoneSiblings;
 import org.protege.owl.diff.align.algorithms.MatchStandardVocabulary;
 import org.protege.owl.diff.align.algorithms.SuperSubClassPinch;
+import org.protege.owl.diff.align.impl.AlignmentCache;
+import org.protege.owl.diff.align.impl.AlignmentScheduler;
+import org.protege.owl.diff.align.impl.OwlDiffMapImpl;
+import org.protege.owl.diff.align.impl.SimpleAlignmentExplanation;
+import org.protege.owl.diff.align.util.MappingFileLoader;
 import org.protege.owl.diff.align.util.PrioritizedComparator;
 import org.protege.owl.diff.service.CodeToEntityMapper;
+import org.protege.owl.diff.service.HierarchyService;
+import org.protege.owl.diff.service.OntologyIndex;
+import org.protege.owl.diff.service.OntologyIndexService;
+import org.protege.owl.diff.service.RenderingService;
+import org.protege.owl.diff.util.DiffDuplicator;
+import org.protege.owl.diff.util.DiffTranslator;
 import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.AxiomType;
 import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
+import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassAssertionAxiom;
 import org.semanticweb.owlapi.model.OWLDataFactory;
 import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLIndividual;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObject;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLObjectPropertyAssertionAxiom;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.OWLSubClassOfAxiom;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.util.DeprecatedOWLEntityCollector;
+import org.semanticweb.owlapi.util.ShortFormProvider;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+import uk.ac.manchester.cs.owl.owlapi.mansyntaxrenderer.ManchesterOWLSyntaxObjectRenderer;
 
 
 public class AlignAlgorithmTest extends TestCase {
+    private static final String[] CONSISTENCY_FIXTURES = { "AnnotationChanged", "ChangedDefinition", "LoneUnmatchedSibling02",
+                                                           "LoneUnmatchedSibling03", "MatchingIdFragments", "Merge",
+                                                           "AnonymousIndividuals" };
+
     private OWLDataFactory factory;
     private OWLOntology ontology1;
     private OWLOntology ontology2;
@@ -59,6 +120,21 @@ public class AlignAlgorithmTest extends TestCase {
         assertTrue(diffs.getUnmatchedTargetAxioms().isEmpty());
     }
     
+    public void testFallbackCodes() throws OWLOntologyCreationException {
+        JunitUtilities.printDivider();
+        loadOntologies("UseCode");
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(CodeToEntityMapper.CODE_ANNOTATION_PROPERTY,
+                       "http://www.tigraworld.com/protege/UseCode#missing, http://www.tigraworld.com/protege/UseCode#code");
+        Engine e = new Engine(ontology1, ontology2);
+        e.setParameters(parameters);
+        e.setAlignmentAlgorithms(new AlignmentAlgorithm[] { new MatchByCode(), new MatchStandardVocabulary() });
+        e.phase1();
+        OwlDiffMap diffs = e.getOwlDiffMap();
+        assertTrue(diffs.getUnmatchedSourceEntities().isEmpty());
+        assertTrue(diffs.getUnmatchedTargetEntities().isEmpty());
+    }
+
     public void testPureCodesInsufficient() throws OWLOntologyCreationException {
         JunitUtilities.printDivider();
         loadOntologies("UseCodeAndName");
@@ -206,4 +282,1329 @@ public class AlignAlgorithmTest extends TestCase {
         	assertTrue(entity.getIRI().toString().endsWith("RefactoredNotMatcheable"));
         }
     }
+    
+    public void testAlignmentCache() throws OWLOntologyCreationException, IOException {
+        JunitUtilities.printDivider();
+        loadOntologies("UseCodeAndName");
+        File cacheDirectory = Files.createTempDirectory("alignment-cache").toFile();
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(CodeToEntityMapper.CODE_ANNOTATION_PROPERTY, "http://www.tigraworld.com/protege/UseCode#code");
+        parameters.put(AlignmentCache.ALIGNMENT_CACHE_DIRECTORY, cacheDirectory.getPath());
+        try {
+            Engine e = new Engine(ontology1, ontology2);
+            e.setParameters(parameters);
+            e.setAlignmentAlgorithms(new AlignmentAlgorithm[] { new MatchByCode(), new MatchById() });
+            e.phase1();
+            assertFalse(e.isAlignmentRestored());
+            OwlDiffMap computed = e.getOwlDiffMap();
+            assertEquals(1, cacheDirectory.listFiles().length);
+
+            Engine e2 = new Engine(ontology1, ontology2);
+            e2.setParameters(parameters);
+            e2.setAlignmentAlgorithms(new AlignmentAlgorithm[] { new MatchByCode(), new MatchById() });
+            e2.phase1();
+            assertTrue(e2.isAlignmentRestored());
+            OwlDiffMap restored = e2.getOwlDiffMap();
+            assertEquals(computed.getEntityMap(), restored.getEntityMap());
+            assertEquals(computed.getUnmatchedSourceAxioms(), restored.getUnmatchedSourceAxioms());
+            assertEquals(computed.getUnmatchedTargetAxioms(), restored.getUnmatchedTargetAxioms());
+            for (OWLEntity source : computed.getEntityMap().keySet()) {
+                assertEquals(computed.getExplanation(source).getExplanation(), restored.getExplanation(source).getExplanation());
+            }
+        }
+        finally {
+            deleteDirectory(cacheDirectory);
+        }
+    }
+
+    /*
+     * The codes and other annotations are read from the imports closure, so a change to an imported
+     * ontology must not restore the alignment saved before the change.
+     */
+    public void testAlignmentCacheWithImports() throws OWLOntologyCreationException, IOException {
+        JunitUtilities.printDivider();
+        loadOntologies("UseCodeAndName");
+        OWLOntologyManager manager2 = ontology2.getOWLOntologyManager();
+        OWLDataFactory factory2 = manager2.getOWLDataFactory();
+        IRI importedIRI = IRI.create("http://www.tigraworld.com/protege/UseCodeImported");
+        OWLOntology imported = manager2.createOntology(importedIRI);
+        manager2.applyChange(new AddImport(ontology2, factory2.getOWLImportsDeclaration(importedIRI)));
+        OWLAnnotationProperty code = factory2.getOWLAnnotationProperty(IRI.create("http://www.tigraworld.com/protege/UseCode#code"));
+        IRI subject = IRI.create("http://www.tigraworld.com/protege/UseCode#Imported");
+        manager2.addAxiom(imported, factory2.getOWLAnnotationAssertionAxiom(code, subject, factory2.getOWLLiteral("imported")));
+        File cacheDirectory = Files.createTempDirectory("alignment-cache").toFile();
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(CodeToEntityMapper.CODE_ANNOTATION_PROPERTY, code.getIRI().toString());
+        parameters.put(AlignmentCache.ALIGNMENT_CACHE_DIRECTORY, cacheDirectory.getPath());
+        try {
+            boolean[] restored = { false, true, false };
+            for (int i = 0; i < restored.length; i++) {
+                if (i == 2) {
+                    manager2.addAxiom(imported, factory2.getOWLAnnotationAssertionAxiom(code, subject, factory2.getOWLLiteral("changed")));
+                }
+                Engine e = new Engine(ontology1, ontology2);
+                e.setParameters(parameters);
+                e.setAlignmentAlgorithms(new AlignmentAlgorithm[] { new MatchByCode(), new MatchById() });
+                e.phase1();
+                assertEquals(restored[i], e.isAlignmentRestored());
+            }
+            assertEquals(2, cacheDirectory.listFiles().length);
+        }
+        finally {
+            deleteDirectory(cacheDirectory);
+        }
+    }
+
+    /*
+     * A mapping file edited in place must not restore the alignment made with its old contents.
+     */
+    public void testAlignmentCacheWithEditedMappingFile() throws OWLOntologyCreationException, IOException {
+        JunitUtilities.printDivider();
+        loadOntologies("LoneUnmatchedSibling01");
+        String ns = "http://protege.org/ontologies/LoneUnmatchedSibling.owl";
+        OWLClass source = factory.getOWLClass(IRI.create(ns + "#UnmatchedSiblingLeft"));
+        OWLClass target = factory.getOWLClass(IRI.create(ns + "#UnmatchedSiblingRight"));
+        File cacheDirectory = Files.createTempDirectory("alignment-cache").toFile();
+        File mappingFile = File.createTempFile("mapping", ".tsv");
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(MatchByMappingFile.MAPPING_FILE_PROPERTY, mappingFile.getPath());
+        parameters.put(AlignmentCache.ALIGNMENT_CACHE_DIRECTORY, cacheDirectory.getPath());
+        try {
+            Files.write(mappingFile.toPath(), Arrays.asList(ns + "#UnmatchedSiblingLeft\t" + ns + "#UnmatchedSiblingRight"), StandardCharsets.UTF_8);
+            boolean[] restored = { false, true, false };
+            for (int i = 0; i < restored.length; i++) {
+                if (i == 2) {
+                    Files.write(mappingFile.toPath(), Arrays.asList("# nothing is mapped"), StandardCharsets.UTF_8);
+                }
+                Engine e = new Engine(ontology1, ontology2);
+                e.setParameters(parameters);
+                e.setAlignmentAlgorithms(new MatchById(), new MatchStandardVocabulary(), new MatchByMappingFile());
+                e.phase1();
+                assertEquals(restored[i], e.isAlignmentRestored());
+                assertEquals(i < 2 ? target : null, e.getOwlDiffMap().getEntityMap().get(source));
+            }
+            assertEquals(2, cacheDirectory.listFiles().length);
+        }
+        finally {
+            mappingFile.delete();
+            deleteDirectory(cacheDirectory);
+        }
+    }
+
+    public void testAlignmentCacheWithAnonymousIndividuals() throws OWLOntologyCreationException, IOException {
+        JunitUtilities.printDivider();
+        loadOntologies("AnonymousIndividuals");
+        File cacheDirectory = Files.createTempDirectory("alignment-cache").toFile();
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(AlignmentCache.ALIGNMENT_CACHE_DIRECTORY, cacheDirectory.getPath());
+        try {
+            for (int i = 0; i < 2; i++) {
+                Engine e = new Engine(ontology1, ontology2);
+                e.setParameters(parameters);
+                e.setAlignmentAlgorithms(new MatchById(), new MatchStandardVocabulary(), new MatchAnonymousIndividuals());
+                e.phase1();
+                assertFalse(e.isAlignmentRestored());
+                assertEquals(0, cacheDirectory.listFiles().length);
+            }
+        }
+        finally {
+            deleteDirectory(cacheDirectory);
+        }
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+    
+    public void testMappingFile() throws OWLOntologyCreationException, IOException {
+        JunitUtilities.printDivider();
+        loadOntologies("LoneUnmatchedSibling01");
+        String ns = "http://protege.org/ontologies/LoneUnmatchedSibling.owl";
+        File mappingFile = File.createTempFile("mapping", ".tsv");
+        try {
+            Files.write(mappingFile.toPath(), Arrays.asList("# previous release", 
+                                                             "source\ttarget",
+                                                             ns + "#UnmatchedSiblingLeft\t" + ns + "#UnmatchedSiblingRight"),
+                        StandardCharsets.UTF_8);
+            Map<String, String> parameters = new HashMap<String, String>();
+            parameters.put(MatchByMappingFile.MAPPING_FILE_PROPERTY, mappingFile.getPath());
+            Engine e = new Engine(ontology1, ontology2);
+            e.setParameters(parameters);
+            e.setAlignmentAlgorithms(new MatchById(), new MatchStandardVocabulary(), new MatchByMappingFile());
+            e.phase1();
+            OwlDiffMap diffs = e.getOwlDiffMap();
+            assertTrue(diffs.getUnmatchedSourceEntities().isEmpty());
+            assertTrue(diffs.getUnmatchedTargetEntities().isEmpty());
+            OWLClass source = factory.getOWLClass(IRI.create(ns + "#UnmatchedSiblingLeft"));
+            OWLClass target = factory.getOWLClass(IRI.create(ns + "#UnmatchedSiblingRight"));
+            assertEquals(target, diffs.getEntityMap().get(source));
+            assertTrue(diffs.getExplanation(source).getExplanation().contains(mappingFile.getName()));
+        }
+        finally {
+            mappingFile.delete();
+        }
+    }
+
+    /*
+     * Commas are legal in IRIs, so they only separate the columns of a line without tabs and outside
+     * angle brackets.
+     */
+    public void testMappingFileColumns() throws OWLOntologyCreationException, IOException {
+        JunitUtilities.printDivider();
+        loadOntologies("LoneUnmatchedSibling01");
+        String ns = "http://protege.org/ontologies/LoneUnmatchedSibling.owl";
+        Engine e = new Engine(ontology1, ontology2);
+        e.setAlignmentAlgorithms(new MatchById(), new MatchStandardVocabulary());
+        e.phase1();
+        MappingFileLoader loader = new MappingFileLoader(e.getOwlDiffMap(), new SimpleAlignmentExplanation("Test"));
+        loader.load(new StringReader(ns + "#A,B\t" + ns + "#C,D\n"
+                                     + "<" + ns + "#A,B>, <" + ns + "#C,D>\n"
+                                     + "<" + ns + "#A,B> " + ns + "#C\n"
+                                     + ns + "#A," + ns + "#C\n"
+                                     + ns + "#A,B\n"
+                                     + ns + "#UnmatchedSiblingLeft , " + ns + "#UnmatchedSiblingRight\n"));
+        assertEquals(6, loader.getRows());
+        assertEquals(1, loader.getMalformedRows());
+        assertEquals(4, loader.getRejectedMatches());
+        assertEquals(1, loader.getMatches());
+        OWLClass source = factory.getOWLClass(IRI.create(ns + "#UnmatchedSiblingLeft"));
+        OWLClass target = factory.getOWLClass(IRI.create(ns + "#UnmatchedSiblingRight"));
+        assertEquals(target, e.getOwlDiffMap().getEntityMap().get(source));
+    }
+
+    public void testAlignmentMatchesBruteForce() throws OWLOntologyCreationException {
+        for (String prefix : CONSISTENCY_FIXTURES) {
+            JunitUtilities.printDivider();
+            loadOntologies(prefix);
+            Engine e = new Engine(ontology1, ontology2);
+            e.setAlignmentAlgorithms(consistencyAlgorithms());
+            e.phase1();
+            assertAlignmentConsistent(e.getOwlDiffMap());
+        }
+        JunitUtilities.printDivider();
+        loadOntologies("UseCodeAndName");
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(CodeToEntityMapper.CODE_ANNOTATION_PROPERTY, "http://www.tigraworld.com/protege/UseCode#code");
+        Engine e = new Engine(ontology1, ontology2);
+        e.setParameters(parameters);
+        e.setAlignmentAlgorithms(new MatchByCode(), new MatchById());
+        e.phase1();
+        assertAlignmentConsistent(e.getOwlDiffMap());
+    }
+
+    /*
+     * Matches the entities that keep their names one at a time, in both orders, and checks after each match
+     * that the source axioms waiting for a match know which of their entities are still unmatched.
+     */
+    public void testUnmatchedReferencesFollowMatches() throws OWLOntologyCreationException {
+        SimpleAlignmentExplanation explanation = new SimpleAlignmentExplanation("Same name");
+        for (String prefix : CONSISTENCY_FIXTURES) {
+            JunitUtilities.printDivider();
+            loadOntologies(prefix);
+            List<OWLEntity> shared = new ArrayList<OWLEntity>(ontology1.getSignature());
+            shared.retainAll(ontology2.getSignature());
+            Collections.sort(shared);
+            Set<OWLAxiom> unmatchedSourceAxioms = null;
+            for (int pass = 0; pass < 2; pass++) {
+                OwlDiffMapImpl diffs = new OwlDiffMapImpl(factory, ontology1, ontology2);
+                assertUnmatchedReferences(diffs);
+                for (OWLEntity entity : shared) {
+                    diffs.addMatch(entity, entity, explanation);
+                    assertUnmatchedReferences(diffs);
+                }
+                diffs.finish();
+                assertAlignmentConsistent(diffs);
+                if (unmatchedSourceAxioms != null) {
+                    assertEquals(unmatchedSourceAxioms, new HashSet<OWLAxiom>(diffs.getUnmatchedSourceAxioms()));
+                }
+                unmatchedSourceAxioms = new HashSet<OWLAxiom>(diffs.getUnmatchedSourceAxioms());
+                Collections.reverse(shared);
+            }
+        }
+    }
+
+    /*
+     * One translator is kept for the whole alignment, as the diff map does, and its translations are compared
+     * with those of a fresh DiffDuplicator after every match.
+     */
+    public void testTranslatorAgreesWithDuplicator() throws OWLOntologyCreationException {
+        SimpleAlignmentExplanation explanation = new SimpleAlignmentExplanation("Same name");
+        for (String prefix : CONSISTENCY_FIXTURES) {
+            JunitUtilities.printDivider();
+            loadOntologies(prefix);
+            List<OWLEntity> shared = new ArrayList<OWLEntity>(ontology1.getSignature());
+            shared.retainAll(ontology2.getSignature());
+            Collections.sort(shared);
+            OwlDiffMapImpl diffs = new OwlDiffMapImpl(factory, ontology1, ontology2);
+            DiffTranslator translator = new DiffTranslator(diffs);
+            for (OWLEntity entity : shared) {
+                diffs.addMatch(entity, entity, explanation);
+                assertTranslations(diffs, translator);
+            }
+
+            Engine e = new Engine(ontology1, ontology2);
+            e.setAlignmentAlgorithms(consistencyAlgorithms());
+            e.phase1();
+            assertTranslations(e.getOwlDiffMap(), new DiffTranslator(e.getOwlDiffMap()));
+        }
+    }
+
+    /*
+     * The matcher makes one match per run.  It is run until a run finds nothing, the algorithm that waits for
+     * entity matches is run once after each match it has not seen and the others only run once.
+     */
+    public void testSchedulerFollowsRerunTriggers() throws OWLOntologyCreationException {
+        JunitUtilities.printDivider();
+        loadOntologies("LoneUnmatchedSibling01");
+        final SimpleAlignmentExplanation explanation = new SimpleAlignmentExplanation("Same name");
+        final OwlDiffMapImpl diffs = new OwlDiffMapImpl(factory, ontology1, ontology2);
+        final List<OWLEntity> shared = new ArrayList<OWLEntity>(ontology1.getSignature());
+        shared.retainAll(ontology2.getSignature());
+        int sharedCount = shared.size();
+        assertTrue(sharedCount > 0);
+        CountingAlgorithm matcher = new CountingAlgorithm() {
+            @Override
+            public void run() {
+                super.run();
+                if (!shared.isEmpty()) {
+                    OWLEntity entity = shared.remove(0);
+                    diffs.addMatch(entity, entity, explanation);
+                }
+            }
+        };
+        IncrementalCountingAlgorithm runOnce = new IncrementalCountingAlgorithm(EnumSet.noneOf(MatchKind.class));
+        IncrementalCountingAlgorithm entityDriven = new IncrementalCountingAlgorithm(EnumSet.of(MatchKind.ENTITY));
+        IncrementalCountingAlgorithm individualDriven = new IncrementalCountingAlgorithm(EnumSet.of(MatchKind.ANONYMOUS_INDIVIDUAL));
+        List<AlignmentAlgorithm> algorithms = new ArrayList<AlignmentAlgorithm>();
+        algorithms.add(matcher);
+        algorithms.add(runOnce);
+        algorithms.add(entityDriven);
+        algorithms.add(individualDriven);
+        AlignmentScheduler scheduler = new AlignmentScheduler(diffs, algorithms);
+        scheduler.run();
+        diffs.finish();
+
+        assertTrue(shared.isEmpty());
+        assertEquals(1, diffs.getUnmatchedSourceEntities().size());
+        assertEquals(sharedCount + 1, matcher.runs);
+        assertEquals(1, runOnce.runs);
+        assertEquals(sharedCount, entityDriven.runs);
+        assertEquals(1, individualDriven.runs);
+        assertEquals(matcher.runs + runOnce.runs + entityDriven.runs + individualDriven.runs, scheduler.getInvocations());
+        assertAlignmentConsistent(diffs);
+    }
+
+    private static class CountingAlgorithm implements AlignmentAlgorithm {
+        int runs = 0;
+
+        public void initialise(Engine e) {
+        }
+
+        public void run() {
+            runs++;
+        }
+
+        public void reset() {
+        }
+
+        public boolean isCustom() {
+            return false;
+        }
+
+        public AlignmentAggressiveness getAggressiveness() {
+            return AlignmentAggressiveness.IGNORE_REFACTOR;
+        }
+
+        public String getAlgorithmName() {
+            return "Counting algorithm";
+        }
+
+        public int getPriority() {
+            return 5;
+        }
+    }
+
+    private static class IncrementalCountingAlgorithm extends CountingAlgorithm implements IncrementalAlignmentAlgorithm {
+        private Set<MatchKind> triggers;
+
+        IncrementalCountingAlgorithm(Set<MatchKind> triggers) {
+            this.triggers = triggers;
+        }
+
+        public Set<MatchKind> getRerunTriggers() {
+            return triggers;
+        }
+    }
+
+    /*
+     * Most source axioms are ruled out by their shape without being translated.  The unmatcheable axioms
+     * reported by the events must still be the translations of the fully mapped source axioms that were
+     * left unmatched, each reported once.
+     */
+    public void testUnmatcheableAxiomsAreUnmatchedTranslations() throws OWLOntologyCreationException {
+        for (String prefix : CONSISTENCY_FIXTURES) {
+            JunitUtilities.printDivider();
+            loadOntologies(prefix);
+            Engine e = new Engine(ontology1, ontology2);
+            e.setAlignmentAlgorithms(consistencyAlgorithms());
+            e.phase1();
+            OwlDiffMapImpl diffs = new OwlDiffMapImpl(factory, ontology1, ontology2);
+            final List<OWLAxiom> unmatcheable = new ArrayList<OWLAxiom>();
+            diffs.addAlignmentEventListener(new AlignmentEventListener() {
+                public void alignmentChanged(AlignmentEvent event) {
+                    unmatcheable.addAll(event.getUnmatcheableAxioms());
+                }
+            });
+            replayMatches(e.getOwlDiffMap(), diffs);
+            assertAlignmentConsistent(diffs);
+
+            List<OWLAxiom> expected = new ArrayList<OWLAxiom>();
+            DiffDuplicator duplicator = new DiffDuplicator(diffs);
+            for (OWLAxiom axiom : diffs.getUnmatchedSourceAxioms()) {
+                if (isFullyMapped(diffs, axiom)) {
+                    expected.add(duplicator.duplicateObject(axiom));
+                }
+            }
+            assertEquals(expected.size(), unmatcheable.size());
+            assertEquals(new HashSet<OWLAxiom>(expected), new HashSet<OWLAxiom>(unmatcheable));
+        }
+    }
+
+    /*
+     * The AlignmentListeners are called from the events.  They must still see every match and every
+     * axiom, in the order of the events.
+     */
+    public void testAlignmentListenersFollowEvents() throws OWLOntologyCreationException {
+        SimpleAlignmentExplanation explanation = new SimpleAlignmentExplanation("Replayed");
+        for (String prefix : CONSISTENCY_FIXTURES) {
+            JunitUtilities.printDivider();
+            loadOntologies(prefix);
+            Engine e = new Engine(ontology1, ontology2);
+            e.setAlignmentAlgorithms(consistencyAlgorithms());
+            e.phase1();
+            Map<OWLEntity, OWLEntity> entityMap = e.getOwlDiffMap().getEntityMap();
+
+            OwlDiffMapImpl diffs = new OwlDiffMapImpl(factory, ontology1, ontology2);
+            RecordingListener recorder = new RecordingListener();
+            diffs.addDiffListener(recorder);
+            final List<OWLAxiom> matchedAxioms = new ArrayList<OWLAxiom>();
+            final List<OWLAxiom> unmatcheableAxioms = new ArrayList<OWLAxiom>();
+            final List<OWLAxiom> movedAxioms = new ArrayList<OWLAxiom>();
+            diffs.addAlignmentEventListener(new AlignmentEventListener() {
+                public void alignmentChanged(AlignmentEvent event) {
+                    matchedAxioms.addAll(event.getMatchedAxioms());
+                    unmatcheableAxioms.addAll(event.getUnmatcheableAxioms());
+                    for (UnmatchedSourceAxiom unmatched : event.getMovedAxioms()) {
+                        movedAxioms.add(unmatched.getAxiom());
+                    }
+                }
+            });
+            List<OWLEntity> sourceEntities = new ArrayList<OWLEntity>(entityMap.keySet());
+            Collections.sort(sourceEntities);
+            Map<OWLEntity, OWLEntity> batch = new HashMap<OWLEntity, OWLEntity>();
+            for (OWLEntity source : sourceEntities.subList(0, sourceEntities.size() / 2)) {
+                batch.put(source, entityMap.get(source));
+            }
+            diffs.addMatchingEntities(batch, explanation);
+            for (OWLEntity source : sourceEntities.subList(sourceEntities.size() / 2, sourceEntities.size())) {
+                diffs.addMatch(source, entityMap.get(source), explanation);
+            }
+            diffs.addMatchingAnonymousIndividuals(new HashMap<OWLAnonymousIndividual, OWLAnonymousIndividual>(e.getOwlDiffMap().getAnonymousIndividualMap()), 
+                                                  explanation);
+            diffs.finish();
+            assertAlignmentConsistent(diffs);
+
+            assertEquals(new HashMap<OWLEntity, OWLEntity>(diffs.getEntityMap()), recorder.entityMatches);
+            assertEquals(new HashMap<OWLAnonymousIndividual, OWLAnonymousIndividual>(diffs.getAnonymousIndividualMap()), 
+                         recorder.individualMatches);
+            assertEquals(matchedAxioms, recorder.matchedAxioms);
+            assertEquals(unmatcheableAxioms, recorder.unmatcheableAxioms);
+            assertEquals(movedAxioms, recorder.movedAxioms);
+            assertEquals(matchedAxioms.size(), new HashSet<OWLAxiom>(matchedAxioms).size());
+            for (OWLAxiom axiom : matchedAxioms) {
+                assertTrue(ontology2.containsAxiom(axiom));
+                assertFalse(diffs.getUnmatchedTargetAxioms().contains(axiom));
+            }
+        }
+    }
+
+    /*
+     * The same matches made with the axioms reconciled as the matches are made, all at the end and half way
+     * through must leave the same unmatched axioms.
+     */
+    public void testLazyAxiomReconciliation() throws OWLOntologyCreationException {
+        SimpleAlignmentExplanation explanation = new SimpleAlignmentExplanation("Replayed");
+        for (String prefix : CONSISTENCY_FIXTURES) {
+            JunitUtilities.printDivider();
+            loadOntologies(prefix);
+            Engine e = new Engine(ontology1, ontology2);
+            e.setAlignmentAlgorithms(consistencyAlgorithms());
+            e.phase1();
+            OwlDiffMap alignment = e.getOwlDiffMap();
+            List<OWLEntity> sourceEntities = new ArrayList<OWLEntity>(alignment.getEntityMap().keySet());
+            Collections.sort(sourceEntities);
+
+            OwlDiffMapImpl eager = new OwlDiffMapImpl(factory, ontology1, ontology2);
+            replayMatches(alignment, eager);
+
+            OwlDiffMapImpl lazy = new OwlDiffMapImpl(factory, ontology1, ontology2);
+            lazy.setLazyAxiomReconciliation(true);
+            replayMatches(alignment, lazy);
+            assertFalse(lazy.isLazyAxiomReconciliation());
+
+            OwlDiffMapImpl mixed = new OwlDiffMapImpl(factory, ontology1, ontology2);
+            mixed.setLazyAxiomReconciliation(true);
+            for (OWLEntity source : sourceEntities.subList(0, sourceEntities.size() / 2)) {
+                mixed.addMatch(source, alignment.getEntityMap().get(source), explanation);
+            }
+            mixed.setLazyAxiomReconciliation(false);
+            assertUnmatchedReferences(mixed);
+            for (OWLEntity source : sourceEntities.subList(sourceEntities.size() / 2, sourceEntities.size())) {
+                mixed.addMatch(source, alignment.getEntityMap().get(source), explanation);
+            }
+            for (Map.Entry<OWLAnonymousIndividual, OWLAnonymousIndividual> entry : alignment.getAnonymousIndividualMap().entrySet()) {
+                mixed.addMatch(entry.getKey(), entry.getValue(), explanation);
+            }
+            mixed.finish();
+
+            for (OwlDiffMap diffs : new OwlDiffMap[] { lazy, mixed }) {
+                assertAlignmentConsistent(diffs);
+                assertEquals(new HashSet<OWLAxiom>(eager.getUnmatchedSourceAxioms()), new HashSet<OWLAxiom>(diffs.getUnmatchedSourceAxioms()));
+                assertEquals(new HashSet<OWLAxiom>(eager.getUnmatchedTargetAxioms()), new HashSet<OWLAxiom>(diffs.getUnmatchedTargetAxioms()));
+            }
+        }
+    }
+
+    /*
+     * The unmatched sets only record their changes to the ontologies.  They must behave as sets while they 
+     * change, including when every target anonymous individual is matched in one batch.
+     */
+    public void testUnmatchedSetsBehaveAsSets() throws OWLOntologyCreationException {
+        SimpleAlignmentExplanation explanation = new SimpleAlignmentExplanation("Replayed");
+        for (String prefix : CONSISTENCY_FIXTURES) {
+            JunitUtilities.printDivider();
+            loadOntologies(prefix);
+            Engine e = new Engine(ontology1, ontology2);
+            e.setAlignmentAlgorithms(consistencyAlgorithms());
+            e.phase1();
+            OwlDiffMap alignment = e.getOwlDiffMap();
+            List<OWLEntity> sourceEntities = new ArrayList<OWLEntity>(alignment.getEntityMap().keySet());
+            Collections.sort(sourceEntities);
+
+            OwlDiffMapImpl diffs = new OwlDiffMapImpl(factory, ontology1, ontology2);
+            assertUnmatchedSetsBehave(diffs);
+            for (OWLEntity source : sourceEntities) {
+                diffs.addMatch(source, alignment.getEntityMap().get(source), explanation);
+                assertUnmatchedSetsBehave(diffs);
+            }
+            for (Map.Entry<OWLAnonymousIndividual, OWLAnonymousIndividual> entry : alignment.getAnonymousIndividualMap().entrySet()) {
+                diffs.addMatch(entry.getKey(), entry.getValue(), explanation);
+                assertUnmatchedSetsBehave(diffs);
+            }
+            diffs.finish();
+            assertUnmatchedSetsBehave(diffs);
+            assertAlignmentConsistent(diffs);
+        }
+
+        JunitUtilities.printDivider();
+        loadOntologies("AnonymousIndividuals");
+        OwlDiffMapImpl diffs = new OwlDiffMapImpl(factory, ontology1, ontology2);
+        List<OWLAnonymousIndividual> sources = new ArrayList<OWLAnonymousIndividual>(diffs.getUnmatchedSourceAnonymousIndividuals());
+        List<OWLAnonymousIndividual> targets = new ArrayList<OWLAnonymousIndividual>(diffs.getUnmatchedTargetAnonymousIndividuals());
+        Collections.sort(sources);
+        Collections.sort(targets);
+        assertEquals(5, sources.size());
+        assertEquals(5, targets.size());
+        Map<OWLAnonymousIndividual, OWLAnonymousIndividual> batch = new HashMap<OWLAnonymousIndividual, OWLAnonymousIndividual>();
+        for (int i = 0; i < sources.size(); i++) {
+            batch.put(sources.get(i), targets.get(i));
+        }
+        diffs.addMatchingAnonymousIndividuals(batch, explanation);
+        assertTrue(diffs.getUnmatchedSourceAnonymousIndividuals().isEmpty());
+        assertTrue(diffs.getUnmatchedTargetAnonymousIndividuals().isEmpty());
+        assertUnmatchedSetsBehave(diffs);
+    }
+
+    /*
+     * The hierarchy service must give the told named super and sub classes that a scan of the subclass
+     * axioms finds.  The source ontologies are given annotated copies of their subclass axioms which must not
+     * show up as duplicate edges.
+     */
+    public void testHierarchyMatchesSubClassAxioms() throws OWLOntologyCreationException {
+        List<String> prefixes = new ArrayList<String>(Arrays.asList(CONSISTENCY_FIXTURES));
+        prefixes.add("ParentsAndChildren");
+        prefixes.add("MatchSuperClasses");
+        for (String prefix : prefixes) {
+            JunitUtilities.printDivider();
+            loadOntologies(prefix);
+            Set<OWLAnnotation> comment = Collections.singleton(factory.getOWLAnnotation(factory.getRDFSComment(), factory.getOWLLiteral("copy")));
+            for (OWLSubClassOfAxiom axiom : ontology1.getAxioms(AxiomType.SUBCLASS_OF)) {
+                ontology1.getOWLOntologyManager().addAxiom(ontology1, axiom.getAnnotatedAxiom(comment));
+            }
+            Engine e = new Engine(ontology1, ontology2);
+            e.setAlignmentAlgorithms(new MatchById());
+            e.phase1();
+            HierarchyService hierarchy = HierarchyService.get(e);
+            assertHierarchy(hierarchy, ontology1, DifferencePosition.SOURCE);
+            assertHierarchy(hierarchy, ontology2, DifferencePosition.TARGET);
+        }
+    }
+
+    private void assertHierarchy(HierarchyService hierarchy, OWLOntology ontology, DifferencePosition position) {
+        Map<OWLClass, Set<OWLClass>> superClasses = new HashMap<OWLClass, Set<OWLClass>>();
+        Map<OWLClass, Set<OWLClass>> subClasses = new HashMap<OWLClass, Set<OWLClass>>();
+        for (OWLClass c : ontology.getClassesInSignature()) {
+            superClasses.put(c, new HashSet<OWLClass>());
+            subClasses.put(c, new HashSet<OWLClass>());
+        }
+        for (OWLSubClassOfAxiom axiom : ontology.getAxioms(AxiomType.SUBCLASS_OF)) {
+            if (!axiom.getSubClass().isAnonymous() && !axiom.getSuperClass().isAnonymous()) {
+                superClasses.get(axiom.getSubClass().asOWLClass()).add(axiom.getSuperClass().asOWLClass());
+                subClasses.get(axiom.getSuperClass().asOWLClass()).add(axiom.getSubClass().asOWLClass());
+            }
+        }
+        for (OWLClass c : ontology.getClassesInSignature()) {
+            assertEquals(superClasses.get(c), hierarchy.getSuperClasses(c, position));
+            assertEquals(subClasses.get(c), hierarchy.getSubClasses(c, position));
+            assertEquals(superClasses.get(c).size(), hierarchy.getSuperClasses(c, position).size());
+            assertEquals(subClasses.get(c).size(), hierarchy.getSubClasses(c, position).size());
+        }
+        OWLClass missing = factory.getOWLClass(IRI.create("http://protege.org/ontologies/Missing.owl#Missing"));
+        assertTrue(hierarchy.getSuperClasses(missing, position).isEmpty());
+        assertTrue(hierarchy.getSubClasses(missing, position).isEmpty());
+    }
+
+    /*
+     * The ontology index must hold what a scan of the annotation assertions of the imports closure and the
+     * subclass axioms finds.  The generated ontology is large enough to be split into several partitions and
+     * repeats some of its annotations in an imported ontology.
+     */
+    public void testOntologyIndexMatchesScan() throws OWLOntologyCreationException {
+        List<String> prefixes = new ArrayList<String>(Arrays.asList(CONSISTENCY_FIXTURES));
+        prefixes.add("UseCode");
+        prefixes.add("SimpleRetire");
+        for (String prefix : prefixes) {
+            JunitUtilities.printDivider();
+            loadOntologies(prefix);
+            Engine e = new Engine(ontology1, ontology2);
+            e.setAlignmentAlgorithms(new MatchById());
+            e.phase1();
+            OntologyIndexService indexes = OntologyIndexService.get(e);
+            assertSame(indexes.getIndex(DifferencePosition.SOURCE), indexes.getIndex(ontology1));
+            assertSame(indexes.getIndex(DifferencePosition.TARGET), indexes.getIndex(ontology2));
+            assertIndex(indexes.getIndex(DifferencePosition.SOURCE), ontology1);
+            assertIndex(indexes.getIndex(DifferencePosition.TARGET), ontology2);
+        }
+
+        JunitUtilities.printDivider();
+        String ns = "http://protege.org/ontologies/Generated.owl#";
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        factory = manager.getOWLDataFactory();
+        IRI importedIRI = IRI.create("http://protege.org/ontologies/GeneratedImport.owl");
+        OWLOntology imported = manager.createOntology(importedIRI);
+        OWLOntology generated = manager.createOntology(IRI.create("http://protege.org/ontologies/Generated.owl"));
+        manager.applyChange(new AddImport(generated, factory.getOWLImportsDeclaration(importedIRI)));
+        OWLAnnotationProperty code = factory.getOWLAnnotationProperty(IRI.create(ns + "code"));
+        OWLAnnotationProperty deprecatedProperty = factory.getOWLAnnotationProperty(OWLRDFVocabulary.OWL_DEPRECATED.getIRI());
+        OWLClass previous = null;
+        for (int i = 0; i < 3 * OntologyIndex.PARTITION_SIZE; i++) {
+            OWLClass c = factory.getOWLClass(IRI.create(ns + "C" + i));
+            manager.addAxiom(generated, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), c.getIRI(), factory.getOWLLiteral("Class " + i)));
+            manager.addAxiom(generated, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), c.getIRI(), factory.getOWLLiteral("Klasse " + i, "de")));
+            if (i % 3 == 0) {
+                manager.addAxiom(imported, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), c.getIRI(), factory.getOWLLiteral("Class " + i)));
+                manager.addAxiom(imported, factory.getOWLAnnotationAssertionAxiom(code, c.getIRI(), factory.getOWLLiteral("C" + (i % 100))));
+            }
+            if (i % 7 == 0) {
+                manager.addAxiom(generated, factory.getOWLAnnotationAssertionAxiom(deprecatedProperty, c.getIRI(), factory.getOWLLiteral(i % 2 == 0)));
+            }
+            if (previous != null) {
+                manager.addAxiom(generated, factory.getOWLSubClassOfAxiom(c, previous));
+                manager.addAxiom(generated, factory.getOWLSubClassOfAxiom(c, factory.getOWLObjectComplementOf(previous)));
+            }
+            previous = c;
+        }
+        manager.addAxiom(generated, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), factory.getOWLAnonymousIndividual(), factory.getOWLLiteral("Anonymous")));
+        assertIndex(OntologyIndex.build(generated, ForkJoinPool.commonPool()), generated);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertIndex(OntologyIndex.build(generated, pool), generated);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private void assertIndex(OntologyIndex index, OWLOntology ontology) {
+        Map<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>> annotations = new HashMap<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>>();
+        Set<IRI> deprecated = new HashSet<IRI>();
+        Set<IRI> subjects = new HashSet<IRI>();
+        for (OWLOntology o : ontology.getImportsClosure()) {
+            for (OWLAnnotationAssertionAxiom assertion : o.getAxioms(AxiomType.ANNOTATION_ASSERTION)) {
+                if (!(assertion.getSubject() instanceof IRI)) {
+                    continue;
+                }
+                IRI subject = (IRI) assertion.getSubject();
+                subjects.add(subject);
+                Map<IRI, List<OWLAnnotationValue>> bySubject = annotations.get(assertion.getProperty());
+                if (bySubject == null) {
+                    bySubject = new HashMap<IRI, List<OWLAnnotationValue>>();
+                    annotations.put(assertion.getProperty(), bySubject);
+                }
+                List<OWLAnnotationValue> values = bySubject.get(subject);
+                if (values == null) {
+                    values = new ArrayList<OWLAnnotationValue>();
+                    bySubject.put(subject, values);
+                }
+                values.add(assertion.getValue());
+                if (assertion.getProperty().getIRI().equals(OWLRDFVocabulary.OWL_DEPRECATED.getIRI())
+                        && assertion.getValue() instanceof OWLLiteral
+                        && ((OWLLiteral) assertion.getValue()).isBoolean() && ((OWLLiteral) assertion.getValue()).parseBoolean()) {
+                    deprecated.add(subject);
+                }
+            }
+        }
+        for (Map.Entry<OWLAnnotationProperty, Map<IRI, List<OWLAnnotationValue>>> byProperty : annotations.entrySet()) {
+            OWLAnnotationProperty property = byProperty.getKey();
+            assertEquals(byProperty.getValue().keySet(), index.getAnnotatedSubjects(property));
+            for (Map.Entry<IRI, List<OWLAnnotationValue>> bySubject : byProperty.getValue().entrySet()) {
+                List<OWLAnnotationValue> expected = new ArrayList<OWLAnnotationValue>(bySubject.getValue());
+                List<OWLAnnotationValue> found = new ArrayList<OWLAnnotationValue>(index.getAnnotationValues(bySubject.getKey(), property));
+                Collections.sort(expected);
+                Collections.sort(found);
+                assertEquals(expected, found);
+                OWLLiteral literal = index.getLiteral(bySubject.getKey(), property);
+                boolean hasLiteral = false;
+                for (OWLAnnotationValue value : expected) {
+                    hasLiteral |= value instanceof OWLLiteral;
+                }
+                assertEquals(hasLiteral, literal != null);
+                assertTrue(literal == null || expected.contains(literal));
+            }
+        }
+        for (IRI subject : subjects) {
+            assertEquals(deprecated.contains(subject), index.isDeprecated(subject));
+            Map<String, OWLLiteral> labels = index.getLabels(subject);
+            Set<String> langs = new HashSet<String>();
+            for (OWLAnnotationValue value : index.getAnnotationValues(subject, factory.getRDFSLabel())) {
+                if (value instanceof OWLLiteral) {
+                    langs.add(((OWLLiteral) value).getLang());
+                }
+            }
+            assertEquals(langs, labels.keySet());
+            for (Map.Entry<String, OWLLiteral> label : labels.entrySet()) {
+                assertEquals(label.getKey(), label.getValue().getLang());
+                assertTrue(annotations.get(factory.getRDFSLabel()).get(subject).contains(label.getValue()));
+            }
+        }
+        for (OWLEntity entity : ontology.getSignature()) {
+            assertEquals(deprecated.contains(entity.getIRI()), index.isDeprecated(entity.getIRI()));
+        }
+        OWLAnnotationProperty missing = factory.getOWLAnnotationProperty(IRI.create("http://protege.org/ontologies/Missing.owl#missing"));
+        assertTrue(index.getAnnotatedSubjects(missing).isEmpty());
+        assertTrue(index.getAnnotationValues(missing.getIRI(), factory.getRDFSLabel()).isEmpty());
+        assertNull(index.getLiteral(missing.getIRI(), factory.getRDFSLabel()));
+        assertTrue(index.getLabels(missing.getIRI()).isEmpty());
+
+        Set<OWLSubClassOfAxiom> named = new HashSet<OWLSubClassOfAxiom>();
+        for (OWLSubClassOfAxiom axiom : ontology.getAxioms(AxiomType.SUBCLASS_OF)) {
+            if (!axiom.getSubClass().isAnonymous() && !axiom.getSuperClass().isAnonymous()) {
+                named.add(axiom);
+            }
+        }
+        assertEquals(named, new HashSet<OWLSubClassOfAxiom>(index.getNamedSubClassAxioms()));
+        assertEquals(named.size(), index.getNamedSubClassAxioms().size());
+    }
+
+    /*
+     * The rendering service must render as a single Manchester syntax renderer over the default short form
+     * provider does, also when several threads render at once.  Two target classes are given the same label
+     * so that a rendering is shared and must not find either of them.
+     */
+    public void testRenderingMatchesRenderer() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (String prefix : CONSISTENCY_FIXTURES) {
+                JunitUtilities.printDivider();
+                loadOntologies(prefix);
+                List<OWLClass> targetClasses = new ArrayList<OWLClass>(ontology2.getClassesInSignature());
+                Collections.sort(targetClasses);
+                if (targetClasses.size() >= 2) {
+                    OWLDataFactory targetFactory = ontology2.getOWLOntologyManager().getOWLDataFactory();
+                    for (OWLClass c : targetClasses.subList(0, 2)) {
+                        ontology2.getOWLOntologyManager().addAxiom(ontology2, targetFactory.getOWLAnnotationAssertionAxiom(targetFactory.getRDFSLabel(), c.getIRI(), targetFactory.getOWLLiteral("Twin")));
+                    }
+                }
+                Engine e = new Engine(ontology1, ontology2);
+                final RenderingService renderer = RenderingService.get(e);
+                assertEquals("", renderer.renderSourceObject(factory.getOWLThing()));
+                e.setAlignmentAlgorithms(new MatchById());
+                e.phase1();
+
+                final List<OWLObject> sourceObjects = new ArrayList<OWLObject>(ontology1.getSignature());
+                sourceObjects.addAll(ontology1.getAxioms());
+                final List<String> expected = new ArrayList<String>();
+                ShortFormProvider sourceShortForms = RenderingService.getDefaultShortFormProvider(ontology1);
+                for (OWLObject o : sourceObjects) {
+                    expected.add(render(o, sourceShortForms));
+                }
+                List<Future<List<String>>> renderings = new ArrayList<Future<List<String>>>();
+                for (int i = 0; i < 4; i++) {
+                    renderings.add(executor.submit(new Callable<List<String>>() {
+                        public List<String> call() {
+                            List<String> rendered = new ArrayList<String>();
+                            for (OWLObject o : sourceObjects) {
+                                rendered.add(renderer.renderSourceObject(o));
+                            }
+                            return rendered;
+                        }
+                    }));
+                }
+                for (Future<List<String>> rendered : renderings) {
+                    assertEquals(expected, rendered.get());
+                }
+                for (int i = 0; i < sourceObjects.size(); i++) {
+                    assertEquals(expected.get(i), renderer.renderSourceObject(sourceObjects.get(i)));
+                }
+
+                Map<String, Set<OWLEntity>> targetEntitiesByRendering = new HashMap<String, Set<OWLEntity>>();
+                ShortFormProvider targetShortForms = RenderingService.getDefaultShortFormProvider(ontology2);
+                for (OWLEntity entity : ontology2.getSignature()) {
+                    String rendering = render(entity, targetShortForms);
+                    assertEquals(rendering, renderer.renderTargetObject(entity));
+                    Set<OWLEntity> entities = targetEntitiesByRendering.get(rendering);
+                    if (entities == null) {
+                        entities = new HashSet<OWLEntity>();
+                        targetEntitiesByRendering.put(rendering, entities);
+                    }
+                    entities.add(entity);
+                }
+                for (OWLAxiom axiom : ontology2.getAxioms()) {
+                    assertEquals(render(axiom, targetShortForms), renderer.renderTargetObject(axiom));
+                }
+                for (Map.Entry<String, Set<OWLEntity>> entry : targetEntitiesByRendering.entrySet()) {
+                    OWLEntity expectedEntity = entry.getValue().size() == 1 ? entry.getValue().iterator().next() : null;
+                    assertEquals(expectedEntity, renderer.getTargetEntityByRendering(entry.getKey()));
+                }
+                assertNull(renderer.getTargetEntityByRendering("Not the rendering of anything"));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * Signatures larger than a partition are rendered in parallel from the label index when the default
+     * labels are used and on the calling thread when the caller set the short form provider.
+     */
+    public void testParallelRenderingMatchesRenderer() throws OWLOntologyCreationException {
+        String ns = "http://protege.org/ontologies/Generated.owl#";
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        factory = manager.getOWLDataFactory();
+        OWLOntology source = manager.createOntology(IRI.create("http://protege.org/ontologies/Generated.owl"));
+        OWLOntology target = OWLManager.createOWLOntologyManager().createOntology(IRI.create("http://protege.org/ontologies/Empty.owl"));
+        for (int i = 0; i < 3 * RenderingService.PARTITION_SIZE; i++) {
+            OWLClass c = factory.getOWLClass(IRI.create(ns + "C" + i));
+            manager.addAxiom(source, factory.getOWLDeclarationAxiom(c));
+            if (i % 2 == 0) {
+                manager.addAxiom(source, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), c.getIRI(), factory.getOWLLiteral("Class " + i)));
+            }
+            if (i % 3 == 0) {
+                manager.addAxiom(source, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), c.getIRI(), factory.getOWLLiteral("Klasse " + i, "x-unknown")));
+            }
+            if (i % 2 != 0 && i % 3 != 0 && i % 5 == 0) {
+                manager.addAxiom(source, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), c.getIRI(), IRI.create(ns + "Label" + i)));
+            }
+        }
+        Set<OWLClass> classes = source.getClassesInSignature();
+        ShortFormProvider shortForms = RenderingService.getDefaultShortFormProvider(source);
+        Map<OWLEntity, String> expected = new HashMap<OWLEntity, String>();
+        for (OWLClass c : classes) {
+            expected.put(c, render(c, shortForms));
+        }
+        for (int run = 0; run < 2; run++) {
+            Engine e = new Engine(source, target);
+            e.setAlignmentAlgorithms(new MatchById());
+            e.phase1();
+            RenderingService renderer = RenderingService.get(e);
+            if (run == 1) {
+                renderer.setSourceShortFormProvider(RenderingService.getDefaultShortFormProvider(source));
+            }
+            assertEquals(expected, renderer.renderEntities(classes, DifferencePosition.SOURCE));
+        }
+    }
+
+    private static String render(OWLObject o, final ShortFormProvider shortFormProvider) {
+        final OWLDataFactory factory = OWLManager.getOWLDataFactory();
+        StringWriter writer = new StringWriter();
+        o.accept(new ManchesterOWLSyntaxObjectRenderer(writer, shortFormProvider) {
+            @Override
+            public void visit(IRI iri) {
+                write(shortFormProvider.getShortForm(factory.getOWLClass(iri)));
+            }
+        });
+        return writer.toString();
+    }
+
+    private static void assertUnmatchedSetsBehave(OwlDiffMap diffs) {
+        assertBehavesAsSet(diffs.getUnmatchedSourceAxioms());
+        assertBehavesAsSet(diffs.getUnmatchedTargetAxioms());
+        assertBehavesAsSet(diffs.getUnmatchedSourceAnonymousIndividuals());
+        assertBehavesAsSet(diffs.getUnmatchedTargetAnonymousIndividuals());
+        assertBehavesAsSet(diffs.getUnmatchedSourceEntities());
+        assertBehavesAsSet(diffs.getUnmatchedTargetEntities());
+    }
+
+    private static void assertBehavesAsSet(Set<?> set) {
+        Set<Object> copy = new HashSet<Object>();
+        int count = 0;
+        for (Object o : set) {
+            assertTrue(set.contains(o));
+            copy.add(o);
+            count++;
+        }
+        assertEquals(count, copy.size());
+        assertEquals(count, set.size());
+        assertEquals(copy, set);
+        assertEquals(set, copy);
+        assertEquals(copy.hashCode(), set.hashCode());
+    }
+
+    private static class RecordingListener implements AlignmentListener {
+        Map<OWLEntity, OWLEntity> entityMatches = new HashMap<OWLEntity, OWLEntity>();
+        Map<OWLAnonymousIndividual, OWLAnonymousIndividual> individualMatches = new HashMap<OWLAnonymousIndividual, OWLAnonymousIndividual>();
+        List<OWLAxiom> matchedAxioms = new ArrayList<OWLAxiom>();
+        List<OWLAxiom> unmatcheableAxioms = new ArrayList<OWLAxiom>();
+        List<OWLAxiom> movedAxioms = new ArrayList<OWLAxiom>();
+
+        public void addMatchingEntities(Map<OWLEntity, OWLEntity> newMatches) {
+            entityMatches.putAll(newMatches);
+        }
+
+        public void addMatchingAnonymousIndividuals(Map<OWLAnonymousIndividual, OWLAnonymousIndividual> newMatches) {
+            individualMatches.putAll(newMatches);
+        }
+
+        public void addMatch(OWLEntity source, OWLEntity target) {
+            entityMatches.put(source, target);
+        }
+
+        public void addMatch(OWLAnonymousIndividual source, OWLAnonymousIndividual target) {
+            individualMatches.put(source, target);
+        }
+
+        public void unmatchedAxiomMoved(UnmatchedSourceAxiom unmatched) {
+            movedAxioms.add(unmatched.getAxiom());
+        }
+
+        public void addUnmatcheableAxiom(OWLAxiom axiom) {
+            unmatcheableAxioms.add(axiom);
+        }
+
+        public void addMatchedAxiom(OWLAxiom axiom) {
+            matchedAxioms.add(axiom);
+        }
+    }
+
+    /*
+     * Makes the matches of a finished alignment on another diff map one at a time and finishes it.
+     */
+    private static void replayMatches(OwlDiffMap alignment, OwlDiffMap diffs) {
+        List<OWLEntity> sourceEntities = new ArrayList<OWLEntity>(alignment.getEntityMap().keySet());
+        Collections.sort(sourceEntities);
+        for (OWLEntity source : sourceEntities) {
+            diffs.addMatch(source, alignment.getEntityMap().get(source), alignment.getExplanation(source));
+        }
+        for (Map.Entry<OWLAnonymousIndividual, OWLAnonymousIndividual> entry : alignment.getAnonymousIndividualMap().entrySet()) {
+            diffs.addMatch(entry.getKey(), entry.getValue(), alignment.getExplanation(entry.getKey()));
+        }
+        diffs.finish();
+    }
+
+    private static boolean isFullyMapped(OwlDiffMap diffs, OWLAxiom axiom) {
+        Set<OWLEntity> entities = new HashSet<OWLEntity>();
+        Set<OWLAnonymousIndividual> individuals = new HashSet<OWLAnonymousIndividual>();
+        axiom.accept(new DeprecatedOWLEntityCollector(entities, individuals));
+        return diffs.getEntityMap().keySet().containsAll(entities) 
+                    && diffs.getAnonymousIndividualMap().keySet().containsAll(individuals);
+    }
+
+    private static void assertTranslations(OwlDiffMap diffs, DiffTranslator translator) {
+        DiffDuplicator duplicator = new DiffDuplicator(diffs);
+        for (OWLAxiom axiom : diffs.getSourceOntology().getAxioms()) {
+            if (isFullyMapped(diffs, axiom)) {
+                OWLAxiom expected = duplicator.duplicateObject(axiom);
+                assertEquals(expected, translator.translate(axiom));
+                assertEquals(expected, translator.translate(axiom));
+            }
+        }
+    }
+
+    private static void assertUnmatchedReferences(OwlDiffMap diffs) {
+        for (UnmatchedSourceAxiom unmatched : diffs.getPotentialMatchingSourceAxioms()) {
+            Set<OWLEntity> entities = new HashSet<OWLEntity>();
+            Set<OWLAnonymousIndividual> individuals = new HashSet<OWLAnonymousIndividual>();
+            unmatched.getAxiom().accept(new DeprecatedOWLEntityCollector(entities, individuals));
+            entities.retainAll(diffs.getUnmatchedSourceEntities());
+            individuals.retainAll(diffs.getUnmatchedSourceAnonymousIndividuals());
+            assertEquals(entities, new HashSet<OWLEntity>(unmatched.getReferencedUnmatchedEntities()));
+            assertEquals(individuals, new HashSet<OWLAnonymousIndividual>(unmatched.getReferencedUnmatchedAnonymousIndividuals()));
+            assertFalse(entities.isEmpty() && individuals.isEmpty());
+        }
+    }
+
+    private static AlignmentAlgorithm[] consistencyAlgorithms() {
+        return new AlignmentAlgorithm[] { new MatchById(), new MatchStandardVocabulary(), new SuperSubClassPinch(), 
+                                          new MatchLoneSiblings(), new MatchAnonymousIndividuals() };
+    }
+
+    /*
+     * Checks a finished diff map against a brute force reading of its entity and anonymous individual maps.
+     * A source axiom is matched when everything it references is mapped and its translation is a target
+     * axiom.  When several source axioms have the same translation only one of them is matched.
+     */
+    private static void assertAlignmentConsistent(OwlDiffMap diffs) {
+        Map<OWLEntity, OWLEntity> entityMap = diffs.getEntityMap();
+        Map<OWLAnonymousIndividual, OWLAnonymousIndividual> individualMap = diffs.getAnonymousIndividualMap();
+        DiffDuplicator duplicator = new DiffDuplicator(diffs);
+        Set<OWLEntity> unmatchedSourceEntities = new HashSet<OWLEntity>();
+        Set<OWLAnonymousIndividual> unmatchedSourceIndividuals = new HashSet<OWLAnonymousIndividual>();
+        Set<OWLAxiom> unmatchedSourceAxioms = new HashSet<OWLAxiom>();
+        Map<OWLAxiom, List<OWLAxiom>> sourceAxiomsByTranslation = new HashMap<OWLAxiom, List<OWLAxiom>>();
+        for (OWLAxiom axiom : diffs.getSourceOntology().getAxioms()) {
+            Set<OWLEntity> entities = new HashSet<OWLEntity>();
+            Set<OWLAnonymousIndividual> individuals = new HashSet<OWLAnonymousIndividual>();
+            axiom.accept(new DeprecatedOWLEntityCollector(entities, individuals));
+            unmatchedSourceEntities.addAll(entities);
+            unmatchedSourceIndividuals.addAll(individuals);
+            OWLAxiom translation = null;
+            if (entityMap.keySet().containsAll(entities) && individualMap.keySet().containsAll(individuals)) {
+                translation = duplicator.duplicateObject(axiom);
+            }
+            if (translation != null && diffs.getTargetOntology().containsAxiom(translation)) {
+                List<OWLAxiom> sourceAxioms = sourceAxiomsByTranslation.get(translation);
+                if (sourceAxioms == null) {
+                    sourceAxioms = new ArrayList<OWLAxiom>();
+                    sourceAxiomsByTranslation.put(translation, sourceAxioms);
+                }
+                sourceAxioms.add(axiom);
+            }
+            else {
+                unmatchedSourceAxioms.add(axiom);
+            }
+        }
+        for (List<OWLAxiom> sourceAxioms : sourceAxiomsByTranslation.values()) {
+            int matched = 0;
+            for (OWLAxiom axiom : sourceAxioms) {
+                if (diffs.getUnmatchedSourceAxioms().contains(axiom)) {
+                    unmatchedSourceAxioms.add(axiom);
+                }
+                else {
+                    matched++;
+                }
+            }
+            assertEquals(1, matched);
+        }
+        assertEquals(unmatchedSourceAxioms, new HashSet<OWLAxiom>(diffs.getUnmatchedSourceAxioms()));
+
+        Set<OWLAxiom> unmatchedTargetAxioms = new HashSet<OWLAxiom>(diffs.getTargetOntology().getAxioms());
+        unmatchedTargetAxioms.removeAll(sourceAxiomsByTranslation.keySet());
+        assertEquals(unmatchedTargetAxioms, new HashSet<OWLAxiom>(diffs.getUnmatchedTargetAxioms()));
+
+        unmatchedSourceEntities.removeAll(entityMap.keySet());
+        assertEquals(unmatchedSourceEntities, new HashSet<OWLEntity>(diffs.getUnmatchedSourceEntities()));
+        Set<OWLEntity> unmatchedTargetEntities = new HashSet<OWLEntity>(diffs.getTargetOntology().getSignature());
+        unmatchedTargetEntities.removeAll(entityMap.values());
+        assertEquals(unmatchedTargetEntities, new HashSet<OWLEntity>(diffs.getUnmatchedTargetEntities()));
+
+        unmatchedSourceIndividuals.removeAll(individualMap.keySet());
+        assertEquals(unmatchedSourceIndividuals, new HashSet<OWLAnonymousIndividual>(diffs.getUnmatchedSourceAnonymousIndividuals()));
+        Set<OWLAnonymousIndividual> unmatchedTargetIndividuals 
+                = new HashSet<OWLAnonymousIndividual>(diffs.getTargetOntology().getReferencedAnonymousIndividuals(Imports.EXCLUDED));
+        unmatchedTargetIndividuals.removeAll(individualMap.values());
+        assertEquals(unmatchedTargetIndividuals, new HashSet<OWLAnonymousIndividual>(diffs.getUnmatchedTargetAnonymousIndividuals()));
+    }
+
+    /*
+     * Codes can be shared by several target entities, including a class and a property punned on one IRI,
+     * and an entity can have several codes.  The code index must agree with a scan of the target signature
+     * and the code matcher must pick a target of the right type and leave conflicting sources alone.
+     */
+    public void testSharedCodes() throws OWLOntologyCreationException {
+        JunitUtilities.printDivider();
+        String ns = "http://protege.org/ontologies/SharedCodes.owl#";
+        OWLOntologyManager manager1 = OWLManager.createOWLOntologyManager();
+        OWLOntologyManager manager2 = OWLManager.createOWLOntologyManager();
+        factory = manager1.getOWLDataFactory();
+        ontology1 = manager1.createOntology(IRI.create("http://protege.org/ontologies/SharedCodes.owl"));
+        ontology2 = manager2.createOntology(IRI.create("http://protege.org/ontologies/SharedCodes.owl"));
+        OWLAnnotationProperty code = factory.getOWLAnnotationProperty(IRI.create(ns + "code"));
+        addCodedEntity(ontology1, code, factory.getOWLClass(IRI.create(ns + "A")), "a");
+        addCodedEntity(ontology1, code, factory.getOWLClass(IRI.create(ns + "Pun")), "pun");
+        addCodedEntity(ontology1, code, factory.getOWLObjectProperty(IRI.create(ns + "Pun")));
+        addCodedEntity(ontology1, code, factory.getOWLClass(IRI.create(ns + "B")), "shared");
+        addCodedEntity(ontology1, code, factory.getOWLClass(IRI.create(ns + "C")), "a", "pun");
+        addCodedEntity(ontology2, code, factory.getOWLClass(IRI.create(ns + "A2")), "a", "a-alias");
+        addCodedEntity(ontology2, code, factory.getOWLClass(IRI.create(ns + "Pun2")), "pun");
+        addCodedEntity(ontology2, code, factory.getOWLObjectProperty(IRI.create(ns + "Pun2")));
+        addCodedEntity(ontology2, code, factory.getOWLClass(IRI.create(ns + "B1")), "shared");
+        addCodedEntity(ontology2, code, factory.getOWLClass(IRI.create(ns + "B2")), "shared");
+
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(CodeToEntityMapper.CODE_ANNOTATION_PROPERTY, ns + "code");
+        Engine e = new Engine(ontology1, ontology2);
+        e.setParameters(parameters);
+        e.setAlignmentAlgorithms(new MatchByCode());
+        e.phase1();
+
+        CodeToEntityMapper mapper = CodeToEntityMapper.get(e);
+        Map<String, Set<OWLEntity>> targetEntitiesByCode = new HashMap<String, Set<OWLEntity>>();
+        Set<OWLEntity> codedTargetEntities = new HashSet<OWLEntity>();
+        for (OWLEntity entity : ontology2.getSignature()) {
+            List<String> codes = new ArrayList<String>();
+            for (OWLAnnotationAssertionAxiom assertion : ontology2.getAnnotationAssertionAxioms(entity.getIRI())) {
+                if (assertion.getProperty().equals(code) && assertion.getValue() instanceof OWLLiteral
+                        && !codes.contains(((OWLLiteral) assertion.getValue()).getLiteral())) {
+                    codes.add(((OWLLiteral) assertion.getValue()).getLiteral());
+                }
+            }
+            Collections.sort(codes);
+            List<String> found = new ArrayList<String>(mapper.getCodes(ontology2, entity));
+            Collections.sort(found);
+            assertEquals(codes, found);
+            if (!codes.isEmpty()) {
+                codedTargetEntities.add(entity);
+                assertTrue(codes.contains(mapper.getCode(ontology2, entity)));
+            }
+            for (String entityCode : codes) {
+                Set<OWLEntity> entities = targetEntitiesByCode.get(entityCode);
+                if (entities == null) {
+                    entities = new HashSet<OWLEntity>();
+                    targetEntitiesByCode.put(entityCode, entities);
+                }
+                entities.add(entity);
+            }
+        }
+        assertEquals(codedTargetEntities, new HashSet<OWLEntity>(mapper.getCodedEntities(DifferencePosition.TARGET)));
+        assertEquals(codedTargetEntities.size(), mapper.getCodedEntities(DifferencePosition.TARGET).size());
+        for (Map.Entry<String, Set<OWLEntity>> entry : targetEntitiesByCode.entrySet()) {
+            assertEquals(entry.getValue(), new HashSet<OWLEntity>(mapper.getTargetEntities(entry.getKey())));
+            assertEquals(entry.getValue().size(), mapper.getTargetEntities(entry.getKey()).size());
+        }
+        assertEquals(2, mapper.getTargetEntities("pun").size());
+        assertTrue(mapper.getTargetEntities("missing").isEmpty());
+
+        Map<OWLEntity, OWLEntity> entityMap = e.getOwlDiffMap().getEntityMap();
+        assertEquals(factory.getOWLClass(IRI.create(ns + "A2")), entityMap.get(factory.getOWLClass(IRI.create(ns + "A"))));
+        assertEquals(factory.getOWLClass(IRI.create(ns + "Pun2")), entityMap.get(factory.getOWLClass(IRI.create(ns + "Pun"))));
+        assertEquals(factory.getOWLObjectProperty(IRI.create(ns + "Pun2")), entityMap.get(factory.getOWLObjectProperty(IRI.create(ns + "Pun"))));
+        assertTrue(targetEntitiesByCode.get("shared").contains(entityMap.get(factory.getOWLClass(IRI.create(ns + "B")))));
+        assertFalse(entityMap.containsKey(factory.getOWLClass(IRI.create(ns + "C"))));
+    }
+
+    private static void addCodedEntity(OWLOntology ontology, OWLAnnotationProperty code, OWLEntity entity, String... codes) {
+        OWLOntologyManager manager = ontology.getOWLOntologyManager();
+        OWLDataFactory factory = manager.getOWLDataFactory();
+        manager.addAxiom(ontology, factory.getOWLDeclarationAxiom(entity));
+        for (String c : codes) {
+            manager.addAxiom(ontology, factory.getOWLAnnotationAssertionAxiom(code, entity.getIRI(), factory.getOWLLiteral(c)));
+        }
+    }
+
+    /*
+     * Unique, Both and Trim share cross references with exactly one target of their type and are matched.
+     * Ambiguous shares its cross reference with two targets, SharedWithKept shares its cross reference with
+     * the already matched Kept, Conflict's cross references lead to two different targets and Type's leads
+     * to a property, so none of them are matched.
+     */
+    public void testMatchByCrossReference() throws OWLOntologyCreationException {
+        JunitUtilities.printDivider();
+        loadOntologies("CrossReference");
+        String ns = "http://protege.org/ontologies/CrossReference.owl#";
+        Engine e = new Engine(ontology1, ontology2);
+        e.setAlignmentAlgorithms(new MatchById(), new MatchStandardVocabulary(), new MatchByCrossReference());
+        e.phase1();
+        OwlDiffMap diffs = e.getOwlDiffMap();
+        Map<OWLEntity, OWLEntity> entityMap = diffs.getEntityMap();
+        for (String matched : new String[] { "Unique", "Both", "Trim" }) {
+            OWLClass source = factory.getOWLClass(IRI.create(ns + "S_" + matched));
+            assertEquals(matched, factory.getOWLClass(IRI.create(ns + "T_" + matched)), entityMap.get(source));
+            assertEquals(MatchByCrossReference.EXPLANATION, diffs.getExplanation(source));
+        }
+        assertEquals(factory.getOWLClass(IRI.create(ns + "Kept")), entityMap.get(factory.getOWLClass(IRI.create(ns + "Kept"))));
+        for (String unmatched : new String[] { "S_Ambiguous", "S_SharedWithKept", "S_Conflict", "S_Type" }) {
+            assertTrue(unmatched, diffs.getUnmatchedSourceEntities().contains(factory.getOWLClass(IRI.create(ns + unmatched))));
+        }
+        for (String unmatched : new String[] { "T_Ambiguous1", "T_Ambiguous2", "T_SharedWithKept", "T_Conflict1", "T_Conflict2" }) {
+            assertTrue(unmatched, diffs.getUnmatchedTargetEntities().contains(factory.getOWLClass(IRI.create(ns + unmatched))));
+        }
+        assertTrue(diffs.getUnmatchedTargetEntities().contains(factory.getOWLObjectProperty(IRI.create(ns + "T_Type"))));
+        assertAlignmentConsistent(diffs);
+    }
+
+    /*
+     * Alice's address and its location have the same structure on both sides and are matched.  Bob's
+     * address has a different street and the two tags cannot be told apart, so they stay unmatched.
+     */
+    public void testMatchAnonymousIndividuals() throws OWLOntologyCreationException {
+        JunitUtilities.printDivider();
+        loadOntologies("AnonymousIndividuals");
+        String ns = "http://protege.org/ontologies/AnonymousIndividuals.owl#";
+        Engine e = new Engine(ontology1, ontology2);
+        e.setAlignmentAlgorithms(new MatchById(), new MatchStandardVocabulary(), new MatchAnonymousIndividuals());
+        e.phase1();
+        OwlDiffMap diffs = e.getOwlDiffMap();
+        OWLObjectProperty hasAddress = factory.getOWLObjectProperty(IRI.create(ns + "hasAddress"));
+        OWLObjectProperty hasLocation = factory.getOWLObjectProperty(IRI.create(ns + "hasLocation"));
+        OWLNamedIndividual alice = factory.getOWLNamedIndividual(IRI.create(ns + "Alice"));
+        OWLNamedIndividual bob = factory.getOWLNamedIndividual(IRI.create(ns + "Bob"));
+        OWLClass tag = factory.getOWLClass(IRI.create(ns + "Tag"));
+
+        OWLAnonymousIndividual sourceAliceAddress = getObject(ontology1, hasAddress, alice);
+        OWLAnonymousIndividual targetAliceAddress = getObject(ontology2, hasAddress, alice);
+        OWLAnonymousIndividual sourceAliceLocation = getObject(ontology1, hasLocation, sourceAliceAddress);
+        OWLAnonymousIndividual targetAliceLocation = getObject(ontology2, hasLocation, targetAliceAddress);
+        Map<OWLAnonymousIndividual, OWLAnonymousIndividual> individualMap = diffs.getAnonymousIndividualMap();
+        assertEquals(2, individualMap.size());
+        assertEquals(targetAliceAddress, individualMap.get(sourceAliceAddress));
+        assertEquals(targetAliceLocation, individualMap.get(sourceAliceLocation));
+        assertEquals(MatchAnonymousIndividuals.EXPLANATION, diffs.getExplanation(sourceAliceAddress));
+
+        Set<OWLAnonymousIndividual> unmatchedSources = new HashSet<OWLAnonymousIndividual>();
+        unmatchedSources.add(getObject(ontology1, hasAddress, bob));
+        Set<OWLAnonymousIndividual> unmatchedTargets = new HashSet<OWLAnonymousIndividual>();
+        unmatchedTargets.add(getObject(ontology2, hasAddress, bob));
+        for (OWLClassAssertionAxiom assertion : ontology1.getClassAssertionAxioms(tag)) {
+            unmatchedSources.add(assertion.getIndividual().asOWLAnonymousIndividual());
+        }
+        for (OWLClassAssertionAxiom assertion : ontology2.getClassAssertionAxioms(tag)) {
+            unmatchedTargets.add(assertion.getIndividual().asOWLAnonymousIndividual());
+        }
+        assertEquals(3, unmatchedSources.size());
+        assertEquals(unmatchedSources, new HashSet<OWLAnonymousIndividual>(diffs.getUnmatchedSourceAnonymousIndividuals()));
+        assertEquals(unmatchedTargets, new HashSet<OWLAnonymousIndividual>(diffs.getUnmatchedTargetAnonymousIndividuals()));
+        assertEquals(5, diffs.getUnmatchedSourceAxioms().size());
+        assertEquals(5, diffs.getUnmatchedTargetAxioms().size());
+        assertAlignmentConsistent(diffs);
+    }
+
+    /*
+     * An axiom that mentions an unmatched source entity says nothing about the target, even when a target
+     * entity has the same IRI.  The individuals are matched once another algorithm matches the entities,
+     * however late it does so.
+     */
+    public void testMatchAnonymousIndividualsWaitsForEntities() throws OWLOntologyCreationException {
+        JunitUtilities.printDivider();
+        loadOntologies("AnonymousIndividuals");
+        Engine e = new Engine(ontology1, ontology2);
+        e.setAlignmentAlgorithms(new MatchStandardVocabulary(), new MatchAnonymousIndividuals());
+        e.phase1();
+        assertTrue(e.getOwlDiffMap().getAnonymousIndividualMap().isEmpty());
+        assertAlignmentConsistent(e.getOwlDiffMap());
+
+        JunitUtilities.printDivider();
+        loadOntologies("AnonymousIndividuals");
+        OneAtATimeMatchById matcher = new OneAtATimeMatchById();
+        e = new Engine(ontology1, ontology2);
+        e.setAlignmentAlgorithms(new MatchStandardVocabulary(), matcher, new MatchAnonymousIndividuals());
+        e.phase1();
+        assertTrue(matcher.runs > 2);
+        assertEquals(2, e.getOwlDiffMap().getAnonymousIndividualMap().size());
+        assertAlignmentConsistent(e.getOwlDiffMap());
+    }
+
+    /*
+     * Matches a single entity by its IRI in each run.
+     */
+    private static class OneAtATimeMatchById extends CountingAlgorithm {
+        private OwlDiffMap diffs;
+
+        @Override
+        public void initialise(Engine e) {
+            diffs = e.getOwlDiffMap();
+        }
+
+        @Override
+        public void run() {
+            super.run();
+            for (OWLEntity source : diffs.getUnmatchedSourceEntities()) {
+                if (diffs.getUnmatchedTargetEntities().contains(source)) {
+                    diffs.addMatch(source, source, new SimpleAlignmentExplanation("One at a time"));
+                    return;
+                }
+            }
+        }
+    }
+
+    private static OWLAnonymousIndividual getObject(OWLOntology ontology, OWLObjectProperty property, OWLIndividual subject) {
+        for (OWLObjectPropertyAssertionAxiom assertion : ontology.getObjectPropertyAssertionAxioms(subject)) {
+            if (assertion.getProperty().equals(property)) {
+                return assertion.getObject().asOWLAnonymousIndividual();
+            }
+        }
+        fail("No " + property + " of " + subject);
+        return null;
+    }
+
+    /*
+     * Lung differs by a dropped word and is matched.  Kidney is as close to two targets with the same
+     * label, Gallbladder is not close enough and Skin is only close to a property, so none of them are
+     * matched.  Both fractures are closest to the one target, which only takes the closer of them.
+     */
+    public void testMatchBySimilarRendering() throws OWLOntologyCreationException {
+        JunitUtilities.printDivider();
+        loadOntologies("SimilarRendering");
+        String ns = "http://protege.org/ontologies/SimilarRendering.owl#";
+        Engine e = new Engine(ontology1, ontology2);
+        e.setAlignmentAlgorithms(new MatchById(), new MatchStandardVocabulary(), new MatchBySimilarRendering());
+        e.phase1();
+        OwlDiffMap diffs = e.getOwlDiffMap();
+        Map<OWLEntity, OWLEntity> entityMap = diffs.getEntityMap();
+        assertEquals(factory.getOWLClass(IRI.create(ns + "T_Lung")), entityMap.get(factory.getOWLClass(IRI.create(ns + "S_Lung"))));
+        assertEquals(factory.getOWLClass(IRI.create(ns + "T_Fracture")), entityMap.get(factory.getOWLClass(IRI.create(ns + "S_Fracture"))));
+        for (String unmatched : new String[] { "S_Kidney", "S_Gallbladder", "S_Fractures", "S_Skin" }) {
+            assertTrue(unmatched, diffs.getUnmatchedSourceEntities().contains(factory.getOWLClass(IRI.create(ns + unmatched))));
+        }
+        for (String unmatched : new String[] { "T_KidneyRegion1", "T_KidneyRegion2", "T_Gallbladder" }) {
+            assertTrue(unmatched, diffs.getUnmatchedTargetEntities().contains(factory.getOWLClass(IRI.create(ns + unmatched))));
+        }
+        assertTrue(diffs.getUnmatchedTargetEntities().contains(factory.getOWLObjectProperty(IRI.create(ns + "T_Skin"))));
+        assertEquals(MatchBySimilarRendering.EXPLANATION, diffs.getExplanation(factory.getOWLClass(IRI.create(ns + "S_Lung"))));
+        assertAlignmentConsistent(diffs);
+    }
+
+    /*
+     * A is renamed to B and B to C.  "SubClassOf(B Parent)" is in both ontologies but it is the translation
+     * of "SubClassOf(A Parent)" and not of itself.
+     */
+    public void testRenameAndReuse() throws OWLOntologyCreationException, IOException {
+        JunitUtilities.printDivider();
+        loadOntologies("RenameAndReuse");
+        String ns = "http://protege.org/ontologies/RenameAndReuse.owl";
+        File mappingFile = File.createTempFile("mapping", ".tsv");
+        Files.write(mappingFile.toPath(), Arrays.asList(ns + "#A\t" + ns + "#B"), StandardCharsets.UTF_8);
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(MatchByMappingFile.MAPPING_FILE_PROPERTY, mappingFile.getPath());
+        Engine e = new Engine(ontology1, ontology2);
+        e.setParameters(parameters);
+        e.setAlignmentAlgorithms(new MatchById(), new MatchStandardVocabulary(), new MatchByMappingFile(), new MatchLoneSiblings());
+        try {
+            e.phase1();
+        }
+        finally {
+            mappingFile.delete();
+        }
+        OwlDiffMap diffs = e.getOwlDiffMap();
+        assertEquals(factory.getOWLClass(IRI.create(ns + "#B")), diffs.getEntityMap().get(factory.getOWLClass(IRI.create(ns + "#A"))));
+        assertEquals(factory.getOWLClass(IRI.create(ns + "#C")), diffs.getEntityMap().get(factory.getOWLClass(IRI.create(ns + "#B"))));
+        assertTrue(diffs.getUnmatchedSourceAxioms().isEmpty());
+        assertTrue(diffs.getUnmatchedTargetAxioms().isEmpty());
+    }
 }
@@ -0,0 +1,205 @@
+package org.protege.owl.diff;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.protege.owl.diff.align.util.CompareNames;
+import org.protege.owl.diff.align.util.CompareNames.NormalizedName;
+import org.protege.owl.diff.align.util.NameCandidateIndex;
+
+public class CompareNamesTest extends TestCase {
+	private static final String[] WORDS = { "", "a", "ab", "abc", "abcd", "abcde", "Heart", "heart", "Hearts", "HeartValve",
+		                                    "Heart_Valve", "heart-valve", "Heart Valve (Mitral)", "Mitral.Valve", "Mitral_Vlave",
+		                                    "Neoplasm", "Neoplasms", "Neoplasma", "Neeoplasm", "Neoplasm_of_Lung", "Lung_Neoplasm",
+		                                    "Carcinoma", "Carcinomas", "Carcinoma_in_situ", "Adenocarcinoma", "AdenoCarcinoma",
+		                                    "___", "-_-", "(a)", "ABCD_EFGH", "abcdefgh", "abcdxfgh", "abcdefghij", "bcdefghij",
+		                                    "abcdefghijklmnopqrstuvwxyz", "abcdefghijklmnopqrstuvwxy", "bcdefghijklmnopqrstuvwxyz" };
+
+	/*
+	 * The comparison must give the answer of the string based comparison that it replaced, both for the
+	 * strings and for their normalized forms.
+	 */
+	public void testCloseEnoughMatchesStringComparison() {
+		List<String> names = names();
+		List<NormalizedName> normalized = new ArrayList<NormalizedName>();
+		for (String name : names) {
+			normalized.add(CompareNames.normalize(name));
+		}
+		int close = 0;
+		for (int i = 0; i < names.size(); i++) {
+			for (int j = 0; j < names.size(); j++) {
+				String name1 = names.get(i);
+				String name2 = names.get(j);
+				boolean expected = StringCompareNames.closeEnough(name1, name2);
+				assertEquals(name1 + " ~ " + name2, expected, CompareNames.closeEnough(name1, name2));
+				assertEquals(name1 + " ~ " + name2, expected, CompareNames.closeEnough(normalized.get(i), normalized.get(j)));
+				if (expected && !name1.equals(name2)) {
+					close++;
+				}
+			}
+		}
+		assertTrue(close > 0);
+	}
+
+	/*
+	 * Every indexed name that is close enough to a name must be among its candidates.  The candidates
+	 * should still leave out most of the names.
+	 */
+	public void testCandidatesIncludeCloseNames() {
+		List<String> names = names();
+		NameCandidateIndex<Integer> index = new NameCandidateIndex<Integer>();
+		for (int i = 0; i < names.size(); i++) {
+			index.add(i, CompareNames.normalize(names.get(i)));
+		}
+		index.add(0, CompareNames.normalize("not the first name"));
+		assertEquals(names.get(0), index.getName(0).getOriginal());
+		assertEquals(names.size(), index.getNames().size());
+		int candidates = 0;
+		for (String name : names) {
+			NormalizedName normalized = CompareNames.normalize(name);
+			Set<Integer> found = index.getCandidates(normalized);
+			for (int j = 0; j < names.size(); j++) {
+				if (CompareNames.closeEnough(normalized, index.getName(j))) {
+					assertTrue(name + " ~ " + names.get(j), found.contains(j));
+				}
+			}
+			candidates += found.size();
+		}
+		assertTrue(candidates < names.size() * names.size() / 2);
+		assertTrue(index.getCandidates(CompareNames.normalize("")).containsAll(indexesOf(names, "")));
+	}
+
+	private static Set<Integer> indexesOf(List<String> names, String name) {
+		Set<Integer> indexes = new HashSet<Integer>();
+		for (int i = 0; i < names.size(); i++) {
+			if (names.get(i).equals(name)) {
+				indexes.add(i);
+			}
+		}
+		return indexes;
+	}
+
+	/*
+	 * The fixed words, variants of them with one character changed, dropped, added or swapped, and random
+	 * names over a small alphabet so that many of them are close.
+	 */
+	private static List<String> names() {
+		Random random = new Random(42);
+		List<String> names = new ArrayList<String>();
+		for (String word : WORDS) {
+			names.add(word);
+			if (word.length() > 0) {
+				int i = random.nextInt(word.length());
+				names.add(word.substring(0, i) + 'z' + word.substring(i + 1));
+				names.add(word.substring(0, i) + word.substring(i + 1));
+				names.add(word.substring(0, i) + "_q" + word.substring(i));
+				names.add(word.toUpperCase());
+			}
+			if (word.length() > 1) {
+				int i = random.nextInt(word.length() - 1);
+				names.add(word.substring(0, i) + word.charAt(i + 1) + word.charAt(i) + word.substring(i + 2));
+			}
+		}
+		String alphabet = "abcAB_- ";
+		for (int n = 0; n < 300; n++) {
+			StringBuilder name = new StringBuilder();
+			int length = random.nextInt(12);
+			for (int i = 0; i < length; i++) {
+				name.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			names.add(name.toString());
+		}
+		return names;
+	}
+
+	/*
+	 * The string based comparison from Prompt that CompareNames started out as.
+	 */
+	private static class StringCompareNames {
+		static final private char[] DELIMITERS = { '_', '-', ' ', '(', ')', '.' };
+
+		private static double THRESHOLD = 0.95;
+
+		private static int TOO_SMALL = 3;
+
+		private static int TYPO_LENGTH = 2;
+
+		public static boolean closeEnough(String str1, String str2) {
+			if (str1.equals(str2))
+				return true;
+
+			String s1 = convertString(str1);
+			String s2 = convertString(str2);
+
+			boolean result;
+
+			result = compare(s1, s2);
+
+			if (!result)
+				result = compare(s2, s1);
+			return result;
+		}
+
+		static private String convertString(String str) {
+			String result = str.toLowerCase();
+			for (int i = 0; i < DELIMITERS.length; i++)
+				result = removeCharacter(result, DELIMITERS[i]);
+			return result;
+		}
+
+		private static String removeCharacter(String s, char c) {
+			String result = new String();
+			int currentIndex = 0;
+			int searchIndex;
+
+			do {
+				searchIndex = s.indexOf(c, currentIndex);
+				if (searchIndex != -1) {
+					result = result.concat(s.substring(currentIndex, searchIndex));
+					currentIndex = searchIndex + 1;
+				} else
+					result = result.concat(s.substring(currentIndex));
+			} while (searchIndex != -1);
+
+			return result;
+		}
+
+		private static boolean compare(String s1, String s2) {
+			int endIndex = (int) Math.round(s1.length() * THRESHOLD);
+
+			if(endIndex < 0 && endIndex < s1.length()) {
+				return false;
+			}
+
+			String part1 = s1.substring(0, endIndex);
+			if (part1.length() <= TOO_SMALL)
+				return false;
+			else if ((s2.indexOf(part1) != -1 && ((float) s1.length()) / ((float) s2.length()) > THRESHOLD))
+				return true;
+			else if (Math.abs(s1.length() - s2.length()) > TOO_SMALL)
+				return false;
+			else {
+				int f;
+				for (f = 0; f < s1.length() && f < s2.length(); f++) {
+					if (s1.charAt(f) != s2.charAt(f))
+						break;
+				}
+				if (f == s1.length() || f == s2.length())
+					return false;
+				int b;
+				for (b = 1; b < s1.length() && b < s2.length(); b++) {
+					if (s1.charAt(s1.length() - b) != s2.charAt(s2.length() - b))
+						break;
+				}
+				if (Math.abs((s1.length() - b) - f) < TYPO_LENGTH)
+					return true;
+			}
+			return false;
+		}
+	}
+}
@@ -1,7 +1,9 @@
 package org.protege.owl.diff;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import junit.framework.TestCase;
@@ -14,6 +16,7 @@ import org.protege.owl.diff.present.EntityBasedDiff;
 import org.protege.owl.diff.present.EntityBasedDiff.DiffType;
 import org.protege.owl.diff.present.MatchDescription;
 import org.protege.owl.diff.present.MatchedAxiom;
+import org.protege.owl.diff.present.PresentationAlgorithm;
 import org.protege.owl.diff.present.algorithms.IdentifyAnnotationRefactored;
 import org.protege.owl.diff.present.algorithms.IdentifyChangedAnnotation;
 import org.protege.owl.diff.present.algorithms.IdentifyChangedDefinition;
@@ -436,4 +439,74 @@ public class PresentationAlgorithmTest extends TestCase {
     		}
     	}
     }
+    
+    /*
+     * The entity based algorithms are examined in parallel by phase 2.  Wrapping them hides that they are
+     * entity based so the engine applies them with their own single threaded loop.
+     */
+    public void testParallelPresentationMatchesSequential() throws OWLOntologyCreationException {
+    	String[] prefixes = { "AnnotationChanged", "ChangedDefinition", "OrphanedAnnotation", 
+    			              "OrphanedAnnotationNot", "OrphanedAnnotationWithPun", "RemoveAnnotation" };
+    	for (String prefix : prefixes) {
+    		loadOntologies(prefix);
+    		Engine parallel = new Engine(ontology1, ontology2);
+    		parallel.setAlignmentAlgorithms(new MatchById(), new SuperSubClassPinch());
+    		parallel.setPresentationAlgorithms(presentationAlgorithms());
+    		parallel.phase1();
+    		parallel.phase2();
+
+    		Engine sequential = new Engine(ontology1, ontology2);
+    		sequential.setAlignmentAlgorithms(new MatchById(), new SuperSubClassPinch());
+    		PresentationAlgorithm[] algorithms = presentationAlgorithms();
+    		for (int i = 0; i < algorithms.length; i++) {
+    			algorithms[i] = new SequentialAlgorithm(algorithms[i]);
+    		}
+    		sequential.setPresentationAlgorithms(algorithms);
+    		sequential.phase1();
+    		sequential.phase2();
+
+    		assertEquals(describe(sequential.getChanges()), describe(parallel.getChanges()));
+    	}
+    }
+    
+    private static PresentationAlgorithm[] presentationAlgorithms() {
+    	return new PresentationAlgorithm[] { new IdentifyRenameOperation(), new IdentifyAnnotationRefactored(), 
+    			                             new IdentifyChangedAnnotation(), new IdentifyChangedDefinition(), 
+    			                             new IdentifyOrphanedAnnotations() };
+    }
+    
+    private static List<String> describe(Changes changes) {
+    	List<String> description = new ArrayList<String>();
+    	for (EntityBasedDiff diff : changes.getEntityBasedDiffs()) {
+    		description.add(diff.getSourceEntity() + " -> " + diff.getTargetEntity() + ": " + diff.getDiffType());
+    		for (MatchedAxiom match : diff.getAxiomMatches()) {
+    			description.add(match.toString());
+    		}
+    	}
+    	return description;
+    }
+    
+    private static class SequentialAlgorithm implements PresentationAlgorithm {
+    	private PresentationAlgorithm delegate;
+    	
+    	public SequentialAlgorithm(PresentationAlgorithm delegate) {
+    		this.delegate = delegate;
+    	}
+
+		public void initialise(Engine e) {
+			delegate.initialise(e);
+		}
+
+		public void apply() {
+			delegate.apply();
+		}
+
+		public int getPriority() {
+			return delegate.getPriority();
+		}
+
+		public void setPriority(int priority) {
+			delegate.setPriority(priority);
+		}
+    }
 }